@@ -83,6 +83,9 @@ public class KeyValueConverter {
         producerConfig.setCompressType(KeyValueHelper.getString(attributes, JoyQueueProducerBuiltinKeys.COMPRESS_TYPE, producerConfig.getCompressType()));
         producerConfig.setCompressThreshold(KeyValueHelper.getInt(attributes, JoyQueueProducerBuiltinKeys.COMPRESS_THRESHOLD, producerConfig.getCompressThreshold()));
         producerConfig.setBatch(attributes.getBoolean(JoyQueueProducerBuiltinKeys.BATCH, producerConfig.isBatch()));
+        producerConfig.setAccumulate(attributes.getBoolean(JoyQueueProducerBuiltinKeys.ACCUMULATE, producerConfig.isAccumulate()));
+        producerConfig.setLingerTime(attributes.getLong(JoyQueueProducerBuiltinKeys.LINGER_TIME, producerConfig.getLingerTime()));
+        producerConfig.setAccumulateBatchSize(KeyValueHelper.getInt(attributes, JoyQueueProducerBuiltinKeys.ACCUMULATE_BATCH_SIZE, producerConfig.getAccumulateBatchSize()));
         producerConfig.setSelectorType(KeyValueHelper.getString(attributes, JoyQueueProducerBuiltinKeys.SELECTOR_TYPE, producerConfig.getSelectorType()));
         producerConfig.setBusinessIdLengthLimit(KeyValueHelper.getInt(attributes, JoyQueueProducerBuiltinKeys.BUSINESSID_LENGTH_LIMIT, producerConfig.getBusinessIdLengthLimit()));
         producerConfig.setBodyLengthLimit(KeyValueHelper.getInt(attributes, JoyQueueProducerBuiltinKeys.BODY_LENGTH_LIMIT, producerConfig.getBodyLengthLimit()));
@@ -108,6 +111,8 @@ public class KeyValueConverter {
         consumerConfig.setIdleInterval(attributes.getLong(JoyQueueConsumerBuiltinKeys.IDLE_INTERVAL, consumerConfig.getIdleInterval()));
         consumerConfig.setSessionTimeout(attributes.getLong(JoyQueueConsumerBuiltinKeys.SESSION_TIMEOUT, consumerConfig.getSessionTimeout()));
         consumerConfig.setThread(KeyValueHelper.getInt(attributes, JoyQueueConsumerBuiltinKeys.THREAD, consumerConfig.getThread()));
+        consumerConfig.setPrefetchSize(KeyValueHelper.getInt(attributes, JoyQueueConsumerBuiltinKeys.PREFETCH_SIZE, consumerConfig.getPrefetchSize()));
+        consumerConfig.setPrefetchBytes(KeyValueHelper.getInt(attributes, JoyQueueConsumerBuiltinKeys.PREFETCH_BYTES, consumerConfig.getPrefetchBytes()));
         consumerConfig.setFailover(attributes.getBoolean(JoyQueueConsumerBuiltinKeys.FAILOVER, consumerConfig.isFailover()));
         consumerConfig.setLoadBalance(attributes.getBoolean(JoyQueueConsumerBuiltinKeys.LOADBALANCE, consumerConfig.isLoadBalance()));
         consumerConfig.setLoadBalanceType(KeyValueHelper.getString(attributes, JoyQueueConsumerBuiltinKeys.LOADBALANCE_TYPE, consumerConfig.getLoadBalanceType()));
@@ -45,6 +45,10 @@ public interface JoyQueueConsumerBuiltinKeys extends OMSBuiltinKeys {
 
     String THREAD = "CONSUMER_THREAD";
 
+    String PREFETCH_SIZE = "CONSUMER_PREFETCH_SIZE";
+
+    String PREFETCH_BYTES = "CONSUMER_PREFETCH_BYTES";
+
     String FAILOVER = "CONSUMER_FAILOVER";
 
     String LOADBALANCE = "CONSUMER_LOADBALANCE";
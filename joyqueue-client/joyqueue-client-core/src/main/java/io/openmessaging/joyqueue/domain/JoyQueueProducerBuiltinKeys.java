@@ -45,6 +45,12 @@ public interface JoyQueueProducerBuiltinKeys extends OMSBuiltinKeys {
 
     String BATCH = "PRODUCER_BATCH";
 
+    String ACCUMULATE = "PRODUCER_ACCUMULATE";
+
+    String LINGER_TIME = "PRODUCER_LINGER_TIME";
+
+    String ACCUMULATE_BATCH_SIZE = "PRODUCER_ACCUMULATE_BATCH_SIZE";
+
     String SELECTOR_TYPE = "PRODUCER_SELECTOR_TYPE";
 
     String BUSINESSID_LENGTH_LIMIT = "PRODUCER_BUSINESSID_LENGTH_LIMIT";
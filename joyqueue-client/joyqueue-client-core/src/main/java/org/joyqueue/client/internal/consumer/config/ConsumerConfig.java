@@ -33,6 +33,7 @@ public class ConsumerConfig {
     public static final int BROADCAST_AUTO_RESET_RIGHT_INDEX = 1;
     public static final int BROADCAST_AUTO_RESET_CURRENT_INDEX = 2;
     public static final int NONE_THREAD = -1;
+    public static final int NONE_PREFETCH_SIZE = -1;
 
     private String app;
     private String group;
@@ -47,6 +48,10 @@ public class ConsumerConfig {
     private int thread = NONE_THREAD;
     private boolean failover = true;
 
+    // 预取的消息条数和字节数上限，未设置时不预取
+    private int prefetchSize = NONE_PREFETCH_SIZE;
+    private int prefetchBytes = 1024 * 1024 * 4;
+
     private boolean loadBalance = true;
     private String loadBalanceType = RoundRobinBrokerLoadBalance.NAME;
 
@@ -72,6 +77,8 @@ public class ConsumerConfig {
         consumerConfig.setSessionTimeout(sessionTimeout);
         consumerConfig.setThread(thread);
         consumerConfig.setFailover(failover);
+        consumerConfig.setPrefetchSize(prefetchSize);
+        consumerConfig.setPrefetchBytes(prefetchBytes);
         consumerConfig.setLoadBalance(loadBalance);
         consumerConfig.setLoadBalanceType(loadBalanceType);
         consumerConfig.setBroadcastGroup(broadcastGroup);
@@ -185,6 +192,22 @@ public class ConsumerConfig {
         return thread;
     }
 
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    public void setPrefetchBytes(int prefetchBytes) {
+        this.prefetchBytes = prefetchBytes;
+    }
+
+    public int getPrefetchBytes() {
+        return prefetchBytes;
+    }
+
     public void setFailover(boolean failover) {
         this.failover = failover;
     }
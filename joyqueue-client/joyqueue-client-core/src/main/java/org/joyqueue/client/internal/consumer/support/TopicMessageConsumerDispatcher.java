@@ -71,7 +71,14 @@ public class TopicMessageConsumerDispatcher extends Service {
             logger.debug("poll messages, topic: {}, app: {}, messages: {}", topic, nameServerConfig.getApp(), messages);
         }
 
-        if (CollectionUtils.isEmpty(messages)) {
+        return dispatch(messages);
+    }
+
+    /**
+     * 消费已拉取的消息，没有监听器时不应答，等应答超时后重新投递
+     */
+    public boolean dispatch(List<ConsumeMessage> messages) {
+        if (CollectionUtils.isEmpty(messages) || messageListenerManager.isEmpty()) {
             return false;
         }
 
@@ -87,6 +94,10 @@ public class TopicMessageConsumerDispatcher extends Service {
         return true;
     }
 
+    public boolean hasListener() {
+        return !messageListenerManager.isEmpty();
+    }
+
     protected List<ConsumeReply> doDispatch(TopicMetadata topicMetadata, ConsumerPolicy consumerPolicy, List<ConsumeMessage> messages) {
         List<MessageListener> listeners = messageListenerManager.getListeners();
         List<BatchMessageListener> batchListeners = messageListenerManager.getBatchListeners();
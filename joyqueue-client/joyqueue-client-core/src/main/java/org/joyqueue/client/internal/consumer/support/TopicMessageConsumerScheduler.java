@@ -17,11 +17,13 @@ package org.joyqueue.client.internal.consumer.support;
 
 import org.joyqueue.client.internal.consumer.MessagePoller;
 import org.joyqueue.client.internal.consumer.config.ConsumerConfig;
+import org.joyqueue.client.internal.consumer.domain.ConsumeMessage;
 import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
 import org.joyqueue.toolkit.service.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -39,6 +41,7 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
     private ConsumerConfig config;
     private MessagePoller messagePoller;
     private TopicMessageConsumerDispatcher messageConsumerDispatcher;
+    private TopicMessagePrefetcher messagePrefetcher;
     private ExecutorService scheduleThreadPool;
     private volatile boolean suspend = false;
     private volatile boolean stopped = false;
@@ -53,10 +56,16 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
     @Override
     protected void validate() throws Exception {
         scheduleThreadPool = Executors.newFixedThreadPool(config.getThread(), new NamedThreadFactory(String.format("joyqueue-consumer-scheduler-%s", topic), true));
+        if (config.getPrefetchSize() > 0) {
+            messagePrefetcher = new TopicMessagePrefetcher(topic, config, messagePoller, messageConsumerDispatcher);
+        }
     }
 
     @Override
     protected void doStart() throws Exception {
+        if (messagePrefetcher != null) {
+            messagePrefetcher.start();
+        }
         for (int i = 0; i < config.getThread(); i++) {
             scheduleThreadPool.execute(this);
         }
@@ -67,6 +76,9 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
     @Override
     protected void doStop() {
         stopped = true;
+        if (messagePrefetcher != null) {
+            messagePrefetcher.stop();
+        }
         if (scheduleThreadPool != null) {
             scheduleThreadPool.shutdown();
         }
@@ -76,6 +88,9 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
 
     public void suspend() {
         suspend = true;
+        if (messagePrefetcher != null) {
+            messagePrefetcher.suspend();
+        }
     }
 
     public boolean isSuspend() {
@@ -84,6 +99,9 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
 
     public void resume() {
         suspend = false;
+        if (messagePrefetcher != null) {
+            messagePrefetcher.resume();
+        }
     }
 
     @Override
@@ -110,6 +128,11 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
     }
 
     protected void doSchedule() throws Exception {
+        if (messagePrefetcher != null) {
+            doPrefetchSchedule();
+            return;
+        }
+
         boolean result = messageConsumerDispatcher.dispatch();
         if (result) {
             if (config.getInterval() > 0) {
@@ -119,4 +142,18 @@ public class TopicMessageConsumerScheduler extends Service implements Runnable {
             Thread.currentThread().sleep(config.getIdleInterval());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 从预取队列取消息投递，没有消息时阻塞等待，不做固定间隔的休眠
+     */
+    protected void doPrefetchSchedule() throws Exception {
+        List<ConsumeMessage> messages = messagePrefetcher.take(config.getIdleInterval());
+        if (messages == null) {
+            return;
+        }
+        boolean result = messageConsumerDispatcher.dispatch(messages);
+        if (result && config.getInterval() > 0) {
+            Thread.currentThread().sleep(config.getInterval());
+        }
+    }
+}
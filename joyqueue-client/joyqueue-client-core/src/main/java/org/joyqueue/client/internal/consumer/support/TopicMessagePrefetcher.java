@@ -0,0 +1,242 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.client.internal.consumer.support;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.joyqueue.client.internal.consumer.MessagePoller;
+import org.joyqueue.client.internal.consumer.config.ConsumerConfig;
+import org.joyqueue.client.internal.consumer.domain.ConsumeMessage;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.toolkit.service.Service;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 消息预取
+ * 和调度线程数相同的预取线程通过长轮询持续拉取消息放入预取队列，消费线程从队列中取出后立即投递，
+ * 预取的消息条数或字节数超过上限时暂停拉取，多个线程同时拉取时最多超出线程数减一批。
+ * 每次拉取的消息属于同一个分区，分区在应答前被占用，所以队列中每个分区最多只有一批消息。
+ * 在队列中超过应答超时的消息已经被broker重新投递，取出时直接丢弃不再消费
+ */
+public class TopicMessagePrefetcher extends Service implements Runnable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(TopicMessagePrefetcher.class);
+
+    private String topic;
+    private ConsumerConfig config;
+    private MessagePoller messagePoller;
+    private TopicMessageConsumerDispatcher messageConsumerDispatcher;
+    // 队列和计数都在this上同步
+    private Deque<PrefetchedMessages> prefetchQueue = new ArrayDeque<>();
+    private int prefetchedSize = 0;
+    private long prefetchedBytes = 0;
+    private ExecutorService prefetchThreadPool;
+    private volatile boolean suspend = false;
+    private volatile boolean stopped = false;
+
+    public TopicMessagePrefetcher(String topic, ConsumerConfig config, MessagePoller messagePoller, TopicMessageConsumerDispatcher messageConsumerDispatcher) {
+        this.topic = topic;
+        this.config = config;
+        this.messagePoller = messagePoller;
+        this.messageConsumerDispatcher = messageConsumerDispatcher;
+    }
+
+    @Override
+    protected void validate() throws Exception {
+        prefetchThreadPool = Executors.newFixedThreadPool(config.getThread(), new NamedThreadFactory(String.format("joyqueue-consumer-prefetcher-%s", topic), true));
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        for (int i = 0; i < config.getThread(); i++) {
+            prefetchThreadPool.execute(this);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        // 未消费的消息不应答，应答超时后重新投递
+        synchronized (this) {
+            stopped = true;
+            prefetchQueue.clear();
+            prefetchedSize = 0;
+            prefetchedBytes = 0;
+            notifyAll();
+        }
+        if (prefetchThreadPool != null) {
+            prefetchThreadPool.shutdown();
+        }
+    }
+
+    public void suspend() {
+        suspend = true;
+    }
+
+    public void resume() {
+        suspend = false;
+    }
+
+    /**
+     * 取出一批预取的消息，没有消息时最多等待timeout毫秒
+     */
+    public synchronized List<ConsumeMessage> take(long timeout) throws InterruptedException {
+        long endTime = SystemClock.now() + timeout;
+        while (!stopped) {
+            PrefetchedMessages prefetched = prefetchQueue.poll();
+            if (prefetched != null) {
+                prefetchedSize -= prefetched.getMessages().size();
+                prefetchedBytes -= prefetched.getBytes();
+                notifyAll();
+                if (!isExpired(prefetched)) {
+                    return prefetched.getMessages();
+                }
+                logger.warn("drop expired prefetched messages, topic: {}, partition: {}, size: {}",
+                        topic, prefetched.getMessages().get(0).getPartition(), prefetched.getMessages().size());
+                continue;
+            }
+            long waitTime = endTime - SystemClock.now();
+            if (waitTime <= 0) {
+                break;
+            }
+            wait(waitTime);
+        }
+        return null;
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                if (suspend || !messageConsumerDispatcher.hasListener()) {
+                    Thread.sleep(config.getIdleInterval());
+                    continue;
+                }
+                if (!awaitCapacity()) {
+                    continue;
+                }
+                doPrefetch();
+            } catch (Exception e) {
+                if (stopped) {
+                    continue;
+                }
+                logger.error("prefetch messages exception, topic: {}", topic, e);
+                try {
+                    Thread.sleep(config.getIdleInterval());
+                } catch (InterruptedException e1) {
+                    logger.debug("prefetch messages exception, topic: {}", topic, e1);
+                }
+            }
+        }
+    }
+
+    protected void doPrefetch() throws InterruptedException {
+        // 以发出请求的时间作为拉取时间，broker的应答超时不会早于这个时间开始计算
+        long fetchTime = SystemClock.now();
+        List<ConsumeMessage> messages = messagePoller.poll(topic);
+
+        if (CollectionUtils.isEmpty(messages)) {
+            // 没有可用分区时broker不挂起请求直接返回，补足长轮询时间避免空转
+            long waitTime = config.getLongPollTimeout() - (SystemClock.now() - fetchTime);
+            if (waitTime > 0) {
+                Thread.sleep(Math.min(waitTime, config.getIdleInterval()));
+            }
+            return;
+        }
+
+        PrefetchedMessages prefetched = new PrefetchedMessages(messages, getBytes(messages), fetchTime);
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            prefetchQueue.offer(prefetched);
+            prefetchedSize += messages.size();
+            prefetchedBytes += prefetched.getBytes();
+            notifyAll();
+        }
+    }
+
+    /**
+     * 等待预取队列有空闲容量
+     */
+    protected synchronized boolean awaitCapacity() throws InterruptedException {
+        while (!stopped && isFull()) {
+            wait(config.getIdleInterval());
+        }
+        return !stopped;
+    }
+
+    protected boolean isFull() {
+        return prefetchedSize >= config.getPrefetchSize() || prefetchedBytes >= config.getPrefetchBytes();
+    }
+
+    protected boolean isExpired(PrefetchedMessages prefetched) {
+        return SystemClock.now() - prefetched.getFetchTime() >= getAckTimeout();
+    }
+
+    protected long getAckTimeout() {
+        if (config.getAckTimeout() != ConsumerConfig.NONE_ACK_TIMEOUT) {
+            return config.getAckTimeout();
+        }
+        return messagePoller.getTopicMetadata(topic).getConsumerPolicy().getAckTimeout();
+    }
+
+    protected long getBytes(List<ConsumeMessage> messages) {
+        long bytes = 0;
+        for (ConsumeMessage message : messages) {
+            if (message.getBodyBytes() != null) {
+                bytes += message.getBodyBytes().length;
+            } else if (message.getBody() != null) {
+                bytes += message.getBody().length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 预取的一批消息
+     */
+    protected static class PrefetchedMessages {
+
+        private List<ConsumeMessage> messages;
+        private long bytes;
+        private long fetchTime;
+
+        public PrefetchedMessages(List<ConsumeMessage> messages, long bytes, long fetchTime) {
+            this.messages = messages;
+            this.bytes = bytes;
+            this.fetchTime = fetchTime;
+        }
+
+        public List<ConsumeMessage> getMessages() {
+            return messages;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getFetchTime() {
+            return fetchTime;
+        }
+    }
+}
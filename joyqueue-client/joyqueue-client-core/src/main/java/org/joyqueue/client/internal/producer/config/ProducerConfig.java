@@ -45,6 +45,11 @@ public class ProducerConfig {
 
     private boolean batch = true;
 
+    // 异步发送时按主题和分区攒批，达到lingerTime或accumulateBatchSize后整批发送
+    private boolean accumulate = false;
+    private long lingerTime = 5;
+    private int accumulateBatchSize = 1024 * 16;
+
     private String selectorType = WeightedRoundRobinPartitionSelector.NAME;
     private int businessIdLengthLimit = 100;
     private int bodyLengthLimit = 1024 * 1024 * 1;
@@ -63,6 +68,9 @@ public class ProducerConfig {
         producerConfig.setCompressType(compressType);
         producerConfig.setCompressThreshold(compressThreshold);
         producerConfig.setBatch(batch);
+        producerConfig.setAccumulate(accumulate);
+        producerConfig.setLingerTime(lingerTime);
+        producerConfig.setAccumulateBatchSize(accumulateBatchSize);
         producerConfig.setSelectorType(selectorType);
         producerConfig.setBusinessIdLengthLimit(businessIdLengthLimit);
         producerConfig.setBodyLengthLimit(bodyLengthLimit);
@@ -158,6 +166,30 @@ public class ProducerConfig {
         return batch;
     }
 
+    public void setAccumulate(boolean accumulate) {
+        this.accumulate = accumulate;
+    }
+
+    public boolean isAccumulate() {
+        return accumulate;
+    }
+
+    public void setLingerTime(long lingerTime) {
+        this.lingerTime = lingerTime;
+    }
+
+    public long getLingerTime() {
+        return lingerTime;
+    }
+
+    public void setAccumulateBatchSize(int accumulateBatchSize) {
+        this.accumulateBatchSize = accumulateBatchSize;
+    }
+
+    public int getAccumulateBatchSize() {
+        return accumulateBatchSize;
+    }
+
     public String getSelectorType() {
         return selectorType;
     }
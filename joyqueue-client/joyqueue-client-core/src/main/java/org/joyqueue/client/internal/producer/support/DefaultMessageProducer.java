@@ -64,6 +64,7 @@ public class DefaultMessageProducer extends Service implements MessageProducer {
     private MessageSender messageSender;
     private AtomicLong transactionSequence;
     private MessageProducerInner messageProducerInner;
+    private MessageAccumulator messageAccumulator;
     private ProducerInterceptorManager producerInterceptorManager = new ProducerInterceptorManager();
 
     public DefaultMessageProducer(ProducerConfig config, NameServerConfig nameServerConfig, ClusterManager clusterManager, ProducerClientManager producerClientManager) {
@@ -87,16 +88,25 @@ public class DefaultMessageProducer extends Service implements MessageProducer {
         senderConfig = new SenderConfig(config.isCompress(), config.getCompressThreshold(), config.getCompressType(), config.isBatch());
         messageSender = new DefaultMessageSender(producerClientManager, senderConfig);
         messageProducerInner = new MessageProducerInner(config, nameServerConfig, messageSender, clusterManager, producerClientManager, producerInterceptorManager);
+        if (config.isAccumulate()) {
+            messageAccumulator = new MessageAccumulator(config, messageProducerInner);
+        }
     }
 
     @Override
     protected void doStart() throws Exception {
         messageSender.start();
         messageProducerInner.start();
+        if (messageAccumulator != null) {
+            messageAccumulator.start();
+        }
     }
 
     @Override
     protected void doStop() {
+        if (messageAccumulator != null) {
+            messageAccumulator.stop();
+        }
         if (messageProducerInner != null) {
             messageProducerInner.stop();
         }
@@ -153,7 +163,13 @@ public class DefaultMessageProducer extends Service implements MessageProducer {
     @Override
     public CompletableFuture<SendResult> sendAsync(ProduceMessage message, long timeout, TimeUnit timeoutUnit) {
         CompletableFuture<SendResult> future = new CompletableFuture();
-        doSend(message, timeout, timeoutUnit, false, new CompletableFutureAsyncProduceCallback(future));
+        // 指定了partitionKey的消息按key散列分区，不参与攒批
+        if (messageAccumulator != null && message != null && message.getPartitionKey() == ProduceMessage.NONE_PARTITION_KEY) {
+            checkState();
+            messageAccumulator.append(message, timeout, timeoutUnit, future);
+        } else {
+            doSend(message, timeout, timeoutUnit, false, new CompletableFutureAsyncProduceCallback(future));
+        }
         return future;
     }
 
@@ -0,0 +1,208 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.client.internal.producer.support;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.joyqueue.client.internal.producer.callback.AsyncBatchProduceCallback;
+import org.joyqueue.client.internal.producer.checker.ProduceMessageChecker;
+import org.joyqueue.client.internal.producer.config.ProducerConfig;
+import org.joyqueue.client.internal.producer.domain.ProduceMessage;
+import org.joyqueue.client.internal.producer.domain.SendResult;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.toolkit.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步发送的攒批
+ * 按主题和分区缓存消息，批次大小达到accumulateBatchSize或等待超过lingerTime后整批发送，
+ * 整批消息转换为一条批量消息，压缩也按整批进行，应答后逐条完成调用方的future
+ */
+public class MessageAccumulator extends Service {
+
+    protected static final Logger logger = LoggerFactory.getLogger(MessageAccumulator.class);
+
+    private ProducerConfig config;
+    private MessageProducerInner messageProducerInner;
+    private int batchSizeLimit;
+    private ConcurrentMap<String, Accumulation> accumulations = Maps.newConcurrentMap();
+    private ScheduledExecutorService lingerScheduler;
+
+    public MessageAccumulator(ProducerConfig config, MessageProducerInner messageProducerInner) {
+        this.config = config;
+        this.messageProducerInner = messageProducerInner;
+    }
+
+    @Override
+    protected void validate() throws Exception {
+        batchSizeLimit = Math.min(config.getAccumulateBatchSize(), config.getBatchBodyLengthLimit());
+        lingerScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("joyqueue-producer-accumulator", true));
+    }
+
+    @Override
+    protected void doStop() {
+        for (Accumulation accumulation : accumulations.values()) {
+            AccumulatorBatch batch = null;
+            synchronized (accumulation) {
+                batch = accumulation.batch;
+                accumulation.batch = null;
+            }
+            if (batch != null) {
+                send(batch);
+            }
+        }
+        if (lingerScheduler != null) {
+            lingerScheduler.shutdown();
+        }
+    }
+
+    public void append(ProduceMessage message, long timeout, TimeUnit timeoutUnit, CompletableFuture<SendResult> future) {
+        ProduceMessageChecker.checkMessage(message, config);
+
+        int size = getSize(message);
+        Accumulation accumulation = accumulations.computeIfAbsent(getKey(message), key -> new Accumulation());
+        AccumulatorBatch readyBatch = null;
+        AccumulatorBatch fullBatch = null;
+
+        synchronized (accumulation) {
+            AccumulatorBatch batch = accumulation.batch;
+            if (batch != null && batch.size + size > batchSizeLimit) {
+                readyBatch = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new AccumulatorBatch();
+                accumulation.batch = batch;
+                scheduleLinger(accumulation, batch);
+            }
+
+            batch.add(message, timeoutUnit.toMillis(timeout), future, size);
+
+            if (batch.size >= batchSizeLimit) {
+                fullBatch = batch;
+                accumulation.batch = null;
+            }
+        }
+
+        if (readyBatch != null) {
+            send(readyBatch);
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+    }
+
+    protected void scheduleLinger(Accumulation accumulation, AccumulatorBatch batch) {
+        lingerScheduler.schedule(() -> {
+            synchronized (accumulation) {
+                if (accumulation.batch != batch) {
+                    return;
+                }
+                accumulation.batch = null;
+            }
+            send(batch);
+        }, config.getLingerTime(), TimeUnit.MILLISECONDS);
+    }
+
+    protected void send(AccumulatorBatch batch) {
+        try {
+            messageProducerInner.batchSend(batch.messages, null, batch.timeout, TimeUnit.MILLISECONDS, false, config.isFailover(), new AsyncBatchProduceCallback() {
+                @Override
+                public void onSuccess(List<ProduceMessage> messages, List<SendResult> result) {
+                    batch.complete(result);
+                }
+
+                @Override
+                public void onException(List<ProduceMessage> messages, Throwable cause) {
+                    batch.completeExceptionally(cause);
+                }
+            });
+        } catch (Exception e) {
+            logger.debug("send accumulated messages exception, messages: {}", batch.messages, e);
+            batch.completeExceptionally(e);
+        }
+    }
+
+    protected String getKey(ProduceMessage message) {
+        return message.getTopic() + ":" + message.getPartition();
+    }
+
+    protected int getSize(ProduceMessage message) {
+        if (StringUtils.isNotBlank(message.getBody())) {
+            return message.getBody().length();
+        } else {
+            return message.getBodyBytes().length;
+        }
+    }
+
+    /**
+     * 一个主题分区当前正在攒的批次
+     */
+    protected static class Accumulation {
+
+        private AccumulatorBatch batch;
+    }
+
+    protected static class AccumulatorBatch {
+
+        private List<ProduceMessage> messages = Lists.newArrayList();
+        private List<CompletableFuture<SendResult>> futures = Lists.newArrayList();
+        private int size;
+        private long timeout;
+
+        public void add(ProduceMessage message, long timeout, CompletableFuture<SendResult> future, int size) {
+            this.messages.add(message);
+            this.futures.add(future);
+            this.size += size;
+            this.timeout = Math.max(this.timeout, timeout);
+        }
+
+        /**
+         * 批量消息只返回一条结果，按位置推算每条消息的索引
+         */
+        @SuppressWarnings("deprecation")
+        public void complete(List<SendResult> result) {
+            int i = 0;
+            for (CompletableFuture<SendResult> future : futures) {
+                if (CollectionUtils.isEmpty(result)) {
+                    future.complete(null);
+                } else if (result.size() == futures.size()) {
+                    future.complete(result.get(i));
+                } else {
+                    SendResult first = result.get(0);
+                    future.complete(new SendResult(first.getTopic(), first.getPartition(), first.getIndex() + i, first.getStartTime()));
+                }
+                i++;
+            }
+        }
+
+        public void completeExceptionally(Throwable cause) {
+            for (CompletableFuture<SendResult> future : futures) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.joyqueue.message;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  属性 | 长度(Byte) | 说明
@@ -56,6 +58,8 @@ public class BrokerMessage extends Message implements JoyQueueLog {
     private int term;
     private byte[] extension;
     private boolean batch = false;
+    // 协议解码时保留的原始消息字节（与存储格式一致），不参与克隆和序列化
+    private transient ByteBuffer rawMessage;
 
     public byte getSource() {
         return source;
@@ -144,6 +148,14 @@ public class BrokerMessage extends Message implements JoyQueueLog {
         return batch;
     }
 
+    public ByteBuffer getRawMessage() {
+        return rawMessage;
+    }
+
+    public void setRawMessage(ByteBuffer rawMessage) {
+        this.rawMessage = rawMessage;
+    }
+
     public BrokerMessage clone() {
         BrokerMessage cloneMessage = new BrokerMessage();
         cloneMessage.setSource(source);
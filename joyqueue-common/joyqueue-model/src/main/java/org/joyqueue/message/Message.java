@@ -41,6 +41,8 @@ public class Message implements Serializable {
     public static final String TAGS = "TAGS";
     public static final int COMPRESS_THRESHOLD = 100;
     public static String EXPIRE = "EXPIRE";
+    // 定时投递时间，毫秒时间戳
+    public static final String DELIVER_AT = "DELIVER_AT";
 
     protected static final Logger logger = LoggerFactory.getLogger(Message.class);
 
@@ -444,6 +446,18 @@ public class Message implements Serializable {
         setAttribute(EXPIRE, String.valueOf(expire));
     }
 
+    public long getDeliverAt() {
+        String value = getAttribute(DELIVER_AT);
+        if (value == null) {
+            return 0;
+        }
+        return Long.valueOf(value);
+    }
+
+    public void setDeliverAt(long deliverAt) {
+        setAttribute(DELIVER_AT, String.valueOf(deliverAt));
+    }
+
     public int getSize() {
         if (body != null) {
             return body.length;
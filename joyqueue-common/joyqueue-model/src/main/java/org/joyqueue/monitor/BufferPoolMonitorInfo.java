@@ -82,6 +82,12 @@ public class BufferPoolMonitorInfo {
         private String usedPreLoad;
         private String totalSize;
         private String bufferSize;
+        private String classUsed;
+        private String budget;
+        private long hit;
+        private long miss;
+        private long eviction;
+        private long stall;
 
         public String getCached() {
             return cached;
@@ -114,6 +120,54 @@ public class BufferPoolMonitorInfo {
         public void setBufferSize(String bufferSize) {
             this.bufferSize = bufferSize;
         }
+
+        public String getClassUsed() {
+            return classUsed;
+        }
+
+        public void setClassUsed(String classUsed) {
+            this.classUsed = classUsed;
+        }
+
+        public String getBudget() {
+            return budget;
+        }
+
+        public void setBudget(String budget) {
+            this.budget = budget;
+        }
+
+        public long getHit() {
+            return hit;
+        }
+
+        public void setHit(long hit) {
+            this.hit = hit;
+        }
+
+        public long getMiss() {
+            return miss;
+        }
+
+        public void setMiss(long miss) {
+            this.miss = miss;
+        }
+
+        public long getEviction() {
+            return eviction;
+        }
+
+        public void setEviction(long eviction) {
+            this.eviction = eviction;
+        }
+
+        public long getStall() {
+            return stall;
+        }
+
+        public void setStall(long stall) {
+            this.stall = stall;
+        }
     }
 }
 
@@ -26,6 +26,7 @@ import org.joyqueue.network.command.JoyQueueCommandType;
 import org.joyqueue.network.serializer.Serializer;
 import org.joyqueue.network.transport.codec.JoyQueueHeader;
 import org.joyqueue.network.transport.codec.PayloadCodec;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.command.Type;
 import io.netty.buffer.ByteBuf;
 
@@ -68,6 +69,7 @@ public class FetchPartitionMessageResponseCodec implements PayloadCodec<JoyQueue
 
     @Override
     public void encode(FetchPartitionMessageResponse payload, ByteBuf buffer) throws Exception {
+        payload.getFileSegments().clear();
         buffer.writeShort(payload.getData().rowMap().size());
         for (Map.Entry<String, Map<Short, FetchPartitionMessageAckData>> topicEntry : payload.getData().rowMap().entrySet()) {
             Serializer.write(topicEntry.getKey(), buffer, Serializer.SHORT_SIZE);
@@ -75,10 +77,17 @@ public class FetchPartitionMessageResponseCodec implements PayloadCodec<JoyQueue
             for (Map.Entry<Short, FetchPartitionMessageAckData> partitionEntry : topicEntry.getValue().entrySet()) {
                 FetchPartitionMessageAckData fetchPartitionMessageAckData = partitionEntry.getValue();
                 buffer.writeShort(partitionEntry.getKey());
-                buffer.writeShort(fetchPartitionMessageAckData.getBuffers().size());
+                buffer.writeShort(fetchPartitionMessageAckData.getCount());
                 for (ByteBuffer rByteBuffer : fetchPartitionMessageAckData.getBuffers()) {
                     buffer.writeBytes(rByteBuffer);
                 }
+                // 文件区域只登记位置，由文件直接发送
+                if (fetchPartitionMessageAckData.getSegments() != null) {
+                    for (FileSegment segment : fetchPartitionMessageAckData.getSegments()) {
+                        segment.setOffset(buffer.writerIndex());
+                        payload.getFileSegments().add(segment);
+                    }
+                }
                 buffer.writeInt(fetchPartitionMessageAckData.getCode().getCode());
             }
         }
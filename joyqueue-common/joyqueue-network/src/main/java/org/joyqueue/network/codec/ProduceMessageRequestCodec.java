@@ -27,7 +27,9 @@ import org.joyqueue.network.transport.codec.JoyQueueHeader;
 import org.joyqueue.network.transport.codec.PayloadCodec;
 import org.joyqueue.network.transport.command.Type;
 import io.netty.buffer.ByteBuf;
+import org.apache.commons.lang3.StringUtils;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +41,17 @@ import java.util.Map;
  */
 public class ProduceMessageRequestCodec implements PayloadCodec<JoyQueueHeader, ProduceMessageRequest>, Type {
 
+    // 解码时是否保留消息的原始字节，只有Broker直接写入原始字节时需要
+    private final boolean rawMessageEnable;
+
+    public ProduceMessageRequestCodec() {
+        this(false);
+    }
+
+    public ProduceMessageRequestCodec(boolean rawMessageEnable) {
+        this.rawMessageEnable = rawMessageEnable;
+    }
+
     @Override
     public ProduceMessageRequest decode(JoyQueueHeader header, ByteBuf buffer) throws Exception {
         short dataSize = buffer.readShort();
@@ -56,12 +69,20 @@ public class ProduceMessageRequestCodec implements PayloadCodec<JoyQueueHeader,
 
             short messageSize = buffer.readShort();
             List<BrokerMessage> messages = Lists.newArrayListWithCapacity(messageSize);
+            int begin = buffer.readerIndex();
+            int[] offsets = new int[messageSize + 1];
             for (int j = 0; j < messageSize; j++) {
+                offsets[j] = buffer.readerIndex() - begin;
                 BrokerMessage brokerMessage = Serializer.readBrokerMessage(buffer);
                 brokerMessage.setTopic(topic);
                 brokerMessage.setTxId(txId);
                 messages.add(brokerMessage);
             }
+            offsets[messageSize] = buffer.readerIndex() - begin;
+            // 事务消息的事务ID不在原始字节中，写入时需要重新序列化，不保留原始字节
+            if (rawMessageEnable && StringUtils.isEmpty(txId)) {
+                attachRawMessages(buffer, begin, offsets, messages);
+            }
 
             produceMessageData.setMessages(messages);
             data.put(topic, produceMessageData);
@@ -73,6 +94,22 @@ public class ProduceMessageRequestCodec implements PayloadCodec<JoyQueueHeader,
         return produceMessageRequest;
     }
 
+    /**
+     * 把同一主题下所有消息的原始字节一次性拷贝出来，每条消息持有其中的一段，
+     * Broker写入时可以直接使用这段字节，不需要重新序列化
+     */
+    protected void attachRawMessages(ByteBuf buffer, int begin, int[] offsets, List<BrokerMessage> messages) {
+        int length = offsets[messages.size()];
+        if (length <= 0) {
+            return;
+        }
+        byte[] raw = new byte[length];
+        buffer.getBytes(begin, raw);
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setRawMessage(ByteBuffer.wrap(raw, offsets[i], offsets[i + 1] - offsets[i]).slice());
+        }
+    }
+
     @Override
     public void encode(ProduceMessageRequest payload, ByteBuf buffer) throws Exception {
         buffer.writeShort(payload.getData().size());
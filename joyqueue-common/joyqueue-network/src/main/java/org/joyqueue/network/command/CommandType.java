@@ -71,6 +71,10 @@ public class CommandType {
     public static final int REPLICATE_CONSUME_POS_REQUEST = 49;
     // 复制消费位置响应命令
     public static final int REPLICATE_CONSUME_POS_RESPONSE = -49;
+    // raft按broker合并多个分区组的复制请求命令
+    public static final int RAFT_BATCH_APPEND_ENTRIES_REQUEST = 73;
+    // raft按broker合并多个分区组的复制请求命令响应
+    public static final int RAFT_BATCH_APPEND_ENTRIES_RESPONSE = -73;
 
     public static final int AUTHORIZATION = 63;
     //create partitionGroup
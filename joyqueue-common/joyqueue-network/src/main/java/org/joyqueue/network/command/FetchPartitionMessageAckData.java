@@ -17,6 +17,7 @@ package org.joyqueue.network.command;
 
 import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.transport.command.FileSegment;
 
 import java.nio.ByteBuffer;
 import java.util.Collections;
@@ -32,6 +33,7 @@ public class FetchPartitionMessageAckData {
 
     private List<BrokerMessage> messages;
     private List<ByteBuffer> buffers;
+    private List<FileSegment> segments;
     private JoyQueueCode code;
 
     public FetchPartitionMessageAckData() {
@@ -64,6 +66,27 @@ public class FetchPartitionMessageAckData {
         this.buffers = buffers;
     }
 
+    public List<FileSegment> getSegments() {
+        return segments;
+    }
+
+    public void setSegments(List<FileSegment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * 消息条数，包括buffers和文件区域中的消息
+     */
+    public int getCount() {
+        int result = (buffers == null ? 0 : buffers.size());
+        if (segments != null) {
+            for (FileSegment segment : segments) {
+                result += segment.getCount();
+            }
+        }
+        return result;
+    }
+
     public JoyQueueCode getCode() {
         return code;
     }
@@ -73,19 +96,20 @@ public class FetchPartitionMessageAckData {
     }
 
     public int getSize() {
-        if (buffers == null) {
-            return 0;
-        }
-        return buffers.size();
+        return getCount();
     }
 
     public int getTraffic() {
-        if (buffers == null) {
-            return 0;
-        }
         int result = 0;
-        for (ByteBuffer buffer : buffers) {
-            result += buffer.limit();
+        if (buffers != null) {
+            for (ByteBuffer buffer : buffers) {
+                result += buffer.limit();
+            }
+        }
+        if (segments != null) {
+            for (FileSegment segment : segments) {
+                result += segment.getLength();
+            }
         }
         return result;
     }
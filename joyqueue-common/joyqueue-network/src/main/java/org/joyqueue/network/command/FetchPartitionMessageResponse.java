@@ -16,17 +16,23 @@
 package org.joyqueue.network.command;
 
 import com.google.common.collect.Table;
+import org.joyqueue.network.transport.command.FileRegionPayload;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.command.JoyQueuePayload;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * FetchPartitionMessageResponse
  *
  * author: gaohaoxiang
  * date: 2018/12/7
  */
-public class FetchPartitionMessageResponse extends JoyQueuePayload {
+public class FetchPartitionMessageResponse extends JoyQueuePayload implements FileRegionPayload {
 
     private Table<String, Short, FetchPartitionMessageAckData> data;
+    private List<FileSegment> fileSegments = new ArrayList<>();
 
     @Override
     public int type() {
@@ -40,4 +46,9 @@ public class FetchPartitionMessageResponse extends JoyQueuePayload {
     public void setData(Table<String, Short, FetchPartitionMessageAckData> data) {
         this.data = data;
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<FileSegment> getFileSegments() {
+        return fileSegments;
+    }
+}
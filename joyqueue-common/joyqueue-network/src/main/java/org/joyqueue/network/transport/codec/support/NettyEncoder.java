@@ -16,12 +16,24 @@
 package org.joyqueue.network.transport.codec.support;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.joyqueue.network.transport.codec.Codec;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.FileRegionPayload;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * NettyEncoder
  *
@@ -38,6 +50,61 @@ public class NettyEncoder extends MessageToByteEncoder {
         this.codec = codec;
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof Command && ((Command) msg).getPayload() instanceof FileRegionPayload) {
+            writeFileRegion(ctx, (Command) msg, promise);
+        } else {
+            super.write(ctx, msg, promise);
+        }
+    }
+
+    /**
+     * 编码后按文件区域的位置把编码缓冲区切分成多段，和文件区域交替写出
+     */
+    protected void writeFileRegion(ChannelHandlerContext ctx, Command command, ChannelPromise promise) {
+        List<FileSegment> segments = ((FileRegionPayload) command.getPayload()).getFileSegments();
+        List<FileRegion> regions = new ArrayList<>();
+        ByteBuf buffer = ctx.alloc().ioBuffer();
+        try {
+            codec.encode(command, buffer);
+            long length = 0;
+            for (FileSegment segment : segments) {
+                regions.add(newFileRegion(segment));
+                length += segment.getLength();
+            }
+            buffer.setInt(0, (int) (buffer.getInt(0) + length));
+        } catch (Exception e) {
+            logger.error("encode exception, ctx: {}, msg: {}", ctx, command, e);
+            buffer.release();
+            regions.forEach(FileRegion::release);
+            promise.tryFailure(e);
+            ctx.channel().close();
+            return;
+        }
+
+        int index = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            int offset = segments.get(i).getOffset();
+            ctx.write(buffer.retainedSlice(index, offset - index));
+            // 文件区域发送失败时命令已经不完整，只能关闭连接
+            ctx.write(regions.get(i)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            index = offset;
+        }
+        ctx.write(buffer.retainedSlice(index, buffer.writerIndex() - index), promise);
+        buffer.release();
+    }
+
+    /**
+     * 优先共用存储的文件通道，避免每次发送都打开文件；没有通道时单独打开文件，发送后关闭
+     */
+    protected FileRegion newFileRegion(FileSegment segment) throws IOException {
+        if (segment.getChannel() != null) {
+            return new SharedFileRegion(segment.getChannel(), segment.getPosition(), segment.getLength());
+        }
+        return new DefaultFileRegion(new RandomAccessFile(segment.getFile(), "r").getChannel(), segment.getPosition(), segment.getLength());
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
         try {
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.network.transport.command;
+
+import java.util.List;
+
+/**
+ * 包含文件区域的负载
+ * <p>
+ * 文件区域的内容不写入编码缓冲区，编码时只登记其在命令中的位置，
+ * 发送时由文件直接写入网络（sendfile），命令长度包含文件区域的长度。
+ */
+public interface FileRegionPayload {
+
+    /**
+     * 编码时登记的文件区域，按在命令中的位置排列
+     *
+     * @return 文件区域
+     */
+    List<FileSegment> getFileSegments();
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.network.transport.command;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+
+/**
+ * 文件中的一段连续数据
+ */
+public class FileSegment {
+
+    // 文件
+    private File file;
+    // 文件的只读通道，由存储共用，发送后不关闭；为空时发送前单独打开文件
+    private FileChannel channel;
+    // 在文件内的偏移量
+    private long position;
+    // 长度
+    private int length;
+    // 包含的记录条数
+    private int count;
+    // 编码后在命令中的位置
+    private int offset;
+
+    public FileSegment(File file, long position, int length, int count) {
+        this(file, null, position, length, count);
+    }
+
+    public FileSegment(File file, FileChannel channel, long position, int length, int count) {
+        this.file = file;
+        this.channel = channel;
+        this.position = position;
+        this.length = length;
+        this.count = count;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    @Override
+    public String toString() {
+        return "FileSegment{" +
+                "file=" + file +
+                ", position=" + position +
+                ", length=" + length +
+                ", count=" + count +
+                ", offset=" + offset +
+                '}';
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.network.transport.codec.support;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.joyqueue.network.transport.codec.Codec;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.FileRegionPayload;
+import org.joyqueue.network.transport.command.FileSegment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * NettyEncoder发送文件区域的测试
+ */
+public class NettyEncoderTest {
+
+    private File file;
+    private byte[] fileBytes;
+    private FileChannel fileChannel;
+
+    @Before
+    public void before() throws Exception {
+        file = File.createTempFile("netty_encoder", ".tmp");
+        file.deleteOnExit();
+        fileBytes = new byte[64];
+        for (int i = 0; i < fileBytes.length; i++) {
+            fileBytes[i] = (byte) i;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(fileBytes);
+        }
+        fileChannel = new RandomAccessFile(file, "r").getChannel();
+    }
+
+    @After
+    public void after() throws Exception {
+        fileChannel.close();
+        file.delete();
+    }
+
+    @Test
+    public void testMixedFrame() throws Exception {
+        // 共用通道的区域和单独打开文件的区域交替出现在命令中
+        List<FileSegment> segments = Arrays.asList(
+                new FileSegment(file, fileChannel, 16, 8, 1),
+                new FileSegment(file, 40, 4, 1));
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoder(new SegmentCodec()));
+
+        ChannelFuture future = channel.writeAndFlush(new Command(new SegmentPayload(segments)));
+        Assert.assertTrue(future.isSuccess());
+
+        List<Object> sent = new ArrayList<>();
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            sent.add(msg);
+        }
+        Assert.assertEquals(5, sent.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        ByteBuf buffer = null;
+        for (int i = 0; i < sent.size(); i++) {
+            if (i % 2 == 0) {
+                Assert.assertTrue(sent.get(i) instanceof ByteBuf);
+                ByteBuf slice = (ByteBuf) sent.get(i);
+                buffer = slice.unwrap();
+                slice.readBytes(out, slice.readableBytes());
+            } else {
+                Assert.assertTrue(sent.get(i) instanceof FileRegion);
+                FileRegion region = (FileRegion) sent.get(i);
+                while (region.transferred() < region.count()) {
+                    region.transferTo(target, region.transferred());
+                }
+            }
+        }
+
+        ByteBuffer expected = ByteBuffer.allocate(22);
+        expected.putInt(22);
+        expected.put(new byte[] {'h', 'h', 'h'});
+        expected.put(fileBytes, 16, 8);
+        expected.put(new byte[] {'x', 'x'});
+        expected.put(fileBytes, 40, 4);
+        expected.put((byte) 'y');
+        Assert.assertArrayEquals(expected.array(), out.toByteArray());
+
+        sent.forEach(ReferenceCountUtil::release);
+        for (Object o : sent) {
+            Assert.assertEquals(0, ReferenceCountUtil.refCnt(o));
+        }
+        Assert.assertEquals(0, buffer.refCnt());
+        // 共用的通道在区域释放后仍然可用
+        Assert.assertTrue(fileChannel.isOpen());
+        Assert.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRegionWriteFailure() throws Exception {
+        List<FileSegment> segments = Arrays.asList(
+                new FileSegment(file, fileChannel, 16, 8, 1),
+                new FileSegment(file, 40, 4, 1));
+        List<FileRegion> regions = new ArrayList<>();
+        NettyEncoder encoder = new NettyEncoder(new SegmentCodec()) {
+            @Override
+            protected FileRegion newFileRegion(FileSegment segment) throws IOException {
+                FileRegion region = super.newFileRegion(segment);
+                regions.add(region);
+                return region;
+            }
+        };
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                if (msg instanceof FileRegion) {
+                    ReferenceCountUtil.release(msg);
+                    promise.setFailure(new IOException("mock write failure"));
+                } else {
+                    super.write(ctx, msg, promise);
+                }
+            }
+        }, encoder);
+
+        channel.writeAndFlush(new Command(new SegmentPayload(segments)));
+
+        // 文件区域发送失败后关闭连接，区域全部释放，共用的通道不关闭
+        Assert.assertEquals(2, regions.size());
+        for (FileRegion region : regions) {
+            Assert.assertEquals(0, region.refCnt());
+        }
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertTrue(fileChannel.isOpen());
+        releaseOutbound(channel);
+    }
+
+    @Test
+    public void testOpenFileFailure() throws Exception {
+        File missing = new File(file.getParentFile(), file.getName() + ".missing");
+        List<FileSegment> segments = Arrays.asList(
+                new FileSegment(file, fileChannel, 16, 8, 1),
+                new FileSegment(missing, 40, 4, 1));
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoder(new SegmentCodec()));
+
+        ChannelFuture future = channel.writeAndFlush(new Command(new SegmentPayload(segments)));
+
+        // 打开文件失败时命令不发送，连接关闭
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertNull(channel.readOutbound());
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertTrue(fileChannel.isOpen());
+    }
+
+    private void releaseOutbound(EmbeddedChannel channel) {
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /**
+     * 命令格式：长度(4) + "hhh" + 区域1 + "xx" + 区域2 + "y"
+     */
+    private static class SegmentCodec implements Codec {
+
+        @Override
+        public Object decode(ByteBuf buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void encode(Object obj, ByteBuf buffer) {
+            List<FileSegment> segments = ((FileRegionPayload) ((Command) obj).getPayload()).getFileSegments();
+            buffer.writeInt(0);
+            buffer.writeBytes(new byte[] {'h', 'h', 'h'});
+            segments.get(0).setOffset(buffer.writerIndex());
+            buffer.writeBytes(new byte[] {'x', 'x'});
+            segments.get(1).setOffset(buffer.writerIndex());
+            buffer.writeByte('y');
+            buffer.setInt(0, buffer.writerIndex());
+        }
+    }
+
+    private static class SegmentPayload implements FileRegionPayload {
+
+        private final List<FileSegment> segments;
+
+        SegmentPayload(List<FileSegment> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public List<FileSegment> getFileSegments() {
+            return segments;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark;
+
+import org.joyqueue.broker.buffer.Serializer;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 基准测试使用的消息和临时目录
+ */
+public final class BenchmarkMessages {
+
+    private BenchmarkMessages() {
+    }
+
+    /**
+     * 构造一条消息
+     *
+     * @param bodySize 消息体长度
+     * @param flag     消息标签
+     */
+    public static BrokerMessage brokerMessage(int bodySize, short flag) {
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+
+        BrokerMessage message = new BrokerMessage();
+        message.setTopic("benchmark");
+        message.setApp("benchmark");
+        message.setBody(body);
+        message.setBodyCRC(crc32.getValue());
+        message.setFlag(flag);
+        message.setClientIp(new byte[16]);
+        message.setStartTime(SystemClock.now());
+        return message;
+    }
+
+    /**
+     * 按存储格式序列化一条消息
+     *
+     * @param bodySize 消息体长度
+     * @param flag     消息标签
+     */
+    public static ByteBuffer storeMessage(int bodySize, short flag) throws Exception {
+        BrokerMessage message = brokerMessage(bodySize, flag);
+        int size = Serializer.sizeOf(message);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        Serializer.write(message, buffer, size);
+        return buffer;
+    }
+
+    /**
+     * 创建临时目录，基准测试结束后调用{@link #deleteDirectory(File)}删除
+     */
+    public static File createTempDirectory() throws IOException {
+        return Files.createTempDirectory("joyqueue-benchmark").toFile();
+    }
+
+    public static void deleteDirectory(File directory) {
+        if (directory != null) {
+            BaseDirUtils.destroyBaseDir(directory);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.consumer;
+
+import org.joyqueue.broker.consumer.AckSegmentQueue;
+import org.joyqueue.broker.consumer.position.model.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 并行消费时等待应答的分区段，对比{@link AckSegmentQueue}和原来每次应答都排序列表的实现。
+ * <p>
+ * 保持outstanding个未应答的分区段，每次操作拉取一个新分区段、应答最早的分区段并提交。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AckSegmentBenchmark {
+    // 每个分区段的消息数量
+    private static final int SEGMENT_SIZE = 10;
+
+    @Param({"16", "1024", "10000"})
+    private int outstanding;
+
+    private AckSegmentQueue queue;
+    private List<Position> positions;
+    private long pullIndex;
+    private long ackIndex;
+
+    @Setup
+    public void setup() {
+        queue = new AckSegmentQueue();
+        positions = new ArrayList<>();
+        for (int i = 0; i < outstanding; i++) {
+            queue.add(i * SEGMENT_SIZE, i * SEGMENT_SIZE + SEGMENT_SIZE - 1);
+            positions.add(new Position(i * SEGMENT_SIZE, i * SEGMENT_SIZE + SEGMENT_SIZE - 1, -1, -1));
+        }
+        pullIndex = (long) outstanding * SEGMENT_SIZE;
+        ackIndex = 0L;
+    }
+
+    @Benchmark
+    public long ackSegmentQueue() {
+        queue.add(pullIndex, pullIndex + SEGMENT_SIZE - 1);
+        pullIndex += SEGMENT_SIZE;
+        queue.ack(ackIndex, ackIndex + SEGMENT_SIZE - 1);
+        ackIndex = queue.commit(ackIndex);
+        return ackIndex;
+    }
+
+    @Benchmark
+    public long sortedList() {
+        // 原实现拉取后直接追加，不检查重复
+        positions.add(new Position(pullIndex, pullIndex + SEGMENT_SIZE - 1, -1, -1));
+        pullIndex += SEGMENT_SIZE;
+        ackIndex = legacyAck(ackIndex, ackIndex + SEGMENT_SIZE - 1);
+        return ackIndex;
+    }
+
+    /**
+     * 原ConcurrentConsumption.tryUpdateAckPosition的做法：排序、线性查找、批量移除
+     */
+    private long legacyAck(long startIndex, long endIndex) {
+        long lastMsgAckIndex = ackIndex;
+        positions = new ArrayList<>(positions).stream()
+                .sorted((thisPosition, thatPosition) -> Long.compare(thisPosition.getAckStartIndex(), thatPosition.getAckStartIndex()))
+                .collect(Collectors.toList());
+        Position currentPosition = null;
+        for (Position position : positions) {
+            if (position.getAckStartIndex() == startIndex && position.getAckCurIndex() == endIndex) {
+                currentPosition = position;
+                break;
+            }
+        }
+        if (currentPosition == null || currentPosition.isAck()) {
+            return lastMsgAckIndex;
+        }
+        currentPosition.setAck(true);
+        Position headPosition = positions.get(0);
+        if (headPosition.isAck() && headPosition.getAckStartIndex() == lastMsgAckIndex) {
+            List<Position> committedPositions = new LinkedList<>();
+            for (Position position : positions) {
+                if (position.isAck() && position.getAckStartIndex() == lastMsgAckIndex) {
+                    lastMsgAckIndex = position.getAckCurIndex() + 1;
+                    committedPositions.add(position);
+                } else {
+                    break;
+                }
+            }
+            positions.removeAll(committedPositions);
+        }
+        return lastMsgAckIndex;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.consumer;
+
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.broker.consumer.filter.FlagFilter;
+import org.joyqueue.store.message.FlagMask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按标签过滤一批消息，对比逐条匹配正则表达式和使用预先计算的标签掩码判断
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FlagFilterBenchmark {
+    // 消息标签的种类
+    private static final int FLAG_COUNT = 16;
+
+    @Param({"32", "512"})
+    private int batchSize;
+
+    private FlagFilter flagFilter;
+    private List<ByteBuffer> messages;
+    private short[] flags;
+
+    @Setup
+    public void setup() throws Exception {
+        flagFilter = new FlagFilter();
+        flagFilter.setRule("1");
+        messages = new ArrayList<>(batchSize);
+        flags = new short[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            flags[i] = (short) (i % FLAG_COUNT);
+            messages.add(BenchmarkMessages.storeMessage(128, flags[i]));
+        }
+    }
+
+    @Benchmark
+    public List<ByteBuffer> filter() throws Exception {
+        List<ByteBuffer> copy = new ArrayList<>(messages.size());
+        for (ByteBuffer message : messages) {
+            copy.add(message.duplicate());
+        }
+        return flagFilter.filter(copy, null);
+    }
+
+    @Benchmark
+    public int flagMask() {
+        long mask = flagFilter.flagMask();
+        int matched = 0;
+        for (short flag : flags) {
+            if (FlagMask.mayIntersect(FlagMask.of(flag), mask)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.serializer.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网络传输格式的消息编码和解码
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NetworkSerializerBenchmark {
+
+    @Param({"128", "1024", "16384"})
+    private int bodySize;
+
+    private BrokerMessage message;
+    private ByteBuf encodeBuffer;
+    private ByteBuf encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        message = BenchmarkMessages.brokerMessage(bodySize, (short) 0);
+        encodeBuffer = Unpooled.directBuffer(Serializer.sizeOf(message));
+        encoded = Unpooled.directBuffer(Serializer.sizeOf(message));
+        Serializer.writeBrokerMessage(message, encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodeBuffer.release();
+        encoded.release();
+    }
+
+    @Benchmark
+    public ByteBuf encode() throws Exception {
+        encodeBuffer.clear();
+        Serializer.writeBrokerMessage(message, encodeBuffer);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public BrokerMessage decode() throws Exception {
+        encoded.readerIndex(0);
+        return Serializer.readBrokerMessage(encoded);
+    }
+}
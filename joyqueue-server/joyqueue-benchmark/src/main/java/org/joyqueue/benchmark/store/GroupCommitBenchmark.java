@@ -0,0 +1,136 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.store;
+
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.store.PartitionGroupStore;
+import org.joyqueue.store.Store;
+import org.joyqueue.store.StoreConfig;
+import org.joyqueue.store.WriteRequest;
+import org.joyqueue.store.WriteResult;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个分区组同时以PERSISTENCE级别写入，对比每个分区组独占刷盘线程和按磁盘分组提交（store.group.commit.enable）的吞吐量。
+ * <p>
+ * 每个测试线程固定写入一个分区组，线程数和分区组数相同。消息文件缩小到16MB，避免多个分区组的写缓存超出堆外内存。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(GroupCommitBenchmark.PARTITION_GROUPS)
+@Fork(1)
+public class GroupCommitBenchmark {
+    static final int PARTITION_GROUPS = 16;
+    private static final String TOPIC = "benchmark";
+    private static final int MESSAGE_FILE_SIZE = 16 * 1024 * 1024;
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    @Param({"false", "true"})
+    private boolean force;
+
+    @Param({"1024"})
+    private int bodySize;
+
+    private File base;
+    private Store storeService;
+    private PartitionGroupStore[] stores;
+    private ByteBuffer[] messages;
+    private final AtomicInteger nextGroup = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        base = BenchmarkMessages.createTempDirectory();
+        StoreConfig config = new StoreConfig(null);
+        config.setPath(base.getAbsolutePath());
+        config.setMessageFileSize(MESSAGE_FILE_SIZE);
+        config.setGroupCommitEnable(groupCommit);
+        config.setGroupCommitForce(force);
+        storeService = new Store(config);
+        storeService.start();
+        stores = new PartitionGroupStore[PARTITION_GROUPS];
+        messages = new ByteBuffer[PARTITION_GROUPS];
+        for (int group = 0; group < PARTITION_GROUPS; group++) {
+            storeService.createPartitionGroup(TOPIC, group, new short[]{(short) group});
+            storeService.getReplicableStore(TOPIC, group).enable();
+            stores[group] = storeService.getStore(TOPIC, group, QosLevel.PERSISTENCE);
+            messages[group] = BenchmarkMessages.storeMessage(bodySize, (short) group);
+        }
+    }
+
+    /**
+     * 每轮测试后删除已经写入的消息，避免写满磁盘
+     */
+    @TearDown(Level.Iteration)
+    public void clean() throws Exception {
+        for (int group = 0; group < PARTITION_GROUPS; group++) {
+            long right = storeService.getManageService().partitionMetric(TOPIC, (short) group).getRightIndex();
+            stores[group].clean(SystemClock.now(), Collections.singletonMap((short) group, right), false);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storeService.stop();
+        storeService.physicalDelete();
+        BenchmarkMessages.deleteDirectory(base);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private int group;
+
+        @Setup(Level.Trial)
+        public void setup(GroupCommitBenchmark benchmark) {
+            group = benchmark.nextGroup.getAndIncrement() % PARTITION_GROUPS;
+        }
+    }
+
+    @Benchmark
+    public WriteResult persistenceWrite(Writer writer) throws Exception {
+        WriteResult writeResult = stores[writer.group].asyncWrite(new WriteRequest((short) writer.group, messages[writer.group].duplicate())).get();
+        if (writeResult.getCode() != JoyQueueCode.SUCCESS) {
+            throw new IllegalStateException("Write failed: " + writeResult.getCode());
+        }
+        return writeResult;
+    }
+}
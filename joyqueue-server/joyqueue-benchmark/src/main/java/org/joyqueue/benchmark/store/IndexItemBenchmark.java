@@ -0,0 +1,72 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.store;
+
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.store.index.IndexItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 索引的序列化、反序列化和从消息中解析索引
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexItemBenchmark {
+    private final IndexItem indexItem = new IndexItem((short) 1, 1024L, 1024, 1024L * 1024);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(IndexItem.STORAGE_SIZE);
+    private ByteBuffer message;
+
+    @Setup
+    public void setup() throws Exception {
+        message = BenchmarkMessages.storeMessage(1024, (short) 0);
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        indexBuffer.clear();
+        indexItem.serializeTo(indexBuffer);
+        return indexBuffer;
+    }
+
+    @Benchmark
+    public IndexItem deserialize() {
+        indexBuffer.clear();
+        indexItem.serializeTo(indexBuffer);
+        indexBuffer.flip();
+        return IndexItem.from(indexBuffer, (short) 1, 1024L);
+    }
+
+    @Benchmark
+    public IndexItem parseMessage() throws Exception {
+        return IndexItem.parseMessage(message, 0L);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.store;
+
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.store.PartitionGroupStore;
+import org.joyqueue.store.Store;
+import org.joyqueue.store.StoreConfig;
+import org.joyqueue.store.WriteRequest;
+import org.joyqueue.store.WriteResult;
+import org.joyqueue.toolkit.concurrent.EventListener;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分区组存储在各个服务质量级别下的异步写入，除ONE_WAY外每次调用等待写入结果返回。
+ * <p>
+ * REPLICATION和ALL需要选举和复制模块提交，单机存储不会返回结果，不在测试范围内。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PartitionGroupStoreBenchmark {
+    private static final String TOPIC = "benchmark";
+    private static final int PARTITION_GROUP = 0;
+    private static final short PARTITION = 0;
+
+    @Param({"ONE_WAY", "RECEIVE", "PERSISTENCE"})
+    private QosLevel qosLevel;
+
+    @Param({"1024"})
+    private int bodySize;
+
+    @Param({"1", "32"})
+    private int batchSize;
+
+    private File base;
+    private Store storeService;
+    private PartitionGroupStore store;
+    private ByteBuffer message;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        base = BenchmarkMessages.createTempDirectory();
+        StoreConfig config = new StoreConfig(null);
+        config.setPath(base.getAbsolutePath());
+        storeService = new Store(config);
+        storeService.start();
+        storeService.createPartitionGroup(TOPIC, PARTITION_GROUP, new short[]{PARTITION});
+        storeService.getReplicableStore(TOPIC, PARTITION_GROUP).enable();
+        store = storeService.getStore(TOPIC, PARTITION_GROUP, qosLevel);
+        message = BenchmarkMessages.storeMessage(bodySize, (short) 0);
+    }
+
+    /**
+     * 每轮测试后删除已经写入的消息，避免写满磁盘
+     */
+    @TearDown(Level.Iteration)
+    public void clean() throws Exception {
+        long right = storeService.getManageService().partitionMetric(TOPIC, PARTITION).getRightIndex();
+        store.clean(SystemClock.now(), Collections.singletonMap(PARTITION, right), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storeService.stop();
+        storeService.physicalDelete();
+        BenchmarkMessages.deleteDirectory(base);
+    }
+
+    @Benchmark
+    public WriteResult asyncWrite() throws Exception {
+        WriteRequest[] writeRequests = new WriteRequest[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            writeRequests[i] = new WriteRequest(PARTITION, message.duplicate());
+        }
+        if (qosLevel == QosLevel.ONE_WAY) {
+            // ONE_WAY没有写入结果
+            store.asyncWrite((EventListener<WriteResult>) null, writeRequests);
+            return null;
+        }
+        WriteResult writeResult = store.asyncWrite(writeRequests).get();
+        if (writeResult.getCode() != JoyQueueCode.SUCCESS) {
+            throw new IllegalStateException("Write failed: " + writeResult.getCode());
+        }
+        return writeResult;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.benchmark.store;
+
+import org.joyqueue.benchmark.BenchmarkMessages;
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.file.StoreMessageSerializer;
+import org.joyqueue.store.utils.PreloadBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息日志的追加、读取和刷盘
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PositioningStoreBenchmark {
+    private static final int FILE_DATA_SIZE = 128 * 1024 * 1024;
+    private static final int MAX_MESSAGE_LENGTH = 4 * 1024 * 1024;
+
+    /**
+     * 写入测试的日志，已刷盘的数据超过RETAIN_SIZE后删除，避免写满磁盘
+     */
+    @State(Scope.Benchmark)
+    public static class WriteState {
+        private static final long RETAIN_SIZE = 4L * FILE_DATA_SIZE;
+
+        @Param({"1024"})
+        private int bodySize;
+
+        private File base;
+        private PositioningStore<ByteBuffer> store;
+        private ByteBuffer message;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            base = BenchmarkMessages.createTempDirectory();
+            store = createStore(base);
+            message = BenchmarkMessages.storeMessage(bodySize, (short) 0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            store.close();
+            BenchmarkMessages.deleteDirectory(base);
+        }
+
+        private void flushAndDelete() throws IOException {
+            while (store.flush()) {
+                Thread.yield();
+            }
+            if (store.flushPosition() - store.left() > RETAIN_SIZE) {
+                store.physicalDeleteTo(store.flushPosition() - RETAIN_SIZE);
+            }
+        }
+    }
+
+    /**
+     * 读取测试的日志，预先写入并刷盘READ_MESSAGE_COUNT条消息
+     */
+    @State(Scope.Thread)
+    public static class ReadState {
+        private static final int READ_MESSAGE_COUNT = 100000;
+
+        @Param({"1024"})
+        private int bodySize;
+
+        private File base;
+        private PositioningStore<ByteBuffer> store;
+        private long[] positions;
+        private int readIndex;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            base = BenchmarkMessages.createTempDirectory();
+            store = createStore(base);
+            ByteBuffer message = BenchmarkMessages.storeMessage(bodySize, (short) 0);
+            positions = new long[READ_MESSAGE_COUNT];
+            for (int i = 0; i < READ_MESSAGE_COUNT; i++) {
+                positions[i] = store.right();
+                store.append(message.duplicate());
+            }
+            while (store.flush()) {
+                Thread.yield();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            store.close();
+            BenchmarkMessages.deleteDirectory(base);
+        }
+
+        private long nextPosition() {
+            long position = positions[readIndex];
+            readIndex = (readIndex + 1) % READ_MESSAGE_COUNT;
+            return position;
+        }
+    }
+
+    @Benchmark
+    public long append(WriteState state) throws IOException {
+        long position = state.store.append(state.message.duplicate());
+        if (position - state.store.flushPosition() > WriteState.RETAIN_SIZE) {
+            state.flushAndDelete();
+        }
+        return position;
+    }
+
+    @Benchmark
+    public long appendAndFlush(WriteState state) throws IOException {
+        long position = state.store.append(state.message.duplicate());
+        state.flushAndDelete();
+        return position;
+    }
+
+    @Benchmark
+    public ByteBuffer read(ReadState state) throws IOException {
+        return state.store.read(state.nextPosition());
+    }
+
+    private static PositioningStore<ByteBuffer> createStore(File base) throws IOException {
+        PositioningStore<ByteBuffer> store = new PositioningStore<>(base, new PositioningStore.Config(FILE_DATA_SIZE),
+                PreloadBufferPool.getInstance(), new StoreMessageSerializer(MAX_MESSAGE_LENGTH));
+        store.recover();
+        return store;
+    }
+}
@@ -19,6 +19,7 @@ import org.joyqueue.message.BrokerMessage;
 import org.joyqueue.message.BrokerPrepare;
 import org.joyqueue.message.JoyQueueLog;
 import org.joyqueue.message.Message;
+import org.joyqueue.store.message.MessageParser;
 import org.joyqueue.toolkit.io.Compressors;
 import org.joyqueue.toolkit.io.Zip;
 import org.joyqueue.toolkit.io.ZipUtil;
@@ -310,6 +311,55 @@ public class Serializer extends AbstractSerializer {
 //        out.position(end);
     }
 
+    /**
+     * 直接使用协议解码时保留的原始消息字节作为存储消息，只修正Broker侧会改写的字段：
+     * 客户端地址、地址类型、消息体CRC和存储时间；分区、序号和任期在写入存储时修正。
+     * 事务消息，以及应用和原始字节不一致的消息，重新序列化。
+     *
+     * @param message 存储消息
+     * @return 可以直接写入存储的消息，原始字节不存在或者格式不一致时返回null
+     */
+    public static ByteBuffer writeRaw(final BrokerMessage message) {
+        if (message == null || message.getRawMessage() == null) {
+            return null;
+        }
+        // 事务ID按主题传输，不在消息的原始字节中
+        if (message.getTxId() != null && !message.getTxId().isEmpty()) {
+            return null;
+        }
+        ByteBuffer out = message.getRawMessage().slice();
+        int size = out.remaining();
+        if (size < fixBodyLength
+                || MessageParser.getInt(out, MessageParser.LENGTH) != size
+                || MessageParser.getShort(out, MessageParser.MAGIC) != BrokerMessage.MAGIC_CODE) {
+            return null;
+        }
+        short sysCode = MessageParser.getShort(out, MessageParser.SYS);
+        if (((sysCode >> 8) & 15) != CURRENT_MESSAGE_VERSION) {
+            return null;
+        }
+        if (!ByteBuffer.wrap(getBytes(message.getApp(), Charsets.UTF_8)).equals(MessageParser.getByteBuffer(out, MessageParser.APP))) {
+            return null;
+        }
+
+        byte[] clientIp = message.getClientIp();
+        if (clientIp != null && clientIp.length < 7) {
+            sysCode |= (1 << 7);
+        } else {
+            sysCode &= ~(1 << 7);
+        }
+        MessageParser.setShort(out, MessageParser.SYS, sysCode);
+        int clientIpLength = clientIp == null ? 0 : Math.min(clientIp.length, 16);
+        for (int i = 0; i < 16; i++) {
+            MessageParser.setByte(out, MessageParser.CLIENT_IP + i, i < clientIpLength ? clientIp[i] : 0);
+        }
+        MessageParser.setLong(out, MessageParser.CRC, message.getBodyCRC());
+        MessageParser.setInt(out, MessageParser.STORAGE_TIMESTAMP,
+                (int) (SystemClock.now() - MessageParser.getLong(out, MessageParser.CLIENT_TIMESTAMP)));
+        message.setSize(size);
+        return out;
+    }
+
     /**
      * 写入存储消息
      *
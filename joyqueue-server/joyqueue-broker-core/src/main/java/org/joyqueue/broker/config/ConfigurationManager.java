@@ -57,12 +57,32 @@ public class ConfigurationManager extends Service implements EventListener<NameS
 
     private Configuration configuration;
     private String configPath = DEFAULT_CONFIG_PATH;
+    private String[] args;
 
     public ConfigurationManager(String[] args) {
-
+        this.args = args;
     }
+
+    /**
+     * 解析启动参数，key=value格式的参数覆盖配置文件中的同名配置，其它格式的参数忽略
+     */
     private void parseParams(Configuration configuration, String[] args) {
-        //TODO 解析参数
+        if (ArrayUtils.isEmpty(args)) {
+            return;
+        }
+        List<Property> propertyList = new ArrayList<>(args.length);
+        for (String arg : args) {
+            int index = arg == null ? -1 : arg.indexOf('=');
+            if (index <= 0) {
+                logger.warn("Ignore startup argument {}.", arg);
+                continue;
+            }
+            String key = arg.substring(0, index).trim();
+            String value = arg.substring(index + 1).trim();
+            logger.info("Startup argument {} -> {}.", key, value);
+            propertyList.add(new Property(DEFAULT_CONFIGURATION_NAME, key, value, Configuration.DEFAULT_CONFIGURATION_VERSION, DEFAULT_CONFIGURATION_PRIORITY));
+        }
+        configuration.addProperties(propertyList);
     }
 
     public ConfigurationManager(String configPath) {
@@ -114,6 +134,7 @@ public class ConfigurationManager extends Service implements EventListener<NameS
         } else {
             logger.info("No {} in classpath, using default.", this.configPath);
         }
+        parseParams(configuration, args);
         return configuration;
     }
 
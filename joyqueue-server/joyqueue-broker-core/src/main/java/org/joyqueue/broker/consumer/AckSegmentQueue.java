@@ -0,0 +1,164 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.consumer;
+
+/**
+ * 并行消费时一个消费分区上已经拉取、等待应答的分区段，按开始序号排序。
+ * <p>
+ * 分区段保存在基本类型的环形数组中，拉取序号递增，新分区段通常追加在队尾；
+ * 应答时二分查找分区段，O(log n)；提交时从队头弹出连续的已应答分区段，每个分区段O(1)。
+ * <p>
+ * 线程安全
+ */
+public final class AckSegmentQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 分区段的开始序号
+    private long[] starts = new long[INITIAL_CAPACITY];
+    // 分区段的结束序号（包含）
+    private long[] ends = new long[INITIAL_CAPACITY];
+    // 分区段是否已经应答
+    private boolean[] acks = new boolean[INITIAL_CAPACITY];
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * 添加拉取的分区段，已经存在相同开始序号的分区段时忽略
+     *
+     * @param startIndex 开始序号
+     * @param endIndex   结束序号（包含）
+     * @return 是否添加
+     */
+    public synchronized boolean add(long startIndex, long endIndex) {
+        int i;
+        if (size == 0 || starts[slot(size - 1)] < startIndex) {
+            i = size;
+        } else {
+            i = search(startIndex);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+        }
+        if (size == starts.length) {
+            grow();
+        }
+        // 插入位置之后的分区段后移一位，正常拉取时不会发生
+        for (int j = size; j > i; j--) {
+            int to = slot(j);
+            int from = slot(j - 1);
+            starts[to] = starts[from];
+            ends[to] = ends[from];
+            acks[to] = acks[from];
+        }
+        int s = slot(i);
+        starts[s] = startIndex;
+        ends[s] = endIndex;
+        acks[s] = false;
+        size++;
+        return true;
+    }
+
+    /**
+     * 标记分区段已应答
+     *
+     * @param startIndex 开始序号
+     * @param endIndex   结束序号（包含）
+     * @return 找到了对应的分区段
+     */
+    public synchronized boolean ack(long startIndex, long endIndex) {
+        int i = search(startIndex);
+        if (i < 0 || ends[slot(i)] != endIndex) {
+            return false;
+        }
+        acks[slot(i)] = true;
+        return true;
+    }
+
+    /**
+     * 从队头开始，移除从应答序号开始连续并且已经应答的分区段
+     *
+     * @param ackIndex 当前的应答序号
+     * @return 新的应答序号，没有可以提交的分区段时返回ackIndex
+     */
+    public synchronized long commit(long ackIndex) {
+        while (size > 0 && acks[head] && starts[head] == ackIndex) {
+            ackIndex = ends[head] + 1;
+            head = slot(1);
+            size--;
+        }
+        return ackIndex;
+    }
+
+    /**
+     * 队头分区段的开始序号，没有分区段时返回-1
+     */
+    public synchronized long headIndex() {
+        return size == 0 ? -1L : starts[head];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 二分查找开始序号，找不到时返回 -(插入位置) - 1
+     */
+    private int search(long startIndex) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = starts[slot(mid)];
+            if (value < startIndex) {
+                low = mid + 1;
+            } else if (value > startIndex) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 第i个分区段在数组中的下标
+     */
+    private int slot(int i) {
+        return (head + i) & (starts.length - 1);
+    }
+
+    private void grow() {
+        int capacity = starts.length << 1;
+        long[] newStarts = new long[capacity];
+        long[] newEnds = new long[capacity];
+        boolean[] newAcks = new boolean[capacity];
+        for (int i = 0; i < size; i++) {
+            int s = slot(i);
+            newStarts[i] = starts[s];
+            newEnds[i] = ends[s];
+            newAcks[i] = acks[s];
+        }
+        starts = newStarts;
+        ends = newEnds;
+        acks = newAcks;
+        head = 0;
+    }
+}
@@ -22,6 +22,7 @@ import org.joyqueue.broker.consumer.model.OwnerShip;
 import org.joyqueue.broker.monitor.SessionManager;
 import org.joyqueue.broker.retry.RetryProbability;
 import org.joyqueue.domain.Consumer.ConsumerPolicy;
+import org.joyqueue.domain.Partition;
 import org.joyqueue.domain.TopicName;
 import org.joyqueue.exception.JoyQueueException;
 import org.joyqueue.network.session.Consumer;
@@ -43,6 +44,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 public class CasPartitionManager implements PartitionManager {
@@ -54,8 +57,8 @@ public class CasPartitionManager implements PartitionManager {
 
     // 集群管理器
     private ClusterManager clusterManager;
-    // 分区->消费者
-    private ConcurrentMap<ConsumePartition, PartitionLock> ownerShipCache = new ConcurrentHashMap<>();
+    // 主题->应用->分区占用表
+    private ConcurrentMap</* topic */ String, ConcurrentMap</* app */ String, OccupancyTable>> occupancyTables = new ConcurrentHashMap<>();
     // 随机数字，用于选择重试队列
     private final Random random = new Random();
     // 重试概率
@@ -74,14 +77,39 @@ public class CasPartitionManager implements PartitionManager {
     }
 
     private void cleanup() {
-        ownerShipCache.entrySet().removeIf(entry -> {
-            PartitionLock partitionLock = entry.getValue();
-            if(partitionLock != null) {
-                return partitionLock.canBeDeleted(CLEAN_INTERVAL_MS);
-            } else {
-                return true;
+        occupancyTables.values().forEach(tables -> tables.values().removeIf(table -> table.canBeDeleted(CLEAN_INTERVAL_MS)));
+        occupancyTables.values().removeIf(ConcurrentMap::isEmpty);
+    }
+
+    /**
+     * 获取主题和应用的分区占用表
+     *
+     * @param topic  主题
+     * @param app    应用
+     * @param create 不存在时是否创建
+     * @return 分区占用表，不存在并且不创建时返回null
+     */
+    private OccupancyTable getOccupancyTable(String topic, String app, boolean create) {
+        ConcurrentMap<String, OccupancyTable> tables = occupancyTables.get(topic);
+        if (tables == null) {
+            if (!create) {
+                return null;
             }
-        });
+            tables = occupancyTables.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
+        }
+        OccupancyTable table = tables.get(app);
+        if (table == null && create) {
+            table = tables.computeIfAbsent(app, k -> new OccupancyTable(counterService));
+        }
+        return table;
+    }
+
+    /**
+     * 获取分区锁
+     */
+    private PartitionLock getPartitionLock(String topic, String app, short partition) {
+        OccupancyTable table = getOccupancyTable(topic, app, false);
+        return table == null ? null : table.get(partition);
     }
 
     /**
@@ -94,9 +122,6 @@ public class CasPartitionManager implements PartitionManager {
      * @return 是否占用成功
      */
     public boolean tryOccupyPartition(Consumer consumer, short partition, long occupyTimeout) {
-        ConsumePartition consumePartition = new ConsumePartition(consumer.getTopic(), consumer.getApp(), partition);
-        consumePartition.setConnectionId(consumer.getConnectionId());
-
         // 用消费者ID作为消费者唯一标示
         String clientId = consumer.getId();
 
@@ -111,14 +136,7 @@ public class CasPartitionManager implements PartitionManager {
             return false;
         }
 
-        PartitionLock partitionLock = ownerShipCache.get(consumePartition);
-        if (partitionLock == null) {
-            partitionLock = new PartitionLock(counterService);
-            PartitionLock newPartitionLock = ownerShipCache.putIfAbsent(consumePartition, partitionLock);
-            if (newPartitionLock != null) {
-                partitionLock = newPartitionLock;
-            }
-        }
+        PartitionLock partitionLock = getOccupancyTable(consumer.getTopic(), consumer.getApp(), true).getOrCreate(partition);
         return partitionLock.tryLock(clientId, occupyTimeout);
     }
 
@@ -126,11 +144,13 @@ public class CasPartitionManager implements PartitionManager {
     /**
      * 释放占用
      *
-     * @param consumePartition 消费分区
+     * @param topic     主题
+     * @param app       应用
+     * @param partition 分区
      * @return 是否释放成功
      */
-    private boolean releaseOccupy(ConsumePartition consumePartition) {
-        PartitionLock partitionLock = ownerShipCache.get(consumePartition);
+    private boolean releaseOccupy(String topic, String app, short partition) {
+        PartitionLock partitionLock = getPartitionLock(topic, app, partition);
         if (partitionLock != null) {
             partitionLock.release();
         }
@@ -145,8 +165,7 @@ public class CasPartitionManager implements PartitionManager {
      * @return
      */
     public boolean releasePartition(Consumer consumer, short partition) {
-        ConsumePartition consumePartition = new ConsumePartition(consumer.getTopic(), consumer.getApp(), partition);
-        return releasePartition(consumePartition);
+        return releaseOccupy(consumer.getTopic(), consumer.getApp(), partition);
     }
 
     /**
@@ -156,7 +175,7 @@ public class CasPartitionManager implements PartitionManager {
      * @return
      */
     public boolean releasePartition(ConsumePartition consumePartition) {
-        return releaseOccupy(consumePartition);
+        return releaseOccupy(consumePartition.getTopic(), consumePartition.getApp(), consumePartition.getPartition());
     }
 
     /**
@@ -602,6 +621,85 @@ public class CasPartitionManager implements PartitionManager {
         }
     }
 
+    /**
+     * 一个主题和应用的分区占用表，按分区号索引的数组，线程安全
+     * <br>
+     * 分区锁在首次占用时创建，之后的占用和释放只需要按下标读取数组，不需要构造和哈希消费分区对象
+     */
+    static class OccupancyTable {
+        private static final int INITIAL_CAPACITY = 16;
+        private final CounterService counterService;
+        private volatile AtomicReferenceArray<PartitionLock> locks = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        // 重试分区的分区号是Short.MAX_VALUE，单独保存
+        private final AtomicReference<PartitionLock> retryLock = new AtomicReference<>();
+
+        OccupancyTable(CounterService counterService) {
+            this.counterService = counterService;
+        }
+
+        PartitionLock get(short partition) {
+            if (partition == Partition.RETRY_PARTITION_ID) {
+                return retryLock.get();
+            }
+            AtomicReferenceArray<PartitionLock> locks = this.locks;
+            return partition < locks.length() ? locks.get(partition) : null;
+        }
+
+        PartitionLock getOrCreate(short partition) {
+            PartitionLock partitionLock = get(partition);
+            if (partitionLock != null) {
+                return partitionLock;
+            }
+            if (partition == Partition.RETRY_PARTITION_ID) {
+                partitionLock = new PartitionLock(counterService);
+                return retryLock.compareAndSet(null, partitionLock) ? partitionLock : retryLock.get();
+            }
+            return create(partition);
+        }
+
+        /**
+         * 创建分区锁和扩容数组在同一个锁内，避免写入扩容前的旧数组导致分区锁丢失
+         */
+        private synchronized PartitionLock create(short partition) {
+            AtomicReferenceArray<PartitionLock> locks = ensureCapacity(partition + 1);
+            PartitionLock partitionLock = locks.get(partition);
+            if (partitionLock == null) {
+                partitionLock = new PartitionLock(counterService);
+                locks.set(partition, partitionLock);
+            }
+            return partitionLock;
+        }
+
+        private AtomicReferenceArray<PartitionLock> ensureCapacity(int capacity) {
+            AtomicReferenceArray<PartitionLock> locks = this.locks;
+            if (capacity <= locks.length()) {
+                return locks;
+            }
+            AtomicReferenceArray<PartitionLock> newLocks = new AtomicReferenceArray<>(Math.max(capacity, locks.length() << 1));
+            for (int i = 0; i < locks.length(); i++) {
+                newLocks.set(i, locks.get(i));
+            }
+            this.locks = newLocks;
+            return newLocks;
+        }
+
+        // 所有分区都未被占用，且闲置超过deleteTimeout，可以删除
+        boolean canBeDeleted(long deleteTimeout) {
+            PartitionLock retry = retryLock.get();
+            if (retry != null && !retry.canBeDeleted(deleteTimeout)) {
+                return false;
+            }
+            AtomicReferenceArray<PartitionLock> locks = this.locks;
+            for (int i = 0; i < locks.length(); i++) {
+                PartitionLock partitionLock = locks.get(i);
+                if (partitionLock != null && !partitionLock.canBeDeleted(deleteTimeout)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * 监听回话断开时间，并移除被回话占用的分区占用
      */
@@ -623,14 +721,15 @@ public class CasPartitionManager implements PartitionManager {
         private void removeOccupyByConsumer(Consumer consumer) {
             List<Short> masterPartitionList = clusterManager.getLocalPartitions(TopicName.parse(consumer.getTopic()));
             final String clientId = consumer.getId();
-            masterPartitionList.forEach(partition -> {
-                ConsumePartition consumePartition = new ConsumePartition(consumer.getTopic(), consumer.getApp(), partition);
-                PartitionLock ownerShip = ownerShipCache.get(consumePartition);
-                if (ownerShip != null) {
-                    ownerShip.tryRelease(clientId);
-                }
-
-            });
+            OccupancyTable table = getOccupancyTable(consumer.getTopic(), consumer.getApp(), false);
+            if (table != null) {
+                masterPartitionList.forEach(partition -> {
+                    PartitionLock ownerShip = table.get(partition);
+                    if (ownerShip != null) {
+                        ownerShip.tryRelease(clientId);
+                    }
+                });
+            }
 
             // 清零该消费者的占用次数
             counterService.clearOccupyTimes(clientId);
@@ -62,7 +62,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /**
  * 并行的消息消费方式
@@ -99,7 +98,7 @@ class ConcurrentConsumption extends Service implements ConcurrentConsumer {
     private LoopThread moveExpireThread;
     private LoopThread cleanExpireThread;
     // K=消费分区，V=消费分区段集合
-    private ConcurrentMap<ConsumePartition, List<Position>> concurrentConsumeCache = new ConcurrentHashMap<>();
+    private ConcurrentMap<ConsumePartition, AckSegmentQueue> concurrentConsumeCache = new ConcurrentHashMap<>();
     // 消费分区锁
     private PartitionLockInstance lockInstance = new PartitionLockInstance();
     // 延迟处理器
@@ -588,16 +587,16 @@ class ConcurrentConsumption extends Service implements ConcurrentConsumer {
         if (increaseCounter){
             increaseConcurrentCounter(new ConsumePartition(topic, app, partition));
 
-            List<Position> positions = concurrentConsumeCache.get(new ConsumePartition(topic, app, partition));
-            if (positions == null) {
-                positions = new ArrayList<>();
-                List<Position> oldPositions = concurrentConsumeCache.putIfAbsent(new ConsumePartition(topic, app, partition), positions);
-                if (oldPositions != null) {
-                    positions = oldPositions;
+            AckSegmentQueue segments = concurrentConsumeCache.get(new ConsumePartition(topic, app, partition));
+            if (segments == null) {
+                segments = new AckSegmentQueue();
+                AckSegmentQueue oldSegments = concurrentConsumeCache.putIfAbsent(new ConsumePartition(topic, app, partition), segments);
+                if (oldSegments != null) {
+                    segments = oldSegments;
                 }
             }
 
-            positions.add(new Position(startIndex, endIndex, -1, -1));
+            segments.add(startIndex, endIndex);
         }
     }
 
@@ -782,7 +781,7 @@ class ConcurrentConsumption extends Service implements ConcurrentConsumer {
 
 
         ConcurrentMap<ConsumePartition, AtomicInteger> consumerCounter = consumerSegmentNumMap;
-        ConcurrentMap<ConsumePartition, List<Position>> concurrentConsumeCacheMap = concurrentConsumeCache;
+        ConcurrentMap<ConsumePartition, AckSegmentQueue> concurrentConsumeCacheMap = concurrentConsumeCache;
         removed.forEach(ele -> {
             expired.remove(ele);
             consumerCounter.remove(ele);
@@ -798,116 +797,34 @@ class ConcurrentConsumption extends Service implements ConcurrentConsumer {
      * @param indexArr         应答分区段的开始序号和结束序号
      */
     private void tryUpdateAckPosition(ConsumePartition consumePartition, long[] indexArr) throws JoyQueueException {
-        String topic = consumePartition.getTopic();
-        String app = consumePartition.getApp();
         short partition = consumePartition.getPartition();
+        AckSegmentQueue segments = concurrentConsumeCache.get(consumePartition);
 
-        // 查询应答位置
-        long lastMsgAckIndex = positionManager.getLastMsgAckIndex(TopicName.parse(topic), app, partition);
-        List<Position> positions = sortPositions(consumePartition);
-        Position currentPosition = null;
-
-        if (CollectionUtils.isEmpty(positions)) {
+        if (segments == null || segments.isEmpty()) {
             logger.warn("current position is null, positions is empty, partition: {}, startIndex: {}, endIndex: {}",
                     partition, indexArr[0], indexArr[1]);
             return;
         }
 
-        for (Position position : positions) {
-            if (position.getAckStartIndex() == indexArr[0] && position.getAckCurIndex() == indexArr[1]) {
-                currentPosition = position;
-                break;
-            }
-        }
-
-        if (currentPosition == null) {
+        if (!segments.ack(indexArr[0], indexArr[1])) {
             logger.warn("current position is null, partition: {}, startIndex: {}, endIndex: {}",
                     partition, indexArr[0], indexArr[1]);
             return;
         }
 
-        if (currentPosition.isAck()) {
-            return;
-        }
-
-        // 排序、并返回第一个分区段
-        Position headPosition = positions.get(0);
-        currentPosition.setAck(true);
-
-        if (headPosition.isAck() && headPosition.getAckStartIndex() == lastMsgAckIndex) {
-            List<Position> committedPositions = Lists.newLinkedList();
-
-            for (int i = 0; i < positions.size(); i++) {
-                Position position = positions.get(i);
-                if (position.isAck() && position.getAckStartIndex() == lastMsgAckIndex) {
-                    lastMsgAckIndex = position.getAckCurIndex() + 1;
-                    committedPositions.add(position);
-                } else {
-                    break;
-                }
-            }
+        // 查询应答位置
+        TopicName topic = TopicName.parse(consumePartition.getTopic());
+        String app = consumePartition.getApp();
+        long lastMsgAckIndex = positionManager.getLastMsgAckIndex(topic, app, partition);
+        long newAckIndex = segments.commit(lastMsgAckIndex);
 
-            if (committedPositions.isEmpty()) {
-                logger.info("commit index failed, partition: {}, head: {}, index: {}",
-                        partition, headPosition.getAckStartIndex(), lastMsgAckIndex);
-            } else {
-                positions.removeAll(committedPositions);
-                concurrentConsumeCache.put(consumePartition, positions);
-                positionManager.updateLastMsgAckIndex(TopicName.parse(topic), app, partition, lastMsgAckIndex, false);
+        if (newAckIndex != lastMsgAckIndex) {
+            positionManager.updateLastMsgAckIndex(topic, app, partition, newAckIndex, false);
 
-                logger.debug("commit index, partition: {}, index: {}", partition, lastMsgAckIndex);
-            }
+            logger.debug("commit index, partition: {}, index: {}", partition, newAckIndex);
         } else {
-            logger.debug("commit index failed, partition: {}, head: {}, index: {}, ack: {}", partition, headPosition.getAckStartIndex(), lastMsgAckIndex, headPosition.isAck());
-        }
-    }
-
-    /**
-     * 添加应答的分区段
-     *
-     * @param consumePartition
-     * @param ackStartIndex
-     * @param ackCurIndex
-     */
-    private void addAckSegment(ConsumePartition consumePartition, long ackStartIndex, long ackCurIndex) {
-        List<Position> positionList = concurrentConsumeCache.get(consumePartition);
-        if (positionList == null) {
-            positionList = new ArrayList<>();
-            concurrentConsumeCache.put(consumePartition, positionList);
+            logger.debug("commit index failed, partition: {}, head: {}, index: {}", partition, segments.headIndex(), lastMsgAckIndex);
         }
-        Position position = new Position(ackStartIndex, ackCurIndex, -1, -1);
-        if (positionList.contains(position)) {
-            return;
-        }
-        positionList.add(position);
-    }
-
-
-    /**
-     * 按照消费应答开始序号将分段段进行排序,并返回第一分区段的位置
-     *
-     * @param consumePartition 消费分区
-     * @return 应答位置
-     */
-    private List<Position> sortPositions(ConsumePartition consumePartition) {
-        List<Position> positionList = concurrentConsumeCache.get(consumePartition);
-        if (CollectionUtils.isEmpty(positionList)) {
-            return null;
-        }
-        // 将分区段按照拉取消息的起始序号进行排序
-        List<Position> sortPositionList = sortByAckStartIndex(positionList);
-        concurrentConsumeCache.put(consumePartition, sortPositionList);
-        return sortPositionList;
-    }
-
-    /**
-     * 按照消费应答开始序号将分段段进行排序
-     *
-     * @param list
-     * @return
-     */
-    private List<Position> sortByAckStartIndex(List<Position> list) {
-        return Lists.newArrayList(list).stream().sorted((thisPosition, thatPosition) -> Long.compare(thisPosition.getAckStartIndex(), thatPosition.getAckStartIndex())).collect(Collectors.toList());
     }
 
     /**
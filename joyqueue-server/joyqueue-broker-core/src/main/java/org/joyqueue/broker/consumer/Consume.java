@@ -23,6 +23,7 @@ import org.joyqueue.exception.JoyQueueException;
 import org.joyqueue.message.MessageLocation;
 import org.joyqueue.network.session.Connection;
 import org.joyqueue.network.session.Consumer;
+import org.joyqueue.toolkit.concurrent.EventListener;
 
 import java.util.Map;
 
@@ -54,6 +55,21 @@ public interface Consume {
      */
     PullResult getMessage(Consumer consumer, short partition, long index, int count) throws JoyQueueException;
 
+    /**
+     * 指定分区、消息序号、获取消息条数获取消息所在的文件区域，用于零拷贝发送
+     * <p>
+     * 只有消费者没有配置过滤和延迟消费时才返回文件区域，否则和{@link #getMessage(Consumer, short, long, int)}一样返回消息内容；
+     * 尚未刷盘的消息也以消息内容返回
+     *
+     * @param consumer  从会话管理中获取中的消费者对象
+     * @param partition 分区
+     * @param index     消息序号
+     * @param count     获取消息条数
+     * @return 文件区域或者消息内容
+     * @throws JoyQueueException
+     */
+    PullResult getMessageRegions(Consumer consumer, short partition, long index, int count) throws JoyQueueException;
+
     /**
      * 指定分区、消息序号、获取消息条数获取消息
      *
@@ -199,4 +215,18 @@ public interface Consume {
      */
     void releasePartition(String topic, String app, short partition);
 
-}
\ No newline at end of file
+    /**
+     * 添加分区释放监听器，应答或者主动释放分区占用后在调用线程中同步回调，监听器不能阻塞
+     *
+     * @param listener 监听器
+     */
+    void addReleaseListener(EventListener<ConsumePartition> listener);
+
+    /**
+     * 移除分区释放监听器
+     *
+     * @param listener 监听器
+     */
+    void removeReleaseListener(EventListener<ConsumePartition> listener);
+
+}
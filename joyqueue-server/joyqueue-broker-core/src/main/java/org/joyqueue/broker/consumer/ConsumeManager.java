@@ -49,6 +49,7 @@ import org.joyqueue.network.session.Joint;
 import org.joyqueue.nsr.event.RemoveConsumerEvent;
 import org.joyqueue.nsr.event.UpdateConsumerEvent;
 import org.joyqueue.server.retry.api.MessageRetry;
+import org.joyqueue.store.JournalRegion;
 import org.joyqueue.store.PartitionGroupStore;
 import org.joyqueue.store.StoreService;
 import org.joyqueue.toolkit.concurrent.EventListener;
@@ -68,6 +69,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -110,6 +112,8 @@ public class ConsumeManager extends Service implements Consume, BrokerContextAwa
     // 会话管理
     private SessionManager sessionManager;
     private Timer resetBroadcastIndexTimer;
+    // 分区释放监听器
+    private final List<EventListener<ConsumePartition>> releaseListeners = new CopyOnWriteArrayList<>();
 
     public ConsumeManager() {
         //do nothing
@@ -364,6 +368,28 @@ public class ConsumeManager extends Service implements Consume, BrokerContextAwa
         }
     }
 
+    @Override
+    public PullResult getMessageRegions(Consumer consumer, short partition, long index, int count) throws JoyQueueException {
+        Preconditions.checkArgument(consumer != null, "消费者信息不能为空");
+        Preconditions.checkArgument(partition >= 0, "分区不能小于0");
+        Preconditions.checkArgument(index >= 0, "消费序号不能小于0");
+        Preconditions.checkArgument(count > 0, "消费条数不能小于或等于0");
+
+        Integer group = partitionManager.getGroupByPartition(TopicName.parse(consumer.getTopic()), partition);
+        Preconditions.checkArgument(group != null && group >= 0, "找不到主题[" + consumer.getTopic() + "]" + ",分区[" + partition + "]的分区组");
+
+        try {
+            long startTime = SystemClock.now();
+            PullResult pullResult = partitionConsumption.getMsgRegionsByPartitionAndIndex(consumer, group, partition, index, count);
+            // 监控逻辑
+            monitor(pullResult, startTime, consumer, group);
+            return pullResult;
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+            throw new JoyQueueException(JoyQueueCode.SE_IO_ERROR, e);
+        }
+    }
+
     @Override
     public PullResult getMessage(String topic, short partition, long index, int count) throws JoyQueueException {
         Preconditions.checkArgument(StringUtils.isNotBlank(topic), "主题不能为空");
@@ -406,6 +432,16 @@ public class ConsumeManager extends Service implements Consume, BrokerContextAwa
             }
             brokerMonitor.onGetMessage(consumer.getTopic(), consumer.getApp(), partitionGroup, pullResult.getPartition(), messageCount, messageSize, now - startTime);
         }
+        if (pullResult != null && CollectionUtils.isNotEmpty(pullResult.getRegions())) {
+            long now = SystemClock.now();
+            int messageCount = 0;
+            int messageSize = 0;
+            for (JournalRegion region : pullResult.getRegions()) {
+                messageCount += region.getIndexCount();
+                messageSize += region.getLength();
+            }
+            brokerMonitor.onGetMessage(consumer.getTopic(), consumer.getApp(), partitionGroup, pullResult.getPartition(), messageCount, messageSize, now - startTime);
+        }
     }
 
     @Override
@@ -438,6 +474,7 @@ public class ConsumeManager extends Service implements Consume, BrokerContextAwa
         if (isSuccess) {
             // 释放占用
             partitionManager.releasePartition(consumePartition);
+            fireRelease(consumePartition);
 
             if (consumePartition.getPartition() != Partition.RETRY_PARTITION_ID) {
                 // 更新最后应答时间
@@ -652,7 +689,29 @@ public class ConsumeManager extends Service implements Consume, BrokerContextAwa
 
     @Override
     public void releasePartition(String topic, String app, short partition) {
-        partitionManager.releasePartition(new ConsumePartition(topic, app, partition));
+        ConsumePartition consumePartition = new ConsumePartition(topic, app, partition);
+        partitionManager.releasePartition(consumePartition);
+        fireRelease(consumePartition);
+    }
+
+    @Override
+    public void addReleaseListener(EventListener<ConsumePartition> listener) {
+        releaseListeners.add(listener);
+    }
+
+    @Override
+    public void removeReleaseListener(EventListener<ConsumePartition> listener) {
+        releaseListeners.remove(listener);
+    }
+
+    private void fireRelease(ConsumePartition consumePartition) {
+        for (EventListener<ConsumePartition> listener : releaseListeners) {
+            try {
+                listener.onEvent(consumePartition);
+            } catch (Throwable t) {
+                logger.warn("Release listener exception, consumePartition: {}.", consumePartition, t);
+            }
+        }
     }
 
     protected void doResetBroadcastIndex() {
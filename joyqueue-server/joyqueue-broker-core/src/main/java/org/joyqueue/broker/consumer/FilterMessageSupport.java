@@ -74,13 +74,29 @@ class FilterMessageSupport {
      * @throws JoyQueueException
      */
     public List<ByteBuffer> filter(Consumer consumer, List<ByteBuffer> byteBuffers, FilterCallback filterCallback) throws JoyQueueException {
+        FilterPipeline<MessageFilter> filterPipeline = getFilterPipeline(consumer);
+        List<ByteBuffer> result = filterPipeline.execute(byteBuffers, filterCallback);
+        return result;
+    }
+
+    /**
+     * 能通过用户设置的过滤规则的消息标签掩码
+     *
+     * @param consumer 消费者
+     * @return 标签掩码
+     * @throws JoyQueueException
+     */
+    public long getFlagMask(Consumer consumer) throws JoyQueueException {
+        return getFilterPipeline(consumer).flagMask();
+    }
+
+    private FilterPipeline<MessageFilter> getFilterPipeline(Consumer consumer) throws JoyQueueException {
         FilterPipeline<MessageFilter> filterPipeline = filterRuleCache.get(consumer.getId());
         if (filterPipeline == null) {
             filterPipeline = createFilterPipeline(consumer.getConsumerPolicy());
             filterRuleCache.putIfAbsent(consumer.getId(), filterPipeline);
         }
-        List<ByteBuffer> result = filterPipeline.execute(byteBuffers, filterCallback);
-        return result;
+        return filterPipeline;
     }
 
     /**
@@ -18,6 +18,7 @@ package org.joyqueue.broker.consumer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.joyqueue.broker.archive.ArchiveManager;
@@ -41,6 +42,7 @@ import org.joyqueue.store.PositionOverflowException;
 import org.joyqueue.store.PositionUnderflowException;
 import org.joyqueue.store.ReadResult;
 import org.joyqueue.store.StoreService;
+import org.joyqueue.store.message.FlagMask;
 import org.joyqueue.toolkit.network.IpUtil;
 import org.joyqueue.toolkit.service.Service;
 import org.slf4j.Logger;
@@ -248,6 +250,55 @@ class PartitionConsumption extends Service {
         return pullResult;
     }
 
+    /**
+     * 指定分区读取消息所在的文件区域，消费者配置了过滤或者延迟消费时读取消息内容
+     *
+     * @param consumer  消费者信息
+     * @param group     分区分组
+     * @param partition 消费分区
+     * @param index     消息序号
+     * @param count     消息条数
+     * @return 文件区域或者消息内容
+     */
+    protected PullResult getMsgRegionsByPartitionAndIndex(Consumer consumer, int group, short partition, long index, int count) throws JoyQueueException, IOException {
+        if (StringUtils.isNotEmpty(consumer.getApp()) &&
+                (!Consumer.ConsumeType.INTERNAL.equals(consumer.getType()) && !Consumer.ConsumeType.KAFKA.equals(consumer.getType()))) {
+
+            org.joyqueue.domain.Consumer consumerConfig = clusterManager.tryGetConsumer(TopicName.parse(consumer.getTopic()), consumer.getApp());
+            if (consumerConfig != null && consumerConfig.getConsumerPolicy() != null
+                    && (MapUtils.isNotEmpty(consumerConfig.getConsumerPolicy().getFilters()) || delayHandler.needDelay(consumerConfig.getConsumerPolicy()))) {
+                return getMsgByPartitionAndIndex(consumer, group, partition, index, count);
+            }
+        }
+
+        PullResult pullResult = new PullResult(consumer, (short) -1, new ArrayList<>(0));
+        try {
+            PartitionGroupStore store = storeService.getStore(consumer.getTopic(), group);
+            ReadResult readRst = store.readRegions(partition, index, count, Long.MAX_VALUE);
+            if (readRst.getCode() != JoyQueueCode.SUCCESS) {
+                logger.error("read message regions error, error code[{}]", readRst.getCode());
+                pullResult.setCode(readRst.getCode());
+                return pullResult;
+            }
+            if (ArrayUtils.isEmpty(readRst.getRegions())) {
+                // 消息还没有刷盘，直接读取消息内容
+                return getMsgByPartitionAndIndex(consumer, group, partition, index, count);
+            }
+            pullResult = new PullResult(consumer, partition, new ArrayList<>(0));
+            pullResult.setRegions(Lists.newArrayList(readRst.getRegions()));
+        } catch (PositionOverflowException overflow) {
+            logger.debug("PositionOverflow,topic:{},partition:{},index:{}", consumer.getTopic(), partition, index);
+            if (overflow.getPosition() != overflow.getRight()) {
+                pullResult.setCode(JoyQueueCode.SE_INDEX_OVERFLOW);
+            }
+        } catch (PositionUnderflowException underflow) {
+            logger.debug("PositionUnderflow,topic:{},partition:{},index:{}", consumer.getTopic(), partition, index);
+            pullResult.setCode(JoyQueueCode.SE_INDEX_UNDERFLOW);
+        }
+
+        return pullResult;
+    }
+
     protected PullResult getMsgByPartitionAndIndex(String topic, int group, short partition, long index, int count) throws JoyQueueException, IOException {
         long startTime = System.nanoTime();
         PullResult result = new PullResult(topic, null, partition, null);
@@ -307,6 +358,7 @@ class PartitionConsumption extends Service {
             int partitionGroup = clusterManager.getPartitionGroupId(TopicName.parse(consumer.getTopic()), partition);
             long index = positionManager.getLastMsgAckIndex(TopicName.parse(consumer.getTopic()), consumer.getApp(), partition);
             try {
+                index = skipFilteredMessages(consumer, partitionGroup, partition, index);
                 ByteBuffer[] byteBuffers = readMessages(consumer, partitionGroup, partition, index, count);
 
 
@@ -425,6 +477,45 @@ class PartitionConsumption extends Service {
         return null;
     }
 
+    /**
+     * 根据分区的标签索引，跳过一定不能通过过滤规则的消息，直接应答到第一条可能通过过滤的消息
+     * <br>
+     * 开启消费归档时需要逐条归档被过滤的消息，不跳过
+     *
+     * @param consumer       消费者信息
+     * @param partitionGroup 分区分组
+     * @param partition      消费分区
+     * @param index          当前应答序号
+     * @return 跳过之后的应答序号
+     */
+    private long skipFilteredMessages(Consumer consumer, int partitionGroup, short partition, long index) throws JoyQueueException {
+        if (archiveManager != null && archiveManager.getConsumeArchiveService() != null) {
+            return index;
+        }
+        TopicName topic = TopicName.parse(consumer.getTopic());
+        org.joyqueue.domain.Consumer consumerConfig = clusterManager.tryGetConsumer(topic, consumer.getApp());
+        if (consumerConfig == null || consumerConfig.getConsumerPolicy() == null || MapUtils.isEmpty(consumerConfig.getConsumerPolicy().getFilters())) {
+            return index;
+        }
+        long flagMask = filterMessageSupport.getFlagMask(consumerConfig);
+        if (flagMask == FlagMask.ALL) {
+            return index;
+        }
+        PartitionGroupStore store = storeService.getStore(consumer.getTopic(), partitionGroup);
+        long nextIndex = store.nextIndexOfFlags(partition, index, flagMask);
+        if (nextIndex > index) {
+            if (positionManager.updateLastMsgAckIndex(topic, consumer.getApp(), partition, nextIndex)) {
+                positionManager.updateLastMsgPullIndex(topic, consumer.getApp(), partition, nextIndex);
+                if (config.getLogDetail(consumer.getApp())) {
+                    logger.info("skip filtered messages, topic: {}, app: {}, partition: {}, index: {}, nextIndex: {}",
+                            consumer.getTopic(), consumer.getApp(), partition, index, nextIndex);
+                }
+                return nextIndex;
+            }
+        }
+        return index;
+    }
+
     /**
      * broker内部应答的APP名称
      */
@@ -16,6 +16,7 @@
 package org.joyqueue.broker.consumer.filter;
 
 import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.store.message.FlagMask;
 
 import java.nio.ByteBuffer;
 import java.util.Iterator;
@@ -73,4 +74,19 @@ public class FilterPipeline<T extends MessageFilter> {
         return byteBuffers;
     }
 
+    /**
+     * 能通过所有过滤器的消息标签掩码
+     *
+     * @return 标签掩码，没有过滤器时返回{@link FlagMask#ALL}
+     */
+    public long flagMask() {
+        long mask = FlagMask.ALL;
+        if (hasFilter) {
+            for (T filter : pipeline) {
+                mask &= filter.flagMask();
+            }
+        }
+        return mask;
+    }
+
 }
\ No newline at end of file
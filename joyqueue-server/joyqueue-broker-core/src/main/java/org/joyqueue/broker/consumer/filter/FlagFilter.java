@@ -19,6 +19,7 @@ import org.joyqueue.broker.buffer.Serializer;
 import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.exception.JoyQueueException;
 import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.store.message.FlagMask;
 import com.jd.laf.extension.Extension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,8 @@ public class FlagFilter implements MessageFilter {
     private final Logger logger = LoggerFactory.getLogger(FlagFilter.class);
     // 已编译好的正则表达式
     private Pattern pattern;
+    // 能匹配正则表达式的标签掩码
+    private long flagMask = FlagMask.ALL;
 
     public FlagFilter() {
 
@@ -47,6 +50,25 @@ public class FlagFilter implements MessageFilter {
     @Override
     public void setRule(String rule) {
         this.pattern = Pattern.compile(rule);
+        this.flagMask = buildFlagMask(pattern);
+    }
+
+    @Override
+    public long flagMask() {
+        return flagMask;
+    }
+
+    /**
+     * 枚举所有标签，计算能匹配正则表达式的标签掩码
+     */
+    private long buildFlagMask(Pattern pattern) {
+        long mask = FlagMask.NONE;
+        for (int flag = Short.MIN_VALUE; flag <= Short.MAX_VALUE && mask != FlagMask.ALL; flag++) {
+            if (pattern.matcher(String.valueOf(flag)).matches()) {
+                mask |= FlagMask.of((short) flag);
+            }
+        }
+        return mask;
     }
 
     @Override
@@ -16,6 +16,7 @@
 package org.joyqueue.broker.consumer.filter;
 
 import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.store.message.FlagMask;
 
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -44,4 +45,13 @@ public interface MessageFilter {
      */
     void setRule(String rule);
 
+    /**
+     * 能通过过滤的消息标签掩码，用于按分区的标签索引跳过不可能通过过滤的消息
+     *
+     * @return 标签掩码，默认{@link FlagMask#ALL}表示不能跳过任何消息
+     */
+    default long flagMask() {
+        return FlagMask.ALL;
+    }
+
 }
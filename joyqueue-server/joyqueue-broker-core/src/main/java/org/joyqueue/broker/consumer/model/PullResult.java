@@ -17,6 +17,7 @@ package org.joyqueue.broker.consumer.model;
 
 import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.network.session.Consumer;
+import org.joyqueue.store.JournalRegion;
 
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -33,6 +34,8 @@ public class PullResult {
     private short partition;
     // 数据
     private List<ByteBuffer> buffers;
+    // 消息所在的文件区域，零拷贝发送时使用
+    private List<JournalRegion> regions;
     // 状态码
     private JoyQueueCode code = JoyQueueCode.SUCCESS;
 
@@ -73,6 +76,14 @@ public class PullResult {
         this.buffers = buffers;
     }
 
+    public List<JournalRegion> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(List<JournalRegion> regions) {
+        this.regions = regions;
+    }
+
     public JoyQueueCode getCode() {
         return code;
     }
@@ -22,7 +22,6 @@ import org.joyqueue.broker.consumer.model.ConsumePartition;
 import org.joyqueue.broker.consumer.position.model.Position;
 import org.joyqueue.network.session.Joint;
 import org.joyqueue.toolkit.concurrent.LoopThread;
-import org.joyqueue.toolkit.io.Files;
 import com.google.common.base.Charsets;
 import org.joyqueue.toolkit.lang.Close;
 import com.google.common.base.Preconditions;
@@ -33,14 +32,12 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -48,6 +45,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * 基于本地文件存储的消费位点快照
  * <p>
+ * 消费位置保存在二进制的{@link PositionLog}中，每次刷盘只追加写入发生变化的消费位置。
+ * 启动时如果只有旧版本的JSON文件，从JSON文件恢复后转换成二进制格式，之后不再写入JSON文件。
+ * <p>
  * Created by chengzhiliang on 2019/2/27.
  */
 public class LocalFileStore implements PositionStore<ConsumePartition, Position> {
@@ -58,14 +58,18 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
     private final Object[] fileUpdateLock = new Object[0];
     // 消费位置配置文件
     PositionConfig config;
-    // 消费消息序号文件
+    // 旧版本的JSON消费消息序号文件，只用于升级时恢复
     private File indexFile;
-    // 消费消息序号文件备份(双写)
+    // 旧版本的JSON消费消息序号文件备份(双写)
     private File indexFileBack;
+    // 二进制的消费位置快照和增量日志
+    private PositionLog positionLog;
     // 快照文件目录
     private String basePath;
     // 消费者消费序号
     private ConcurrentMap<ConsumePartition, Position> consumePositionCache = new ConcurrentHashMap<>();
+    // 上次刷盘之后被删除的消费位置
+    private final Set<ConsumePartition> removedPartitions = ConcurrentHashMap.newKeySet();
     // 检查点线程
     private LoopThread thread;
 
@@ -92,9 +96,7 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
         this.config = new PositionConfig(basePath);
         this.indexFile = this.config.getPositionFile();
         this.indexFileBack = new File(this.indexFile.getParentFile(), this.indexFile.getName() + PositionConfig.BACK_SUFFIX);
-
-        Files.createFile(indexFile);
-        Files.createFile(indexFileBack);
+        this.positionLog = new PositionLog(this.indexFile.getParentFile());
 
         initConsumePositionCache();
 
@@ -116,8 +118,20 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
      * 初始化消费位置缓存
      */
     private void initConsumePositionCache() throws Exception {
-        ConcurrentMap<ConsumePartition, Position> recoverCache = recover();
-        this.consumePositionCache = recoverCache;
+        synchronized (fileUpdateLock) {
+            if (positionLog.exists()) {
+                this.consumePositionCache = positionLog.recover();
+                return;
+            }
+            ConcurrentMap<ConsumePartition, Position> recoverCache = recoverFromJson();
+            positionLog.recover();
+            if (!recoverCache.isEmpty()) {
+                positionLog.flush(recoverCache, removedPartitions);
+                positionLog.snapshot();
+                logger.info("Migrate {} consume positions from {} to binary position log.", recoverCache.size(), indexFile.getPath());
+            }
+            this.consumePositionCache = recoverCache;
+        }
     }
 
     @Override
@@ -125,6 +139,15 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
         if (thread != null) {
             thread.stop();
         }
+        if (positionLog != null) {
+            synchronized (fileUpdateLock) {
+                try {
+                    positionLog.close();
+                } catch (IOException e) {
+                    logger.warn("close position log error.", e);
+                }
+            }
+        }
         isStarted.set(false);
 
         logger.info("LocalFileStore is stop.");
@@ -147,7 +170,11 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
 
     @Override
     public Position remove(ConsumePartition key) {
-        return consumePositionCache.remove(key);
+        Position position = consumePositionCache.remove(key);
+        if (position != null) {
+            removedPartitions.add(key);
+        }
+        return position;
     }
 
     @Override
@@ -162,67 +189,68 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
 
     @Override
     public Iterator<ConsumePartition> iterator() {
-        return consumePositionCache.keySet().iterator();
-    }
+        Iterator<ConsumePartition> iterator = consumePositionCache.keySet().iterator();
+        // 通过迭代器删除的消费位置也需要在下次刷盘时写入删除记录
+        return new Iterator<ConsumePartition>() {
+            private ConsumePartition current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
 
-    /**
-     * 刷新偏移量到磁盘
-     */
-    protected void doFlush() {
-        Map<Joint, List<ConsumeBill>> jointListMap = cloneIndexCache(consumePositionCache);
-        dump(jointListMap);
+            @Override
+            public ConsumePartition next() {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                removedPartitions.add(current);
+            }
+        };
     }
 
     /**
-     * 以线程安全的方式clone一份深拷贝
-     *
-     * @return
-     * @throws CloneNotSupportedException
+     * 把变化的偏移量增量刷新到磁盘
      */
-    private Map<Joint, List<ConsumeBill>> cloneIndexCache(ConcurrentMap<ConsumePartition, Position> consumePositionCache) {
-        Map<Joint, List<ConsumeBill>> copyOfConsumeBills = new HashMap<>(consumePositionCache.size());
-        for (Map.Entry<ConsumePartition, Position> entry : consumePositionCache.entrySet()) {
-            ConsumePartition consumePartition = entry.getKey();
-            String topic = consumePartition.getTopic();
-            String app = consumePartition.getApp();
-            short partition = consumePartition.getPartition();
-            int partitionGroup = consumePartition.getPartitionGroup();
-            Position position = entry.getValue();
-            Joint joint = new Joint(topic, app);
-            List<ConsumeBill> consumeBills = copyOfConsumeBills.get(joint);
-            if (consumeBills == null) {
-                consumeBills = new ArrayList<>();
-                copyOfConsumeBills.put(joint, consumeBills);
+    protected void doFlush() {
+        synchronized (fileUpdateLock) {
+            try {
+                int records = positionLog.flush(consumePositionCache, removedPartitions);
+                if (records > 0 && logger.isDebugEnabled()) {
+                    logger.debug("Flush {} consume positions.", records);
+                }
+            } catch (Exception e) {
+                logger.error("flush index error.", e);
             }
-            ConsumeBill consumeBill = new ConsumeBill(partitionGroup, partition, position);
-            consumeBills.add(consumeBill);
         }
-        return copyOfConsumeBills;
     }
 
     /**
-     * 持久化快照
+     * 恢复快照
      *
+     * @return
+     * @throws IOException
      */
-    private void dump(Map<Joint, List<ConsumeBill>> jointListMap) {
-        try {
-            String jsonStr = JSON.toJSONString(jointListMap);
-            synchronized (fileUpdateLock) {
-                writeFile(indexFile, jsonStr);
-                writeFile(indexFileBack, jsonStr);
+    public ConcurrentMap<ConsumePartition, Position> recover() throws IOException {
+        synchronized (fileUpdateLock) {
+            if (positionLog.exists()) {
+                return positionLog.read();
             }
-        } catch (Exception e) {
-            logger.error("flush index error.", e);
         }
+        return recoverFromJson();
     }
 
     /**
-     * 恢复快照
+     * 从旧版本的JSON文件恢复快照
      *
      * @return
      * @throws IOException
      */
-    public ConcurrentMap<ConsumePartition, Position> recover() throws IOException {
+    private ConcurrentMap<ConsumePartition, Position> recoverFromJson() throws IOException {
         ConcurrentMap<ConsumePartition, Position> consumePositionCache = new ConcurrentHashMap<>();
 
         Map<Joint, List<ConsumeBill>> consumeBills;
@@ -250,34 +278,19 @@ public class LocalFileStore implements PositionStore<ConsumePartition, Position>
         return consumePositionCache;
     }
 
-
-    /**
-     * 输出JSON到文件
-     *
-     * @param file    文件
-     * @param content 内容
-     * @throws IOException
-     */
-    private void writeFile(File file, String content) throws IOException {
-        FileWriter writer = new FileWriter(file);
-        try {
-            writer.write(content);
-            writer.flush();
-        } finally {
-            Close.close(writer);
-        }
-    }
-
     /**
      * 从文件读取数据
      *
      * @param file          文件
      * @param typeReference 对象引用
      * @param <T>           泛型
-     * @return 数据对象
+     * @return 数据对象，文件不存在时返回null
      * @throws IOException
      */
     private <T> T loadFromFile(File file, TypeReference<T> typeReference) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
         BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
         try {
             StringBuilder builder = new StringBuilder();
@@ -0,0 +1,481 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.consumer.position;
+
+import org.joyqueue.broker.consumer.model.ConsumePartition;
+import org.joyqueue.broker.consumer.position.model.Position;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制的消费位置日志，由全量快照和增量日志组成。
+ * <p>
+ * 快照文件position.snapshot：文件头之后是所有消费位置的记录，写入临时文件后原子替换。
+ * 增量日志文件position.log：文件头之后追加写入每次刷盘时发生变化或者被删除的消费位置。
+ * 文件头：int magic | short version | long generation，增量日志只有和快照的generation相同时才有效。
+ * 每条记录：int length | int crc32 | byte type | 记录内容，length和crc32都是对type和记录内容计算的。
+ * <p>
+ * 恢复时先加载快照，再按顺序回放增量日志，遇到不完整或者校验失败的记录时截断增量日志。
+ * 增量日志超过快照大小时，合并生成generation加一的新快照，并创建新的增量日志。
+ * <p>
+ * 非线程安全，由调用方加锁。
+ */
+class PositionLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PositionLog.class);
+    static final String SNAPSHOT_FILE = "position.snapshot";
+    static final String LOG_FILE = "position.log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x4A515053;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // 增量日志超过这个大小，并且超过快照大小时合并快照
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024L;
+
+    private final File snapshotFile;
+    private final File logFile;
+    // 已经写入文件的消费位置
+    private final Map<ConsumePartition, Flushed> flushed = new HashMap<>();
+    private long generation = 0L;
+    private long snapshotSize = 0L;
+    private RandomAccessFile logRaf;
+    private FileChannel logChannel;
+
+    PositionLog(File directory) {
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.logFile = new File(directory, LOG_FILE);
+    }
+
+    /**
+     * 是否存在二进制的消费位置文件
+     */
+    boolean exists() {
+        return snapshotFile.exists() || logFile.exists();
+    }
+
+    /**
+     * 加载快照并回放增量日志，打开增量日志准备写入
+     *
+     * @return 恢复的消费位置
+     */
+    ConcurrentMap<ConsumePartition, Position> recover() throws IOException {
+        close();
+        Map<ConsumePartition, Entry> entries = new HashMap<>();
+        long validLogSize = load(entries);
+        snapshotSize = snapshotFile.exists() ? snapshotFile.length() : 0L;
+
+        if (validLogSize < HEADER_SIZE) {
+            createLog();
+        } else {
+            openLog();
+            if (validLogSize < logChannel.size()) {
+                logger.warn("Truncate position log {} from {} to {}.", logFile.getAbsolutePath(), logChannel.size(), validLogSize);
+                logChannel.truncate(validLogSize);
+            }
+            logChannel.position(validLogSize);
+        }
+        ConcurrentMap<ConsumePartition, Position> positions = toPositions(entries);
+        flushed.clear();
+        positions.forEach((consumePartition, position) ->
+                flushed.put(consumePartition, new Flushed(entries.get(consumePartition), position, position.getVersion())));
+        return positions;
+    }
+
+    /**
+     * 只读加载快照和增量日志，不影响正在写入的文件
+     */
+    ConcurrentMap<ConsumePartition, Position> read() throws IOException {
+        Map<ConsumePartition, Entry> entries = new HashMap<>();
+        long savedGeneration = generation;
+        try {
+            load(entries);
+        } finally {
+            generation = savedGeneration;
+        }
+        return toPositions(entries);
+    }
+
+    /**
+     * 把发生变化和被删除的消费位置追加写入增量日志，增量日志过大时合并快照。
+     * <p>
+     * 通过{@link Position#getVersion()}判断消费位置是否变化，未变化的消费位置不会创建新的对象；
+     * 被删除的消费位置由调用方记录在removed中，处理过的会从removed中移除，写入失败时放回。
+     * 只有写入并且刷盘成功之后才更新已经写入文件的消费位置。
+     *
+     * @param positions 当前所有的消费位置
+     * @param removed   上次刷盘之后被删除的消费位置
+     * @return 写入的记录数量
+     */
+    int flush(Map<ConsumePartition, Position> positions, Set<ConsumePartition> removed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<ConsumePartition> removes = new ArrayList<>();
+        Iterator<ConsumePartition> iterator = removed.iterator();
+        while (iterator.hasNext()) {
+            ConsumePartition consumePartition = iterator.next();
+            iterator.remove();
+            if (!positions.containsKey(consumePartition) && flushed.containsKey(consumePartition)) {
+                writeRemove(out, consumePartition);
+                removes.add(consumePartition);
+            }
+        }
+
+        Map<ConsumePartition, Flushed> puts = new HashMap<>();
+        int records = removes.size();
+        for (Map.Entry<ConsumePartition, Position> mapEntry : positions.entrySet()) {
+            ConsumePartition consumePartition = mapEntry.getKey();
+            Position position = mapEntry.getValue();
+            long version = position.getVersion();
+            Flushed previous = flushed.get(consumePartition);
+            if (null != previous && previous.position == position && previous.version == version) {
+                continue;
+            }
+            Entry entry = new Entry(consumePartition.getPartitionGroup(), position);
+            if (null == previous || !entry.equals(previous.entry)) {
+                writePut(out, consumePartition, entry);
+                records++;
+            }
+            puts.put(consumePartition, new Flushed(entry, position, version));
+        }
+
+        if (records > 0) {
+            long logPosition = -1L;
+            try {
+                logPosition = logChannel.position();
+                write(logChannel, ByteBuffer.wrap(bytes.toByteArray()));
+                logChannel.force(false);
+            } catch (IOException e) {
+                removed.addAll(removes);
+                if (logPosition >= 0) {
+                    rollback(logPosition);
+                }
+                throw e;
+            }
+        }
+        for (ConsumePartition consumePartition : removes) {
+            flushed.remove(consumePartition);
+        }
+        flushed.putAll(puts);
+
+        if (records > 0 && logChannel.size() > Math.max(snapshotSize, MIN_COMPACT_SIZE)) {
+            snapshot();
+        }
+        return records;
+    }
+
+    /**
+     * 用已经写入的消费位置生成新的快照，并创建新的增量日志
+     */
+    void snapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, generation + 1);
+        for (Map.Entry<ConsumePartition, Flushed> mapEntry : flushed.entrySet()) {
+            writePut(out, mapEntry.getKey(), mapEntry.getValue().entry);
+        }
+        writeAtomically(snapshotFile, bytes.toByteArray());
+        generation++;
+        snapshotSize = bytes.size();
+        close();
+        createLog();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != logChannel) {
+            logChannel.close();
+            logChannel = null;
+        }
+        if (null != logRaf) {
+            logRaf.close();
+            logRaf = null;
+        }
+    }
+
+    /**
+     * 加载快照和增量日志
+     *
+     * @return 增量日志中有效数据的长度，增量日志无效时返回0
+     */
+    private long load(Map<ConsumePartition, Entry> entries) throws IOException {
+        generation = 0L;
+        if (snapshotFile.exists()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+            generation = readHeader(buffer);
+            if (generation < 0L) {
+                throw new IOException(String.format("Invalid position snapshot %s!", snapshotFile.getAbsolutePath()));
+            }
+            while (buffer.hasRemaining()) {
+                if (!readRecord(buffer, entries)) {
+                    throw new IOException(String.format("Corrupted position snapshot %s at %d!",
+                            snapshotFile.getAbsolutePath(), buffer.position()));
+                }
+            }
+        }
+
+        if (!logFile.exists()) {
+            return 0L;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(logFile.toPath()));
+        long logGeneration = readHeader(buffer);
+        if (logGeneration != generation) {
+            logger.info("Skip position log {}, generation: {}, snapshot generation: {}.",
+                    logFile.getAbsolutePath(), logGeneration, generation);
+            return 0L;
+        }
+        int validSize = buffer.position();
+        while (buffer.hasRemaining() && readRecord(buffer, entries)) {
+            validSize = buffer.position();
+        }
+        return validSize;
+    }
+
+    private void createLog() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(bytes), generation);
+        writeAtomically(logFile, bytes.toByteArray());
+        openLog();
+        logChannel.position(logChannel.size());
+    }
+
+    /**
+     * 写入失败时截断不完整的记录，避免之后追加的记录在恢复时被丢弃
+     */
+    private void rollback(long logPosition) {
+        try {
+            logChannel.truncate(logPosition);
+            logChannel.position(logPosition);
+        } catch (IOException e) {
+            logger.warn("Rollback position log {} to {} error.", logFile.getAbsolutePath(), logPosition, e);
+        }
+    }
+
+    private void openLog() throws IOException {
+        logRaf = new RandomAccessFile(logFile, "rw");
+        logChannel = logRaf.getChannel();
+    }
+
+    private void writeAtomically(File file, byte[] content) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+            raf.setLength(0L);
+            FileChannel channel = raf.getChannel();
+            write(channel, ByteBuffer.wrap(content));
+            channel.force(true);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, long generation) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(generation);
+    }
+
+    /**
+     * @return 文件头中的generation，文件头无效时返回-1
+     */
+    private static long readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            return -1L;
+        }
+        return buffer.getLong();
+    }
+
+    private static void writePut(DataOutputStream out, ConsumePartition consumePartition, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(PUT);
+        writeKey(record, consumePartition);
+        record.writeInt(entry.partitionGroup);
+        record.writeLong(entry.ackStartIndex);
+        record.writeLong(entry.ackCurIndex);
+        record.writeLong(entry.pullStartIndex);
+        record.writeLong(entry.pullCurIndex);
+        writeRecord(out, bytes.toByteArray());
+    }
+
+    private static void writeRemove(DataOutputStream out, ConsumePartition consumePartition) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(REMOVE);
+        writeKey(record, consumePartition);
+        writeRecord(out, bytes.toByteArray());
+    }
+
+    private static void writeKey(DataOutputStream record, ConsumePartition consumePartition) throws IOException {
+        writeString(record, consumePartition.getTopic());
+        writeString(record, consumePartition.getApp());
+        record.writeShort(consumePartition.getPartition());
+    }
+
+    private static void writeString(DataOutputStream record, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.writeShort(bytes.length);
+        record.write(bytes);
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, record.length);
+        out.writeInt(record.length);
+        out.writeInt((int) crc32.getValue());
+        out.write(record);
+    }
+
+    /**
+     * 读取一条记录并应用到entries中
+     *
+     * @return 记录是否完整有效，无效时buffer的位置不确定
+     */
+    private static boolean readRecord(ByteBuffer buffer, Map<ConsumePartition, Entry> entries) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return false;
+        }
+        int length = buffer.getInt();
+        int crc = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return false;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        if ((int) crc32.getValue() != crc) {
+            return false;
+        }
+        ByteBuffer record = buffer.slice();
+        record.limit(length);
+        buffer.position(buffer.position() + length);
+
+        try {
+            byte type = record.get();
+            ConsumePartition consumePartition = new ConsumePartition(readString(record), readString(record), record.getShort());
+            if (PUT == type) {
+                int partitionGroup = record.getInt();
+                entries.put(consumePartition, new Entry(partitionGroup,
+                        record.getLong(), record.getLong(), record.getLong(), record.getLong()));
+            } else if (REMOVE == type) {
+                entries.remove(consumePartition);
+            } else {
+                return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ConcurrentMap<ConsumePartition, Position> toPositions(Map<ConsumePartition, Entry> entries) {
+        ConcurrentMap<ConsumePartition, Position> positions = new ConcurrentHashMap<>(entries.size());
+        entries.forEach((key, entry) -> {
+            ConsumePartition consumePartition = new ConsumePartition(key.getTopic(), key.getApp(), key.getPartition());
+            consumePartition.setPartitionGroup(entry.partitionGroup);
+            positions.put(consumePartition,
+                    new Position(entry.ackStartIndex, entry.ackCurIndex, entry.pullStartIndex, entry.pullCurIndex));
+        });
+        return positions;
+    }
+
+    /**
+     * 已经写入文件的消费位置，以及写入时内存中消费位置对象和它的修改次数
+     */
+    private static class Flushed {
+        private final Entry entry;
+        private final Position position;
+        private final long version;
+
+        private Flushed(Entry entry, Position position, long version) {
+            this.entry = entry;
+            this.position = position;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 写入文件的消费位置
+     */
+    private static class Entry {
+        private final int partitionGroup;
+        private final long ackStartIndex;
+        private final long ackCurIndex;
+        private final long pullStartIndex;
+        private final long pullCurIndex;
+
+        private Entry(int partitionGroup, Position position) {
+            this(partitionGroup, position.getAckStartIndex(), position.getAckCurIndex(),
+                    position.getPullStartIndex(), position.getPullCurIndex());
+        }
+
+        private Entry(int partitionGroup, long ackStartIndex, long ackCurIndex, long pullStartIndex, long pullCurIndex) {
+            this.partitionGroup = partitionGroup;
+            this.ackStartIndex = ackStartIndex;
+            this.ackCurIndex = ackCurIndex;
+            this.pullStartIndex = pullStartIndex;
+            this.pullCurIndex = pullCurIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry entry = (Entry) o;
+            return partitionGroup == entry.partitionGroup &&
+                    ackStartIndex == entry.ackStartIndex &&
+                    ackCurIndex == entry.ackCurIndex &&
+                    pullStartIndex == entry.pullStartIndex &&
+                    pullCurIndex == entry.pullCurIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ackCurIndex) * 31 + partitionGroup;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.joyqueue.broker.consumer.position.model;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 位置信息（消费序号/拉取序号）
@@ -32,6 +33,8 @@ public class Position implements Cloneable {
     // 结束拉取序号
     private volatile long pullCurIndex;
     private volatile boolean ack = false;
+    // 修改次数，增量刷盘时用来判断消费位置是否发生变化，应答和拉取可能在不同线程中同时修改
+    private AtomicLong version = new AtomicLong();
 
     public Position() {
 
@@ -50,6 +53,7 @@ public class Position implements Cloneable {
 
     public void setAckStartIndex(long ackStartIndex) {
         this.ackStartIndex = ackStartIndex;
+        version.incrementAndGet();
     }
 
     public long getAckCurIndex() {
@@ -58,6 +62,7 @@ public class Position implements Cloneable {
 
     public void setAckCurIndex(long ackCurIndex) {
         this.ackCurIndex = ackCurIndex;
+        version.incrementAndGet();
     }
 
     public long getPullStartIndex() {
@@ -67,16 +72,22 @@ public class Position implements Cloneable {
 
     public void setPullCurIndex(long pullCurIndex) {
         this.pullCurIndex = pullCurIndex;
+        version.incrementAndGet();
     }
 
     public void setPullStartIndex(long pullStartIndex) {
         this.pullStartIndex = pullStartIndex;
+        version.incrementAndGet();
     }
 
     public long getPullCurIndex() {
         return pullCurIndex;
     }
 
+    public long getVersion() {
+        return version.get();
+    }
+
     public boolean isAck() {
         return ack;
     }
@@ -102,7 +113,9 @@ public class Position implements Cloneable {
 
     @Override
     public Position clone() throws CloneNotSupportedException {
-        return (Position) super.clone();
+        Position position = (Position) super.clone();
+        position.version = new AtomicLong(version.get());
+        return position;
     }
 
     @Override
@@ -161,6 +161,26 @@ public class ElectionConfig {
         return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.ENABLE_SHARED_HEARTBEAT);
     }
 
+    public boolean enableBatchReplicate() {
+        return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.ENABLE_BATCH_REPLICATE);
+    }
+
+    public int getBatchReplicateMaxSize() {
+        return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.BATCH_REPLICATE_MAX_SIZE);
+    }
+
+    public int getBatchReplicateMaxInflightSize() {
+        return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.BATCH_REPLICATE_MAX_INFLIGHT_SIZE);
+    }
+
+    public int getReplicateWindowSize() {
+        return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.REPLICATE_WINDOW_SIZE);
+    }
+
+    public boolean enableZeroCopyReplicate() {
+        return PropertySupplier.getValue(propertySupplier, ElectionConfigKey.ENABLE_ZERO_COPY_REPLICATE);
+    }
+
     public void setListenPort(String port) {
         listenPort = Integer.valueOf(port);
     }
@@ -50,6 +50,16 @@ public enum ElectionConfigKey implements PropertyDef {
     CONNECTION_TIMEOUT("election.connection.timeout", 100 * 1, Type.INT),
     CONNECTION_RETRY_DELAY("election.connection.retryDelay", 1000 * 10, Type.INT),
     ENABLE_SHARED_HEARTBEAT("election.enable.shared.heartbeat", false, Type.BOOLEAN),
+    // 同一对broker之间的复制请求合并发送，旧版本的follower不支持合并复制命令，所有broker升级完成后才能开启
+    ENABLE_BATCH_REPLICATE("election.enable.batch.replicate", false, Type.BOOLEAN),
+    // 单个合并复制请求的最大字节数
+    BATCH_REPLICATE_MAX_SIZE("election.batch.replicate.max.size", 4 * 1024 * 1024, Type.INT),
+    // 每个broker复制通道上未响应请求的最大字节数
+    BATCH_REPLICATE_MAX_INFLIGHT_SIZE("election.batch.replicate.max.inflight.size", 32 * 1024 * 1024, Type.INT),
+    // 每个副本最多同时发送的复制请求数，为1时收到响应后才发送下一个请求
+    REPLICATE_WINDOW_SIZE("election.replicate.window.size", 4, Type.INT),
+    // 已经刷盘并提交的日志直接从文件发送（sendfile），不复制到内存中
+    ENABLE_ZERO_COPY_REPLICATE("election.enable.zero.copy.replicate", true, Type.BOOLEAN),
 
     ;
 
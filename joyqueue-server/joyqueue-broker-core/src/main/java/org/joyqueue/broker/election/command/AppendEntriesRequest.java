@@ -15,19 +15,24 @@
  */
 package org.joyqueue.broker.election.command;
 
+import io.netty.buffer.ByteBuf;
 import org.joyqueue.broker.election.TopicPartitionGroup;
 import org.joyqueue.network.command.CommandType;
+import org.joyqueue.network.transport.command.FileRegionPayload;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.command.JoyQueuePayload;
 import org.joyqueue.network.transport.command.Releasable;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * author: zhuduohui
  * email: zhuduohui@jd.com
  * date: 2018/8/15
  */
-public class AppendEntriesRequest extends JoyQueuePayload implements Releasable {
+public class AppendEntriesRequest extends JoyQueuePayload implements Releasable, FileRegionPayload {
     private TopicPartitionGroup topicPartitionGroup;
 
     private int term;
@@ -51,6 +56,12 @@ public class AppendEntriesRequest extends JoyQueuePayload implements Releasable
 
     private ByteBuffer entries;
 
+    // 日志在文件中的区域，发送时由文件直接写入网络，与entries二选一
+    private FileSegment entriesSegment;
+
+    // 解码时引用的网络缓冲区，处理完请求后释放
+    private ByteBuf entriesBuf;
+
     public TopicPartitionGroup getTopicPartitionGroup() {
         return topicPartitionGroup;
     }
@@ -147,11 +158,38 @@ public class AppendEntriesRequest extends JoyQueuePayload implements Releasable
         this.entries = entries;
     }
 
+    /**
+     * 直接引用网络缓冲区中的日志，调用{@link #release()}时释放
+     */
+    public void setEntries(ByteBuf entriesBuf) {
+        this.entriesBuf = entriesBuf;
+        this.entries = entriesBuf.nioBuffer();
+    }
+
+    public FileSegment getEntriesSegment() {
+        return entriesSegment;
+    }
+
+    public void setEntriesSegment(FileSegment entriesSegment) {
+        this.entriesSegment = entriesSegment;
+    }
+
     public int getEntriesLength() {
-        if (entries == null) {
-            return 0;
+        if (entries != null) {
+            return entries.remaining();
         }
-        return entries.remaining();
+        if (entriesSegment != null) {
+            return entriesSegment.getLength();
+        }
+        return 0;
+    }
+
+    @Override
+    public List<FileSegment> getFileSegments() {
+        if (entriesSegment == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(entriesSegment);
     }
 
     @Override
@@ -174,7 +212,7 @@ public class AppendEntriesRequest extends JoyQueuePayload implements Releasable
                 .append(", leftPosition:").append(leftPosition)
                 .append(", match:").append(match)
                 .append(", entriesTerm:").append(entriesTerm)
-                .append(", entryLength:").append(entries == null ? 0 : entries.remaining())
+                .append(", entryLength:").append(getEntriesLength())
                 .append("}").toString();
     }
 
@@ -183,6 +221,10 @@ public class AppendEntriesRequest extends JoyQueuePayload implements Releasable
         if (entries != null) {
             entries = null;
         }
+        if (entriesBuf != null) {
+            entriesBuf.release();
+            entriesBuf = null;
+        }
     }
 
     public static class Build {
@@ -250,5 +292,10 @@ public class AppendEntriesRequest extends JoyQueuePayload implements Releasable
             appendEntriesRequest.setEntries(entries);
             return this;
         }
+
+        public Build entriesSegment(FileSegment entriesSegment) {
+            appendEntriesRequest.setEntriesSegment(entriesSegment);
+            return this;
+        }
     }
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.election.command;
+
+import org.joyqueue.network.command.CommandType;
+import org.joyqueue.network.transport.command.FileRegionPayload;
+import org.joyqueue.network.transport.command.FileSegment;
+import org.joyqueue.network.transport.command.JoyQueuePayload;
+import org.joyqueue.network.transport.command.Releasable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 同一对broker之间多个分区组的复制请求，合并成一个请求发送
+ * 响应中的结果与请求中的顺序一一对应
+ */
+public class BatchAppendEntriesRequest extends JoyQueuePayload implements Releasable, FileRegionPayload {
+    private List<AppendEntriesRequest> requests;
+
+    public BatchAppendEntriesRequest() {
+    }
+
+    public BatchAppendEntriesRequest(List<AppendEntriesRequest> requests) {
+        this.requests = requests;
+    }
+
+    public List<AppendEntriesRequest> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<AppendEntriesRequest> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public List<FileSegment> getFileSegments() {
+        List<FileSegment> segments = new ArrayList<>();
+        if (requests != null) {
+            for (AppendEntriesRequest request : requests) {
+                segments.addAll(request.getFileSegments());
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public int type() {
+        return CommandType.RAFT_BATCH_APPEND_ENTRIES_REQUEST;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("batchAppendEntriesRequest:{")
+                .append("size:").append(requests == null ? 0 : requests.size())
+                .append("}").toString();
+    }
+
+    @Override
+    public void release() {
+        if (requests == null) {
+            return;
+        }
+        for (AppendEntriesRequest request : requests) {
+            request.release();
+        }
+    }
+}
@@ -83,29 +83,38 @@ public class AppendEntriesRequestHandler implements CommandHandler, Type {
             logger.debug("Receive append entries request {} from {}", request, transport.remoteAddress());
         }
 
+        return new Command(new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_APPEND_ENTRIES_RESPONSE),
+                handleRequest(request));
+    }
+
+    /**
+     * 处理单个分区组的复制请求，合并复制请求中的每个分区组也通过这里处理，
+     * 处理完成后释放请求引用的网络缓冲区
+     * @param request 复制请求
+     * @return 复制响应，失败时返回success为false的响应
+     */
+    protected AppendEntriesResponse handleRequest(AppendEntriesRequest request) {
         try {
             LeaderElection leaderElection = electionManager.getLeaderElection(request.getTopic(),
                     request.getPartitionGroup());
             if (leaderElection == null) {
                 logger.warn("Handle append entries request of topic {} partition group {} election is null",
                         request.getTopic(), request.getPartitionGroup());
-                return new Command(new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_APPEND_ENTRIES_RESPONSE),
-                        new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build());
+                return new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build();
             }
 
             Command response =  leaderElection.handleAppendEntriesRequest(request);
-            if (null == response) {
-                response = new Command(new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_APPEND_ENTRIES_RESPONSE),
-                        new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build());
+            if (null == response || !(response.getPayload() instanceof AppendEntriesResponse)) {
+                return new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build();
             }
-            return response;
+            return (AppendEntriesResponse) response.getPayload();
         } catch (Exception e) {
             logger.warn("Handle append entries request of topic {} partition group {} fail",
                     request.getTopic(), request.getPartitionGroup(), e);
-            return new Command(new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_APPEND_ENTRIES_RESPONSE),
-                               new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build());
+            return new AppendEntriesResponse.Build().success(false).nextPosition(-1L).build();
+        } finally {
+            request.release();
         }
-
     }
 
     @Override
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.election.handler;
+
+import org.joyqueue.broker.BrokerContext;
+import org.joyqueue.broker.election.ElectionService;
+import org.joyqueue.broker.election.command.AppendEntriesRequest;
+import org.joyqueue.broker.election.command.AppendEntriesResponse;
+import org.joyqueue.broker.election.command.BatchAppendEntriesRequest;
+import org.joyqueue.broker.election.command.BatchAppendEntriesResponse;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.network.command.CommandType;
+import org.joyqueue.network.transport.Transport;
+import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.Direction;
+import org.joyqueue.network.transport.exception.TransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 处理合并的复制请求，按顺序逐个处理每个分区组的请求，
+ * 单个分区组失败不影响其他分区组，响应顺序与请求一致
+ */
+public class BatchAppendEntriesRequestHandler extends AppendEntriesRequestHandler {
+    private static Logger logger = LoggerFactory.getLogger(BatchAppendEntriesRequestHandler.class);
+
+    public BatchAppendEntriesRequestHandler(BrokerContext brokerContext) {
+        super(brokerContext);
+    }
+
+    public BatchAppendEntriesRequestHandler(ElectionService electionService) {
+        super(electionService);
+    }
+
+    @Override
+    public Command handle(Transport transport, Command command) throws TransportException {
+        if (!(command.getPayload() instanceof BatchAppendEntriesRequest)) {
+            throw new IllegalArgumentException();
+        }
+
+        BatchAppendEntriesRequest request = (BatchAppendEntriesRequest) command.getPayload();
+        if (request.getRequests() == null) {
+            logger.warn("Receive batch append entries request from {}, request is null", transport.remoteAddress());
+            throw new TransportException("Batch append entries request payload is null",
+                    JoyQueueCode.CT_MESSAGE_BODY_NULL.getCode());
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Receive batch append entries request {} from {}", request, transport.remoteAddress());
+        }
+
+        List<AppendEntriesResponse> responses = new ArrayList<>(request.getRequests().size());
+        for (AppendEntriesRequest appendEntriesRequest : request.getRequests()) {
+            responses.add(handleRequest(appendEntriesRequest));
+        }
+        return new Command(new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_BATCH_APPEND_ENTRIES_RESPONSE),
+                new BatchAppendEntriesResponse(responses));
+    }
+
+    @Override
+    public int type() {
+        return CommandType.RAFT_BATCH_APPEND_ENTRIES_REQUEST;
+    }
+}
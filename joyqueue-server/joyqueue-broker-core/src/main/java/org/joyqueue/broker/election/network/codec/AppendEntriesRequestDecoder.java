@@ -53,18 +53,12 @@ public class AppendEntriesRequestDecoder implements PayloadDecoder<JoyQueueHeade
         request.setMatch(buffer.readBoolean());
 
         int length = buffer.readInt();
-        byte[] bytes = new byte[length];
-        buffer.readBytes(bytes, 0, length);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        byteBuffer.rewind();
-
-        /*
-        int length = buffer.readInt();
-        ByteBuffer byteBuffer = buffer.nioBuffer(buffer.readerIndex(), length);
-        buffer.readerIndex(buffer.readerIndex() + length);
-        */
-
-        request.setEntries(byteBuffer);
+        if (length > 0) {
+            // 直接引用网络缓冲区中的日志，不复制，处理完请求后调用release释放
+            request.setEntries(buffer.readRetainedSlice(length));
+        } else {
+            request.setEntries(ByteBuffer.allocate(0));
+        }
         return request;
 
     }
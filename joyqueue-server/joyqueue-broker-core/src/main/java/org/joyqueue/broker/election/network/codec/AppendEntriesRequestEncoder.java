@@ -19,6 +19,7 @@ import org.joyqueue.broker.election.command.AppendEntriesRequest;
 import org.joyqueue.network.command.CommandType;
 import org.joyqueue.network.serializer.Serializer;
 import org.joyqueue.network.transport.codec.PayloadEncoder;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.command.Type;
 import io.netty.buffer.ByteBuf;
 
@@ -46,6 +47,14 @@ public class AppendEntriesRequestEncoder implements PayloadEncoder<AppendEntries
 
         buffer.writeBoolean(payload.isMatch());
 
+        FileSegment entriesSegment = payload.getEntriesSegment();
+        if (entriesSegment != null) {
+            // 日志由文件直接写入网络，这里只登记在命令中的位置
+            buffer.writeInt(entriesSegment.getLength());
+            entriesSegment.setOffset(buffer.writerIndex());
+            return;
+        }
+
         ByteBuffer entries = payload.getEntries();
         if (entries == null) {
             buffer.writeInt(0);
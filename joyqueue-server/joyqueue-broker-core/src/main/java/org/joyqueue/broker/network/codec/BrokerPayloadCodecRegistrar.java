@@ -19,6 +19,10 @@ import org.joyqueue.broker.election.network.codec.AppendEntriesRequestDecoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesRequestEncoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesResponseDecoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesResponseEncoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesRequestDecoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesRequestEncoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesResponseDecoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesResponseEncoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosRequestDecoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosRequestEncoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosResponseDecoder;
@@ -86,6 +90,10 @@ public class BrokerPayloadCodecRegistrar {
         payloadCodecFactory.register(new AppendEntriesRequestEncoder());
         payloadCodecFactory.register(new AppendEntriesResponseDecoder());
         payloadCodecFactory.register(new AppendEntriesResponseEncoder());
+        payloadCodecFactory.register(new BatchAppendEntriesRequestDecoder());
+        payloadCodecFactory.register(new BatchAppendEntriesRequestEncoder());
+        payloadCodecFactory.register(new BatchAppendEntriesResponseDecoder());
+        payloadCodecFactory.register(new BatchAppendEntriesResponseEncoder());
 
         // index manage command codec
         payloadCodecFactory.register(new IndexQueryRequestDecoder());
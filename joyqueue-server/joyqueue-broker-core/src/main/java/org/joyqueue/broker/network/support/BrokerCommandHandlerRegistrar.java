@@ -17,6 +17,7 @@ package org.joyqueue.broker.network.support;
 
 import org.joyqueue.broker.BrokerContext;
 import org.joyqueue.broker.election.handler.AppendEntriesRequestHandler;
+import org.joyqueue.broker.election.handler.BatchAppendEntriesRequestHandler;
 import org.joyqueue.broker.election.handler.ReplicateConsumePosRequestHandler;
 import org.joyqueue.broker.election.handler.TimeoutNowRequestHandler;
 import org.joyqueue.broker.election.handler.VoteRequestHandler;
@@ -54,6 +55,7 @@ public class BrokerCommandHandlerRegistrar {
         // raft related command
         commandHandlerFactory.register(CommandType.RAFT_VOTE_REQUEST, new VoteRequestHandler(brokerContext));
         commandHandlerFactory.register(CommandType.RAFT_APPEND_ENTRIES_REQUEST, new AppendEntriesRequestHandler(brokerContext));
+        commandHandlerFactory.register(CommandType.RAFT_BATCH_APPEND_ENTRIES_REQUEST, new BatchAppendEntriesRequestHandler(brokerContext));
         commandHandlerFactory.register(CommandType.RAFT_TIMEOUT_NOW_REQUEST, new TimeoutNowRequestHandler(brokerContext));
         commandHandlerFactory.register(CommandType.REPLICATE_CONSUME_POS_REQUEST, new ReplicateConsumePosRequestHandler(brokerContext));
 
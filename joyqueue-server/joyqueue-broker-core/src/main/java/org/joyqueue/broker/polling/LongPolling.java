@@ -30,6 +30,8 @@ public class LongPolling {
     private LongPollingCallback longPollingCallback;
     // 过期时间
     private long expire;
+    // 拉取消息前主题的唤醒序号，小于0表示未知
+    private long wakeupSequence = -1L;
 
     public LongPolling(Consumer consumer, int count, int ackTimeout, long longPollingTimeout, LongPollingCallback longPollingCallback) {
         this.consumer = consumer;
@@ -84,6 +86,14 @@ public class LongPolling {
         return expire;
     }
 
+    public long getWakeupSequence() {
+        return wakeupSequence;
+    }
+
+    public void setWakeupSequence(long wakeupSequence) {
+        this.wakeupSequence = wakeupSequence;
+    }
+
     @Override
     public String toString() {
         return "LongPolling{" +
@@ -93,6 +103,7 @@ public class LongPolling {
                 ", longPollingTimeout=" + longPollingTimeout +
                 ", longPollingCallback=" + longPollingCallback +
                 ", expire=" + expire +
+                ", wakeupSequence=" + wakeupSequence +
                 '}';
     }
 }
@@ -19,12 +19,16 @@ import com.google.common.base.Preconditions;
 import com.jd.laf.extension.Converts;
 import org.joyqueue.broker.cluster.ClusterManager;
 import org.joyqueue.broker.consumer.Consume;
+import org.joyqueue.broker.consumer.model.ConsumePartition;
 import org.joyqueue.broker.consumer.model.PullResult;
 import org.joyqueue.broker.monitor.SessionManager;
 import org.joyqueue.domain.TopicName;
 import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.network.session.Consumer;
 import org.joyqueue.network.session.Joint;
+import org.joyqueue.store.StoreService;
+import org.joyqueue.store.event.StoreCommitEvent;
+import org.joyqueue.toolkit.concurrent.EventListener;
 import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
 import org.joyqueue.toolkit.config.Property;
 import org.joyqueue.toolkit.config.PropertySupplier;
@@ -36,30 +40,54 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 长轮询管理
  * <p>
+ * 长轮询请求按主题挂起，主题的分区组提交新消息或者消费者应答释放分区时，直接唤醒该主题上挂起的请求。
+ * 守护线程每100毫秒只检查过期和消费者是否存在，每隔{@link #LONG_POLLING_CHECK_INTERVAL}再检查一次空闲分区，
+ * 兜底处理占用超时释放的分区等没有事件通知的情况。
+ * <p>
+ * 每次唤醒主题时递增主题的唤醒序号，拉取消息前记录唤醒序号，请求入队后序号发生变化，
+ * 说明拉取和入队之间有新消息提交，立即唤醒，避免错过这次唤醒一直等到超时。
+ * <p>
  * Created by chengzhiliang on 2018/8/16.
  */
 public class LongPollingManager extends Service {
     public static final String LONG_POLLING_QUEUE_SIZE = "broker.consume.long_polling_queue_size";
+    // 拉取消息的线程数量
+    public static final String LONG_POLLING_THREADS = "broker.consume.long_polling_threads";
+    // 兜底检查空闲分区的时间间隔，毫秒
+    public static final String LONG_POLLING_CHECK_INTERVAL = "broker.consume.long_polling_check_interval";
     //TODO 设置一个合理的值
     public static final int MAX_LONG_POLLING_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_LONG_POLLING_THREADS = 4;
+    public static final int DEFAULT_LONG_POLLING_CHECK_INTERVAL = 1000;
 
     protected static Logger logger = LoggerFactory.getLogger(LongPollingManager.class);
-    // 长轮询请求queue
-    protected Queue<LongPolling> longPollingQueue = new LinkedBlockingQueue<>();
+    // 按主题分组的长轮询请求
+    protected ConcurrentMap<String, Queue<LongPolling>> longPollingQueues = new ConcurrentHashMap<>();
+    // 挂起的长轮询请求数量
+    protected AtomicInteger waitingCount = new AtomicInteger(0);
+    // 已经提交了唤醒任务的主题，合并同一主题的多次唤醒
+    protected Set<String> wakingTopics = ConcurrentHashMap.newKeySet();
+    // 主题的唤醒序号，只记录有长轮询请求的主题
+    protected ConcurrentMap<String, AtomicLong> wakeupSequences = new ConcurrentHashMap<>();
     // 消费者长轮询数量
     protected ConcurrentMap<Joint, AtomicInteger> counter = new ConcurrentHashMap<>();
     // 消息获取。
     protected Consume consumeManager;
+    // 存储服务，为null时只能通过守护线程检查
+    protected StoreService storeService;
     // 会话管理器
     protected SessionManager sessionManager;
     // 异步处理。
@@ -70,10 +98,26 @@ public class LongPollingManager extends Service {
     protected ClusterManager clusterManager;
     // 配置管理
     protected PropertySupplier propertySupplier;
+    // 兜底检查空闲分区的时间间隔
+    protected long checkInterval;
+    // 上次检查空闲分区的时间
+    protected long lastCheckTime;
+    // 新消息提交监听器
+    protected final EventListener<StoreCommitEvent> commitListener = event -> wakeup(event.getTopic());
+    // 分区释放监听器
+    protected final EventListener<ConsumePartition> releaseListener = event -> wakeup(event.getTopic());
+
+    public LongPollingManager(SessionManager sessionManager,
+                              ClusterManager clusterManager,
+                              Consume consumeManager,
+                              PropertySupplier propertySupplier) {
+        this(sessionManager, clusterManager, consumeManager, null, propertySupplier);
+    }
 
     public LongPollingManager(SessionManager sessionManager,
                               ClusterManager clusterManager,
                               Consume consumeManager,
+                              StoreService storeService,
                               PropertySupplier propertySupplier) {
         Preconditions.checkArgument(sessionManager != null, "sessionManager can not be null");
         Preconditions.checkArgument(clusterManager != null, "clusterManager can not be null");
@@ -83,14 +127,21 @@ public class LongPollingManager extends Service {
         this.sessionManager = sessionManager;
         this.clusterManager = clusterManager;
         this.consumeManager = consumeManager;
+        this.storeService = storeService;
         this.propertySupplier = propertySupplier;
-        this.executorService = Executors.newSingleThreadExecutor(new NamedThreadFactory("LongPolling"));
+        this.checkInterval = getIntProperty(LONG_POLLING_CHECK_INTERVAL, DEFAULT_LONG_POLLING_CHECK_INTERVAL);
+        this.executorService = Executors.newFixedThreadPool(getIntProperty(LONG_POLLING_THREADS, DEFAULT_LONG_POLLING_THREADS),
+                new NamedThreadFactory("LongPolling"));
     }
 
     @Override
     protected void doStart() throws Exception {
         super.doStart();
         counter.clear();
+        consumeManager.addReleaseListener(releaseListener);
+        if (storeService != null) {
+            storeService.addCommitListener(commitListener);
+        }
         // 守护进程，每100毫秒执行一次
         guardThread = new Thread(new ServiceThread(this, 100) {
             @Override
@@ -112,6 +163,10 @@ public class LongPollingManager extends Service {
     @Override
     protected void doStop() {
         super.doStop();
+        consumeManager.removeReleaseListener(releaseListener);
+        if (storeService != null) {
+            storeService.removeCommitListener(commitListener);
+        }
         if (guardThread != null) {
             guardThread.interrupt();
         }
@@ -137,6 +192,24 @@ public class LongPollingManager extends Service {
         return count;
     }
 
+    /**
+     * 获取主题的长轮询队列
+     *
+     * @param topic 主题
+     * @return 长轮询队列
+     */
+    protected Queue<LongPolling> getQueue(String topic) {
+        Queue<LongPolling> queue = longPollingQueues.get(topic);
+        if (queue == null) {
+            queue = new ConcurrentLinkedQueue<>();
+            Queue<LongPolling> old = longPollingQueues.putIfAbsent(topic, queue);
+            if (old != null) {
+                queue = old;
+            }
+        }
+        return queue;
+    }
+
 
     /**
      * 添加长轮询请求
@@ -144,7 +217,7 @@ public class LongPollingManager extends Service {
      * @return 成功标示
      */
     public boolean suspend(LongPolling longPolling) {
-        logger.debug("longPolling info:[{}], longPollingQueueSize:[{}]", longPolling, longPollingQueue.size());
+        logger.debug("longPolling info:[{}], longPollingQueueSize:[{}]", longPolling, waitingCount.get());
 
         Consumer consumer = longPolling.getConsumer();
         if (consumer == null || longPolling.getLongPollingTimeout() == 0 || !isStarted()) {
@@ -159,12 +232,12 @@ public class LongPollingManager extends Service {
         }
 
         // 超过容量
-        if (longPollingQueue.size() >= getLongPollingQueueSize()) {
+        if (waitingCount.get() >= getLongPollingQueueSize()) {
             return false;
         }
 
         // 入队
-        if (longPollingQueue.offer(longPolling)) {
+        if (enqueue(longPolling)) {
             // 增加消费长轮询计数器
             count.incrementAndGet();
             return true;
@@ -174,29 +247,122 @@ public class LongPollingManager extends Service {
 
     // 获取长轮训队列大小
     private int getLongPollingQueueSize() {
-        Property property = propertySupplier.getProperty(LONG_POLLING_QUEUE_SIZE);
+        return getIntProperty(LONG_POLLING_QUEUE_SIZE, MAX_LONG_POLLING_QUEUE_SIZE);
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        Property property = propertySupplier.getProperty(key);
         if (property == null) {
-            return MAX_LONG_POLLING_QUEUE_SIZE;
+            return defaultValue;
         }
-        return Converts.getInteger(property.getValue());
+        return Converts.getInteger(property.getValue(), defaultValue);
     }
 
     /**
-     * 处理长轮询请求，检查是否过期，是否有数据了
+     * 获取主题当前的唤醒序号，拉取消息前调用，并设置到{@link LongPolling#setWakeupSequence(long)}
+     *
+     * @param topic 主题
+     * @return 唤醒序号
+     */
+    public long getWakeupSequence(String topic) {
+        return wakeupSequences.computeIfAbsent(topic, k -> new AtomicLong()).get();
+    }
+
+    /**
+     * 长轮询请求入队，入队前唤醒序号已经变化时立即唤醒
+     */
+    protected boolean enqueue(LongPolling longPolling) {
+        String topic = longPolling.getConsumer().getTopic();
+        if (getQueue(topic).offer(longPolling)) {
+            waitingCount.incrementAndGet();
+            if (longPolling.getWakeupSequence() >= 0 && getWakeupSequence(topic) != longPolling.getWakeupSequence()) {
+                dispatch(topic);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 唤醒主题上挂起的长轮询请求
+     *
+     * @param topic 主题
+     */
+    protected void wakeup(String topic) {
+        AtomicLong sequence = wakeupSequences.get(topic);
+        if (sequence != null) {
+            sequence.incrementAndGet();
+        }
+        dispatch(topic);
+    }
+
+    /**
+     * 提交主题的唤醒任务，同一主题同时只有一个唤醒任务
+     *
+     * @param topic 主题
+     */
+    protected void dispatch(String topic) {
+        Queue<LongPolling> queue = longPollingQueues.get(topic);
+        if (queue == null || queue.isEmpty() || !isStarted()) {
+            return;
+        }
+        if (!wakingTopics.add(topic)) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                wakingTopics.remove(topic);
+                try {
+                    processQueue(queue, true);
+                } catch (Throwable th) {
+                    logger.error("wakeup long polling error, topic: {}", topic, th);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            wakingTopics.remove(topic);
+        }
+    }
+
+    /**
+     * 处理长轮询请求，检查是否过期，定期兜底检查是否有数据了
      */
     protected void processHoldRequest() throws Exception {
-        int size = longPollingQueue.size();
+        long currentTime = SystemClock.now();
+        boolean checkFree = currentTime - lastCheckTime >= checkInterval;
+        if (checkFree) {
+            lastCheckTime = currentTime;
+        }
+        for (Queue<LongPolling> queue : longPollingQueues.values()) {
+            if (!isStarted()) {
+                return;
+            }
+            processQueue(queue, checkFree);
+        }
+    }
+
+    /**
+     * 处理一个主题的长轮询请求
+     *
+     * @param queue     长轮询队列
+     * @param checkFree 是否检查空闲分区
+     */
+    protected void processQueue(Queue<LongPolling> queue, boolean checkFree) throws Exception {
+        int size = queue.size();
         for (int i = 0; i < size; i++) {
             if (!isStarted()) {
                 return;
             }
             long currentTime = SystemClock.now();
-            LongPolling longPolling = longPollingQueue.poll();
+            LongPolling longPolling = queue.poll();
+            if (longPolling == null) {
+                return;
+            }
             Consumer consumer = longPolling.getConsumer();
             AtomicInteger count = counter.get(consumer.getJoint());
             // 得到当前消费者
             consumer = sessionManager.getConsumerById(consumer.getId());
             if (consumer == null) {
+                waitingCount.decrementAndGet();
                 // 消费者不存在了，则抛弃该长轮询
                 if (count != null) {
                     // 减少计数器
@@ -204,18 +370,20 @@ public class LongPollingManager extends Service {
                 }
                 longPolling.getLongPollingCallback().onExpire(longPolling.getConsumer());
             } else if (longPolling.getExpire() <= currentTime) {
+                waitingCount.decrementAndGet();
                 if (count != null) {
                     // 减少计数器
                     count.decrementAndGet();
                 }
                 // 长轮询过期了
                 longPolling.getLongPollingCallback().onExpire(consumer);
-            } else if (consumeManager.hasFreePartition(consumer)) {
+            } else if (checkFree && consumeManager.hasFreePartition(consumer)) {
+                waitingCount.decrementAndGet();
                 // 有空闲队列
                 executorService.execute(new PullMessageTask(longPolling));
             } else {
                 // 没有数据，则继续等待
-                longPollingQueue.offer(longPolling);
+                queue.offer(longPolling);
             }
         }
 
@@ -240,6 +408,7 @@ public class LongPollingManager extends Service {
             AtomicInteger count = counter.get(consumer.getJoint());
             PullResult pullResult = null;
             try {
+                longPolling.setWakeupSequence(getWakeupSequence(consumer.getTopic()));
                 // 取数据
                 pullResult = consumeManager.getMessage(consumer, longPolling.getCount(), longPolling.getAckTimeout());
                 if (pullResult != null && pullResult.getBuffers().size() > 0) {
@@ -249,8 +418,8 @@ public class LongPollingManager extends Service {
                         count.decrementAndGet();
                     }
                 } else if (isStarted()) {
-                    // 重入队列，等待再次轮询
-                    longPollingQueue.offer(longPolling);
+                    // 重入队列，等待再次唤醒
+                    enqueue(longPolling);
                 }
 
                 if (!pullResult.getCode().equals(JoyQueueCode.SUCCESS)) {
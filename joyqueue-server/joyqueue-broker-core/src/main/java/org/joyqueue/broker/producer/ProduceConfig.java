@@ -16,13 +16,16 @@
 package org.joyqueue.broker.producer;
 
 import org.joyqueue.broker.config.BrokerConfig;
+import org.joyqueue.toolkit.config.Property;
 import org.joyqueue.toolkit.config.PropertySupplier;
 
 /**
  * Created by chengzhiliang on 2018/10/30.
  */
 public class ProduceConfig {
+    private static final String SCHEDULE_PATH = "/schedule";
     private PropertySupplier propertySupplier;
+    private String schedulePath;
     private BrokerConfig brokerConfig;
 
     public ProduceConfig(PropertySupplier propertySupplier) {
@@ -81,6 +84,46 @@ public class ProduceConfig {
         return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.PRODUCE_BODY_LENGTH);
     }
 
+    public boolean isRawMessageEnable() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.PRODUCE_RAW_MESSAGE_ENABLE);
+    }
+
+    public boolean isScheduleEnable() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.SCHEDULE_ENABLE);
+    }
+
+    public int getScheduleTick() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.SCHEDULE_TICK);
+    }
+
+    public int getScheduleSegmentSize() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.SCHEDULE_SEGMENT_SIZE);
+    }
+
+    public int getScheduleDeliverBatchSize() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.SCHEDULE_DELIVER_BATCH_SIZE);
+    }
+
+    public int getScheduleRetryInterval() {
+        return PropertySupplier.getValue(propertySupplier, ProducerConfigKey.SCHEDULE_RETRY_INTERVAL);
+    }
+
+    public String getSchedulePath() {
+        if (schedulePath == null || schedulePath.isEmpty()) {
+            synchronized (this) {
+                if (schedulePath == null) {
+                    String prefix = "";
+                    if (propertySupplier != null) {
+                        Property property = propertySupplier.getProperty(Property.APPLICATION_DATA_PATH);
+                        prefix = property == null ? prefix : property.getString();
+                    }
+                    schedulePath = prefix + SCHEDULE_PATH;
+                }
+            }
+        }
+        return schedulePath;
+    }
+
     public boolean getLogDetail(String app) {
         return brokerConfig.getLogDetail(app);
     }
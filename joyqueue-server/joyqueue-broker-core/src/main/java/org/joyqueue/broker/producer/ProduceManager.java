@@ -23,6 +23,7 @@ import org.joyqueue.broker.BrokerContextAware;
 import org.joyqueue.broker.buffer.Serializer;
 import org.joyqueue.broker.cluster.ClusterManager;
 import org.joyqueue.broker.monitor.BrokerMonitor;
+import org.joyqueue.broker.producer.schedule.ScheduledMessageManager;
 import org.joyqueue.broker.producer.transaction.TransactionManager;
 import org.joyqueue.domain.PartitionGroup;
 import org.joyqueue.domain.QosLevel;
@@ -49,8 +50,10 @@ import org.joyqueue.toolkit.time.SystemClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +79,8 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
 
     private TransactionManager transactionManager;
 
+    private ScheduledMessageManager scheduledMessageManager;
+
     private ClusterManager clusterManager;
 
     private StoreService store;
@@ -103,6 +108,9 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
     protected void doStart() throws Exception {
         super.doStart();
         transactionManager.start();
+        if (scheduledMessageManager != null) {
+            scheduledMessageManager.start();
+        }
         if(null != metricThread) {
             metricThread.start();
         }
@@ -137,6 +145,9 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
             clusterManager.start();
         }
         transactionManager = new TransactionManager(config, store, clusterManager, brokerMonitor);
+        if (config.isScheduleEnable()) {
+            scheduledMessageManager = new ScheduledMessageManager(new File(config.getSchedulePath()), config, this, clusterManager);
+        }
 
         if(config.getPrintMetricIntervalMs() > 0) {
             metrics = new Metric("input", 1, new String [] {"callback", "async"},new String[]{"tps"}, new String [] {"traffic"});
@@ -152,6 +163,7 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
     @Override
     protected void doStop() {
         super.doStop();
+        Close.close(scheduledMessageManager);
         Close.close(transactionManager);
         if(null != metricThread) {
             metricThread.stop();
@@ -188,7 +200,14 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
         if (StringUtils.isNotEmpty(txId)) {
             return writeTxMessage(producer, msgs, txId, endTime);
         } else {
-            return writeMessages(producer, msgs, qosLevel, endTime);
+            // 定时消息写入定时日志，到期后再写入存储
+            List<BrokerMessage> writeMsgs = scheduleMessages(producer, msgs, qosLevel);
+            if (writeMsgs.isEmpty()) {
+                PutResult putResult = new PutResult();
+                putResult.addWriteResult(msgs.get(0).getPartition(), new WriteResult(JoyQueueCode.SUCCESS, null));
+                return putResult;
+            }
+            return writeMessages(producer, writeMsgs, qosLevel, endTime);
         }
     }
 
@@ -220,10 +239,27 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
         if (StringUtils.isNotEmpty(txId)) {
             writeTxMessageAsync(producer, msgs, txId, timeout, eventListener);
         } else {
-            writeMessagesAsync(producer, msgs, qosLevel, endTime, eventListener);
+            List<BrokerMessage> writeMsgs = scheduleMessages(producer, msgs, qosLevel);
+            if (writeMsgs.isEmpty()) {
+                eventListener.onEvent(new WriteResult(JoyQueueCode.SUCCESS, null));
+            } else {
+                writeMessagesAsync(producer, writeMsgs, qosLevel, endTime, eventListener);
+            }
         }
     }
 
+    /**
+     * 定时消息写入定时日志，返回需要直接写入存储的消息。
+     * 定时消息和普通消息混在同一批中时拒绝整批，避免应答中的序号错位，也避免部分写入后客户端重试导致定时消息重复。
+     */
+    private List<BrokerMessage> scheduleMessages(Producer producer, List<BrokerMessage> msgs, QosLevel qosLevel) throws JoyQueueException {
+        if (scheduledMessageManager == null || !scheduledMessageManager.isScheduled(msgs)) {
+            return msgs;
+        }
+        scheduledMessageManager.schedule(producer, msgs, qosLevel);
+        return Collections.emptyList();
+    }
+
     /**
      * 写入事务消息
      *
@@ -530,6 +566,13 @@ public class ProduceManager extends Service implements Produce, BrokerContextAwa
      * @throws JoyQueueException
      */
     private ByteBuffer convertBrokerMessage2RByteBuffer(BrokerMessage brokerMessage) throws JoyQueueException {
+        // 协议解码时保留了原始消息字节，直接修正后写入，不再重新序列化
+        if (config.isRawMessageEnable()) {
+            ByteBuffer raw = Serializer.writeRaw(brokerMessage);
+            if (raw != null) {
+                return raw;
+            }
+        }
         int msgSize = Serializer.sizeOf(brokerMessage);
         // todo bufferPool有问题，暂时直接创建
         ByteBuffer allocate = ByteBuffer.allocate(msgSize);
@@ -35,6 +35,20 @@ public enum ProducerConfigKey implements PropertyDef {
     // body长度
     PRODUCE_BODY_LENGTH("produce.body.length", 1024 * 1024 * 3, PropertyDef.Type.INT),
 
+    // 是否直接写入协议解码时保留的原始消息字节
+    PRODUCE_RAW_MESSAGE_ENABLE("produce.raw.message.enable", true, PropertyDef.Type.BOOLEAN),
+
+    // 是否开启定时投递，定时日志只保存在主节点本地，不复制
+    SCHEDULE_ENABLE("produce.schedule.enable", false, PropertyDef.Type.BOOLEAN),
+    // 定时投递时间轮的刻度(ms)，同一刻度内的消息一起投递
+    SCHEDULE_TICK("produce.schedule.tick", 1000, PropertyDef.Type.INT),
+    // 定时消息日志段文件大小
+    SCHEDULE_SEGMENT_SIZE("produce.schedule.segment.size", 1024 * 1024 * 64, PropertyDef.Type.INT),
+    // 到期投递时每批写入的消息数量
+    SCHEDULE_DELIVER_BATCH_SIZE("produce.schedule.deliver.batch.size", 100, PropertyDef.Type.INT),
+    // 到期投递失败后的重试间隔(ms)
+    SCHEDULE_RETRY_INTERVAL("produce.schedule.retry.interval", 1000 * 5, PropertyDef.Type.INT),
+
     ;
 
 
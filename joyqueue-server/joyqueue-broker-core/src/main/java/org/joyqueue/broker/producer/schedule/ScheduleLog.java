@@ -0,0 +1,372 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.producer.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 定时消息日志，保存还没有到投递时间的消息。由多个段文件组成，文件名是段的起始位置。
+ * <p>
+ * 每条记录：int length | int crc32 | byte type | 记录内容，length和crc32都是对type和记录内容计算的，记录不跨越段文件。
+ * 消息记录：long slot | long prevPosition | string topic | string app | 序列化后的消息。
+ * 同一时间槽的消息通过prevPosition串成链表，内存中只需要保存每个时间槽最后一条消息的位置。
+ * 投递完成记录：long slot | long lastPosition，表示这个时间槽以lastPosition结尾的消息链表已经投递。
+ * <p>
+ * 恢复时按顺序扫描所有段文件，遇到不完整或者校验失败的记录时截断段文件。
+ * 段文件只能从最早的开始删除，保证删除投递完成记录时，对应的消息记录已经被删除。
+ * <p>
+ * 非线程安全，由调用方加锁。
+ */
+class ScheduleLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleLog.class);
+    // 链表结束
+    static final long NONE = -1L;
+    private static final byte MESSAGE = 1;
+    private static final byte DONE = 2;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    // 消息记录中读取链表指针需要的长度
+    private static final int LINK_SIZE = RECORD_HEADER_SIZE + Byte.BYTES + Long.BYTES + Long.BYTES;
+    private static final String SEGMENT_NAME_FORMAT = "%020d";
+
+    private final File directory;
+    private final int segmentSize;
+    private final NavigableMap<Long /* 段起始位置 */, Segment> segments = new TreeMap<>();
+
+    ScheduleLog(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 扫描所有段文件，按写入顺序回调其中的记录，截断不完整的记录，准备写入
+     */
+    void recover(RecoverListener listener) throws IOException {
+        close();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException(String.format("Create directory %s failed!", directory.getAbsolutePath()));
+        }
+        File[] files = directory.listFiles((dir, name) -> name.matches("\\d{20}"));
+        if (null != files) {
+            for (File file : files) {
+                long start = Long.parseLong(file.getName());
+                segments.put(start, new Segment(start, file));
+            }
+        }
+        for (Segment segment : segments.values()) {
+            long validSize = scan(segment, listener);
+            if (validSize < segment.channel.size()) {
+                logger.warn("Truncate schedule log {} from {} to {}.", segment.file.getAbsolutePath(), segment.channel.size(), validSize);
+                segment.channel.truncate(validSize);
+            }
+            segment.size = validSize;
+        }
+    }
+
+    /**
+     * 追加一条消息记录
+     *
+     * @param slot         时间槽
+     * @param prevPosition 同一时间槽上一条消息的位置，没有时为{@link #NONE}
+     * @param topic        主题
+     * @param app          应用
+     * @param message      序列化后的消息
+     * @return 记录的位置
+     */
+    long appendMessage(long slot, long prevPosition, String topic, String app, ByteBuffer message) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] appBytes = app.getBytes(StandardCharsets.UTF_8);
+        int length = Byte.BYTES + Long.BYTES + Long.BYTES + Short.BYTES + topicBytes.length + Short.BYTES + appBytes.length + message.remaining();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.position(RECORD_HEADER_SIZE);
+        record.put(MESSAGE);
+        record.putLong(slot);
+        record.putLong(prevPosition);
+        record.putShort((short) topicBytes.length);
+        record.put(topicBytes);
+        record.putShort((short) appBytes.length);
+        record.put(appBytes);
+        record.put(message.duplicate());
+        Segment segment = append(record);
+        segment.maxSlot = Math.max(segment.maxSlot, slot);
+        return segment.start + segment.size - record.limit();
+    }
+
+    /**
+     * 追加一条投递完成记录
+     *
+     * @param slot         时间槽
+     * @param lastPosition 已经投递的最后一条消息的位置
+     */
+    void appendDone(long slot, long lastPosition) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + Byte.BYTES + Long.BYTES + Long.BYTES);
+        record.position(RECORD_HEADER_SIZE);
+        record.put(DONE);
+        record.putLong(slot);
+        record.putLong(lastPosition);
+        append(record);
+    }
+
+    /**
+     * 刷盘
+     */
+    void flush() throws IOException {
+        FileChannel channel = tailChannel();
+        if (null != channel) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 当前写入位置
+     */
+    long position() {
+        if (segments.isEmpty()) {
+            return 0L;
+        }
+        Segment segment = segments.lastEntry().getValue();
+        return segment.start + segment.size;
+    }
+
+    /**
+     * 正在写入的段文件，切换段文件前已经刷盘，所以刷这个文件就能保证之前写入的记录都已经落盘。
+     * 调用方可以在锁外对它刷盘，正在写入的段文件不会被删除
+     */
+    FileChannel tailChannel() {
+        return segments.isEmpty() ? null : segments.lastEntry().getValue().channel;
+    }
+
+    /**
+     * 读取消息记录中同一时间槽上一条消息的位置
+     */
+    long readPrevPosition(long position) throws IOException {
+        ByteBuffer buffer = read(position, LINK_SIZE);
+        return buffer.getLong(RECORD_HEADER_SIZE + Byte.BYTES + Long.BYTES);
+    }
+
+    /**
+     * 读取一条消息记录
+     */
+    Record readMessage(long position) throws IOException {
+        ByteBuffer header = read(position, RECORD_HEADER_SIZE);
+        int length = header.getInt();
+        int crc = header.getInt();
+        ByteBuffer content = read(position + RECORD_HEADER_SIZE, length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(content.array(), 0, length);
+        if ((int) crc32.getValue() != crc || content.get() != MESSAGE) {
+            throw new IOException(String.format("Corrupted schedule log record at %d!", position));
+        }
+        content.getLong();
+        content.getLong();
+        String topic = readString(content);
+        String app = readString(content);
+        return new Record(topic, app, content.slice());
+    }
+
+    /**
+     * 从最早的段文件开始，删除其中消息都已经投递的段文件，正在写入的段文件不删除
+     *
+     * @param minPendingSlot 还没有投递完成的最小时间槽
+     * @return 删除的段文件数量
+     */
+    int deleteSegments(long minPendingSlot) throws IOException {
+        int deleted = 0;
+        while (segments.size() > 1) {
+            Segment segment = segments.firstEntry().getValue();
+            if (segment.maxSlot >= minPendingSlot) {
+                break;
+            }
+            segments.pollFirstEntry();
+            segment.close();
+            if (!segment.file.delete()) {
+                throw new IOException(String.format("Delete file %s failed!", segment.file.getAbsolutePath()));
+            }
+            deleted++;
+        }
+        return deleted;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private Segment append(ByteBuffer record) throws IOException {
+        int length = record.position() - RECORD_HEADER_SIZE;
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int) crc32.getValue());
+        record.flip();
+
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (null == segment || (segment.size > 0 && segment.size + record.remaining() > segmentSize)) {
+            long start = 0L;
+            if (null != segment) {
+                segment.channel.force(false);
+                start = segment.start + segment.size;
+            }
+            segment = new Segment(start, new File(directory, String.format(SEGMENT_NAME_FORMAT, start)));
+            segments.put(start, segment);
+        }
+        long offset = segment.size;
+        while (record.hasRemaining()) {
+            offset += segment.channel.write(record, offset);
+        }
+        segment.size = offset;
+        return segment;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+        if (null == entry || position + length > entry.getKey() + entry.getValue().size) {
+            throw new IOException(String.format("Invalid schedule log position %d!", position));
+        }
+        Segment segment = entry.getValue();
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long offset = position - segment.start;
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException(String.format("Unexpected end of schedule log at %d!", position));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return 段文件中有效数据的长度
+     */
+    private static long scan(Segment segment, RecoverListener listener) throws IOException {
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+        int validSize = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length < Byte.BYTES + Long.BYTES + Long.BYTES || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            CRC32 crc32 = new CRC32();
+            crc32.update(record.duplicate());
+            if ((int) crc32.getValue() != crc) {
+                break;
+            }
+            byte type = record.get();
+            long slot = record.getLong();
+            long link = record.getLong();
+            if (MESSAGE == type) {
+                listener.onMessage(segment.start + validSize, slot);
+                segment.maxSlot = Math.max(segment.maxSlot, slot);
+            } else if (DONE == type) {
+                listener.onDone(slot, link);
+            } else {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            validSize = buffer.position();
+        }
+        return validSize;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 恢复时按写入顺序回调的记录
+     */
+    interface RecoverListener {
+
+        void onMessage(long position, long slot);
+
+        void onDone(long slot, long lastPosition);
+    }
+
+    /**
+     * 消息记录
+     */
+    static class Record {
+        private final String topic;
+        private final String app;
+        private final ByteBuffer message;
+
+        Record(String topic, String app, ByteBuffer message) {
+            this.topic = topic;
+            this.app = app;
+            this.message = message;
+        }
+
+        String getTopic() {
+            return topic;
+        }
+
+        String getApp() {
+            return app;
+        }
+
+        ByteBuffer getMessage() {
+            return message;
+        }
+    }
+
+    private static class Segment implements Closeable {
+        private final long start;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private long size;
+        // 段内消息记录的最大时间槽
+        private long maxSlot = NONE;
+
+        private Segment(long start, File file) throws IOException {
+            this.start = start;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.producer.schedule;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.joyqueue.broker.buffer.Serializer;
+import org.joyqueue.broker.cluster.ClusterManager;
+import org.joyqueue.broker.producer.Produce;
+import org.joyqueue.broker.producer.ProduceConfig;
+import org.joyqueue.broker.producer.PutResult;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.session.Producer;
+import org.joyqueue.store.WriteResult;
+import org.joyqueue.toolkit.concurrent.LoopThread;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.toolkit.delay.Timer;
+import org.joyqueue.toolkit.delay.TimerTask;
+import org.joyqueue.toolkit.lang.Close;
+import org.joyqueue.toolkit.service.Service;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时投递，带有{@link BrokerMessage#DELIVER_AT}属性并且投递时间在未来时间槽的消息先写入{@link ScheduleLog}，
+ * 到期后再按原主题和应用写入存储。
+ * <p>
+ * 投递时间按刻度划分时间槽，内存中每个时间槽只保存最后一条消息在日志中的位置，消息本身只在日志中，
+ * 时间槽到期由时间轮触发，从日志中读出整个时间槽的消息批量写入，完成后写入投递完成记录并删除过期的日志段。
+ * <p>
+ * 投递是至少一次的，投递过程中宕机，重启后会重新投递还没有写入完成记录的时间槽。
+ * <p>
+ * 定时日志只在本地保存，不参与复制，所以只接受主节点上QosLevel低于REPLICATION的定时消息。
+ * 到期投递时如果消息指定的分区已经不在本节点上，改为写入本节点作为主节点的其它分区。
+ */
+public class ScheduledMessageManager extends Service {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledMessageManager.class);
+    // 时间轮每层的刻度数
+    private static final int WHEEL_SIZE = 60;
+    // 推进时间轮时的最长等待时间
+    private static final long ADVANCE_TIMEOUT = 200L;
+
+    private final File directory;
+    private final ProduceConfig config;
+    private final Produce produce;
+    private final ClusterManager clusterManager;
+
+    // 等待到期的时间槽
+    private final ConcurrentSkipListMap<Long /* 时间槽结束时间 */, Slot> slots = new ConcurrentSkipListMap<>();
+    // 已经到期，正在投递的时间槽
+    private final Set<Slot> firingSlots = ConcurrentHashMap.newKeySet();
+    // 已经到期的最大时间槽，时钟误差导致晚到的消息放入下一个时间槽，保证同一时间槽只有一个链表
+    private long lastFiredSlot;
+    // 已经刷盘的日志位置，由flushMutex保护
+    private final Object flushMutex = new Object();
+    private long flushedPosition;
+
+    private int tick;
+    private ScheduleLog log;
+    private ExecutorService deliverExecutor;
+    private Timer timer;
+    private LoopThread timerThread;
+
+    public ScheduledMessageManager(File directory, ProduceConfig config, Produce produce, ClusterManager clusterManager) {
+        this.directory = directory;
+        this.config = config;
+        this.produce = produce;
+        this.clusterManager = clusterManager;
+    }
+
+    @Override
+    protected void validate() throws Exception {
+        super.validate();
+        tick = config.getScheduleTick();
+        log = new ScheduleLog(directory, config.getScheduleSegmentSize());
+        deliverExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("ScheduleDeliver", true));
+        timerThread = LoopThread.builder()
+                .sleepTime(0, 0)
+                .name("ScheduleTimer")
+                .onException(e -> logger.warn("Advance schedule timer exception!", e))
+                .doWork(() -> timer.advanceClock(ADVANCE_TIMEOUT))
+                .build();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        timer = new Timer(deliverExecutor, tick, WHEEL_SIZE, SystemClock.now() / tick * tick);
+        recover();
+        timerThread.start();
+        logger.info("ScheduledMessageManager is started, pending slots: {}.", slots.size());
+    }
+
+    @Override
+    protected void doStop() {
+        super.doStop();
+        timerThread.stop();
+        deliverExecutor.shutdown();
+        try {
+            deliverExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            Close.close(log);
+        }
+        slots.clear();
+        firingSlots.clear();
+        logger.info("ScheduledMessageManager is stopped.");
+    }
+
+    /**
+     * 消息是否需要定时投递，投递时间在当前时间槽内的消息直接写入
+     */
+    public boolean isScheduled(BrokerMessage message) {
+        return isScheduled(message, slotOf(SystemClock.now()));
+    }
+
+    /**
+     * 一批消息是否需要定时投递。同一批消息共用一个应答和一次写入，定时消息和普通消息不能混在同一批中发送。
+     *
+     * @param msgs 同一批消息
+     * @return 全部是定时消息返回true，全部是普通消息返回false
+     * @throws JoyQueueException 定时消息和普通消息混在同一批中
+     */
+    public boolean isScheduled(List<BrokerMessage> msgs) throws JoyQueueException {
+        long currentSlot = slotOf(SystemClock.now());
+        int scheduledCount = 0;
+        for (BrokerMessage message : msgs) {
+            if (isScheduled(message, currentSlot)) {
+                scheduledCount++;
+            }
+        }
+        if (scheduledCount > 0 && scheduledCount < msgs.size()) {
+            throw new JoyQueueException(JoyQueueCode.CN_PARAM_ERROR, "scheduled and normal messages in one batch");
+        }
+        return scheduledCount > 0;
+    }
+
+    private boolean isScheduled(BrokerMessage message, long currentSlot) {
+        long deliverAt = message.getDeliverAt();
+        return deliverAt > 0 && slotOf(deliverAt) > currentSlot;
+    }
+
+    /**
+     * 保存定时消息，返回时消息已经刷盘
+     *
+     * @param producer 生产者
+     * @param msgs     定时消息
+     * @param qosLevel 服务水平，定时日志不复制，不接受REPLICATION及以上的服务水平
+     * @throws JoyQueueException 服务水平不支持、不是主节点或者写入日志失败
+     */
+    public void schedule(Producer producer, List<BrokerMessage> msgs, QosLevel qosLevel) throws JoyQueueException {
+        if (qosLevel.value() >= QosLevel.REPLICATION.value()) {
+            throw new JoyQueueException(JoyQueueCode.CN_COMMAND_UNSUPPORTED, String.format("scheduled message with qosLevel %s", qosLevel));
+        }
+        TopicName topic = TopicName.parse(producer.getTopic());
+        for (BrokerMessage message : msgs) {
+            if (!isLeader(topic, message.getPartition())) {
+                throw new JoyQueueException(JoyQueueCode.FW_PRODUCE_MESSAGE_BROKER_NOT_LEADER);
+            }
+        }
+
+        List<Slot> newSlots = new ArrayList<>();
+        FileChannel channel;
+        long position;
+        synchronized (this) {
+            if (!isStarted()) {
+                throw new JoyQueueException(JoyQueueCode.CN_SERVICE_NOT_AVAILABLE);
+            }
+            try {
+                for (BrokerMessage message : msgs) {
+                    long slotEnd = Math.max(slotOf(message.getDeliverAt()), lastFiredSlot + tick);
+                    Slot slot = slots.get(slotEnd);
+                    if (slot == null) {
+                        slot = new Slot(slotEnd);
+                        slots.put(slotEnd, slot);
+                        newSlots.add(slot);
+                    }
+                    slot.lastPosition = log.appendMessage(slotEnd, slot.lastPosition, producer.getTopic(), producer.getApp(), serialize(message));
+                }
+            } catch (IOException e) {
+                logger.error("Write schedule log error! topic:{},app:{}", producer.getTopic(), producer.getApp(), e);
+                throw new JoyQueueException(JoyQueueCode.SE_IO_ERROR, e);
+            }
+            channel = log.tailChannel();
+            position = log.position();
+        }
+        // 在锁外刷盘，不阻塞其它请求写入日志
+        try {
+            flush(channel, position);
+        } catch (IOException e) {
+            logger.error("Flush schedule log error! topic:{},app:{}", producer.getTopic(), producer.getApp(), e);
+            throw new JoyQueueException(JoyQueueCode.SE_IO_ERROR, e);
+        }
+        for (Slot slot : newSlots) {
+            timer.add(new SlotTask(slot, slot.slotEnd));
+        }
+    }
+
+    /**
+     * 等待到期的时间槽数量
+     */
+    public int getPendingSlots() {
+        return slots.size() + firingSlots.size();
+    }
+
+    /**
+     * 刷盘到指定位置，并发的刷盘请求只要有一个完成就都返回
+     */
+    private void flush(FileChannel channel, long position) throws IOException {
+        synchronized (flushMutex) {
+            if (flushedPosition >= position) {
+                return;
+            }
+            channel.force(false);
+            flushedPosition = position;
+        }
+    }
+
+    /**
+     * 本节点是否是分区的主节点，没有指定分区时判断是否有本节点作为主节点的分区
+     */
+    private boolean isLeader(TopicName topic, short partition) {
+        if (partition >= 0) {
+            return clusterManager.isLeader(topic, partition);
+        }
+        return CollectionUtils.isNotEmpty(clusterManager.getLocalPartitions(topic));
+    }
+
+    /**
+     * 主节点切换后，消息指定的分区可能已经不在本节点上，改为由写入时重新选择本节点上的分区
+     */
+    private void retarget(String topic, List<BrokerMessage> batch) {
+        TopicName topicName = TopicName.parse(topic);
+        for (BrokerMessage message : batch) {
+            if (message.getPartition() >= 0 && !clusterManager.isLeader(topicName, message.getPartition())) {
+                message.setPartition((short) -1);
+            }
+        }
+    }
+
+    /**
+     * 时间槽结束时间，时间槽包含[slotEnd - tick, slotEnd)的投递时间
+     */
+    private long slotOf(long time) {
+        return (time / tick + 1) * tick;
+    }
+
+    private ByteBuffer serialize(BrokerMessage message) throws JoyQueueException {
+        int size = Serializer.sizeOf(message);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        try {
+            Serializer.write(message, buffer, size);
+        } catch (Exception e) {
+            logger.error("Serialize message error! topic:{},app:{}", message.getTopic(), message.getApp(), e);
+            throw new JoyQueueException(JoyQueueCode.SE_SERIALIZER_ERROR);
+        }
+        return buffer;
+    }
+
+    private void recover() throws IOException {
+        synchronized (this) {
+            log.recover(new ScheduleLog.RecoverListener() {
+                @Override
+                public void onMessage(long position, long slotEnd) {
+                    slots.computeIfAbsent(slotEnd, Slot::new).lastPosition = position;
+                }
+
+                @Override
+                public void onDone(long slotEnd, long lastPosition) {
+                    Slot slot = slots.get(slotEnd);
+                    if (slot != null && slot.lastPosition == lastPosition) {
+                        slots.remove(slotEnd);
+                    }
+                }
+            });
+            synchronized (flushMutex) {
+                flushedPosition = log.position();
+            }
+        }
+        for (Slot slot : slots.values()) {
+            timer.add(new SlotTask(slot, slot.slotEnd));
+        }
+    }
+
+    /**
+     * 投递一个到期的时间槽，失败时从未投递的消息开始重试
+     */
+    private void deliver(Slot slot) {
+        try {
+            synchronized (this) {
+                if (slot.positions == null) {
+                    slots.remove(slot.slotEnd, slot);
+                    lastFiredSlot = Math.max(lastFiredSlot, slot.slotEnd);
+                    firingSlots.add(slot);
+                    slot.positions = readPositions(slot.lastPosition);
+                }
+            }
+            int batchSize = config.getScheduleDeliverBatchSize();
+            while (slot.delivered < slot.positions.length) {
+                if (!isStarted()) {
+                    return;
+                }
+                List<BrokerMessage> batch = new ArrayList<>(batchSize);
+                String topic = null;
+                String app = null;
+                synchronized (this) {
+                    for (int i = slot.delivered; i < slot.positions.length && batch.size() < batchSize; i++) {
+                        ScheduleLog.Record record = log.readMessage(slot.positions[i]);
+                        if (topic != null && (!topic.equals(record.getTopic()) || !Objects.equals(app, record.getApp()))) {
+                            break;
+                        }
+                        topic = record.getTopic();
+                        app = record.getApp();
+                        BrokerMessage message = Serializer.readBrokerMessage(record.getMessage());
+                        message.setTopic(topic);
+                        batch.add(message);
+                    }
+                }
+                retarget(topic, batch);
+                Producer producer = new Producer(topic, app, Producer.ProducerType.JOYQUEUE);
+                checkResult(produce.putMessage(producer, batch, QosLevel.REPLICATION));
+                slot.delivered += batch.size();
+            }
+            FileChannel channel;
+            long position;
+            synchronized (this) {
+                log.appendDone(slot.slotEnd, slot.lastPosition);
+                channel = log.tailChannel();
+                position = log.position();
+            }
+            flush(channel, position);
+            synchronized (this) {
+                firingSlots.remove(slot);
+                int deleted = log.deleteSegments(minPendingSlot());
+                if (deleted > 0) {
+                    logger.info("Delete {} schedule log segments.", deleted);
+                }
+            }
+        } catch (Exception e) {
+            if (!isStarted()) {
+                return;
+            }
+            logger.warn("Deliver scheduled messages of slot {} error, delivered {}, retry later.", slot.slotEnd, slot.delivered, e);
+            timer.add(new SlotTask(slot, SystemClock.now() + config.getScheduleRetryInterval()));
+        }
+    }
+
+    /**
+     * 沿链表读出时间槽内所有消息的位置，按写入顺序返回
+     */
+    private long[] readPositions(long lastPosition) throws IOException {
+        List<Long> positions = new ArrayList<>();
+        for (long position = lastPosition; position != ScheduleLog.NONE; position = log.readPrevPosition(position)) {
+            positions.add(position);
+        }
+        long[] result = new long[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positions.get(result.length - 1 - i);
+        }
+        return result;
+    }
+
+    private long minPendingSlot() {
+        long min = Long.MAX_VALUE;
+        Map.Entry<Long, Slot> first = slots.firstEntry();
+        if (first != null) {
+            min = first.getKey();
+        }
+        for (Slot slot : firingSlots) {
+            min = Math.min(min, slot.slotEnd);
+        }
+        return min;
+    }
+
+    private void checkResult(PutResult putResult) throws JoyQueueException {
+        for (WriteResult writeResult : putResult.getWriteResults().values()) {
+            if (writeResult.getCode() != JoyQueueCode.SUCCESS) {
+                throw new JoyQueueException(writeResult.getCode());
+            }
+        }
+    }
+
+    /**
+     * 时间槽，同一时间槽的消息在日志中通过链表串联
+     */
+    private static class Slot {
+        private final long slotEnd;
+        // 最后一条消息在日志中的位置
+        private long lastPosition = ScheduleLog.NONE;
+        // 到期后读出的全部消息位置
+        private long[] positions;
+        // 已经投递的消息数量
+        private int delivered;
+
+        private Slot(long slotEnd) {
+            this.slotEnd = slotEnd;
+        }
+    }
+
+    private class SlotTask extends TimerTask {
+        private final Slot slot;
+
+        private SlotTask(Slot slot, long expireTime) {
+            this.slot = slot;
+            this.delayMs = expireTime;
+        }
+
+        @Override
+        public void run() {
+            deliver(slot);
+        }
+    }
+}
@@ -17,6 +17,8 @@ package org.joyqueue.broker.replication;
 
 import org.joyqueue.broker.election.TopicPartitionGroup;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * author: zhuduohui
@@ -40,7 +42,7 @@ public class Replica {
     private long commitPosition = 0;
 
     // next position which leader will send to replica
-    private long nextPosition = 0;
+    private volatile long nextPosition = 0;
 
     // if the log of this replica match with with leader
     private boolean match = false;
@@ -53,6 +55,21 @@ public class Replica {
 
     private long lastAppendTime;
 
+    // no entries to replicate, waiting for new writes or the heartbeat timer
+    private final AtomicBoolean waiting = new AtomicBoolean(false);
+
+    // position after the last sent append entries request, may be ahead of nextPosition when pipelining
+    private long sendPosition = 0;
+
+    // increased on every rollback, responses of requests sent in an older epoch are ignored
+    private int epoch = 0;
+
+    // number of append entries requests waiting for response
+    private final AtomicInteger inflight = new AtomicInteger(0);
+
+    // do not send before this time after a request failed
+    private volatile long backoffUntil = 0;
+
     Replica(int replicaId, String address) {
         this.replicaId = replicaId;
         this.address = address;
@@ -151,6 +168,85 @@ public class Replica {
         this.lastAppendTime = lastAppendTime;
     }
 
+    synchronized long sendPosition() {
+        return sendPosition;
+    }
+
+    synchronized int epoch() {
+        return epoch;
+    }
+
+    /**
+     * Record a request sent from sendPosition to endPosition in the given epoch
+     * @return false if the replica rolled back after the request was generated
+     */
+    synchronized boolean onSend(int epoch, long endPosition) {
+        if (this.epoch != epoch) {
+            return false;
+        }
+        sendPosition = Math.max(sendPosition, endPosition);
+        inflight.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Advance nextPosition with an acknowledged response of the given epoch
+     * @return false if the response belongs to an older epoch
+     */
+    synchronized boolean onAck(int epoch, long nextPosition) {
+        if (this.epoch != epoch) {
+            return false;
+        }
+        if (nextPosition < this.nextPosition) {
+            rollback(nextPosition);
+        } else {
+            this.nextPosition = nextPosition;
+            sendPosition = Math.max(sendPosition, nextPosition);
+        }
+        return true;
+    }
+
+    /**
+     * Discard all requests in flight and resend from the given position
+     */
+    synchronized void rollback(long nextPosition) {
+        this.nextPosition = nextPosition;
+        this.sendPosition = nextPosition;
+        epoch++;
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    void onResponse() {
+        inflight.decrementAndGet();
+    }
+
+    long backoffUntil() {
+        return backoffUntil;
+    }
+
+    void backoffUntil(long backoffUntil) {
+        this.backoffUntil = backoffUntil;
+    }
+
+    void startWaiting() {
+        waiting.set(true);
+    }
+
+    /**
+     * Stop waiting, only one of the write wakeup and the heartbeat timer succeeds
+     * @return true if the replica was waiting
+     */
+    boolean stopWaiting() {
+        return waiting.compareAndSet(true, false);
+    }
+
+    boolean isWaiting() {
+        return waiting.get();
+    }
+
     @Override
     public String toString() {
         return new StringBuilder("Replica:{").append("replicaId:").append(replicaId)
@@ -158,6 +254,8 @@ public class Replica {
                 .append(", writePosition:").append(writePosition)
                 .append(", commitPosition:").append(commitPosition)
                 .append(", nextPosition:").append(nextPosition)
+                .append(", sendPosition:").append(sendPosition)
+                .append(", inflight:").append(inflight.get())
                 .append(", match:").append(match)
                 .append(", lastAppendSuccessTime:").append(lastAppendSuccessTime)
                 .append(", lastReplicateConsumePosTime:").append(lastReplicateConsumePosTime).toString();
@@ -40,7 +40,9 @@ import org.joyqueue.network.transport.codec.JoyQueueHeader;
 import org.joyqueue.network.transport.command.Command;
 import org.joyqueue.network.transport.command.CommandCallback;
 import org.joyqueue.network.transport.command.Direction;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.exception.TransportException;
+import org.joyqueue.store.JournalRegion;
 import org.joyqueue.store.replication.ReplicableStore;
 import org.joyqueue.toolkit.service.Service;
 import org.joyqueue.toolkit.time.SystemClock;
@@ -48,6 +50,7 @@ import org.joyqueue.toolkit.validate.annotation.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +97,8 @@ public class ReplicaGroup extends Service {
 
     private Thread replicateThread;
     private DelayQueue<DelayedCommand> replicateResponseQueue;
+    // 每个等待中的副本最多一个有效的心跳定时器，重新等待或者被唤醒时取消之前的定时器
+    private final ConcurrentMap<Integer, DelayedCommand> waitTimers = new ConcurrentHashMap<>();
 
     private LeaderElection leaderElection;
     private ExecutorService replicateExecutor;
@@ -104,7 +109,6 @@ public class ReplicaGroup extends Service {
     private final TransportClient transportClient;
 
     private static final long ONE_SECOND_NANO = 1000 * 1000 * 1000;
-    private static final long ONE_MS_NANO     = 1000 * 1000;
     private static final int MAX_PROCESS_TIME =  300 * 1000;
 
     ReplicaGroup(TopicPartitionGroup topicPartitionGroup, ReplicationManager replicationManager,
@@ -151,10 +155,14 @@ public class ReplicaGroup extends Service {
 
         replicateThread = new ReplicateThread("ReplicateThread-" + topicPartitionGroup.toString());
         replicateThread.start();
+
+        replicableStore.setWriteListener(this::onWrite);
     }
 
     @Override
     public void doStop() {
+        replicableStore.setWriteListener(null);
+
         while (replicateThread.isAlive()) {
             replicateThread.interrupt();
             try {
@@ -188,7 +196,7 @@ public class ReplicaGroup extends Service {
             Replica newReplica = new Replica(node.getNodeId(), node.getAddress());
             //至少复制一个消息，保证没有消息的时候也能将原先的消息复制到slave
             long nextReplicate = replicableStore.position(replicableStore.rightPosition(), -1);
-            newReplica.nextPosition(nextReplicate);
+            newReplica.rollback(nextReplicate);
 
             replicas.add(newReplica);
 
@@ -209,6 +217,10 @@ public class ReplicaGroup extends Service {
      * @param nodeId 要删除的节点Id
      */
     public synchronized void removeNode(int nodeId) {
+        DelayedCommand timer = waitTimers.remove(nodeId);
+        if (timer != null) {
+            replicateResponseQueue.remove(timer);
+        }
         replicas = replicas.stream()
                 .filter(r -> r.replicaId() != nodeId)
                 .collect(Collectors.toList());
@@ -287,7 +299,7 @@ public class ReplicaGroup extends Service {
 
         long writePosition = replicableStore.rightPosition();
         replicas.forEach(r -> {
-            r.nextPosition(writePosition);
+            r.rollback(writePosition);
             r.setMatch(false);
         });
 
@@ -298,6 +310,9 @@ public class ReplicaGroup extends Service {
                 topicPartitionGroup, leaderId, term, replicableStore.leftPosition(),
                 writePosition, replicableStore.commitPosition());
 
+        // 立即向各副本发送复制或心跳请求，不等待心跳定时器
+        replicas.forEach(this::wakeup);
+
     }
 
     /**
@@ -321,7 +336,8 @@ public class ReplicaGroup extends Service {
      * 复制消息的线程
      * 1. 通过一个阻塞队列保证收到副本的复制消息响应继续复制下一批消息
      * 2. 当阻塞队列中有数据时，给该副本发送复制消息
-     * 3. 每隔一定时间复制消费位置
+     * 3. 没有数据可复制时副本进入等待，由存储写入唤醒，或者到心跳时间由定时器唤醒
+     * 4. 每隔一定时间复制消费位置
      */
     class ReplicateThread extends Thread {
         private ReplicateThread(String name) {
@@ -345,6 +361,16 @@ public class ReplicaGroup extends Service {
                     }
 
                     DelayedCommand command = replicateResponseQueue.take();
+                    if (command.isWaitTimer()) {
+                        // 心跳定时器到期，如果已经被取消或者副本已经被唤醒则忽略
+                        if (!waitTimers.remove(command.replicaId(), command)) {
+                            continue;
+                        }
+                        Replica replica = getReplica(command.replicaId());
+                        if (replica == null || !replica.stopWaiting()) {
+                            continue;
+                        }
+                    }
                     if (command.replicaId() == localReplicaId) {
                         replicateLocal();
                         continue;
@@ -381,68 +407,114 @@ public class ReplicaGroup extends Service {
      */
     private void initResponseQueue() {
         replicateResponseQueue.clear();
+        waitTimers.clear();
         replicas.forEach((r) -> replicateResponseQueue.put(
                 new DelayedCommand(0, r.replicaId())));
     }
 
     /**
-     * 如果只有一个节点，直接commit
+     * 如果只有一个节点，直接commit，然后等待新数据写入
      */
     private void replicateLocal() {
-        long delayTimeNs;
-        if (replicas.size() == 1) {
+        Replica local = getReplica(localReplicaId);
+        if (replicas.size() == 1 && local != null) {
             if (replicableStore.commitPosition() < replicableStore.rightPosition()) {
                 replicableStore.commit(replicableStore.rightPosition());
-                delayTimeNs = 0;
-            } else {
-                delayTimeNs = ONE_MS_NANO / 5;
             }
+            park(local, 0);
         } else {
-            delayTimeNs = ONE_SECOND_NANO;
+            replicateResponseQueue.put(new DelayedCommand(ONE_SECOND_NANO, localReplicaId));
+        }
+    }
+
+    /**
+     * 存储写入新数据后回调，唤醒等待中的副本，在存储的写入线程中执行
+     */
+    private void onWrite() {
+        if (state != LEADER && state != TRANSFERRING) {
+            return;
+        }
+        for (Replica replica : replicas) {
+            if (replica.isWaiting() && replica.inflight() < windowSize(replica)) {
+                wakeup(replica);
+            }
+        }
+    }
+
+    /**
+     * 唤醒等待中的副本，立即开始复制
+     * @param replica 副本
+     */
+    private void wakeup(Replica replica) {
+        if (replica.stopWaiting()) {
+            cancelWaitTimer(replica);
+            replicateResponseQueue.put(new DelayedCommand(0, replica.replicaId()));
+        }
+    }
+
+    /**
+     * 取消副本的心跳定时器，从队列中删除，避免频繁唤醒时队列中堆积过期的定时器
+     * @param replica 副本
+     */
+    private void cancelWaitTimer(Replica replica) {
+        DelayedCommand timer = waitTimers.remove(replica.replicaId());
+        if (timer != null) {
+            replicateResponseQueue.remove(timer);
+        }
+    }
+
+    /**
+     * 副本进入等待，直到新数据写入、收到复制响应，或者没有未响应的请求时到下次心跳时间
+     * @param replica 副本
+     * @param inflight 进入等待时未响应的请求数
+     */
+    private void park(Replica replica, int inflight) {
+        replica.startWaiting();
+        if (inflight == 0) {
+            long delayTimeMs = electionConfig.getHeartbeatTimeout();
+            if (replica.replicaId() != localReplicaId && !electionConfig.enableSharedHeartbeat()) {
+                delayTimeMs = Math.max(0, delayTimeMs - (SystemClock.now() - replica.getLastAppendTime()));
+            }
+            DelayedCommand timer = new DelayedCommand(TimeUnit.MILLISECONDS.toNanos(delayTimeMs), replica.replicaId(), true);
+            DelayedCommand previous = waitTimers.put(replica.replicaId(), timer);
+            if (previous != null) {
+                replicateResponseQueue.remove(previous);
+            }
+            replicateResponseQueue.put(timer);
+        }
+
+        // 进入等待之前写入的数据或者收到的响应不会触发唤醒，需要再检查一次
+        long position = replica.replicaId() == localReplicaId ? replicableStore.commitPosition() : replica.sendPosition();
+        if ((replicableStore.rightPosition() > position && replica.inflight() < windowSize(replica))
+                || replica.inflight() < inflight) {
+            wakeup(replica);
         }
+    }
 
-        replicateResponseQueue.put(new DelayedCommand(delayTimeNs, localReplicaId));
+    /**
+     * 每个副本最多同时发送的复制请求数，日志没有匹配之前只发送一个
+     * @param replica 副本
+     * @return 窗口大小
+     */
+    private int windowSize(Replica replica) {
+        return replica.isMatch() ? Math.max(1, electionConfig.getReplicateWindowSize()) : 1;
     }
 
     /**
      * Replicate logs to a replica
+     * 同一时刻每个副本只有一个复制任务，任务连续发送复制请求直到窗口填满或者没有可复制的数据，
+     * 然后进入等待，由复制响应或者新写入的数据唤醒
      * @param replica 副本
      */
     private void replicateMessage(Replica replica) {
         try {
             replicateExecutor.submit(() -> {
                 try {
-                    long startTimeUs = usTime();
-
-                    AppendEntriesRequest request = generateAppendEntriesRequest(replica);
-                    if (request == null) {
-                        if (!electionConfig.enableSharedHeartbeat()) {
-                            if (SystemClock.now() - replica.getLastAppendTime() >= electionConfig.getHeartbeatTimeout()) {
-                                request = generateHeartbeatRequest(replica);
-                            }
-                        }
-                        if (request == null) {
-                            replicateResponseQueue.put(new DelayedCommand(ONE_MS_NANO, replica.replicaId()));
-                            return;
-                        }
-                    }
-
-                    JoyQueueHeader header = new JoyQueueHeader(Direction.REQUEST, CommandType.RAFT_APPEND_ENTRIES_REQUEST);
-
-                    if (!replica.isMatch() || logger.isDebugEnabled()) {
-                        logger.info("Partition group {}/node {} send append entries request {} to node {}, " +
-                                        "read entries elapse {} us",
-                                topicPartitionGroup, leaderId, request, replica.replicaId(), usTime() - startTimeUs);
-                    }
-
-                    replica.setLastAppendTime(SystemClock.now());
-                    this.sendCommand(replica.getAddress(), new Command(header, request),
-                            electionConfig.getSendCommandTimeout(),
-                            new AppendEntriesRequestCallback(replica, startTimeUs, request.getEntriesLength()));
-
+                    fillWindow(replica);
                 } catch (Throwable t) {
                     logger.warn("Partition group {}/ node {} send append entries to {} fail",
                             topicPartitionGroup, localReplicaId, replica.replicaId(), t);
+                    replica.rollback(replica.nextPosition());
                     replicateResponseQueue.put(new DelayedCommand(ONE_SECOND_NANO, replica.replicaId()));
                 }
             });
@@ -453,35 +525,97 @@ public class ReplicaGroup extends Service {
         }
     }
 
+    private void fillWindow(Replica replica) throws Exception {
+        while (true) {
+            long backoffTime = replica.backoffUntil() - SystemClock.now();
+            if (backoffTime > 0) {
+                // 请求失败之后延迟重试
+                replicateResponseQueue.put(new DelayedCommand(TimeUnit.MILLISECONDS.toNanos(backoffTime), replica.replicaId()));
+                return;
+            }
+
+            int inflight = replica.inflight();
+            if (inflight >= windowSize(replica)) {
+                park(replica, inflight);
+                return;
+            }
+
+            long startTimeUs = usTime();
+            int epoch = replica.epoch();
+            AppendEntriesRequest request = generateAppendEntriesRequest(replica, replica.sendPosition());
+            long endPosition = request == null ? 0 : request.getStartPosition() + request.getEntriesLength();
+            if (request == null && inflight == 0) {
+                if (!electionConfig.enableSharedHeartbeat()) {
+                    if (SystemClock.now() - replica.getLastAppendTime() >= electionConfig.getHeartbeatTimeout()) {
+                        request = generateHeartbeatRequest(replica);
+                    }
+                }
+            }
+            if (request == null) {
+                park(replica, inflight);
+                return;
+            }
+            if (!replica.onSend(epoch, endPosition)) {
+                // 生成请求期间发生了回滚，重新生成
+                continue;
+            }
+
+            JoyQueueHeader header = new JoyQueueHeader(Direction.REQUEST, CommandType.RAFT_APPEND_ENTRIES_REQUEST);
+
+            if (!replica.isMatch() || logger.isDebugEnabled()) {
+                logger.info("Partition group {}/node {} send append entries request {} to node {}, " +
+                                "read entries elapse {} us, inflight {}",
+                        topicPartitionGroup, leaderId, request, replica.replicaId(), usTime() - startTimeUs, inflight);
+            }
+
+            replica.setLastAppendTime(SystemClock.now());
+            Command command = new Command(header, request);
+            AppendEntriesRequestCallback callback = new AppendEntriesRequestCallback(replica, startTimeUs, request.getEntriesLength(), epoch);
+            try {
+                if (electionConfig.enableBatchReplicate()) {
+                    // 与其他分区组发往同一broker的请求合并发送
+                    replicationManager.getReplicationChannel(replica.getAddress())
+                            .append(command, electionConfig.getSendCommandTimeout(), callback);
+                } else {
+                    this.sendCommand(replica.getAddress(), command, electionConfig.getSendCommandTimeout(), callback);
+                }
+            } catch (Throwable t) {
+                callback.onException(command, t);
+            }
+        }
+    }
+
     /**
      * 构造复制消息请求
      * @param replica 副本
+     * @param sendPosition 上一个已发送请求的结束位置
      * @return 复制消息请求
      * @throws Exception 异常
      */
-    private AppendEntriesRequest generateAppendEntriesRequest(Replica replica) throws Exception {
+    private AppendEntriesRequest generateAppendEntriesRequest(Replica replica, long sendPosition) throws Exception {
 
         long leftPosition = replicableStore.leftPosition();
-        long startPosition = Math.max(replica.nextPosition(), leftPosition);
+        long startPosition = Math.max(sendPosition, leftPosition);
 
         if (startPosition >= replicableStore.rightPosition()) {
             return null;
         }
 
-        ByteBuffer entries;
+        AppendEntriesRequest.Build builder = AppendEntriesRequest.Build.create();
+        boolean hasEntries;
         try {
-            entries = replicableStore.readEntryBuffer(startPosition, electionConfig.getMaxReplicateLength());
+            hasEntries = readEntries(builder, startPosition);
         } catch (Exception e) {
             logger.info("Partition group {}/node {} read entries from {} fail rollback to prev",
                     topicPartitionGroup, localReplicaId, startPosition, e);
             long oldPosition = startPosition;
             startPosition = getPrevPosition(startPosition);
-            replica.nextPosition(startPosition);
+            replica.rollback(startPosition);
             logger.info("Partition group {}/node {} get prev position of {} return {}, left position is {}",
                     topicPartitionGroup, localReplicaId, oldPosition, startPosition, leftPosition);
-            entries = replicableStore.readEntryBuffer(startPosition, electionConfig.getMaxReplicateLength());
+            hasEntries = readEntries(builder, startPosition);
         }
-        if (entries == null || !entries.hasRemaining()) {
+        if (!hasEntries) {
             return null;
         }
 
@@ -497,14 +631,39 @@ public class ReplicaGroup extends Service {
             prevTerm = replicableStore.getEntryTerm(prevPosition);
         }
 
-        return AppendEntriesRequest.Build.create().partitionGroup(topicPartitionGroup)
+        return builder.partitionGroup(topicPartitionGroup)
                 .leader(leaderId).term(currentTerm).startPosition(startPosition)
                 .leftPosition(leftPosition).match(replica.isMatch())
                 .commitPosition(replicableStore.commitPosition()).prevTerm(prevTerm)
-                .prevPosition(prevPosition).entriesTerm(entriesTerm).entries(entries)
+                .prevPosition(prevPosition).entriesTerm(entriesTerm)
                 .build();
     }
 
+    /**
+     * 读取待复制的日志，已经刷盘并提交的日志只登记文件区域，发送时由文件直接写入网络，
+     * 其余日志复制到内存中发送
+     * @param builder 复制消息请求
+     * @param startPosition 起始位置
+     * @return 是否读到日志
+     * @throws IOException 读取异常
+     */
+    private boolean readEntries(AppendEntriesRequest.Build builder, long startPosition) throws IOException {
+        int maxLength = electionConfig.getMaxReplicateLength();
+        if (electionConfig.enableZeroCopyReplicate()) {
+            JournalRegion region = replicableStore.readEntryRegion(startPosition, maxLength);
+            if (region != null) {
+                builder.entriesSegment(new FileSegment(region.getFile(), region.getChannel(), region.getPosition(), region.getLength(), region.getCount()));
+                return true;
+            }
+        }
+        ByteBuffer entries = replicableStore.readEntryBuffer(startPosition, maxLength);
+        if (entries == null || !entries.hasRemaining()) {
+            return false;
+        }
+        builder.entries(entries);
+        return true;
+    }
+
     /**
      * 构造心跳请求
      * @param replica
@@ -522,11 +681,13 @@ public class ReplicaGroup extends Service {
         private Replica replica;
         private long startTimeUs;
         private int entriesLength;
+        private int epoch;
 
-        AppendEntriesRequestCallback(Replica replica, long startTimeUs, int entriesLength) {
+        AppendEntriesRequestCallback(Replica replica, long startTimeUs, int entriesLength, int epoch) {
             this.replica = replica;
             this.startTimeUs = startTimeUs;
             this.entriesLength = entriesLength;
+            this.epoch = epoch;
         }
 
         @Override
@@ -560,7 +721,7 @@ public class ReplicaGroup extends Service {
                     return;
                 }
 
-                processAppendEntriesResponse(appendEntriesResponse, replica);
+                processAppendEntriesResponse(appendEntriesResponse, replica, epoch);
 
                 brokerMonitor.onReplicateMessage(topicPartitionGroup.getTopic(), topicPartitionGroup.getPartitionGroupId(),
                         1, entriesLength, usTime() - startTimeUs);
@@ -569,7 +730,8 @@ public class ReplicaGroup extends Service {
                 logger.info("Partition group {}/node {} process append entries reponse fail",
                         topicPartitionGroup, localReplicaId, e);
             } finally {
-                replicateResponseQueue.put(new DelayedCommand(0, replica.replicaId()));
+                replica.onResponse();
+                wakeup(replica);
             }
         }
 
@@ -592,8 +754,13 @@ public class ReplicaGroup extends Service {
                 logger.warn("Partition group {}/node {} send append entries onException fail, request is {}",
                         topicPartitionGroup, localReplicaId, request, e);
             } finally {
-                replicateResponseQueue.put(
-                        new DelayedCommand(ONE_SECOND_NANO, replica.replicaId()));
+                // 丢弃之后发送的请求，延迟一秒从最后确认的位置重新发送
+                if (epoch == replica.epoch()) {
+                    replica.backoffUntil(SystemClock.now() + ONE_SECOND_NANO / 1000 / 1000);
+                    replica.rollback(replica.nextPosition());
+                }
+                replica.onResponse();
+                wakeup(replica);
             }
         }
     }
@@ -603,20 +770,29 @@ public class ReplicaGroup extends Service {
      * Update the commit position as the majority value of all replica's write position
      * @param response 写入记录响应
      */
-    private synchronized void processAppendEntriesResponse(AppendEntriesResponse response, Replica replica) {
+    private synchronized void processAppendEntriesResponse(AppendEntriesResponse response, Replica replica, int epoch) {
         replica.lastAppendSuccessTime(SystemClock.now());
 
         if (!response.isSuccess()) {
-            if (response.getNextPosition() == -1L) {
-                replica.nextPosition(getPrevPosition(replica.nextPosition()));
-            } else {
-                replica.nextPosition(getPrevPosition(response.getNextPosition()));
+            // 日志不匹配，回滚到前一条日志，之后发送的请求全部作废
+            synchronized (replica) {
+                if (epoch != replica.epoch()) {
+                    return;
+                }
+                if (response.getNextPosition() == -1L) {
+                    replica.rollback(getPrevPosition(replica.nextPosition()));
+                } else {
+                    replica.rollback(getPrevPosition(response.getNextPosition()));
+                }
             }
             return;
         }
 
+        // 按发送顺序确认，回滚之前发送的请求的响应直接忽略
+        if (!replica.onAck(epoch, response.getNextPosition())) {
+            return;
+        }
         replica.writePosition(response.getWritePosition());
-        replica.nextPosition(response.getNextPosition());
         replica.setMatch(true);
 
         if (transferee != ElectionNode.INVALID_NODE_ID && replica.nextPosition() >= timeoutNowPosition) {
@@ -1011,11 +1187,18 @@ public class ReplicaGroup extends Service {
         private long startTimeNs;
         private long delayTimeNs;
         private int replicaId;
+        // 等待中副本的心跳定时器
+        private boolean waitTimer;
 
         DelayedCommand(long delayTimeNs, int replicaId) {
+            this(delayTimeNs, replicaId, false);
+        }
+
+        DelayedCommand(long delayTimeNs, int replicaId, boolean waitTimer) {
             this.startTimeNs = System.nanoTime();
             this.delayTimeNs = delayTimeNs;
             this.replicaId = replicaId;
+            this.waitTimer = waitTimer;
         }
 
         @Override
@@ -1039,6 +1222,10 @@ public class ReplicaGroup extends Service {
         int replicaId() {
             return replicaId;
         }
+
+        boolean isWaitTimer() {
+            return waitTimer;
+        }
     }
 
     private long usTime() {
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.replication;
+
+import org.joyqueue.broker.election.command.AppendEntriesRequest;
+import org.joyqueue.broker.election.command.AppendEntriesResponse;
+import org.joyqueue.broker.election.command.BatchAppendEntriesRequest;
+import org.joyqueue.broker.election.command.BatchAppendEntriesResponse;
+import org.joyqueue.network.command.CommandType;
+import org.joyqueue.network.transport.TransportClient;
+import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.CommandCallback;
+import org.joyqueue.network.transport.command.Direction;
+import org.joyqueue.network.transport.exception.TransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 到某个broker的复制通道，所有分区组发往该broker的复制请求共用一个连接，
+ * 排队的请求合并成一个BatchAppendEntriesRequest发送，按未响应的字节数做流控。
+ * 每个请求的回调与单独发送时一致，调用方不感知合并。
+ */
+public class ReplicationChannel {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationChannel.class);
+
+    // 心跳等空请求的估算大小
+    private static final int REQUEST_OVERHEAD = 64;
+
+    private final String address;
+    private final ReplicationTransportSession session;
+    private final int maxBatchSize;
+    private final long maxInflightSize;
+
+    private final Queue<PendingAppend> pendingQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private final AtomicLong inflightSize = new AtomicLong(0);
+    private volatile boolean stopped = false;
+
+    public ReplicationChannel(String address, TransportClient transportClient, int maxBatchSize, long maxInflightSize) {
+        this(address, new ReplicationTransportSession(address, transportClient), maxBatchSize, maxInflightSize);
+    }
+
+    ReplicationChannel(String address, ReplicationTransportSession session, int maxBatchSize, long maxInflightSize) {
+        this.address = address;
+        this.session = session;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInflightSize = maxInflightSize;
+    }
+
+    /**
+     * 提交复制请求，与其他分区组的请求合并后异步发送
+     * @param command 复制请求命令，payload为AppendEntriesRequest
+     * @param timeout 超时时间
+     * @param callback 单个请求的回调
+     */
+    public void append(Command command, int timeout, CommandCallback callback) {
+        if (stopped) {
+            callback.onException(command, new TransportException.ConnectionException(address));
+            return;
+        }
+        AppendEntriesRequest request = (AppendEntriesRequest) command.getPayload();
+        pendingQueue.add(new PendingAppend(command, timeout, callback, request.getEntriesLength() + REQUEST_OVERHEAD));
+        trySend();
+    }
+
+    /**
+     * 只有一个线程在发送，发送线程把队列中的请求打包，直到队列为空或者达到流控上限
+     */
+    private void trySend() {
+        while (!pendingQueue.isEmpty() && inflightSize.get() < maxInflightSize) {
+            if (!sending.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (inflightSize.get() < maxInflightSize) {
+                    List<PendingAppend> batch = drain();
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    send(batch);
+                }
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+
+    private List<PendingAppend> drain() {
+        List<PendingAppend> batch = new ArrayList<>();
+        int batchSize = 0;
+        PendingAppend pending;
+        while ((pending = pendingQueue.peek()) != null) {
+            if (!batch.isEmpty() && batchSize + pending.size > maxBatchSize) {
+                break;
+            }
+            pendingQueue.poll();
+            batch.add(pending);
+            batchSize += pending.size;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingAppend> batch) {
+        List<AppendEntriesRequest> requests = new ArrayList<>(batch.size());
+        int batchSize = 0;
+        int timeout = 0;
+        for (PendingAppend pending : batch) {
+            requests.add((AppendEntriesRequest) pending.command.getPayload());
+            batchSize += pending.size;
+            timeout = Math.max(timeout, pending.timeout);
+        }
+
+        inflightSize.addAndGet(batchSize);
+        Command command = new Command(new JoyQueueHeader(Direction.REQUEST, CommandType.RAFT_BATCH_APPEND_ENTRIES_REQUEST),
+                new BatchAppendEntriesRequest(requests));
+        try {
+            session.sendCommand(command, timeout, new BatchCallback(batch, batchSize));
+        } catch (Throwable t) {
+            logger.warn("Send batch append entries request to {} fail", address, t);
+            inflightSize.addAndGet(-batchSize);
+            onException(batch, t);
+        }
+    }
+
+    private void onException(List<PendingAppend> batch, Throwable cause) {
+        for (PendingAppend pending : batch) {
+            try {
+                pending.callback.onException(pending.command, cause);
+            } catch (Throwable t) {
+                logger.warn("Append entries callback of {} exception", address, t);
+            }
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getInflightSize() {
+        return inflightSize.get();
+    }
+
+    public void stop() {
+        stopped = true;
+        List<PendingAppend> batch = new ArrayList<>();
+        PendingAppend pending;
+        while ((pending = pendingQueue.poll()) != null) {
+            batch.add(pending);
+        }
+        onException(batch, new TransportException.ConnectionException(address));
+        session.stop();
+    }
+
+    /**
+     * 合并请求的回调，按顺序把响应分发给每个分区组
+     */
+    private class BatchCallback implements CommandCallback {
+        private final List<PendingAppend> batch;
+        private final int batchSize;
+
+        BatchCallback(List<PendingAppend> batch, int batchSize) {
+            this.batch = batch;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void onSuccess(Command request, Command response) {
+            inflightSize.addAndGet(-batchSize);
+            try {
+                if (!(response.getPayload() instanceof BatchAppendEntriesResponse)
+                        || ((BatchAppendEntriesResponse) response.getPayload()).getResponses().size() != batch.size()) {
+                    ReplicationChannel.this.onException(batch, new TransportException.UnknownException(
+                            String.format("Invalid batch append entries response %s from %s", response.getPayload(), address)));
+                    return;
+                }
+
+                List<AppendEntriesResponse> responses = ((BatchAppendEntriesResponse) response.getPayload()).getResponses();
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingAppend pending = batch.get(i);
+                    try {
+                        pending.callback.onSuccess(pending.command, new Command(
+                                new JoyQueueHeader(Direction.RESPONSE, CommandType.RAFT_APPEND_ENTRIES_RESPONSE), responses.get(i)));
+                    } catch (Throwable t) {
+                        logger.warn("Append entries callback of {} exception", address, t);
+                    }
+                }
+            } finally {
+                trySend();
+            }
+        }
+
+        @Override
+        public void onException(Command request, Throwable cause) {
+            inflightSize.addAndGet(-batchSize);
+            try {
+                ReplicationChannel.this.onException(batch, cause);
+            } finally {
+                trySend();
+            }
+        }
+    }
+
+    private static class PendingAppend {
+        private final Command command;
+        private final int timeout;
+        private final CommandCallback callback;
+        private final int size;
+
+        PendingAppend(Command command, int timeout, CommandCallback callback, int size) {
+            this.command = command;
+            this.timeout = timeout;
+            this.callback = callback;
+            this.size = size;
+        }
+    }
+}
@@ -58,6 +58,8 @@ public class ReplicationManager extends Service {
     private ElectionConfig electionConfig;
     private BrokerConfig brokerConfig;
     private final ConcurrentHashMap<String, Transport> sessions = new ConcurrentHashMap<>();
+    // 到每个broker的复制通道，所有分区组共用
+    private final ConcurrentHashMap<String, ReplicationChannel> channels = new ConcurrentHashMap<>();
 
     private StoreService storeService;
     private Consume consume;
@@ -126,6 +128,10 @@ public class ReplicationManager extends Service {
 
     @Override
     public void doStop() {
+        for (ReplicationChannel channel : channels.values()) {
+            channel.stop();
+        }
+        channels.clear();
         Close.close(transportClient);
         Close.close(replicateExecutor);
 
@@ -182,4 +188,21 @@ public class ReplicationManager extends Service {
         }
         return replicaGroup;
     }
+
+    /**
+     * 获取到目标broker的复制通道，不存在时创建
+     * @param address 目标broker地址, ip + ":" + port
+     * @return 复制通道
+     */
+    public ReplicationChannel getReplicationChannel(String address) {
+        ReplicationChannel channel = channels.get(address);
+        if (channel == null) {
+            channel = channels.computeIfAbsent(address, key -> {
+                logger.info("Replication manager create replication channel of {}", key);
+                return new ReplicationChannel(key, transportClient,
+                        electionConfig.getBatchReplicateMaxSize(), electionConfig.getBatchReplicateMaxInflightSize());
+            });
+        }
+        return channel;
+    }
 }
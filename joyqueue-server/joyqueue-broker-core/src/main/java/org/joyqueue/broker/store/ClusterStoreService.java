@@ -17,6 +17,7 @@ import org.joyqueue.store.StoreManagementService;
 import org.joyqueue.store.StoreNode;
 import org.joyqueue.store.StoreNodes;
 import org.joyqueue.store.StoreService;
+import org.joyqueue.store.event.StoreCommitEvent;
 import org.joyqueue.store.event.StoreEvent;
 import org.joyqueue.store.event.StoreNodeChangeEvent;
 import org.joyqueue.store.replication.ReplicableStore;
@@ -140,6 +141,16 @@ public class ClusterStoreService extends Service implements StoreService, LifeCy
         eventBus.removeListener(listener);
     }
 
+    @Override
+    public void addCommitListener(EventListener<StoreCommitEvent> listener) {
+        storeService.addCommitListener(listener);
+    }
+
+    @Override
+    public void removeCommitListener(EventListener<StoreCommitEvent> listener) {
+        storeService.removeCommitListener(listener);
+    }
+
     @Override
     public boolean partitionGroupExists(String topic, int partitionGroup) {
         return storeService.partitionGroupExists(topic, partitionGroup);
@@ -16,7 +16,16 @@
 package org.joyqueue.broker.buffer;
 
 import org.joyqueue.broker.buffer.Serializer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.joyqueue.domain.QosLevel;
 import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.codec.ProduceMessageRequestCodec;
+import org.joyqueue.network.command.ProduceMessageData;
+import org.joyqueue.network.command.ProduceMessageRequest;
+import org.joyqueue.store.message.MessageParser;
 import org.joyqueue.toolkit.network.IpUtil;
 import org.junit.Assert;
 import org.junit.Test;
@@ -127,4 +136,115 @@ public class SerializerTest {
         Assert.assertEquals(sendTime, 100l);
     }
 
+    @Test
+    public void writeRaw() throws Exception {
+        message.setTopic("test_topic");
+        message.setApp("test_app");
+        message.setStartTime(System.currentTimeMillis());
+        message.setClientIp(IpUtil.toByte(new InetSocketAddress(50088)));
+        message.setText("text");
+        message.setAttribute("Test","TestTest");
+        message.setExtension("Test".getBytes());
+
+        ProduceMessageData data = new ProduceMessageData();
+        data.setQosLevel(QosLevel.REPLICATION);
+        data.setMessages(Lists.newArrayList(message, message.clone()));
+        ProduceMessageRequest request = new ProduceMessageRequest();
+        request.setApp("test_app");
+        request.setData(Maps.newHashMap());
+        request.getData().put("test_topic", data);
+
+        ProduceMessageRequestCodec codec = new ProduceMessageRequestCodec(true);
+        ByteBuf buf = Unpooled.buffer();
+        codec.encode(request, buf);
+        ProduceMessageRequest decoded = codec.decode(null, buf);
+
+        byte[] address = IpUtil.toByte(new InetSocketAddress("10.0.0.1", 50088));
+        for (BrokerMessage decodedMessage : decoded.getData().get("test_topic").getMessages()) {
+            Assert.assertNotNull(decodedMessage.getRawMessage());
+            decodedMessage.setClientIp(address);
+
+            int size = Serializer.sizeOf(decodedMessage);
+            ByteBuffer expected = ByteBuffer.allocate(size);
+            Serializer.write(decodedMessage, expected, size);
+            ByteBuffer raw = Serializer.writeRaw(decodedMessage);
+
+            Assert.assertNotNull(raw);
+            Assert.assertEquals(size, raw.remaining());
+            MessageParser.setInt(raw, MessageParser.STORAGE_TIMESTAMP, 0);
+            MessageParser.setInt(expected, MessageParser.STORAGE_TIMESTAMP, 0);
+            Assert.assertEquals(expected, raw);
+        }
+    }
+
+    @Test
+    public void writeRawTransaction() throws Exception {
+        message.setTopic("test_topic");
+        message.setApp("test_app");
+        message.setStartTime(System.currentTimeMillis());
+        message.setClientIp(IpUtil.toByte(new InetSocketAddress(50088)));
+        message.setText("text");
+
+        ProduceMessageData data = new ProduceMessageData();
+        data.setTxId("test_tx");
+        data.setQosLevel(QosLevel.REPLICATION);
+        data.setMessages(Lists.newArrayList(message));
+        ProduceMessageRequest request = new ProduceMessageRequest();
+        request.setApp("test_app");
+        request.setData(Maps.newHashMap());
+        request.getData().put("test_topic", data);
+
+        ProduceMessageRequestCodec codec = new ProduceMessageRequestCodec(true);
+        ByteBuf buf = Unpooled.buffer();
+        codec.encode(request, buf);
+        BrokerMessage decodedMessage = codec.decode(null, buf).getData().get("test_topic").getMessages().get(0);
+
+        // 事务消息不保留原始字节，即使保留了也不直接写入
+        Assert.assertEquals("test_tx", decodedMessage.getTxId());
+        Assert.assertNull(decodedMessage.getRawMessage());
+        ByteBuffer raw = ByteBuffer.allocate(Serializer.sizeOf(decodedMessage));
+        Serializer.write(decodedMessage, raw, raw.remaining());
+        decodedMessage.setRawMessage(raw.duplicate());
+        Assert.assertNull(Serializer.writeRaw(decodedMessage));
+
+        BrokerMessage stored = Serializer.readBrokerMessage(raw);
+        Assert.assertEquals("text", stored.getText());
+        Assert.assertEquals("test_app", stored.getApp());
+    }
+
+    @Test
+    public void writeRawAppChanged() throws Exception {
+        message.setApp("test_app");
+        message.setClientIp(IpUtil.toByte(new InetSocketAddress(50088)));
+        message.setText("text");
+
+        ByteBuffer raw = ByteBuffer.allocate(Serializer.sizeOf(message));
+        Serializer.write(message, raw, raw.remaining());
+        message.setRawMessage(raw.duplicate());
+        Assert.assertNotNull(Serializer.writeRaw(message));
+
+        // Broker改写了应用，原始字节不能直接使用
+        message.setApp("other_app");
+        Assert.assertNull(Serializer.writeRaw(message));
+    }
+
+    @Test
+    public void rawMessageDisabled() throws Exception {
+        message.setClientIp(IpUtil.toByte(new InetSocketAddress(50088)));
+        message.setText("text");
+
+        ProduceMessageData data = new ProduceMessageData();
+        data.setQosLevel(QosLevel.REPLICATION);
+        data.setMessages(Lists.newArrayList(message));
+        ProduceMessageRequest request = new ProduceMessageRequest();
+        request.setApp("test_app");
+        request.setData(Maps.newHashMap());
+        request.getData().put("test_topic", data);
+
+        ProduceMessageRequestCodec codec = new ProduceMessageRequestCodec();
+        ByteBuf buf = Unpooled.buffer();
+        codec.encode(request, buf);
+        Assert.assertNull(codec.decode(null, buf).getData().get("test_topic").getMessages().get(0).getRawMessage());
+    }
+
 }
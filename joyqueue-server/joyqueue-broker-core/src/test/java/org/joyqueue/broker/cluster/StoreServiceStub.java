@@ -11,6 +11,7 @@ import org.joyqueue.store.StoreManagementService;
 import org.joyqueue.store.StoreNode;
 import org.joyqueue.store.StoreNodes;
 import org.joyqueue.store.StoreService;
+import org.joyqueue.store.event.StoreCommitEvent;
 import org.joyqueue.store.event.StoreEvent;
 import org.joyqueue.store.replication.ReplicableStore;
 import org.joyqueue.store.transaction.TransactionStore;
@@ -128,4 +129,14 @@ public class StoreServiceStub implements StoreService {
     public void removeListener(EventListener<StoreEvent> listener) {
 
     }
-}
\ No newline at end of file
+
+    @Override
+    public void addCommitListener(EventListener<StoreCommitEvent> listener) {
+
+    }
+
+    @Override
+    public void removeCommitListener(EventListener<StoreCommitEvent> listener) {
+
+    }
+}
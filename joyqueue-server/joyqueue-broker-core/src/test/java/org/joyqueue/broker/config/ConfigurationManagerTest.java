@@ -0,0 +1,40 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigurationManagerTest {
+
+    @Test
+    public void parseParamsTest() throws Exception {
+        ConfigurationManager configurationManager = new ConfigurationManager(new String[]{
+                "store.flush.interval=20", " broker.test.key = a=b ", "invalid", "=empty", null});
+        configurationManager.start();
+        try {
+            Configuration configuration = configurationManager.getConfiguration();
+            Assert.assertEquals("20", configuration.getProperty("store.flush.interval").getString());
+            // 只按第一个等号拆分，去掉首尾空白
+            Assert.assertEquals("a=b", configuration.getProperty("broker.test.key").getString());
+            // 不是key=value格式的参数被忽略
+            Assert.assertFalse(configuration.contains("invalid"));
+            Assert.assertFalse(configuration.contains(""));
+        } finally {
+            configurationManager.stop();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AckSegmentQueueTest {
+
+    @Test
+    public void commitInOrder() {
+        AckSegmentQueue queue = new AckSegmentQueue();
+        // 每个分区段10条消息，超过初始容量，触发扩容
+        for (long i = 0; i < 100; i++) {
+            Assert.assertTrue(queue.add(i * 10, i * 10 + 9));
+        }
+        Assert.assertEquals(100, queue.size());
+
+        // 队头之后的分区段先应答，不能提交
+        Assert.assertTrue(queue.ack(10, 19));
+        Assert.assertTrue(queue.ack(20, 29));
+        Assert.assertEquals(0L, queue.commit(0L));
+        Assert.assertEquals(0L, queue.headIndex());
+
+        Assert.assertTrue(queue.ack(0, 9));
+        Assert.assertEquals(30L, queue.commit(0L));
+        Assert.assertEquals(97, queue.size());
+        Assert.assertEquals(30L, queue.headIndex());
+
+        // 结束序号不匹配或者不存在的分区段
+        Assert.assertFalse(queue.ack(30, 38));
+        Assert.assertFalse(queue.ack(31, 39));
+        Assert.assertFalse(queue.ack(0, 9));
+
+        for (long i = 99; i >= 3; i--) {
+            Assert.assertTrue(queue.ack(i * 10, i * 10 + 9));
+        }
+        Assert.assertEquals(1000L, queue.commit(30L));
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(-1L, queue.headIndex());
+    }
+
+    @Test
+    public void addOutOfOrder() {
+        AckSegmentQueue queue = new AckSegmentQueue();
+        // 队头在环形数组中间时插入，并跨过数组边界
+        for (long i = 0; i < 12; i++) {
+            queue.add(i * 10, i * 10 + 9);
+            queue.ack(i * 10, i * 10 + 9);
+        }
+        Assert.assertEquals(120L, queue.commit(0L));
+        for (long i = 20; i < 36; i += 2) {
+            queue.add(i * 10, i * 10 + 9);
+        }
+        Assert.assertTrue(queue.add(120, 199));
+        Assert.assertTrue(queue.add(210, 219));
+        Assert.assertFalse(queue.add(200, 209));
+        Assert.assertEquals(10, queue.size());
+        Assert.assertEquals(120L, queue.headIndex());
+
+        Assert.assertTrue(queue.ack(200, 209));
+        Assert.assertTrue(queue.ack(210, 219));
+        Assert.assertTrue(queue.ack(120, 199));
+        Assert.assertEquals(220L, queue.commit(120L));
+        Assert.assertEquals(220L, queue.headIndex());
+        Assert.assertEquals(7, queue.size());
+    }
+}
@@ -19,6 +19,7 @@ import com.google.common.collect.Lists;
 import org.joyqueue.broker.cluster.ClusterManager;
 import org.joyqueue.broker.consumer.model.ConsumePartition;
 import org.joyqueue.broker.monitor.SessionManager;
+import org.joyqueue.domain.Partition;
 import org.joyqueue.domain.TopicName;
 import org.joyqueue.exception.JoyQueueException;
 import org.joyqueue.network.session.Consumer;
@@ -27,7 +28,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Created by chengzhiliang on 2019/3/15.
@@ -108,6 +114,119 @@ public class PartitionManagerTest {
     }
 
 
+    @Test
+    public void occupyLargePartition() {
+        Assert.assertTrue(partitionManager.tryOccupyPartition(consumer, partition, occupyTimeout));
+        // 超过分区占用表初始容量的分区和重试分区
+        short[] partitions = {(short) 100, Partition.RETRY_PARTITION_ID};
+        for (short p : partitions) {
+            Assert.assertTrue(partitionManager.tryOccupyPartition(consumer, p, occupyTimeout));
+            Assert.assertFalse(partitionManager.tryOccupyPartition(consumer, p, occupyTimeout));
+            Assert.assertTrue(partitionManager.releasePartition(new ConsumePartition("topic", "app", p)));
+            Assert.assertTrue(partitionManager.tryOccupyPartition(consumer, p, occupyTimeout));
+        }
+        // 已经创建的分区锁在扩容后保留
+        Assert.assertFalse(partitionManager.tryOccupyPartition(consumer, partition, occupyTimeout));
+    }
+
+    @Test
+    public void concurrentOccupyLargePartition() throws Exception {
+        int threads = 8;
+        int partitions = 48;
+        for (int round = 0; round < 50; round++) {
+            // 每轮使用新的应用，分区占用表从初始容量开始扩容
+            String app = "app" + round;
+            AtomicIntegerArray occupied = new AtomicIntegerArray(partitions);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = Lists.newArrayList();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                Thread worker = new Thread(() -> {
+                    // 每个线程按不同的顺序占用，扩容和创建分区锁交错进行
+                    List<Short> order = Lists.newArrayList();
+                    for (int i = 0; i < partitions; i++) {
+                        order.add((short) (16 + i));
+                    }
+                    Collections.shuffle(order);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (short p : order) {
+                        if (partitionManager.tryOccupyPartition(consumer(app, app + "-" + thread + "-" + p), p, 60 * 1000L)) {
+                            occupied.incrementAndGet(p - 16);
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            // 同一个分区只能被占用一次，扩容时创建的分区锁不能丢失
+            for (int i = 0; i < partitions; i++) {
+                Assert.assertTrue(occupied.get(i) <= 1);
+                Assert.assertEquals(occupied.get(i) == 0,
+                        partitionManager.tryOccupyPartition(consumer(app, app + "-check-" + i), (short) (16 + i), 60 * 1000L));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentCreateOccupancyTable() throws Exception {
+        int threads = 4;
+        int partitions = 64;
+        for (int round = 0; round < 1000; round++) {
+            CasPartitionManager.OccupancyTable table = new CasPartitionManager.OccupancyTable(null);
+            AtomicReferenceArray<Object> created = new AtomicReferenceArray<>(partitions);
+            AtomicBoolean conflict = new AtomicBoolean(false);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = Lists.newArrayList();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    List<Short> order = Lists.newArrayList();
+                    for (int i = 0; i < partitions; i++) {
+                        order.add((short) (16 + i));
+                    }
+                    Collections.shuffle(order);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (short p : order) {
+                        Object partitionLock = table.getOrCreate(p);
+                        if (!created.compareAndSet(p - 16, null, partitionLock) && created.get(p - 16) != partitionLock) {
+                            conflict.set(true);
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            // 所有线程拿到同一个分区锁，并且扩容之后仍然可以读到
+            Assert.assertFalse(conflict.get());
+            for (int i = 0; i < partitions; i++) {
+                Assert.assertSame(created.get(i), table.get((short) (16 + i)));
+            }
+        }
+    }
+
+    private Consumer consumer(String app, String id) {
+        Consumer consumer = new Consumer();
+        consumer.setId(id);
+        consumer.setTopic("topic");
+        consumer.setApp(app);
+        return consumer;
+    }
+
     @Test
     public void selectPartitionIndex() {
         int i = partitionManager.selectPartitionIndex(10, -1, 9);
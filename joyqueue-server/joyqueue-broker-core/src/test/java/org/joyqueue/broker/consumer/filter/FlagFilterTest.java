@@ -18,6 +18,7 @@ package org.joyqueue.broker.consumer.filter;
 import org.joyqueue.broker.consumer.filter.FilterCallback;
 import org.joyqueue.broker.consumer.filter.FlagFilter;
 import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.store.message.FlagMask;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -109,4 +110,14 @@ public class FlagFilterTest {
 
         Assert.assertEquals(1, filter.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void flagMask() {
+        flagFilter.setRule("[9]");
+        Assert.assertEquals(FlagMask.of((short) 9), flagFilter.flagMask());
+        Assert.assertFalse(FlagMask.mayIntersect(flagFilter.flagMask(), FlagMask.of((short) 1)));
+
+        flagFilter.setRule(".*");
+        Assert.assertEquals(FlagMask.ALL, flagFilter.flagMask());
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.consumer.position;
+
+import com.alibaba.fastjson.JSON;
+import org.joyqueue.broker.consumer.model.ConsumePartition;
+import org.joyqueue.broker.consumer.position.model.ConsumeBill;
+import org.joyqueue.broker.consumer.position.model.Position;
+import org.joyqueue.network.session.Joint;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class PositionLogTest {
+    private File base;
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir("position_log");
+    }
+
+    @After
+    public void after() {
+        BaseDirUtils.destroyBaseDir(base);
+    }
+
+    @Test
+    public void incrementalFlushTest() throws Exception {
+        PositionLog log = new PositionLog(base);
+        log.recover();
+        Map<ConsumePartition, Position> positions = new ConcurrentHashMap<>();
+        Set<ConsumePartition> removed = new HashSet<>();
+        for (short i = 0; i < 10; i++) {
+            positions.put(partition("topic", "app", i, 1), new Position(i, i, i, i));
+        }
+        Assert.assertEquals(10, log.flush(positions, removed));
+        // 没有变化时不写入
+        Assert.assertEquals(0, log.flush(positions, removed));
+
+        positions.get(partition("topic", "app", (short) 3, 1)).setAckStartIndex(100L);
+        positions.remove(partition("topic", "app", (short) 5, 1));
+        removed.add(partition("topic", "app", (short) 5, 1));
+        Assert.assertEquals(2, log.flush(positions, removed));
+        Assert.assertTrue(removed.isEmpty());
+        log.close();
+
+        PositionLog recovered = new PositionLog(base);
+        ConcurrentMap<ConsumePartition, Position> result = recovered.recover();
+        // 恢复之后没有变化的消费位置不需要重新写入
+        Assert.assertEquals(0, recovered.flush(result, removed));
+        recovered.close();
+        Assert.assertEquals(9, result.size());
+        Assert.assertNull(result.get(partition("topic", "app", (short) 5, 1)));
+        Position position = result.get(partition("topic", "app", (short) 3, 1));
+        Assert.assertEquals(100L, position.getAckStartIndex());
+        Assert.assertEquals(3L, position.getPullCurIndex());
+        for (ConsumePartition consumePartition : result.keySet()) {
+            Assert.assertEquals(1, consumePartition.getPartitionGroup());
+        }
+    }
+
+    @Test
+    public void snapshotAndTornTailTest() throws Exception {
+        PositionLog log = new PositionLog(base);
+        log.recover();
+        Map<ConsumePartition, Position> positions = new ConcurrentHashMap<>();
+        positions.put(partition("topic", "app", (short) 0, 2), new Position(1, 1, 1, 1));
+        log.flush(positions, Collections.emptySet());
+        log.snapshot();
+        positions.get(partition("topic", "app", (short) 0, 2)).setAckStartIndex(2L);
+        positions.put(partition("topic", "app", (short) 1, 2), new Position(3, 3, 3, 3));
+        log.flush(positions, Collections.emptySet());
+        log.close();
+
+        // 模拟最后一条记录只写了一半
+        File logFile = new File(base, PositionLog.LOG_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        PositionLog recovered = new PositionLog(base);
+        ConcurrentMap<ConsumePartition, Position> result = recovered.recover();
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(2L, result.get(partition("topic", "app", (short) 0, 2)).getAckStartIndex());
+
+        // 截断之后可以继续追加
+        result.put(partition("topic", "app", (short) 2, 2), new Position(4, 4, 4, 4));
+        Assert.assertEquals(1, recovered.flush(result, Collections.emptySet()));
+        recovered.close();
+        Assert.assertEquals(2, new PositionLog(base).read().size());
+    }
+
+    @Test
+    public void failedFlushTest() throws Exception {
+        PositionLog log = new PositionLog(base);
+        log.recover();
+        ConsumePartition partition0 = partition("topic", "app", (short) 0, 1);
+        ConsumePartition partition1 = partition("topic", "app", (short) 1, 1);
+        Map<ConsumePartition, Position> positions = new ConcurrentHashMap<>();
+        Set<ConsumePartition> removed = new HashSet<>();
+        positions.put(partition0, new Position(1, 1, 1, 1));
+        positions.put(partition1, new Position(2, 2, 2, 2));
+        Assert.assertEquals(2, log.flush(positions, removed));
+
+        positions.get(partition0).setAckCurIndex(10L);
+        positions.remove(partition1);
+        removed.add(partition1);
+
+        // 模拟写入失败
+        Field logChannel = PositionLog.class.getDeclaredField("logChannel");
+        logChannel.setAccessible(true);
+        ((FileChannel) logChannel.get(log)).close();
+        try {
+            log.flush(positions, removed);
+            Assert.fail();
+        } catch (IOException expected) {
+            // 写入失败时删除记录放回，已经写入的消费位置不变
+        }
+        Assert.assertTrue(removed.contains(partition1));
+
+        // 重新打开增量日志后，失败的变化需要再次写入
+        log.close();
+        Method openLog = PositionLog.class.getDeclaredMethod("openLog");
+        openLog.setAccessible(true);
+        openLog.invoke(log);
+        FileChannel channel = (FileChannel) logChannel.get(log);
+        channel.position(channel.size());
+        Assert.assertEquals(2, log.flush(positions, removed));
+        log.close();
+
+        ConcurrentMap<ConsumePartition, Position> result = new PositionLog(base).read();
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(10L, result.get(partition0).getAckCurIndex());
+    }
+
+    @Test
+    public void migrateFromJsonTest() throws Exception {
+        // 旧版本的JSON文件
+        Map<Joint, List<ConsumeBill>> bills = new HashMap<>();
+        bills.put(new Joint("topic", "app"),
+                Collections.singletonList(new ConsumeBill(3, (short) 0, new Position(5, 5, 6, 6))));
+        String json = JSON.toJSONString(bills);
+        try (FileWriter writer = new FileWriter(new File(base, "index"))) {
+            writer.write(json);
+        }
+
+        LocalFileStore store = new LocalFileStore();
+        store.setBasePath(base.getAbsolutePath());
+        store.start();
+        ConsumePartition consumePartition = partition("topic", "app", (short) 0, 3);
+        Assert.assertEquals(5L, store.get(consumePartition).getAckStartIndex());
+        Assert.assertTrue(new File(base, PositionLog.SNAPSHOT_FILE).exists());
+
+        store.get(consumePartition).setAckStartIndex(7L);
+        store.forceFlush();
+        store.stop();
+
+        LocalFileStore restarted = new LocalFileStore();
+        restarted.setBasePath(base.getAbsolutePath());
+        restarted.start();
+        Assert.assertEquals(7L, restarted.get(consumePartition).getAckStartIndex());
+        Assert.assertEquals(6L, restarted.get(consumePartition).getPullCurIndex());
+        restarted.stop();
+    }
+
+    private ConsumePartition partition(String topic, String app, short partition, int partitionGroup) {
+        ConsumePartition consumePartition = new ConsumePartition(topic, app, partition);
+        consumePartition.setPartitionGroup(partitionGroup);
+        return consumePartition;
+    }
+}
@@ -24,6 +24,7 @@ import org.joyqueue.exception.JoyQueueException;
 import org.joyqueue.message.MessageLocation;
 import org.joyqueue.network.session.Connection;
 import org.joyqueue.network.session.Consumer;
+import org.joyqueue.toolkit.concurrent.EventListener;
 
 import java.util.Map;
 
@@ -62,6 +63,11 @@ public class ConsumeStub implements Consume {
         return null;
     }
 
+    @Override
+    public PullResult getMessageRegions(Consumer consumer, short partition, long index, int count) throws JoyQueueException {
+        return null;
+    }
+
     @Override
     public PullResult getMessage(String topic, short partition, long index, int count) {
         return null;
@@ -212,4 +218,14 @@ public class ConsumeStub implements Consume {
     public void releasePartition(String topic, String app, short partition) {
 
     }
+
+    @Override
+    public void addReleaseListener(EventListener<ConsumePartition> listener) {
+
+    }
+
+    @Override
+    public void removeReleaseListener(EventListener<ConsumePartition> listener) {
+
+    }
 }
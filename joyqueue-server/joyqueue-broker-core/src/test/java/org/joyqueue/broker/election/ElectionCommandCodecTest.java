@@ -20,6 +20,8 @@ import org.joyqueue.broker.consumer.position.model.Position;
 import org.joyqueue.broker.election.TopicPartitionGroup;
 import org.joyqueue.broker.election.command.AppendEntriesRequest;
 import org.joyqueue.broker.election.command.AppendEntriesResponse;
+import org.joyqueue.broker.election.command.BatchAppendEntriesRequest;
+import org.joyqueue.broker.election.command.BatchAppendEntriesResponse;
 import org.joyqueue.broker.election.command.ReplicateConsumePosRequest;
 import org.joyqueue.broker.election.command.ReplicateConsumePosResponse;
 import org.joyqueue.broker.election.command.TimeoutNowRequest;
@@ -30,6 +32,10 @@ import org.joyqueue.broker.election.network.codec.AppendEntriesRequestDecoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesRequestEncoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesResponseDecoder;
 import org.joyqueue.broker.election.network.codec.AppendEntriesResponseEncoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesRequestDecoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesRequestEncoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesResponseDecoder;
+import org.joyqueue.broker.election.network.codec.BatchAppendEntriesResponseEncoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosRequestDecoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosRequestEncoder;
 import org.joyqueue.broker.election.network.codec.ReplicateConsumePosResponseDecoder;
@@ -42,14 +48,21 @@ import org.joyqueue.broker.election.network.codec.VoteRequestDecoder;
 import org.joyqueue.broker.election.network.codec.VoteRequestEncoder;
 import org.joyqueue.broker.election.network.codec.VoteResponseDecoder;
 import org.joyqueue.broker.election.network.codec.VoteResponseEncoder;
+import org.joyqueue.network.command.CommandType;
 import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.FileSegment;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ElectionCommandCodecTest {
@@ -158,6 +171,96 @@ public class ElectionCommandCodecTest {
         //Assert.assertEquals(decodeResponse.getTopicPartitionGroup().getPartitionGroupId(), topicPartitionGroup.getPartitionGroupId());
     }
 
+    @Test
+    public void testAppendEntriesFileSegmentCodec() throws Exception {
+        File file = File.createTempFile("append_entries", ".tmp");
+        file.deleteOnExit();
+        byte[] fileBytes = new byte[64];
+        for (int i = 0; i < fileBytes.length; i++) {
+            fileBytes[i] = (byte) i;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(fileBytes);
+        }
+
+        FileSegment segment = new FileSegment(file, 16, 32, 1);
+        AppendEntriesRequest request = AppendEntriesRequest.Build.create()
+                .partitionGroup(new TopicPartitionGroup("test", 1))
+                .term(2).leader(1).startPosition(100L).entriesSegment(segment).build();
+        Assert.assertEquals(32, request.getEntriesLength());
+
+        BatchAppendEntriesRequest batchRequest = new BatchAppendEntriesRequest(Collections.singletonList(request));
+        ByteBuf byteBuf = Unpooled.buffer(512);
+        new BatchAppendEntriesRequestEncoder().encode(batchRequest, byteBuf);
+        Assert.assertEquals(Collections.singletonList(segment), batchRequest.getFileSegments());
+        Assert.assertEquals(byteBuf.writerIndex(), segment.getOffset());
+
+        // 模拟发送时在登记的位置写入文件区域
+        ByteBuf sent = Unpooled.buffer(512);
+        sent.writeBytes(byteBuf, 0, segment.getOffset());
+        sent.writeBytes(fileBytes, (int) segment.getPosition(), segment.getLength());
+        sent.writeBytes(byteBuf, segment.getOffset(), byteBuf.writerIndex() - segment.getOffset());
+
+        BatchAppendEntriesRequest decodeRequest = (BatchAppendEntriesRequest) new BatchAppendEntriesRequestDecoder()
+                .decode(new JoyQueueHeader(CommandType.RAFT_BATCH_APPEND_ENTRIES_REQUEST), sent);
+        AppendEntriesRequest decoded = decodeRequest.getRequests().get(0);
+        Assert.assertEquals(32, decoded.getEntriesLength());
+        Assert.assertEquals(16, decoded.getEntries().get());
+
+        // 解码后的日志引用网络缓冲区，释放后归还
+        Assert.assertEquals(2, sent.refCnt());
+        decodeRequest.release();
+        Assert.assertEquals(1, sent.refCnt());
+    }
+
+    @Test
+    public void testBatchAppendEntriesCodec() throws Exception {
+        List<AppendEntriesRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer entries = ByteBuffer.allocate(4 * (i + 1));
+            while (entries.hasRemaining()) {
+                entries.putInt(i);
+            }
+            entries.flip();
+            requests.add(AppendEntriesRequest.Build.create()
+                    .partitionGroup(new TopicPartitionGroup("test" + i, i))
+                    .term(i).leader(1).startPosition(100L * i).commitPosition(10L * i)
+                    .entries(i == 1 ? null : entries).build());
+        }
+        BatchAppendEntriesRequest request = new BatchAppendEntriesRequest(requests);
+
+        ByteBuf byteBuf = Unpooled.buffer(512);
+        new BatchAppendEntriesRequestEncoder().encode(request, byteBuf);
+        BatchAppendEntriesRequest decodeRequest = (BatchAppendEntriesRequest) new BatchAppendEntriesRequestDecoder()
+                .decode(new JoyQueueHeader(request.type()), byteBuf);
+
+        Assert.assertEquals(3, decodeRequest.getRequests().size());
+        for (int i = 0; i < 3; i++) {
+            AppendEntriesRequest decoded = decodeRequest.getRequests().get(i);
+            Assert.assertEquals("test" + i, decoded.getTopic());
+            Assert.assertEquals(i, decoded.getPartitionGroup());
+            Assert.assertEquals(100L * i, decoded.getStartPosition());
+            Assert.assertEquals(i == 1 ? 0 : 4 * (i + 1), decoded.getEntriesLength());
+        }
+        Assert.assertEquals(2, decodeRequest.getRequests().get(2).getEntries().getInt());
+
+        List<AppendEntriesResponse> responses = new ArrayList<>();
+        responses.add(AppendEntriesResponse.Build.create().success(true).nextPosition(10L).replicaId(1).build());
+        responses.add(AppendEntriesResponse.Build.create().success(false).nextPosition(-1L).build());
+        BatchAppendEntriesResponse response = new BatchAppendEntriesResponse(responses);
+
+        byteBuf = Unpooled.buffer(512);
+        new BatchAppendEntriesResponseEncoder().encode(response, byteBuf);
+        BatchAppendEntriesResponse decodeResponse = (BatchAppendEntriesResponse) new BatchAppendEntriesResponseDecoder()
+                .decode(new JoyQueueHeader(response.type()), byteBuf);
+
+        Assert.assertEquals(2, decodeResponse.getResponses().size());
+        Assert.assertTrue(decodeResponse.getResponses().get(0).isSuccess());
+        Assert.assertEquals(10L, decodeResponse.getResponses().get(0).getNextPosition());
+        Assert.assertFalse(decodeResponse.getResponses().get(1).isSuccess());
+        Assert.assertEquals(-1L, decodeResponse.getResponses().get(1).getNextPosition());
+    }
+
     @Test
     public void testReplicateConsumePosRequestCodec() throws Exception {
         Map<ConsumePartition, Position> consumePositions = new HashMap<>();
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.polling;
+
+import com.google.common.collect.Lists;
+import org.joyqueue.broker.cluster.ClusterManager;
+import org.joyqueue.broker.consumer.Consume;
+import org.joyqueue.broker.consumer.model.ConsumePartition;
+import org.joyqueue.broker.consumer.model.PullResult;
+import org.joyqueue.broker.monitor.SessionManager;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.network.session.Consumer;
+import org.joyqueue.store.StoreService;
+import org.joyqueue.store.event.StoreCommitEvent;
+import org.joyqueue.toolkit.concurrent.EventListener;
+import org.joyqueue.toolkit.config.Property;
+import org.joyqueue.toolkit.config.PropertySupplier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LongPollingManagerTest {
+
+    private final SessionManager sessionManager = Mockito.mock(SessionManager.class);
+    private final ClusterManager clusterManager = Mockito.mock(ClusterManager.class);
+    private final Consume consume = Mockito.mock(Consume.class);
+    private final StoreService storeService = Mockito.mock(StoreService.class);
+    private final PropertySupplier propertySupplier = Mockito.mock(PropertySupplier.class);
+    private final Consumer consumer = new Consumer("1", "topic", "app");
+    private final AtomicBoolean hasMessage = new AtomicBoolean(false);
+    private LongPollingManager longPollingManager;
+
+    @Before
+    public void setup() throws Exception {
+        // 兜底检查间隔足够长，只能通过事件唤醒
+        Mockito.when(propertySupplier.getProperty(LongPollingManager.LONG_POLLING_CHECK_INTERVAL))
+                .thenReturn(new Property(null, LongPollingManager.LONG_POLLING_CHECK_INTERVAL, 60 * 1000));
+        Mockito.when(sessionManager.getConsumerById("1")).thenReturn(consumer);
+        Mockito.when(clusterManager.getLocalPartitions(TopicName.parse("topic"))).thenReturn(Lists.newArrayList((short) 0, (short) 1));
+        Mockito.when(consume.hasFreePartition(Mockito.any())).thenReturn(true);
+        Mockito.when(consume.getMessage(Mockito.any(), Mockito.anyInt(), Mockito.anyInt())).thenAnswer(invocation ->
+                new PullResult(consumer, (short) 0, hasMessage.get() ?
+                        Collections.singletonList(ByteBuffer.allocate(10)) : Collections.emptyList()));
+
+        longPollingManager = new LongPollingManager(sessionManager, clusterManager, consume, storeService, propertySupplier);
+        longPollingManager.start();
+    }
+
+    @After
+    public void after() {
+        longPollingManager.stop();
+    }
+
+    @Test
+    public void wakeupByCommitTest() throws Exception {
+        ArgumentCaptor<EventListener<StoreCommitEvent>> captor = ArgumentCaptor.forClass(EventListener.class);
+        Mockito.verify(storeService).addCommitListener(captor.capture());
+
+        Callback callback = new Callback();
+        Assert.assertTrue(longPollingManager.suspend(new LongPolling(consumer, 10, 1000, 30 * 1000, callback)));
+        // 第一次兜底检查没有消息，重新挂起
+        Mockito.verify(consume, Mockito.timeout(1000)).getMessage(Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+        Thread.sleep(200);
+        Assert.assertEquals(1, callback.success.getCount());
+
+        hasMessage.set(true);
+        captor.getValue().onEvent(new StoreCommitEvent("topic", 0, 100L));
+        Assert.assertTrue(callback.success.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void wakeupByReleaseTest() throws Exception {
+        ArgumentCaptor<EventListener<ConsumePartition>> captor = ArgumentCaptor.forClass(EventListener.class);
+        Mockito.verify(consume).addReleaseListener(captor.capture());
+
+        Callback callback = new Callback();
+        Assert.assertTrue(longPollingManager.suspend(new LongPolling(consumer, 10, 1000, 30 * 1000, callback)));
+        Mockito.verify(consume, Mockito.timeout(1000)).getMessage(Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+        Thread.sleep(200);
+
+        hasMessage.set(true);
+        // 其他主题的事件不会唤醒
+        captor.getValue().onEvent(new ConsumePartition("other", "app", (short) 0));
+        Assert.assertFalse(callback.success.await(200, TimeUnit.MILLISECONDS));
+        captor.getValue().onEvent(new ConsumePartition("topic", "app", (short) 0));
+        Assert.assertTrue(callback.success.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void commitBeforeSuspendTest() throws Exception {
+        ArgumentCaptor<EventListener<StoreCommitEvent>> captor = ArgumentCaptor.forClass(EventListener.class);
+        Mockito.verify(storeService).addCommitListener(captor.capture());
+        // 等待守护线程完成第一次兜底检查，之后只能通过事件唤醒
+        Thread.sleep(300);
+
+        // 拉取消息时没有消息，挂起之前提交了新消息
+        long wakeupSequence = longPollingManager.getWakeupSequence("topic");
+        hasMessage.set(true);
+        captor.getValue().onEvent(new StoreCommitEvent("topic", 0, 100L));
+
+        Callback callback = new Callback();
+        LongPolling longPolling = new LongPolling(consumer, 10, 1000, 30 * 1000, callback);
+        longPolling.setWakeupSequence(wakeupSequence);
+        Assert.assertTrue(longPollingManager.suspend(longPolling));
+        Assert.assertTrue(callback.success.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void expireTest() throws Exception {
+        Callback callback = new Callback();
+        Assert.assertTrue(longPollingManager.suspend(new LongPolling(consumer, 10, 1000, 300, callback)));
+        Assert.assertTrue(callback.expire.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, callback.success.getCount());
+    }
+
+    private static class Callback implements LongPollingCallback {
+        private final CountDownLatch success = new CountDownLatch(1);
+        private final CountDownLatch expire = new CountDownLatch(1);
+
+        @Override
+        public void onSuccess(Consumer consumer, PullResult pullResult) {
+            success.countDown();
+        }
+
+        @Override
+        public void onExpire(Consumer consumer) {
+            expire.countDown();
+        }
+
+        @Override
+        public void onException(Consumer consumer, Throwable throwable) {
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.producer.schedule;
+
+import org.joyqueue.broker.cluster.ClusterManager;
+import org.joyqueue.broker.config.Configuration;
+import org.joyqueue.broker.producer.Produce;
+import org.joyqueue.broker.producer.ProduceConfig;
+import org.joyqueue.broker.producer.ProducerConfigKey;
+import org.joyqueue.broker.producer.PutResult;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.session.Producer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ScheduledMessageManagerTest {
+
+    private final Produce produce = Mockito.mock(Produce.class);
+    private final ClusterManager clusterManager = Mockito.mock(ClusterManager.class);
+    private final Producer producer = new Producer("1", "topic", "app", Producer.ProducerType.JOYQUEUE);
+    private File directory;
+    private ProduceConfig config;
+    private ScheduledMessageManager manager;
+
+    @Before
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("schedule").toFile();
+        Configuration conf = new Configuration();
+        conf.addProperty(ProducerConfigKey.SCHEDULE_TICK.getName(), "100");
+        conf.addProperty(ProducerConfigKey.SCHEDULE_RETRY_INTERVAL.getName(), "100");
+        config = new ProduceConfig(conf);
+        Mockito.when(produce.putMessage(Mockito.any(), Mockito.anyList(), Mockito.any())).thenReturn(new PutResult());
+        Mockito.when(clusterManager.isLeader(Mockito.any(TopicName.class), Mockito.anyShort())).thenReturn(true);
+        Mockito.when(clusterManager.getLocalPartitions(Mockito.any(TopicName.class))).thenReturn(Collections.singletonList((short) 0));
+        manager = start();
+    }
+
+    @After
+    public void after() {
+        if (manager != null) {
+            manager.stop();
+        }
+        deleteFolder(directory);
+    }
+
+    @Test
+    public void deliverTest() throws Exception {
+        long deliverAt = System.currentTimeMillis() + 500;
+        manager.schedule(producer, Arrays.asList(message("1", deliverAt), message("2", deliverAt)), QosLevel.PERSISTENCE);
+        Assert.assertEquals(1, manager.getPendingSlots());
+        Mockito.verify(produce, Mockito.after(200).never()).putMessage(Mockito.any(), Mockito.anyList(), Mockito.any());
+
+        List<BrokerMessage> delivered = verifyDelivered(1);
+        Assert.assertTrue(System.currentTimeMillis() >= deliverAt);
+        Assert.assertEquals(2, delivered.size());
+        Assert.assertEquals("topic", delivered.get(0).getTopic());
+        Assert.assertEquals("app", delivered.get(0).getApp());
+        Assert.assertEquals("1", new String(delivered.get(0).getByteBody(), StandardCharsets.UTF_8));
+        Assert.assertEquals("2", new String(delivered.get(1).getByteBody(), StandardCharsets.UTF_8));
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void recoverTest() throws Exception {
+        long deliverAt = System.currentTimeMillis() + 500;
+        manager.schedule(producer, Arrays.asList(message("1", deliverAt), message("2", deliverAt + 1000)), QosLevel.PERSISTENCE);
+        manager.stop();
+
+        manager = start();
+        Assert.assertEquals(2, manager.getPendingSlots());
+        List<BrokerMessage> delivered = verifyDelivered(1);
+        Assert.assertEquals("1", new String(delivered.get(0).getByteBody(), StandardCharsets.UTF_8));
+        manager.stop();
+
+        // 已经投递完成的时间槽不再投递
+        manager = start();
+        Assert.assertEquals(1, manager.getPendingSlots());
+        delivered = verifyDelivered(2);
+        Assert.assertEquals("2", new String(delivered.get(0).getByteBody(), StandardCharsets.UTF_8));
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        Mockito.when(produce.putMessage(Mockito.any(), Mockito.anyList(), Mockito.any()))
+                .thenThrow(new JoyQueueException(JoyQueueCode.FW_PARTITION_BROKER_NOT_LEADER))
+                .thenReturn(new PutResult());
+        manager.schedule(producer, Arrays.asList(message("1", System.currentTimeMillis() + 300)), QosLevel.PERSISTENCE);
+        verifyDelivered(2);
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void rejectReplicationTest() throws Exception {
+        try {
+            manager.schedule(producer, Arrays.asList(message("1", System.currentTimeMillis() + 300)), QosLevel.REPLICATION);
+            Assert.fail();
+        } catch (JoyQueueException e) {
+            Assert.assertEquals(JoyQueueCode.CN_COMMAND_UNSUPPORTED.getCode(), e.getCode());
+        }
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void rejectNotLeaderTest() throws Exception {
+        BrokerMessage message = message("1", System.currentTimeMillis() + 300);
+        message.setPartition((short) 1);
+        Mockito.when(clusterManager.isLeader(Mockito.any(TopicName.class), Mockito.eq((short) 1))).thenReturn(false);
+        try {
+            manager.schedule(producer, Arrays.asList(message), QosLevel.PERSISTENCE);
+            Assert.fail();
+        } catch (JoyQueueException e) {
+            Assert.assertEquals(JoyQueueCode.FW_PRODUCE_MESSAGE_BROKER_NOT_LEADER.getCode(), e.getCode());
+        }
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void rejectMixedBatchTest() throws Exception {
+        long deliverAt = System.currentTimeMillis() + 60 * 1000;
+        Assert.assertTrue(manager.isScheduled(Arrays.asList(message("1", deliverAt), message("2", deliverAt))));
+        Assert.assertFalse(manager.isScheduled(Arrays.asList(message("1", 0), message("2", 0))));
+        try {
+            manager.isScheduled(Arrays.asList(message("1", deliverAt), message("2", 0)));
+            Assert.fail();
+        } catch (JoyQueueException e) {
+            Assert.assertEquals(JoyQueueCode.CN_PARAM_ERROR.getCode(), e.getCode());
+        }
+        Assert.assertEquals(0, manager.getPendingSlots());
+    }
+
+    @Test
+    public void retargetAfterLeaderChangeTest() throws Exception {
+        BrokerMessage message = message("1", System.currentTimeMillis() + 300);
+        message.setPartition((short) 1);
+        manager.schedule(producer, Arrays.asList(message), QosLevel.PERSISTENCE);
+
+        // 到期前分区1的主节点切换到其它节点，投递时不再指定分区
+        Mockito.when(clusterManager.isLeader(Mockito.any(TopicName.class), Mockito.eq((short) 1))).thenReturn(false);
+        List<BrokerMessage> delivered = verifyDelivered(1);
+        Assert.assertEquals(-1, delivered.get(0).getPartition());
+    }
+
+    private ScheduledMessageManager start() throws Exception {
+        ScheduledMessageManager manager = new ScheduledMessageManager(directory, config, produce, clusterManager);
+        manager.start();
+        return manager;
+    }
+
+    /**
+     * 等待第times次调用，返回这次调用写入的消息
+     */
+    private List<BrokerMessage> verifyDelivered(int times) throws Exception {
+        ArgumentCaptor<List<BrokerMessage>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(produce, Mockito.timeout(3000).times(times)).putMessage(Mockito.any(), captor.capture(), Mockito.eq(QosLevel.REPLICATION));
+        // 等待投递完成记录写入
+        Thread.sleep(100);
+        return new ArrayList<>(captor.getValue());
+    }
+
+    private BrokerMessage message(String body, long deliverAt) {
+        BrokerMessage message = new BrokerMessage();
+        message.setTopic("topic");
+        message.setApp("app");
+        message.setBody(body.getBytes(StandardCharsets.UTF_8));
+        message.setClientIp(new byte[16]);
+        message.setDeliverAt(deliverAt);
+        return message;
+    }
+
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    deleteFolder(f);
+                } else {
+                    f.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+}
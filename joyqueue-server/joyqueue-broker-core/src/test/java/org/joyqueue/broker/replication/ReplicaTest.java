@@ -0,0 +1,73 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.replication;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReplicaTest {
+
+    @Test
+    public void pipelineAckTest() {
+        Replica replica = new Replica(1, "127.0.0.1:50088");
+        replica.rollback(100L);
+        int epoch = replica.epoch();
+
+        // 连续发送三个请求，不等待响应
+        Assert.assertTrue(replica.onSend(epoch, 200L));
+        Assert.assertTrue(replica.onSend(epoch, 300L));
+        Assert.assertTrue(replica.onSend(epoch, 400L));
+        Assert.assertEquals(400L, replica.sendPosition());
+        Assert.assertEquals(3, replica.inflight());
+        Assert.assertEquals(100L, replica.nextPosition());
+
+        // 按顺序确认
+        Assert.assertTrue(replica.onAck(epoch, 200L));
+        replica.onResponse();
+        Assert.assertEquals(200L, replica.nextPosition());
+        Assert.assertEquals(400L, replica.sendPosition());
+        Assert.assertEquals(2, replica.inflight());
+    }
+
+    @Test
+    public void rollbackTest() {
+        Replica replica = new Replica(1, "127.0.0.1:50088");
+        replica.rollback(100L);
+        int epoch = replica.epoch();
+        replica.onSend(epoch, 200L);
+        replica.onSend(epoch, 300L);
+
+        // 第一个请求不匹配，回滚之后，之前发送的请求的响应被忽略
+        replica.rollback(50L);
+        replica.onResponse();
+        Assert.assertEquals(50L, replica.sendPosition());
+        Assert.assertFalse(replica.onAck(epoch, 300L));
+        replica.onResponse();
+        Assert.assertEquals(50L, replica.nextPosition());
+        Assert.assertEquals(0, replica.inflight());
+
+        // 回滚之前生成的请求不能发送
+        Assert.assertFalse(replica.onSend(epoch, 400L));
+        Assert.assertTrue(replica.onSend(replica.epoch(), 150L));
+        Assert.assertEquals(150L, replica.sendPosition());
+
+        // 副本返回的位置比已确认的位置小，从返回的位置重新发送
+        int newEpoch = replica.epoch();
+        Assert.assertTrue(replica.onAck(newEpoch, 20L));
+        Assert.assertEquals(20L, replica.sendPosition());
+        Assert.assertNotEquals(newEpoch, replica.epoch());
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.replication;
+
+import org.joyqueue.broker.election.TopicPartitionGroup;
+import org.joyqueue.broker.election.command.AppendEntriesRequest;
+import org.joyqueue.broker.election.command.AppendEntriesResponse;
+import org.joyqueue.broker.election.command.BatchAppendEntriesRequest;
+import org.joyqueue.broker.election.command.BatchAppendEntriesResponse;
+import org.joyqueue.network.command.CommandType;
+import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.CommandCallback;
+import org.joyqueue.network.transport.command.Direction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReplicationChannelTest {
+
+    private final ReplicationTransportSession session = Mockito.mock(ReplicationTransportSession.class);
+    private final List<Command> sentCommands = new ArrayList<>();
+    private final List<CommandCallback> sentCallbacks = new ArrayList<>();
+
+    @Before
+    public void before() {
+        Mockito.doAnswer(invocation -> {
+            sentCommands.add(invocation.getArgument(0));
+            sentCallbacks.add(invocation.getArgument(2));
+            return null;
+        }).when(session).sendCommand(Mockito.any(), Mockito.anyInt(), Mockito.any());
+    }
+
+    @Test
+    public void batchTest() {
+        // 单个合并请求最大1KB，同时只能有一个未响应的合并请求
+        ReplicationChannel channel = new ReplicationChannel("127.0.0.1:50088", session, 1024, 300);
+        List<Callback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Callback callback = new Callback();
+            callbacks.add(callback);
+            channel.append(appendCommand(i, 300), 1000, callback);
+        }
+
+        // 第一个请求立即发送，后续请求等待响应后合并发送
+        Assert.assertEquals(1, sentCommands.size());
+        respond(0);
+        Assert.assertTrue(callbacks.get(0).success);
+        Assert.assertEquals(2, sentCommands.size());
+        Assert.assertEquals(2, ((BatchAppendEntriesRequest) sentCommands.get(1).getPayload()).getRequests().size());
+
+        respond(1);
+        Assert.assertTrue(callbacks.get(1).success && callbacks.get(2).success);
+        Assert.assertEquals(100L * 2, callbacks.get(2).response.getNextPosition());
+        Assert.assertEquals(3, sentCommands.size());
+        Assert.assertEquals(2, ((BatchAppendEntriesRequest) sentCommands.get(2).getPayload()).getRequests().size());
+
+        sentCallbacks.get(2).onException(sentCommands.get(2), new RuntimeException());
+        Assert.assertTrue(callbacks.get(3).exception && callbacks.get(4).exception);
+        Assert.assertEquals(0L, channel.getInflightSize());
+    }
+
+    private void respond(int index) {
+        Command request = sentCommands.get(index);
+        List<AppendEntriesResponse> responses = new ArrayList<>();
+        for (AppendEntriesRequest appendEntriesRequest : ((BatchAppendEntriesRequest) request.getPayload()).getRequests()) {
+            responses.add(AppendEntriesResponse.Build.create().success(true)
+                    .nextPosition(appendEntriesRequest.getStartPosition()).build());
+        }
+        sentCallbacks.get(index).onSuccess(request, new Command(new JoyQueueHeader(Direction.RESPONSE,
+                CommandType.RAFT_BATCH_APPEND_ENTRIES_RESPONSE), new BatchAppendEntriesResponse(responses)));
+    }
+
+    private Command appendCommand(int partitionGroup, int length) {
+        AppendEntriesRequest request = AppendEntriesRequest.Build.create()
+                .partitionGroup(new TopicPartitionGroup("test", partitionGroup))
+                .startPosition(100L * partitionGroup).entries(ByteBuffer.allocate(length)).build();
+        return new Command(new JoyQueueHeader(Direction.REQUEST, CommandType.RAFT_APPEND_ENTRIES_REQUEST), request);
+    }
+
+    private static class Callback implements CommandCallback {
+        private boolean success;
+        private boolean exception;
+        private AppendEntriesResponse response;
+
+        @Override
+        public void onSuccess(Command request, Command response) {
+            this.success = request.getPayload() instanceof AppendEntriesRequest;
+            this.response = (AppendEntriesResponse) response.getPayload();
+        }
+
+        @Override
+        public void onException(Command request, Throwable cause) {
+            this.exception = true;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.joyqueue.broker.protocol.config.JoyQueueConfig;
 import org.joyqueue.broker.protocol.coordinator.Coordinator;
 import org.joyqueue.broker.protocol.coordinator.GroupMetadataManager;
 import org.joyqueue.broker.protocol.coordinator.assignment.PartitionAssignmentHandler;
+import org.joyqueue.broker.protocol.handler.delay.ProduceMessageDelayedOperation;
+import org.joyqueue.toolkit.delay.DelayedOperationManager;
 
 /**
  * JoyQueueContext
@@ -35,15 +37,18 @@ public class JoyQueueContext {
     private GroupMetadataManager groupMetadataManager;
     private PartitionAssignmentHandler partitionAssignmentHandler;
     private LongPollingManager longPollingManager;
+    private DelayedOperationManager<ProduceMessageDelayedOperation> produceDelayedOperationManager;
     private BrokerContext brokerContext;
 
     public JoyQueueContext(JoyQueueConfig config, Coordinator coordinator, GroupMetadataManager groupMetadataManager, PartitionAssignmentHandler partitionAssignmentHandler,
-                           LongPollingManager longPollingManager, BrokerContext brokerContext) {
+                           LongPollingManager longPollingManager, DelayedOperationManager<ProduceMessageDelayedOperation> produceDelayedOperationManager,
+                           BrokerContext brokerContext) {
         this.config = config;
         this.coordinator = coordinator;
         this.groupMetadataManager = groupMetadataManager;
         this.partitionAssignmentHandler = partitionAssignmentHandler;
         this.longPollingManager = longPollingManager;
+        this.produceDelayedOperationManager = produceDelayedOperationManager;
         this.brokerContext = brokerContext;
     }
 
@@ -67,6 +72,10 @@ public class JoyQueueContext {
         return longPollingManager;
     }
 
+    public DelayedOperationManager<ProduceMessageDelayedOperation> getProduceDelayedOperationManager() {
+        return produceDelayedOperationManager;
+    }
+
     public BrokerContext getBrokerContext() {
         return brokerContext;
     }
@@ -53,4 +53,8 @@ public class JoyQueueConfig {
     public int getCoordinatorPartitionAssignTimeoutOverflow() {
         return PropertySupplier.getValue(propertySupplier, JoyQueueConfigKey.COORDINATOR_PARTITION_ASSIGN_TIMEOUT_OVERFLOW);
     }
-}
\ No newline at end of file
+
+    public boolean isFetchFileRegionEnable() {
+        return PropertySupplier.getValue(propertySupplier, JoyQueueConfigKey.FETCH_FILE_REGION_ENABLE);
+    }
+}
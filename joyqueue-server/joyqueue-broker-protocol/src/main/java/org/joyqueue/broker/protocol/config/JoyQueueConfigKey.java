@@ -37,6 +37,9 @@ public enum JoyQueueConfigKey implements PropertyDef {
     // 生产最大超时
     PRODUCE_MAX_TIMEOUT("joyqueue.producer.max.timeout", 1000 * 3, PropertyDef.Type.INT),
 
+    // 按分区拉取消息时，已刷盘的消息直接由文件发送（sendfile）
+    FETCH_FILE_REGION_ENABLE("joyqueue.fetch.file.region.enable", false, PropertyDef.Type.BOOLEAN),
+
 
     ;
 
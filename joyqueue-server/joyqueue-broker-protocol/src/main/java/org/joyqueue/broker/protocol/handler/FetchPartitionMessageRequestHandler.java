@@ -27,6 +27,7 @@ import org.joyqueue.broker.network.traffic.Traffic;
 import org.joyqueue.broker.protocol.JoyQueueCommandHandler;
 import org.joyqueue.broker.protocol.command.FetchPartitionMessageRequest;
 import org.joyqueue.broker.protocol.command.FetchPartitionMessageResponse;
+import org.joyqueue.broker.protocol.config.JoyQueueConfig;
 import org.joyqueue.broker.protocol.converter.CheckResultConverter;
 import org.joyqueue.domain.TopicName;
 import org.joyqueue.exception.JoyQueueCode;
@@ -40,13 +41,17 @@ import org.joyqueue.network.session.Connection;
 import org.joyqueue.network.session.Consumer;
 import org.joyqueue.network.transport.Transport;
 import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.FileSegment;
 import org.joyqueue.network.transport.command.Type;
 import org.joyqueue.response.BooleanResponse;
+import org.joyqueue.store.JournalRegion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * FetchPartitionMessageRequestHandler
@@ -59,11 +64,13 @@ public class FetchPartitionMessageRequestHandler implements JoyQueueCommandHandl
 
     protected static final Logger logger = LoggerFactory.getLogger(FetchPartitionMessageRequestHandler.class);
 
+    private JoyQueueConfig config;
     private Consume consume;
     private ClusterManager clusterManager;
 
     @Override
     public void setBrokerContext(BrokerContext brokerContext) {
+        this.config = new JoyQueueConfig(brokerContext.getPropertySupplier());
         this.consume = brokerContext.getConsume();
         this.clusterManager = brokerContext.getClusterManager();
     }
@@ -135,12 +142,14 @@ public class FetchPartitionMessageRequestHandler implements JoyQueueCommandHandl
                         transport, consumer, partition, index, minIndex, maxIndex);
                 fetchPartitionMessageAckData.setCode(JoyQueueCode.FW_FETCH_MESSAGE_INDEX_OUT_OF_RANGE);
             } else {
-                PullResult pullResult = consume.getMessage(consumer, partition, index, count);
+                PullResult pullResult = config.isFetchFileRegionEnable() ?
+                        consume.getMessageRegions(consumer, partition, index, count) : consume.getMessage(consumer, partition, index, count);
                 if (!pullResult.getCode().equals(JoyQueueCode.SUCCESS)) {
                     logger.error("fetchPartitionMessage exception, transport: {}, consumer: {}, partition: {}, index: {}, minIndex: {}, maxIndex: {}",
                             transport, consumer, partition, index, minIndex, maxIndex);
                 }
                 fetchPartitionMessageAckData.setBuffers(pullResult.getBuffers());
+                fetchPartitionMessageAckData.setSegments(convertSegments(pullResult.getRegions()));
                 fetchPartitionMessageAckData.setCode(pullResult.getCode());
             }
         } catch (JoyQueueException e) {
@@ -153,6 +162,15 @@ public class FetchPartitionMessageRequestHandler implements JoyQueueCommandHandl
         return fetchPartitionMessageAckData;
     }
 
+    protected List<FileSegment> convertSegments(List<JournalRegion> regions) {
+        if (regions == null) {
+            return null;
+        }
+        return regions.stream()
+                .map(region -> new FileSegment(region.getFile(), region.getChannel(), region.getPosition(), region.getLength(), region.getCount()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public int type() {
         return JoyQueueCommandType.FETCH_PARTITION_MESSAGE_REQUEST.getCode();
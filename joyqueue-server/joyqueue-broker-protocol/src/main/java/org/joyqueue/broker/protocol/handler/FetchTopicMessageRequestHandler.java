@@ -114,11 +114,15 @@ public class FetchTopicMessageRequestHandler implements JoyQueueCommandHandler,
             }
 
             FetchTopicMessageData fetchTopicMessageData = entry.getValue();
+            // 拉取前记录唤醒序号，拉取和挂起之间提交的消息不会错过
+            long wakeupSequence = (isNeedLongPoll ? longPollingManager.getWakeupSequence(consumer.getTopic()) : -1L);
             FetchTopicMessageAckData fetchTopicMessageAckData = fetchMessage(transport, consumer, fetchTopicMessageData.getCount(), fetchTopicMessageRequest.getAckTimeout());
 
             if (isNeedLongPoll && CollectionUtils.isEmpty(fetchTopicMessageAckData.getBuffers()) && clusterManager.isNeedLongPull(consumer.getTopic())) {
-                if (longPollingManager.suspend(new LongPolling(consumer, fetchTopicMessageData.getCount(), fetchTopicMessageRequest.getAckTimeout(),
-                        fetchTopicMessageRequest.getLongPollTimeout(), new FetchTopicMessageLongPollCallback(fetchTopicMessageRequest, command, transport)))) {
+                LongPolling longPolling = new LongPolling(consumer, fetchTopicMessageData.getCount(), fetchTopicMessageRequest.getAckTimeout(),
+                        fetchTopicMessageRequest.getLongPollTimeout(), new FetchTopicMessageLongPollCallback(fetchTopicMessageRequest, command, transport));
+                longPolling.setWakeupSequence(wakeupSequence);
+                if (longPollingManager.suspend(longPolling)) {
                     return null;
                 }
             }
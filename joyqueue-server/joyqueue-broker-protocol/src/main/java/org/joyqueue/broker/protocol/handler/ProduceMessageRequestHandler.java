@@ -17,6 +17,7 @@ package org.joyqueue.broker.protocol.handler;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -30,6 +31,7 @@ import org.joyqueue.broker.protocol.JoyQueueContext;
 import org.joyqueue.broker.protocol.JoyQueueContextAware;
 import org.joyqueue.broker.protocol.command.ProduceMessageResponse;
 import org.joyqueue.broker.protocol.config.JoyQueueConfig;
+import org.joyqueue.broker.protocol.handler.delay.ProduceMessageDelayedOperation;
 import org.joyqueue.domain.QosLevel;
 import org.joyqueue.domain.TopicName;
 import org.joyqueue.exception.JoyQueueCode;
@@ -50,13 +52,14 @@ import org.joyqueue.network.transport.command.Type;
 import org.joyqueue.response.BooleanResponse;
 import org.joyqueue.store.WriteResult;
 import org.joyqueue.toolkit.concurrent.EventListener;
+import org.joyqueue.toolkit.delay.DelayedOperationKey;
+import org.joyqueue.toolkit.delay.DelayedOperationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * ProduceMessageRequestHandler
@@ -73,6 +76,7 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
     private ProduceConfig produceConfig;
     private Produce produce;
     private ClusterManager clusterManager;
+    private DelayedOperationManager<ProduceMessageDelayedOperation> produceDelayedOperationManager;
 
     @Override
     public void setJoyQueueContext(JoyQueueContext joyQueueContext) {
@@ -80,6 +84,7 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
         this.produceConfig = new ProduceConfig(joyQueueContext.getBrokerContext().getPropertySupplier());
         this.produce = joyQueueContext.getBrokerContext().getProduce();
         this.clusterManager = joyQueueContext.getBrokerContext().getClusterManager();
+        this.produceDelayedOperationManager = joyQueueContext.getProduceDelayedOperationManager();
     }
 
     @Override
@@ -94,15 +99,23 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
         }
 
         QosLevel qosLevel = request.getHeader().getQosLevel();
-        CountDownLatch latch = new CountDownLatch(produceMessageRequest.getData().size());
         Map<String, ProduceMessageAckData> resultData = Maps.newConcurrentMap();
         Traffic traffic = new Traffic(app);
         boolean isNeedAck = !qosLevel.equals(QosLevel.ONE_WAY);
         boolean singleTopic = produceMessageRequest.getData().size() == 1;
 
+        // 多主题发送不阻塞等待，最后一个主题写入完成或超时后应答
+        // 超时应答后未完成的主题仍会写入结果，应答中使用结果的副本
+        ProduceMessageDelayedOperation delayedOperation = null;
+        if (isNeedAck && !singleTopic) {
+            delayedOperation = new ProduceMessageDelayedOperation(config.getProduceMaxTimeout(), transport, request,
+                    produceMessageRequest.getData().keySet(), () -> generateResponse(traffic, new HashMap<>(resultData)));
+        }
+
         for (Map.Entry<String, ProduceMessageData> entry : produceMessageRequest.getData().entrySet()) {
             String topic = entry.getKey();
             ProduceMessageData produceMessageData = entry.getValue();
+            ProduceMessageDelayedOperation currentDelayedOperation = delayedOperation;
 
             try {
                 checkAndFillMessage(connection, produceMessageData);
@@ -111,10 +124,11 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
                 produceMessage(connection, topic, app, produceMessageData, (data) -> {
                     resultData.put(topic, data);
                     traffic.record(topic, produceMessageData.getTraffic(), produceMessageData.getSize());
-                    latch.countDown();
 
                     if (isNeedAck && singleTopic) {
                         transport.acknowledge(request, generateResponse(traffic, resultData));
+                    } else if (currentDelayedOperation != null) {
+                        currentDelayedOperation.countDown();
                     }
                 });
             } catch (Exception e) {
@@ -127,30 +141,21 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
                     produceMessageAckData = buildResponse(produceMessageData, JoyQueueCode.CN_UNKNOWN_ERROR);
                 }
 
-                latch.countDown();
                 resultData.put(topic, produceMessageAckData);
 
                 if (isNeedAck && singleTopic) {
                     transport.acknowledge(request, generateResponse(traffic, resultData));
                     return null;
+                } else if (currentDelayedOperation != null) {
+                    currentDelayedOperation.countDown();
                 }
             }
         }
 
-        if (!isNeedAck || singleTopic) {
-            return null;
+        if (delayedOperation != null) {
+            produceDelayedOperationManager.tryCompleteElseWatch(delayedOperation, Sets.newHashSet(new DelayedOperationKey(connection.getId())));
         }
-
-        try {
-            boolean isDone = latch.await(config.getProduceMaxTimeout(), TimeUnit.MILLISECONDS);
-            if (!isDone) {
-                logger.warn("wait produce timeout, transport: {}, topics: {}", transport.remoteAddress(), produceMessageRequest.getData().keySet());
-            }
-        } catch (InterruptedException e) {
-            logger.error("wait produce exception, transport: {}", transport.remoteAddress(), e);
-        }
-
-        return generateResponse(traffic, resultData);
+        return null;
     }
 
     protected Command generateResponse(Traffic traffic, Map<String, ProduceMessageAckData> resultData) {
@@ -227,9 +232,12 @@ public class ProduceMessageRequestHandler implements JoyQueueCommandHandler, Typ
                     item.add(new ProduceMessageAckItemData(message.getPartition(), ProduceMessageAckItemData.INVALID_INDEX, message.getStartTime()));
                 }
             } else {
-                for (int i = 0; i < writeResult.getIndices().length; i++) {
+                // 每条消息都要有应答，序号按消息的顺序对应
+                long[] indices = writeResult.getIndices();
+                for (int i = 0; i < messages.size(); i++) {
                     BrokerMessage message = messages.get(i);
-                    item.add(new ProduceMessageAckItemData(message.getPartition(), writeResult.getIndices()[i], message.getStartTime()));
+                    long index = i < indices.length ? indices[i] : ProduceMessageAckItemData.INVALID_INDEX;
+                    item.add(new ProduceMessageAckItemData(message.getPartition(), index, message.getStartTime()));
                 }
             }
         }
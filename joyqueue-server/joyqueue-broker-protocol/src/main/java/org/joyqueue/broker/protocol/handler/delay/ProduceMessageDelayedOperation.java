@@ -0,0 +1,78 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.protocol.handler.delay;
+
+import org.joyqueue.network.transport.Transport;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.toolkit.delay.AbstractDelayedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 多主题发送的应答
+ * 每个主题写入完成后计数减一，全部完成或超时后应答，超时应答中只包含已完成的主题
+ */
+public class ProduceMessageDelayedOperation extends AbstractDelayedOperation {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ProduceMessageDelayedOperation.class);
+
+    private Transport transport;
+    private Command request;
+    private Set<String> topics;
+    private Supplier<Command> response;
+    private AtomicInteger remaining;
+
+    public ProduceMessageDelayedOperation(long delayMs, Transport transport, Command request, Set<String> topics, Supplier<Command> response) {
+        super(delayMs);
+        this.transport = transport;
+        this.request = request;
+        this.topics = topics;
+        this.response = response;
+        this.remaining = new AtomicInteger(topics.size());
+    }
+
+    /**
+     * 一个主题写入完成
+     */
+    public void countDown() {
+        if (remaining.decrementAndGet() == 0) {
+            forceComplete();
+        }
+    }
+
+    @Override
+    protected boolean tryComplete() {
+        if (remaining.get() <= 0) {
+            return forceComplete();
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    protected void onComplete() {
+        transport.acknowledge(request, response.get());
+    }
+
+    @Override
+    protected void onExpiration() {
+        logger.warn("wait produce timeout, transport: {}, topics: {}, remaining: {}", transport.remoteAddress(), topics, remaining.get());
+    }
+}
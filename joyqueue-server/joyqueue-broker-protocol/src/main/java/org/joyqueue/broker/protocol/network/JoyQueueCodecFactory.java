@@ -18,6 +18,7 @@ package org.joyqueue.broker.protocol.network;
 import com.google.common.collect.Lists;
 import org.joyqueue.broker.protocol.network.codec.JoyQueueCodec;
 import org.joyqueue.broker.protocol.network.codec.JoyQueuePayloadCodec;
+import org.joyqueue.network.codec.ProduceMessageRequestCodec;
 import org.joyqueue.network.transport.codec.Codec;
 import org.joyqueue.network.transport.codec.CodecFactory;
 import com.jd.laf.extension.ExtensionManager;
@@ -32,14 +33,23 @@ import java.util.List;
  */
 public class JoyQueueCodecFactory implements CodecFactory {
 
+    private boolean rawMessageEnable;
     private JoyQueueCodec codec;
 
     public JoyQueueCodecFactory() {
+        this(false);
+    }
+
+    public JoyQueueCodecFactory(boolean rawMessageEnable) {
+        this.rawMessageEnable = rawMessageEnable;
         this.codec = initCodec();
     }
 
     protected JoyQueueCodec initCodec() {
         JoyQueueCodec codec = new JoyQueueCodec();
+        if (rawMessageEnable) {
+            codec.getPayloadCodecFactory().register(new ProduceMessageRequestCodec(true));
+        }
         List<JoyQueuePayloadCodec> payloadCodecs = loadPayloadCodecs();
         for (JoyQueuePayloadCodec payloadCodec : payloadCodecs) {
             codec.getPayloadCodecFactory().register(payloadCodec);
@@ -23,13 +23,16 @@ import org.joyqueue.broker.protocol.config.JoyQueueConfig;
 import org.joyqueue.broker.protocol.coordinator.Coordinator;
 import org.joyqueue.broker.protocol.coordinator.GroupMetadataManager;
 import org.joyqueue.broker.protocol.coordinator.assignment.PartitionAssignmentHandler;
+import org.joyqueue.broker.protocol.handler.delay.ProduceMessageDelayedOperation;
 import org.joyqueue.broker.protocol.network.helper.JoyQueueProtocolHelper;
 import org.joyqueue.broker.polling.LongPollingManager;
+import org.joyqueue.broker.producer.ProduceConfig;
 import org.joyqueue.network.protocol.ExceptionHandlerProvider;
 import org.joyqueue.network.protocol.ProtocolService;
 import org.joyqueue.network.transport.codec.CodecFactory;
 import org.joyqueue.network.transport.command.handler.CommandHandlerFactory;
 import org.joyqueue.network.transport.command.handler.ExceptionHandler;
+import org.joyqueue.toolkit.delay.DelayedOperationManager;
 import org.joyqueue.toolkit.service.Service;
 import io.netty.buffer.ByteBuf;
 
@@ -42,34 +45,42 @@ import io.netty.buffer.ByteBuf;
 public class JoyQueueProtocol extends Service implements ProtocolService, BrokerContextAware, ExceptionHandlerProvider {
 
     private JoyQueueConfig config;
+    private ProduceConfig produceConfig;
     private Coordinator coordinator;
     private GroupMetadataManager coordinatorGroupManager;
     private PartitionAssignmentHandler partitionAssignmentHandler;
     private LongPollingManager longPollingManager;
+    private DelayedOperationManager<ProduceMessageDelayedOperation> produceDelayedOperationManager;
     private JoyQueueContext joyQueueContext;
 
     @Override
     public void setBrokerContext(BrokerContext brokerContext) {
         this.config = new JoyQueueConfig(brokerContext.getPropertySupplier());
+        this.produceConfig = new ProduceConfig(brokerContext.getPropertySupplier());
 
         this.coordinator = new Coordinator(brokerContext.getCoordinatorService().getCoordinator());
         this.coordinatorGroupManager = new GroupMetadataManager(config, brokerContext.getCoordinatorService().getOrCreateGroupMetadataManager(JoyQueueConsts.COORDINATOR_NAMESPACE));
         this.partitionAssignmentHandler = new PartitionAssignmentHandler(config, coordinatorGroupManager);
-        this.longPollingManager = new LongPollingManager(brokerContext.getSessionManager(), brokerContext.getClusterManager(), brokerContext.getConsume(),brokerContext.getPropertySupplier());
+        this.longPollingManager = new LongPollingManager(brokerContext.getSessionManager(), brokerContext.getClusterManager(), brokerContext.getConsume(),
+                brokerContext.getStoreService(), brokerContext.getPropertySupplier());
+        this.produceDelayedOperationManager = new DelayedOperationManager<>("joyqueue-produce-delayed");
 
-        this.joyQueueContext = new JoyQueueContext(config, coordinator, coordinatorGroupManager, partitionAssignmentHandler, longPollingManager, brokerContext);
+        this.joyQueueContext = new JoyQueueContext(config, coordinator, coordinatorGroupManager, partitionAssignmentHandler, longPollingManager,
+                produceDelayedOperationManager, brokerContext);
     }
 
     @Override
     protected void doStart() throws Exception {
         partitionAssignmentHandler.start();
         longPollingManager.start();
+        produceDelayedOperationManager.start();
     }
 
     @Override
     protected void doStop() {
         partitionAssignmentHandler.stop();
         longPollingManager.stop();
+        produceDelayedOperationManager.shutdown();
     }
 
     @Override
@@ -79,7 +90,7 @@ public class JoyQueueProtocol extends Service implements ProtocolService, Broker
 
     @Override
     public CodecFactory createCodecFactory() {
-        return new JoyQueueCodecFactory();
+        return new JoyQueueCodecFactory(produceConfig.isRawMessageEnable());
     }
 
     @Override
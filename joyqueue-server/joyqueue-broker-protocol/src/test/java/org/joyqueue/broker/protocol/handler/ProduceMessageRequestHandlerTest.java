@@ -0,0 +1,161 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.protocol.handler;
+
+import org.joyqueue.broker.BrokerContext;
+import org.joyqueue.broker.cluster.ClusterManager;
+import org.joyqueue.broker.config.Configuration;
+import org.joyqueue.broker.monitor.SessionManager;
+import org.joyqueue.broker.producer.Produce;
+import org.joyqueue.broker.protocol.JoyQueueContext;
+import org.joyqueue.broker.protocol.config.JoyQueueConfig;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.exception.JoyQueueException;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.command.JoyQueueCommandType;
+import org.joyqueue.network.command.ProduceMessageAckData;
+import org.joyqueue.network.command.ProduceMessageAckItemData;
+import org.joyqueue.network.command.ProduceMessageData;
+import org.joyqueue.network.command.ProduceMessageRequest;
+import org.joyqueue.network.command.ProduceMessageResponse;
+import org.joyqueue.network.session.Connection;
+import org.joyqueue.network.transport.Transport;
+import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.Direction;
+import org.joyqueue.network.transport.support.DefaultTransportAttribute;
+import org.joyqueue.response.BooleanResponse;
+import org.joyqueue.store.WriteResult;
+import org.joyqueue.toolkit.concurrent.EventListener;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProduceMessageRequestHandler的应答测试
+ */
+public class ProduceMessageRequestHandlerTest {
+
+    private final Produce produce = Mockito.mock(Produce.class);
+    private final ClusterManager clusterManager = Mockito.mock(ClusterManager.class);
+    private final Transport transport = Mockito.mock(Transport.class);
+    private ProduceMessageRequestHandler handler;
+
+    @Before
+    public void setup() {
+        BrokerContext brokerContext = Mockito.mock(BrokerContext.class);
+        Configuration configuration = new Configuration();
+        Mockito.when(brokerContext.getPropertySupplier()).thenReturn(configuration);
+        Mockito.when(brokerContext.getProduce()).thenReturn(produce);
+        Mockito.when(brokerContext.getClusterManager()).thenReturn(clusterManager);
+        Mockito.when(clusterManager.checkWritable(Mockito.any(TopicName.class), Mockito.anyString(), Mockito.any(), Mockito.anyShort()))
+                .thenReturn(BooleanResponse.success());
+
+        handler = new ProduceMessageRequestHandler();
+        handler.setJoyQueueContext(new JoyQueueContext(new JoyQueueConfig(configuration), null, null, null, null, null, brokerContext));
+
+        Connection connection = new Connection();
+        connection.setId("connection");
+        connection.setApp("app");
+        connection.setAddress(new byte[] {127, 0, 0, 1, 0, 80});
+        connection.setTransport(transport);
+        DefaultTransportAttribute attribute = new DefaultTransportAttribute();
+        attribute.set(SessionManager.CONNECTION_KEY, connection);
+        Mockito.when(transport.attr()).thenReturn(attribute);
+    }
+
+    @Test
+    public void mixedScheduledBatchTest() throws Exception {
+        // 定时消息和普通消息混在同一批中，整批拒绝，每条消息都有应答
+        List<BrokerMessage> messages = messages(3);
+        messages.get(1).setDeliverAt(System.currentTimeMillis() + 60 * 1000);
+        Mockito.doThrow(new JoyQueueException(JoyQueueCode.CN_PARAM_ERROR))
+                .when(produce).putMessageAsync(Mockito.any(), Mockito.anyList(), Mockito.any(), Mockito.anyInt(), Mockito.any());
+
+        ProduceMessageAckData ackData = handle(messages).get("topic");
+
+        Assert.assertEquals(JoyQueueCode.CN_PARAM_ERROR, ackData.getCode());
+        Assert.assertEquals(3, ackData.getItem().size());
+        for (ProduceMessageAckItemData item : ackData.getItem()) {
+            Assert.assertEquals(ProduceMessageAckItemData.INVALID_INDEX, item.getIndex());
+        }
+    }
+
+    @Test
+    public void ackEveryMessageTest() throws Exception {
+        // 写入结果中的序号少于消息条数时，序号按顺序对应，没有序号的消息也要应答
+        List<BrokerMessage> messages = messages(3);
+        answer(new WriteResult(JoyQueueCode.SUCCESS, new long[] {10, 11}));
+
+        ProduceMessageAckData ackData = handle(messages).get("topic");
+
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.getCode());
+        Assert.assertEquals(3, ackData.getItem().size());
+        Assert.assertEquals(10, ackData.getItem().get(0).getIndex());
+        Assert.assertEquals(messages.get(0).getStartTime(), ackData.getItem().get(0).getStartTime());
+        Assert.assertEquals(11, ackData.getItem().get(1).getIndex());
+        Assert.assertEquals(messages.get(1).getStartTime(), ackData.getItem().get(1).getStartTime());
+        Assert.assertEquals(ProduceMessageAckItemData.INVALID_INDEX, ackData.getItem().get(2).getIndex());
+    }
+
+    private void answer(WriteResult writeResult) throws Exception {
+        Mockito.doAnswer(invocation -> {
+            EventListener<WriteResult> listener = invocation.getArgument(4);
+            listener.onEvent(writeResult);
+            return null;
+        }).when(produce).putMessageAsync(Mockito.any(), Mockito.anyList(), Mockito.any(), Mockito.anyInt(), Mockito.any());
+    }
+
+    private Map<String, ProduceMessageAckData> handle(List<BrokerMessage> messages) {
+        ProduceMessageData data = new ProduceMessageData();
+        data.setQosLevel(QosLevel.PERSISTENCE);
+        data.setTimeout(1000);
+        data.setMessages(messages);
+        ProduceMessageRequest produceMessageRequest = new ProduceMessageRequest();
+        produceMessageRequest.setApp("app");
+        Map<String, ProduceMessageData> requestData = new HashMap<>();
+        requestData.put("topic", data);
+        produceMessageRequest.setData(requestData);
+        Command request = new Command(new JoyQueueHeader(Direction.REQUEST, QosLevel.PERSISTENCE, JoyQueueCommandType.PRODUCE_MESSAGE_REQUEST.getCode()),
+                produceMessageRequest);
+
+        Assert.assertNull(handler.handle(transport, request));
+        ArgumentCaptor<Command> response = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(transport).acknowledge(Mockito.eq(request), response.capture());
+        return ((ProduceMessageResponse) response.getValue().getPayload()).getData();
+    }
+
+    private List<BrokerMessage> messages(int count) {
+        List<BrokerMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BrokerMessage message = new BrokerMessage();
+            message.setPartition((short) 0);
+            message.setStartTime(1000 + i);
+            message.setText(String.valueOf(i));
+            messages.add(message);
+        }
+        return messages;
+    }
+}
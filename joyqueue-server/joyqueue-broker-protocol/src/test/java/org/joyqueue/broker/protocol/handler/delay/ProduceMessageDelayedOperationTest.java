@@ -0,0 +1,223 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.broker.protocol.handler.delay;
+
+import org.joyqueue.broker.BrokerContext;
+import org.joyqueue.broker.cluster.ClusterManager;
+import org.joyqueue.broker.config.Configuration;
+import org.joyqueue.broker.monitor.SessionManager;
+import org.joyqueue.broker.producer.Produce;
+import org.joyqueue.broker.protocol.JoyQueueContext;
+import org.joyqueue.broker.protocol.config.JoyQueueConfig;
+import org.joyqueue.broker.protocol.config.JoyQueueConfigKey;
+import org.joyqueue.broker.protocol.handler.ProduceMessageRequestHandler;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.message.BrokerMessage;
+import org.joyqueue.network.command.JoyQueueCommandType;
+import org.joyqueue.network.command.ProduceMessageAckData;
+import org.joyqueue.network.command.ProduceMessageData;
+import org.joyqueue.network.command.ProduceMessageRequest;
+import org.joyqueue.network.command.ProduceMessageResponse;
+import org.joyqueue.network.session.Connection;
+import org.joyqueue.network.session.Producer;
+import org.joyqueue.network.transport.Transport;
+import org.joyqueue.network.transport.codec.JoyQueueHeader;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.Direction;
+import org.joyqueue.network.transport.support.DefaultTransportAttribute;
+import org.joyqueue.response.BooleanResponse;
+import org.joyqueue.store.WriteResult;
+import org.joyqueue.toolkit.concurrent.EventListener;
+import org.joyqueue.toolkit.delay.DelayedOperationManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多主题发送的应答测试
+ */
+public class ProduceMessageDelayedOperationTest {
+
+    private static final int PRODUCE_MAX_TIMEOUT = 200;
+
+    private final Produce produce = Mockito.mock(Produce.class);
+    private final ClusterManager clusterManager = Mockito.mock(ClusterManager.class);
+    private final Transport transport = Mockito.mock(Transport.class);
+    private final Map<String, EventListener<WriteResult>> listeners = new ConcurrentHashMap<>();
+    private DelayedOperationManager<ProduceMessageDelayedOperation> produceDelayedOperationManager;
+    private ProduceMessageRequestHandler handler;
+
+    @Before
+    public void setup() throws Exception {
+        BrokerContext brokerContext = Mockito.mock(BrokerContext.class);
+        Configuration configuration = new Configuration();
+        configuration.addProperty(JoyQueueConfigKey.PRODUCE_MAX_TIMEOUT.getName(), String.valueOf(PRODUCE_MAX_TIMEOUT));
+        Mockito.when(brokerContext.getPropertySupplier()).thenReturn(configuration);
+        Mockito.when(brokerContext.getProduce()).thenReturn(produce);
+        Mockito.when(brokerContext.getClusterManager()).thenReturn(clusterManager);
+        Mockito.when(clusterManager.checkWritable(Mockito.any(TopicName.class), Mockito.anyString(), Mockito.any(), Mockito.anyShort()))
+                .thenReturn(BooleanResponse.success());
+
+        // 写入结果由测试控制，记录每个主题的回调
+        Mockito.doAnswer(invocation -> {
+            Producer producer = invocation.getArgument(0);
+            listeners.put(producer.getTopic(), invocation.getArgument(4));
+            return null;
+        }).when(produce).putMessageAsync(Mockito.any(), Mockito.anyList(), Mockito.any(), Mockito.anyInt(), Mockito.any());
+
+        produceDelayedOperationManager = new DelayedOperationManager<>("produce-delayed-test");
+        produceDelayedOperationManager.start();
+
+        handler = new ProduceMessageRequestHandler();
+        handler.setJoyQueueContext(new JoyQueueContext(new JoyQueueConfig(configuration), null, null, null, null, produceDelayedOperationManager, brokerContext));
+
+        Connection connection = new Connection();
+        connection.setId("connection");
+        connection.setApp("app");
+        connection.setAddress(new byte[] {127, 0, 0, 1, 0, 80});
+        connection.setTransport(transport);
+        DefaultTransportAttribute attribute = new DefaultTransportAttribute();
+        attribute.set(SessionManager.CONNECTION_KEY, connection);
+        Mockito.when(transport.attr()).thenReturn(attribute);
+    }
+
+    @After
+    public void after() {
+        produceDelayedOperationManager.shutdown();
+    }
+
+    @Test
+    public void allTopicsSucceedTest() {
+        Command request = handle("topic_a", "topic_b");
+        // 全部主题完成前不应答
+        Mockito.verify(transport, Mockito.never()).acknowledge(Mockito.any(), Mockito.any());
+
+        complete("topic_a");
+        Mockito.verify(transport, Mockito.never()).acknowledge(Mockito.any(), Mockito.any());
+        complete("topic_b");
+
+        Map<String, ProduceMessageAckData> ackData = acknowledged(request);
+        Assert.assertEquals(2, ackData.size());
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.get("topic_a").getCode());
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.get("topic_b").getCode());
+    }
+
+    @Test
+    public void completeBeforeWatchTest() throws Exception {
+        // 一个主题在tryCompleteElseWatch之前同步失败，另一个同步写入完成，操作在加入监听前已经完成，只应答一次
+        Mockito.when(clusterManager.checkWritable(Mockito.eq(TopicName.parse("topic_b")), Mockito.anyString(), Mockito.any(), Mockito.anyShort()))
+                .thenReturn(BooleanResponse.failed(JoyQueueCode.FW_TOPIC_NO_PARTITIONGROUP));
+        Mockito.doAnswer(invocation -> {
+            EventListener<WriteResult> listener = invocation.getArgument(4);
+            listener.onEvent(new WriteResult(JoyQueueCode.SUCCESS, new long[] {10}));
+            return null;
+        }).when(produce).putMessageAsync(Mockito.any(), Mockito.anyList(), Mockito.any(), Mockito.anyInt(), Mockito.any());
+
+        Command request = handle("topic_a", "topic_b");
+
+        Map<String, ProduceMessageAckData> ackData = acknowledged(request);
+        Assert.assertEquals(2, ackData.size());
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.get("topic_a").getCode());
+        Assert.assertEquals(JoyQueueCode.FW_TOPIC_NO_PARTITIONGROUP, ackData.get("topic_b").getCode());
+
+        // 超时后也不会再应答
+        Thread.sleep(PRODUCE_MAX_TIMEOUT * 3);
+        Mockito.verify(transport, Mockito.times(1)).acknowledge(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void failBeforeWatchTest() {
+        // 一个主题同步失败，另一个主题在加入监听后完成
+        Mockito.when(clusterManager.checkWritable(Mockito.eq(TopicName.parse("topic_b")), Mockito.anyString(), Mockito.any(), Mockito.anyShort()))
+                .thenReturn(BooleanResponse.failed(JoyQueueCode.FW_TOPIC_NO_PARTITIONGROUP));
+
+        Command request = handle("topic_a", "topic_b");
+        Mockito.verify(transport, Mockito.never()).acknowledge(Mockito.any(), Mockito.any());
+        complete("topic_a");
+
+        Map<String, ProduceMessageAckData> ackData = acknowledged(request);
+        Assert.assertEquals(2, ackData.size());
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.get("topic_a").getCode());
+        Assert.assertEquals(JoyQueueCode.FW_TOPIC_NO_PARTITIONGROUP, ackData.get("topic_b").getCode());
+    }
+
+    @Test
+    public void timeoutTest() {
+        Command request = handle("topic_a", "topic_b");
+        complete("topic_a");
+
+        // 超时后应答已完成的主题
+        ArgumentCaptor<Command> response = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(transport, Mockito.timeout(PRODUCE_MAX_TIMEOUT * 20)).acknowledge(Mockito.eq(request), response.capture());
+        Map<String, ProduceMessageAckData> ackData = ((ProduceMessageResponse) response.getValue().getPayload()).getData();
+        Assert.assertEquals(1, ackData.size());
+        Assert.assertEquals(JoyQueueCode.SUCCESS, ackData.get("topic_a").getCode());
+
+        // 超时后完成的主题不再应答，也不改变已发出的应答
+        complete("topic_b");
+        Mockito.verify(transport, Mockito.times(1)).acknowledge(Mockito.any(), Mockito.any());
+        Assert.assertEquals(1, ackData.size());
+        Assert.assertFalse(ackData.containsKey("topic_b"));
+    }
+
+    private void complete(String topic) {
+        listeners.get(topic).onEvent(new WriteResult(JoyQueueCode.SUCCESS, new long[] {10}));
+    }
+
+    private Map<String, ProduceMessageAckData> acknowledged(Command request) {
+        ArgumentCaptor<Command> response = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(transport, Mockito.times(1)).acknowledge(Mockito.eq(request), response.capture());
+        return ((ProduceMessageResponse) response.getValue().getPayload()).getData();
+    }
+
+    private Command handle(String... topics) {
+        Map<String, ProduceMessageData> requestData = new LinkedHashMap<>();
+        for (String topic : topics) {
+            ProduceMessageData data = new ProduceMessageData();
+            data.setQosLevel(QosLevel.PERSISTENCE);
+            data.setTimeout(1000);
+            data.setMessages(messages());
+            requestData.put(topic, data);
+        }
+        ProduceMessageRequest produceMessageRequest = new ProduceMessageRequest();
+        produceMessageRequest.setApp("app");
+        produceMessageRequest.setData(requestData);
+        Command request = new Command(new JoyQueueHeader(Direction.REQUEST, QosLevel.PERSISTENCE, JoyQueueCommandType.PRODUCE_MESSAGE_REQUEST.getCode()),
+                produceMessageRequest);
+
+        Assert.assertNull(handler.handle(transport, request));
+        return request;
+    }
+
+    private List<BrokerMessage> messages() {
+        BrokerMessage message = new BrokerMessage();
+        message.setPartition((short) 0);
+        message.setStartTime(1000);
+        message.setText("message");
+        return Arrays.asList(message);
+    }
+}
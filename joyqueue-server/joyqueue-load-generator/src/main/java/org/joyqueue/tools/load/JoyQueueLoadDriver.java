@@ -0,0 +1,170 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import org.joyqueue.client.internal.consumer.MessageConsumer;
+import org.joyqueue.client.internal.consumer.MessageConsumerFactory;
+import org.joyqueue.client.internal.consumer.config.ConsumerConfig;
+import org.joyqueue.client.internal.consumer.domain.ConsumeMessage;
+import org.joyqueue.client.internal.nameserver.NameServerConfig;
+import org.joyqueue.client.internal.nameserver.helper.NameServerHelper;
+import org.joyqueue.client.internal.producer.MessageProducer;
+import org.joyqueue.client.internal.producer.MessageProducerFactory;
+import org.joyqueue.client.internal.producer.config.ProducerConfig;
+import org.joyqueue.client.internal.producer.domain.ProduceMessage;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.tools.load.config.LoadGeneratorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用JoyQueue客户端的压测，每个生产线程一个生产者，异步发送，按--in-flight限制未应答的请求数。
+ * ONE_WAY没有应答，不记录发送延迟。
+ */
+public class JoyQueueLoadDriver extends LoadDriver {
+
+    protected static final Logger logger = LoggerFactory.getLogger(JoyQueueLoadDriver.class);
+
+    private final List<MessageProducer> producers = new ArrayList<>();
+    private final List<MessageConsumer> consumers = new ArrayList<>();
+    private ExecutorService producerThreads;
+
+    public JoyQueueLoadDriver(LoadGeneratorConfig config, String address, String token, LatencyRecorder sendRecorder, LatencyRecorder deliverRecorder) {
+        super(config, address, token, sendRecorder, deliverRecorder);
+    }
+
+    @Override
+    public void start() throws Exception {
+        running = true;
+        for (int i = 0; i < config.getConsumers(); i++) {
+            MessageConsumer consumer = createConsumer(config, address, token);
+            consumer.subscribeBatch(config.getTopic(), messages -> {
+                for (ConsumeMessage message : messages) {
+                    onDelivered(message.getBodyBytes());
+                }
+            });
+            consumer.start();
+            consumers.add(consumer);
+        }
+
+        producerThreads = Executors.newFixedThreadPool(config.getProducers(), new NamedThreadFactory("joyqueue-load-producer", true));
+        for (int i = 0; i < config.getProducers(); i++) {
+            MessageProducer producer = createProducer(config, address, token, config.getQosLevel());
+            producer.start();
+            producers.add(producer);
+            producerThreads.execute(() -> produce(producer));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (producerThreads != null) {
+            producerThreads.shutdown();
+            try {
+                producerThreads.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (MessageProducer producer : producers) {
+            producer.stop();
+        }
+        for (MessageConsumer consumer : consumers) {
+            consumer.stop();
+        }
+    }
+
+    protected void produce(MessageProducer producer) {
+        Semaphore inFlight = new Semaphore(config.getInFlight());
+        while (running) {
+            acquire();
+            try {
+                if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            List<ProduceMessage> messages = createMessages(config.getTopic(), config.getSize(), config.getBatch());
+            long startTime = System.nanoTime();
+            try {
+                if (config.getQosLevel() == QosLevel.ONE_WAY) {
+                    inFlight.release();
+                    if (messages.size() == 1) {
+                        producer.sendOneway(messages.get(0));
+                    } else {
+                        producer.batchSendOneway(messages);
+                    }
+                    continue;
+                }
+
+                CompletableFuture<?> future = (messages.size() == 1 ? producer.sendAsync(messages.get(0)) : producer.batchSendAsync(messages));
+                future.whenComplete((result, t) -> {
+                    inFlight.release();
+                    if (t != null) {
+                        sendRecorder.error();
+                        logger.debug("Send exception", t);
+                    } else {
+                        sendRecorder.record(System.nanoTime() - startTime);
+                    }
+                });
+            } catch (Exception e) {
+                inFlight.release();
+                sendRecorder.error();
+                logger.debug("Send exception", e);
+            }
+        }
+    }
+
+    public static MessageProducer createProducer(LoadGeneratorConfig config, String address, String token, QosLevel qosLevel) {
+        ProducerConfig producerConfig = new ProducerConfig();
+        producerConfig.setApp(config.getApp());
+        producerConfig.setQosLevel(qosLevel);
+        producerConfig.setCompress(false);
+        NameServerConfig nameServerConfig = NameServerHelper.createConfig(address, config.getApp(), token);
+        return MessageProducerFactory.create(producerConfig, nameServerConfig);
+    }
+
+    public static MessageConsumer createConsumer(LoadGeneratorConfig config, String address, String token) {
+        ConsumerConfig consumerConfig = new ConsumerConfig();
+        consumerConfig.setApp(config.getApp());
+        NameServerConfig nameServerConfig = NameServerHelper.createConfig(address, config.getApp(), token);
+        return MessageConsumerFactory.create(consumerConfig, nameServerConfig);
+    }
+
+    public static List<ProduceMessage> createMessages(String topic, int size, int batch) {
+        List<ProduceMessage> messages = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            ProduceMessage message = new ProduceMessage();
+            message.setTopic(topic);
+            message.setBodyBytes(LoadMessages.body(size));
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.tools.load.config.LoadGeneratorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用Kafka客户端的压测，验证Kafka协议的处理路径。
+ * <p>
+ * QosLevel按Broker的映射转换为acks：ONE_WAY为0，RECEIVE为1，REPLICATION为all，Kafka协议不支持PERSISTENCE。
+ * 每个生产线程一个KafkaProducer，未应答的消息数不超过 --in-flight * --batch，避免延迟中包含客户端缓冲区的排队时间；
+ * --batch换算为batch.size，大于1时设置linger.ms，由客户端攒批。
+ */
+public class KafkaLoadDriver extends LoadDriver {
+
+    protected static final Logger logger = LoggerFactory.getLogger(KafkaLoadDriver.class);
+
+    private final List<KafkaProducer<byte[], byte[]>> producers = new ArrayList<>();
+    private ExecutorService producerThreads;
+    private ExecutorService consumerThreads;
+
+    public KafkaLoadDriver(LoadGeneratorConfig config, String address, String token, LatencyRecorder sendRecorder, LatencyRecorder deliverRecorder) {
+        super(config, address, token, sendRecorder, deliverRecorder);
+    }
+
+    @Override
+    public void start() {
+        String acks = toAcks(config.getQosLevel());
+        running = true;
+
+        consumerThreads = Executors.newFixedThreadPool(Math.max(config.getConsumers(), 1), new NamedThreadFactory("kafka-load-consumer", true));
+        for (int i = 0; i < config.getConsumers(); i++) {
+            consumerThreads.execute(this::consume);
+        }
+
+        producerThreads = Executors.newFixedThreadPool(config.getProducers(), new NamedThreadFactory("kafka-load-producer", true));
+        for (int i = 0; i < config.getProducers(); i++) {
+            KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(producerProperties(acks));
+            producers.add(producer);
+            producerThreads.execute(() -> produce(producer));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        shutdown(producerThreads);
+        shutdown(consumerThreads);
+        for (KafkaProducer<byte[], byte[]> producer : producers) {
+            producer.close(5, TimeUnit.SECONDS);
+        }
+    }
+
+    protected void produce(KafkaProducer<byte[], byte[]> producer) {
+        Semaphore inFlight = new Semaphore(config.getInFlight() * config.getBatch());
+        while (running) {
+            acquire();
+            try {
+                if (!inFlight.tryAcquire(config.getBatch(), 100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int i = 0; i < config.getBatch(); i++) {
+                long startTime = System.nanoTime();
+                try {
+                    producer.send(new ProducerRecord<>(config.getTopic(), LoadMessages.body(config.getSize())), (metadata, e) -> {
+                        inFlight.release();
+                        if (e != null) {
+                            sendRecorder.error();
+                            logger.debug("Send exception", e);
+                        } else if (config.getQosLevel() != QosLevel.ONE_WAY) {
+                            sendRecorder.record(System.nanoTime() - startTime);
+                        }
+                    });
+                } catch (Exception e) {
+                    inFlight.release();
+                    sendRecorder.error();
+                    logger.debug("Send exception", e);
+                }
+            }
+        }
+    }
+
+    protected void consume() {
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProperties())) {
+            consumer.subscribe(Collections.singletonList(config.getTopic()));
+            while (running) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    onDelivered(record.value());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Consume exception", e);
+        }
+    }
+
+    protected Properties producerProperties(String acks) {
+        Properties properties = new Properties();
+        properties.setProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, address);
+        properties.setProperty(ProducerConfig.CLIENT_ID_CONFIG, config.getApp());
+        properties.setProperty(ProducerConfig.ACKS_CONFIG, acks);
+        properties.setProperty(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, String.valueOf(config.getInFlight()));
+        properties.setProperty(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(Math.max(config.getBatch() * config.getSize(), 1)));
+        properties.setProperty(ProducerConfig.LINGER_MS_CONFIG, config.getBatch() > 1 ? "1" : "0");
+        properties.setProperty(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        properties.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return properties;
+    }
+
+    protected Properties consumerProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, address);
+        properties.setProperty(ConsumerConfig.CLIENT_ID_CONFIG, config.getApp());
+        properties.setProperty(ConsumerConfig.GROUP_ID_CONFIG, config.getApp());
+        properties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        properties.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        properties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return properties;
+    }
+
+    public static String toAcks(QosLevel qosLevel) {
+        switch (qosLevel) {
+            case ONE_WAY:
+                return "0";
+            case RECEIVE:
+                return "1";
+            case REPLICATION:
+                return "all";
+            default:
+                throw new IllegalArgumentException(String.format("qos level %s is not supported by kafka protocol", qosLevel));
+        }
+    }
+
+    private void shutdown(ExecutorService executorService) {
+        if (executorService == null) {
+            return;
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
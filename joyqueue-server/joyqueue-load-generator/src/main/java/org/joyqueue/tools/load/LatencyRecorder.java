@@ -0,0 +1,118 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图，单位微秒。
+ * <p>
+ * 多个线程并发记录，报告线程定期取出区间直方图并累加到总直方图，
+ * 预热结束后调用{@link #reset()}丢弃预热阶段的数据。
+ */
+public class LatencyRecorder {
+    private static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.SECONDS.toMicros(60);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private Histogram interval;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 记录一次延迟
+     *
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0L));
+        recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_VALUE));
+    }
+
+    /**
+     * 记录一次失败
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * 丢弃已经记录的数据
+     */
+    public synchronized void reset() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.reset();
+        errors.reset();
+    }
+
+    /**
+     * 取出上次报告之后的区间直方图，累加到总直方图
+     *
+     * @param seconds 区间长度，用于计算吞吐
+     * @return 区间报告
+     */
+    public synchronized String report(double seconds) {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return format(interval, seconds);
+    }
+
+    /**
+     * 总直方图的报告
+     *
+     * @param seconds 统计时长，用于计算吞吐
+     */
+    public synchronized String summary(double seconds) {
+        return format(total, seconds) + String.format(", errors=%d", errors.sum());
+    }
+
+    /**
+     * 把总直方图的百分位分布写入 dir/name.hgrm，单位毫秒
+     */
+    public synchronized void output(File dir) throws FileNotFoundException {
+        try (PrintStream printStream = new PrintStream(new File(dir, name + ".hgrm"))) {
+            total.outputPercentileDistribution(printStream, 1000.0);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private String format(Histogram histogram, double seconds) {
+        long count = histogram.getTotalCount();
+        return String.format("%-8s count=%d, tps=%.0f, mean=%.3fms, p50=%.3fms, p90=%.3fms, p99=%.3fms, p99.9=%.3fms, p99.99=%.3fms, max=%.3fms",
+                name, count, seconds > 0 ? count / seconds : 0,
+                histogram.getMean() / 1000, millis(histogram, 50), millis(histogram, 90), millis(histogram, 99),
+                millis(histogram, 99.9), millis(histogram, 99.99), histogram.getMaxValue() / 1000.0);
+    }
+
+    private double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
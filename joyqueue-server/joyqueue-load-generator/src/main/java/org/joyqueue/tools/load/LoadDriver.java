@@ -0,0 +1,72 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.joyqueue.tools.load.config.LoadGeneratorConfig;
+
+/**
+ * 压测客户端，按协议驱动生产和消费，记录发送延迟和投递延迟。
+ */
+public abstract class LoadDriver {
+
+    protected final LoadGeneratorConfig config;
+    protected final String address;
+    protected final String token;
+    protected final LatencyRecorder sendRecorder;
+    protected final LatencyRecorder deliverRecorder;
+    // 所有生产线程共享，为空时不限速
+    protected final RateLimiter rateLimiter;
+    protected volatile boolean running = false;
+
+    public LoadDriver(LoadGeneratorConfig config, String address, String token, LatencyRecorder sendRecorder, LatencyRecorder deliverRecorder) {
+        this.config = config;
+        this.address = address;
+        this.token = token;
+        this.sendRecorder = sendRecorder;
+        this.deliverRecorder = deliverRecorder;
+        this.rateLimiter = config.getRate() > 0 ? RateLimiter.create(config.getRate()) : null;
+    }
+
+    /**
+     * 启动消费者和生产线程
+     */
+    public abstract void start() throws Exception;
+
+    /**
+     * 停止生产和消费
+     */
+    public abstract void stop();
+
+    /**
+     * 按限速等待，每次发送一批消息
+     */
+    protected void acquire() {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(config.getBatch());
+        }
+    }
+
+    /**
+     * 记录一条消息的投递延迟
+     */
+    protected void onDelivered(byte[] body) {
+        long latency = LoadMessages.latency(body);
+        if (latency >= 0) {
+            deliverRecorder.record(latency);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import com.beust.jcommander.JCommander;
+import org.joyqueue.broker.BrokerService;
+import org.joyqueue.broker.Plugins;
+import org.joyqueue.broker.election.ElectionService;
+import org.joyqueue.broker.election.LeaderElection;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.ClientType;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Subscription;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.toolkit.io.Files;
+import org.joyqueue.toolkit.network.IpUtil;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.joyqueue.tools.load.config.LoadGeneratorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单机端到端压测。
+ * <p>
+ * 在进程内启动一个Broker，元数据由{@link LocalNameService}提供，按配置创建主题、应用令牌和订阅关系，
+ * 然后用JoyQueue或Kafka客户端生产消费，输出三个延迟直方图：
+ * <ul>
+ *     <li>send: 发送请求到收到应答，应答时机由--qos决定</li>
+ *     <li>persist: 持久化探针以PERSISTENCE级别发送，写入并刷盘的延迟</li>
+ *     <li>deliver: 发送到消费者收到消息</li>
+ * </ul>
+ * Broker参数通过 -Dkey=value 传入，例如 -Dstore.flush.interval=20 -Dstore.max.dirty.size=104857600，用于对比刷盘和缓存池参数。
+ * <p>
+ * 压测工具和它依赖的Kafka客户端、HdrHistogram在独立的joyqueue-load-generator模块中，不随Broker发布。
+ */
+public class LoadGenerator {
+
+    protected static Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    public static final String PROTOCOL_JOYQUEUE = "joyqueue";
+    public static final String PROTOCOL_KAFKA = "kafka";
+
+    public static void main(String[] args) throws Exception {
+        LoadGeneratorConfig config = new LoadGeneratorConfig();
+        JCommander jcommander = JCommander.newBuilder()
+                .addObject(config)
+                .build();
+        jcommander.parse(args);
+
+        if (config.isHelp()) {
+            jcommander.usage();
+            return;
+        }
+        if (!PROTOCOL_JOYQUEUE.equals(config.getProtocol()) && !PROTOCOL_KAFKA.equals(config.getProtocol())) {
+            throw new IllegalArgumentException(String.format("unsupported protocol %s", config.getProtocol()));
+        }
+        if (PROTOCOL_KAFKA.equals(config.getProtocol())) {
+            KafkaLoadDriver.toAcks(config.getQosLevel());
+        }
+        if (config.getSize() < LoadMessages.MIN_SIZE) {
+            throw new IllegalArgumentException(String.format("message size must be at least %d", LoadMessages.MIN_SIZE));
+        }
+
+        run(config);
+        System.exit(0);
+    }
+
+    protected static void run(LoadGeneratorConfig config) throws Exception {
+        boolean tempDataPath = config.getDataPath() == null;
+        File dataPath = tempDataPath ? java.nio.file.Files.createTempDirectory("joyqueue-load").toFile() : new File(config.getDataPath());
+        String address = IpUtil.getLocalIp() + ":" + config.getPort();
+        String token = UUID.randomUUID().toString().replace("-", "");
+
+        LocalNameService nameService = (LocalNameService) Plugins.NAMESERVICE.get(LocalNameService.TYPE);
+        Broker broker = nameService.register(null, IpUtil.getLocalIp(), config.getPort());
+
+        BrokerService brokerService = new BrokerService(buildBrokerArgs(config, dataPath));
+        LatencyRecorder sendRecorder = new LatencyRecorder("send");
+        LatencyRecorder persistRecorder = new LatencyRecorder("persist");
+        LatencyRecorder deliverRecorder = new LatencyRecorder("deliver");
+        List<LatencyRecorder> recorders = Arrays.asList(sendRecorder, persistRecorder, deliverRecorder);
+        LoadDriver driver = PROTOCOL_KAFKA.equals(config.getProtocol()) ?
+                new KafkaLoadDriver(config, address, token, sendRecorder, deliverRecorder) :
+                new JoyQueueLoadDriver(config, address, token, sendRecorder, deliverRecorder);
+        PersistProbe persistProbe = config.getPersistProbeInterval() > 0 ? new PersistProbe(config, address, token, persistRecorder) : null;
+
+        try {
+            brokerService.start();
+            // Broker启动后再创建主题，和运行时新建主题一样通过元数据补偿创建存储和选举
+            List<PartitionGroup> partitionGroups = createMetadata(nameService, broker, config, token);
+            awaitLeaders(brokerService.getBrokerContext().getElectionService(), partitionGroups);
+
+            driver.start();
+            if (persistProbe != null) {
+                persistProbe.start();
+            }
+
+            logger.info("Warmup {}s", config.getWarmup());
+            TimeUnit.SECONDS.sleep(config.getWarmup());
+            for (LatencyRecorder recorder : recorders) {
+                recorder.reset();
+            }
+
+            long startTime = System.nanoTime();
+            long endTime = startTime + TimeUnit.SECONDS.toNanos(config.getDuration());
+            long lastReportTime = startTime;
+            while (System.nanoTime() < endTime) {
+                long sleepTime = Math.min(TimeUnit.SECONDS.toNanos(config.getReportInterval()), endTime - System.nanoTime());
+                TimeUnit.NANOSECONDS.sleep(Math.max(sleepTime, 0));
+                long now = System.nanoTime();
+                double seconds = (now - lastReportTime) / 1e9;
+                lastReportTime = now;
+                for (LatencyRecorder recorder : recorders) {
+                    System.out.println(recorder.report(seconds));
+                }
+                System.out.println();
+            }
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.println(String.format("Summary: protocol=%s, qos=%s, size=%d, batch=%d, partitions=%d, producers=%d, consumers=%d, params=%s",
+                    config.getProtocol(), config.getQosLevel(), config.getSize(), config.getBatch(), config.getPartitions(),
+                    config.getProducers(), config.getConsumers(), config.getParams()));
+            for (LatencyRecorder recorder : recorders) {
+                System.out.println(recorder.summary(seconds));
+            }
+            if (config.getOutput() != null) {
+                File output = new File(config.getOutput());
+                Files.createDirectory(output);
+                for (LatencyRecorder recorder : recorders) {
+                    recorder.output(output);
+                }
+            }
+        } finally {
+            if (persistProbe != null) {
+                persistProbe.stop();
+            }
+            driver.stop();
+            brokerService.stop();
+            if (tempDataPath) {
+                Files.deleteDirectory(dataPath);
+            }
+        }
+    }
+
+    /**
+     * 创建主题、分区组、应用令牌和订阅关系，所有分区组的副本和主节点都是本机Broker
+     */
+    protected static List<PartitionGroup> createMetadata(LocalNameService nameService, Broker broker, LoadGeneratorConfig config, String token) {
+        TopicName topicName = TopicName.parse(config.getTopic());
+        Topic topic = new Topic();
+        topic.setName(topicName);
+        topic.setPartitions((short) config.getPartitions());
+        topic.setType(Topic.Type.TOPIC);
+
+        List<PartitionGroup> partitionGroups = new ArrayList<>(config.getPartitionGroups());
+        for (int group = 0; group < config.getPartitionGroups(); group++) {
+            PartitionGroup partitionGroup = new PartitionGroup();
+            partitionGroup.setTopic(topicName);
+            partitionGroup.setGroup(group);
+            partitionGroup.setPartitions(new TreeSet<>());
+            partitionGroup.setLeader(broker.getId());
+            partitionGroup.setReplicas(new TreeSet<>(Collections.singleton(broker.getId())));
+            partitionGroup.setIsrs(new TreeSet<>(Collections.singleton(broker.getId())));
+            partitionGroup.setTerm(0);
+            partitionGroup.setElectType(PartitionGroup.ElectType.fix);
+            partitionGroups.add(partitionGroup);
+        }
+        for (short partition = 0; partition < config.getPartitions(); partition++) {
+            partitionGroups.get(partition % partitionGroups.size()).getPartitions().add(partition);
+        }
+        nameService.addTopic(topic, partitionGroups);
+
+        AppToken appToken = new AppToken();
+        appToken.setId(1L);
+        appToken.setApp(config.getApp());
+        appToken.setToken(token);
+        appToken.setEffectiveTime(new Date(SystemClock.now() - TimeUnit.DAYS.toMillis(1)));
+        appToken.setExpirationTime(new Date(SystemClock.now() + TimeUnit.DAYS.toMillis(365)));
+        nameService.addAppToken(appToken);
+
+        ClientType clientType = PROTOCOL_KAFKA.equals(config.getProtocol()) ? ClientType.KAFKA : ClientType.JOYQUEUE;
+        nameService.subscribe(new Subscription(topicName, config.getApp(), Subscription.Type.PRODUCTION), clientType);
+        nameService.subscribe(new Subscription(topicName, config.getApp(), Subscription.Type.CONSUMPTION), clientType);
+        return partitionGroups;
+    }
+
+    protected static String[] buildBrokerArgs(LoadGeneratorConfig config, File dataPath) {
+        List<String> args = new ArrayList<>();
+        args.add("application.data.path=" + dataPath.getAbsolutePath());
+        args.add("broker.frontend-server.transport.server.port=" + config.getPort());
+        args.add("nameserver.nsr.name=" + LocalNameService.TYPE);
+        // 运行时添加的协调者主题尽快同步到Broker
+        args.add("nameservice.compensation.interval=1000");
+        for (Map.Entry<String, String> entry : config.getParams().entrySet()) {
+            args.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * 等待所有分区组的选举完成，本机Broker成为主节点
+     */
+    protected static void awaitLeaders(ElectionService electionService, List<PartitionGroup> partitionGroups) throws InterruptedException {
+        long deadline = SystemClock.now() + TimeUnit.SECONDS.toMillis(30);
+        for (PartitionGroup partitionGroup : partitionGroups) {
+            while (true) {
+                LeaderElection leaderElection = electionService.getLeaderElection(partitionGroup.getTopic(), partitionGroup.getGroup());
+                if (leaderElection != null && leaderElection.isLeader()) {
+                    break;
+                }
+                if (SystemClock.now() > deadline) {
+                    throw new IllegalStateException(String.format("partition group %s.%d has no leader", partitionGroup.getTopic(), partitionGroup.getGroup()));
+                }
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        }
+    }
+}
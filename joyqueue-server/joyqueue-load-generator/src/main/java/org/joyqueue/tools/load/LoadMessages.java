@@ -0,0 +1,50 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 压测消息体，前8个字节是发送时的System.nanoTime()，消费时据此计算投递延迟。
+ * 生产者和消费者在同一个进程中，nanoTime可以直接比较。
+ */
+public final class LoadMessages {
+    public static final int MIN_SIZE = Long.BYTES;
+
+    private LoadMessages() {
+    }
+
+    /**
+     * 创建消息体并写入当前时间
+     *
+     * @param size 消息体大小，不小于{@link #MIN_SIZE}
+     */
+    public static byte[] body(int size) {
+        byte[] body = new byte[Math.max(size, MIN_SIZE)];
+        ByteBuffer.wrap(body).putLong(System.nanoTime());
+        return body;
+    }
+
+    /**
+     * 消息体从发送到现在的纳秒数，不是压测消息时返回-1
+     */
+    public static long latency(byte[] body) {
+        if (body == null || body.length < MIN_SIZE) {
+            return -1L;
+        }
+        return System.nanoTime() - ByteBuffer.wrap(body).getLong();
+    }
+}
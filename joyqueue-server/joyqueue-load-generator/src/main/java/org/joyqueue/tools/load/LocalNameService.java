@@ -0,0 +1,386 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import com.jd.laf.extension.Type;
+import org.joyqueue.domain.AllMetadata;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.ClientType;
+import org.joyqueue.domain.Config;
+import org.joyqueue.domain.Consumer;
+import org.joyqueue.domain.DataCenter;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Producer;
+import org.joyqueue.domain.Replica;
+import org.joyqueue.domain.Subscription;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.event.NameServerEvent;
+import org.joyqueue.nsr.NameService;
+import org.joyqueue.toolkit.concurrent.EventListener;
+import org.joyqueue.toolkit.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * 单机压测使用的内存元数据服务，替代内嵌的NameServer。
+ * <p>
+ * 启动Broker前写入主题、应用令牌和订阅关系，Broker和客户端从这里读取元数据，不依赖外部存储，
+ * 每次压测的元数据完全一致。通过配置 nameserver.nsr.name=local 启用。
+ */
+public class LocalNameService extends Service implements NameService, Type {
+
+    protected static final Logger logger = LoggerFactory.getLogger(LocalNameService.class);
+
+    public static final String TYPE = "local";
+
+    private final ConcurrentMap<Integer, Broker> brokers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TopicName, Topic> topics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TopicName, Map<Integer, PartitionGroup>> partitionGroups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Producer> producers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Consumer> consumers = new ConcurrentHashMap<>();
+    private final List<AppToken> appTokens = new CopyOnWriteArrayList<>();
+    private final List<Config> configs = new CopyOnWriteArrayList<>();
+    private final List<EventListener<NameServerEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 添加应用令牌
+     */
+    public void addAppToken(AppToken appToken) {
+        appTokens.add(appToken);
+    }
+
+    /**
+     * 添加动态配置
+     */
+    public void addConfig(Config config) {
+        configs.add(config);
+    }
+
+    @Override
+    public TopicConfig subscribe(Subscription subscription, ClientType clientType) {
+        TopicConfig topicConfig = getTopicConfig(subscription.getTopic());
+        if (topicConfig == null) {
+            return null;
+        }
+        String key = subscriptionKey(subscription.getTopic(), subscription.getApp());
+        if (subscription.getType() == Subscription.Type.PRODUCTION) {
+            producers.computeIfAbsent(key, k -> {
+                Producer producer = new Producer();
+                producer.setTopic(subscription.getTopic());
+                producer.setApp(subscription.getApp());
+                producer.setClientType(clientType);
+                return producer;
+            });
+        } else if (subscription.getType() == Subscription.Type.CONSUMPTION) {
+            consumers.computeIfAbsent(key, k -> {
+                Consumer consumer = new Consumer();
+                consumer.setTopic(subscription.getTopic());
+                consumer.setApp(subscription.getApp());
+                consumer.setClientType(clientType);
+                return consumer;
+            });
+        } else {
+            throw new IllegalStateException("operation do not supported");
+        }
+        return topicConfig;
+    }
+
+    @Override
+    public List<TopicConfig> subscribe(List<Subscription> subscriptions, ClientType clientType) {
+        List<TopicConfig> result = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            TopicConfig topicConfig = subscribe(subscription, clientType);
+            if (topicConfig != null) {
+                result.add(topicConfig);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void unSubscribe(Subscription subscription) {
+        String key = subscriptionKey(subscription.getTopic(), subscription.getApp());
+        if (subscription.getType() == Subscription.Type.PRODUCTION) {
+            producers.remove(key);
+        } else if (subscription.getType() == Subscription.Type.CONSUMPTION) {
+            consumers.remove(key);
+        }
+    }
+
+    @Override
+    public void unSubscribe(List<Subscription> subscriptions) {
+        subscriptions.forEach(this::unSubscribe);
+    }
+
+    @Override
+    public boolean hasSubscribe(String app, Subscription.Type subscribe) {
+        return !getTopics(app, subscribe).isEmpty();
+    }
+
+    @Override
+    public void leaderReport(TopicName topic, int partitionGroup, int leaderBrokerId, Set<Integer> isrId, int termId) {
+        Map<Integer, PartitionGroup> groups = partitionGroups.get(topic);
+        PartitionGroup group = groups == null ? null : groups.get(partitionGroup);
+        if (group == null) {
+            logger.warn("topic not exist, topic: {}, partitionGroup: {}, leaderBrokerId: {}", topic, partitionGroup, leaderBrokerId);
+            return;
+        }
+        group.setIsrs(isrId);
+        group.setLeader(leaderBrokerId);
+        group.setTerm(termId);
+    }
+
+    @Override
+    public Broker getBroker(int brokerId) {
+        return brokers.get(brokerId);
+    }
+
+    @Override
+    public List<Broker> getAllBrokers() {
+        return new ArrayList<>(brokers.values());
+    }
+
+    @Override
+    public void addTopic(Topic topic, List<PartitionGroup> partitionGroups) {
+        Map<Integer, PartitionGroup> groups = new HashMap<>();
+        for (PartitionGroup partitionGroup : partitionGroups) {
+            groups.put(partitionGroup.getGroup(), partitionGroup);
+        }
+        topics.put(topic.getName(), topic);
+        this.partitionGroups.put(topic.getName(), groups);
+    }
+
+    @Override
+    public TopicConfig getTopicConfig(TopicName topic) {
+        Topic value = topics.get(topic);
+        if (value == null) {
+            return null;
+        }
+        Map<Integer, PartitionGroup> groups = partitionGroups.getOrDefault(topic, Collections.emptyMap());
+        for (PartitionGroup group : groups.values()) {
+            Map<Integer, Broker> groupBrokers = new HashMap<>();
+            for (Integer brokerId : group.getReplicas()) {
+                Broker broker = brokers.get(brokerId);
+                if (broker != null) {
+                    groupBrokers.put(brokerId, broker);
+                }
+            }
+            group.setBrokers(groupBrokers);
+        }
+        TopicConfig topicConfig = TopicConfig.toTopicConfig(value);
+        topicConfig.setPartitionGroups(new HashMap<>(groups));
+        return topicConfig;
+    }
+
+    @Override
+    public Set<String> getAllTopicCodes() {
+        return topics.keySet().stream().map(TopicName::getFullName).collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<String> getTopics(String app, Subscription.Type subscription) {
+        Set<String> result = new HashSet<>();
+        if (subscription == null || subscription == Subscription.Type.PRODUCTION) {
+            producers.values().stream().filter(producer -> producer.getApp().equals(app))
+                    .forEach(producer -> result.add(producer.getTopic().getFullName()));
+        }
+        if (subscription == null || subscription == Subscription.Type.CONSUMPTION) {
+            consumers.values().stream().filter(consumer -> consumer.getApp().equals(app))
+                    .forEach(consumer -> result.add(consumer.getTopic().getFullName()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<TopicName, TopicConfig> getTopicConfigByBroker(Integer brokerId) {
+        Map<TopicName, TopicConfig> result = new HashMap<>();
+        for (Replica replica : getReplicaByBroker(brokerId)) {
+            if (!result.containsKey(replica.getTopic())) {
+                result.put(replica.getTopic(), getTopicConfig(replica.getTopic()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按端口注册，单机压测只有一个Broker，不需要生成全局唯一的ID
+     */
+    @Override
+    public Broker register(Integer brokerId, String brokerIp, Integer port) {
+        Broker broker = null;
+        if (brokerId != null) {
+            broker = brokers.get(brokerId);
+        } else {
+            for (Broker value : brokers.values()) {
+                if (value.getPort() == port) {
+                    broker = value;
+                    break;
+                }
+            }
+        }
+        if (broker == null) {
+            broker = new Broker();
+            broker.setId(brokerId != null ? brokerId : brokers.size() + 1);
+            broker.setRetryType(Broker.DEFAULT_RETRY_TYPE);
+            broker.setPermission(Broker.PermissionEnum.FULL);
+            broker.setDataCenter(DataCenter.DEFAULT.getCode());
+            brokers.put(broker.getId(), broker);
+        }
+        broker.setIp(brokerIp);
+        broker.setPort(port);
+        return broker;
+    }
+
+    @Override
+    public Producer getProducerByTopicAndApp(TopicName topic, String app) {
+        return producers.get(subscriptionKey(topic, app));
+    }
+
+    @Override
+    public Consumer getConsumerByTopicAndApp(TopicName topic, String app) {
+        return consumers.get(subscriptionKey(topic, app));
+    }
+
+    @Override
+    public Map<TopicName, TopicConfig> getTopicConfigByApp(String subscribeApp, Subscription.Type subscribe) {
+        Map<TopicName, TopicConfig> result = new HashMap<>();
+        for (String topic : getTopics(subscribeApp, subscribe)) {
+            TopicName topicName = TopicName.parse(topic);
+            TopicConfig topicConfig = getTopicConfig(topicName);
+            if (topicConfig != null) {
+                result.put(topicName, topicConfig);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DataCenter getDataCenter(String ip) {
+        return DataCenter.DEFAULT;
+    }
+
+    @Override
+    public String getConfig(String group, String key) {
+        for (Config config : configs) {
+            if (config.getGroup().equals(group) && config.getKey().equals(key)) {
+                return config.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Config> getAllConfigs() {
+        return new ArrayList<>(configs);
+    }
+
+    @Override
+    public List<Broker> getBrokerByRetryType(String retryType) {
+        return brokers.values().stream().filter(broker -> retryType.equals(broker.getRetryType())).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Consumer> getConsumerByTopic(TopicName topic) {
+        return consumers.values().stream().filter(consumer -> consumer.getTopic().equals(topic)).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Producer> getProducerByTopic(TopicName topic) {
+        return producers.values().stream().filter(producer -> producer.getTopic().equals(topic)).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Replica> getReplicaByBroker(Integer brokerId) {
+        List<Replica> result = new ArrayList<>();
+        for (Map<Integer, PartitionGroup> groups : partitionGroups.values()) {
+            for (PartitionGroup group : groups.values()) {
+                if (group.getReplicas().contains(brokerId)) {
+                    String id = String.format("%s.%s.%s", group.getTopic().getFullName(), group.getGroup(), brokerId);
+                    result.add(new Replica(id, group.getTopic(), group.getGroup(), brokerId));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public AppToken getAppToken(String app, String token) {
+        for (AppToken appToken : appTokens) {
+            if (appToken.getApp().equals(app) && appToken.getToken().equals(token)) {
+                return appToken;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public AllMetadata getAllMetadata() {
+        Map<TopicName, TopicConfig> topicConfigs = new HashMap<>();
+        for (TopicName topic : topics.keySet()) {
+            topicConfigs.put(topic, getTopicConfig(topic));
+        }
+        AllMetadata allMetadata = new AllMetadata();
+        allMetadata.setTopics(topicConfigs);
+        allMetadata.setBrokers(new HashMap<>(brokers));
+        allMetadata.setProducers(new ArrayList<>(producers.values()));
+        allMetadata.setConsumers(new ArrayList<>(consumers.values()));
+        allMetadata.setDataCenters(Collections.emptyList());
+        allMetadata.setConfigs(new ArrayList<>(configs));
+        allMetadata.setAppTokens(new ArrayList<>(appTokens));
+        return allMetadata;
+    }
+
+    @Override
+    public void addListener(EventListener<NameServerEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(EventListener<NameServerEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addEvent(NameServerEvent event) {
+        for (EventListener<NameServerEvent> listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    @Override
+    public Object type() {
+        return TYPE;
+    }
+
+    protected String subscriptionKey(TopicName topic, String app) {
+        return topic.getFullName() + "@" + app;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import org.joyqueue.client.internal.producer.MessageProducer;
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.joyqueue.tools.load.config.LoadGeneratorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化延迟探针，按固定间隔以PERSISTENCE级别同步发送一条消息，记录写入并刷盘的延迟。
+ * <p>
+ * 刷盘是存储层的行为，与客户端协议无关，所以无论压测使用哪种协议都用JoyQueue客户端探测，
+ * 主要用于对比store.flush.interval、store.max.dirty.size等刷盘参数的效果。
+ */
+public class PersistProbe {
+
+    protected static final Logger logger = LoggerFactory.getLogger(PersistProbe.class);
+
+    private final LoadGeneratorConfig config;
+    private final String address;
+    private final String token;
+    private final LatencyRecorder persistRecorder;
+    private MessageProducer producer;
+    private ScheduledExecutorService scheduler;
+
+    public PersistProbe(LoadGeneratorConfig config, String address, String token, LatencyRecorder persistRecorder) {
+        this.config = config;
+        this.address = address;
+        this.token = token;
+        this.persistRecorder = persistRecorder;
+    }
+
+    public void start() throws Exception {
+        producer = JoyQueueLoadDriver.createProducer(config, address, token, QosLevel.PERSISTENCE);
+        producer.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("joyqueue-load-persist-probe", true));
+        scheduler.scheduleWithFixedDelay(this::probe, 0, config.getPersistProbeInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (producer != null) {
+            producer.stop();
+        }
+    }
+
+    protected void probe() {
+        long startTime = System.nanoTime();
+        try {
+            producer.send(JoyQueueLoadDriver.createMessages(config.getTopic(), config.getSize(), 1).get(0));
+            persistRecorder.record(System.nanoTime() - startTime);
+        } catch (Exception e) {
+            persistRecorder.error();
+            logger.debug("Probe exception", e);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load.config;
+
+import com.beust.jcommander.DynamicParameter;
+import com.beust.jcommander.Parameter;
+import org.joyqueue.domain.QosLevel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LoadGeneratorConfig
+ */
+public class LoadGeneratorConfig {
+
+    @Parameter(names = "--protocol", description = "client protocol, joyqueue or kafka")
+    private String protocol = "joyqueue";
+
+    @Parameter(names = {"-t", "--topic"}, description = "load test topic")
+    private String topic = "load_test";
+
+    @Parameter(names = {"-a", "--app"}, description = "load test app")
+    private String app = "load_test";
+
+    @Parameter(names = "--partitions", description = "topic partitions")
+    private int partitions = 8;
+
+    @Parameter(names = "--partition-groups", description = "topic partition groups")
+    private int partitionGroups = 1;
+
+    @Parameter(names = {"-s", "--size"}, description = "message body size in bytes, at least 8")
+    private int size = 1024;
+
+    @Parameter(names = {"-b", "--batch"}, description = "messages per send request")
+    private int batch = 1;
+
+    @Parameter(names = {"-q", "--qos"}, description = "produce qos level, ONE_WAY, RECEIVE, PERSISTENCE or REPLICATION")
+    private QosLevel qosLevel = QosLevel.REPLICATION;
+
+    @Parameter(names = "--producers", description = "producer threads")
+    private int producers = 4;
+
+    @Parameter(names = "--consumers", description = "consumers, 0 means produce only")
+    private int consumers = 1;
+
+    @Parameter(names = "--in-flight", description = "max in-flight send requests per producer thread")
+    private int inFlight = 32;
+
+    @Parameter(names = "--rate", description = "max messages per second of all producers, 0 means unlimited")
+    private int rate = 0;
+
+    @Parameter(names = {"-d", "--duration"}, description = "measure duration in seconds")
+    private int duration = 60;
+
+    @Parameter(names = "--warmup", description = "warmup duration in seconds, not measured")
+    private int warmup = 10;
+
+    @Parameter(names = "--report-interval", description = "report interval in seconds")
+    private int reportInterval = 5;
+
+    @Parameter(names = "--persist-probe-interval", description = "persistence probe interval in milliseconds, 0 means disabled")
+    private int persistProbeInterval = 10;
+
+    @Parameter(names = "--port", description = "broker frontend port")
+    private int port = 50088;
+
+    @Parameter(names = "--data-path", description = "broker data path, a temp dir which is deleted on exit by default")
+    private String dataPath;
+
+    @Parameter(names = {"-o", "--output"}, description = "dir to write percentile distributions (.hgrm)")
+    private String output;
+
+    @DynamicParameter(names = "-D", description = "broker properties, e.g. -Dstore.flush.interval=20")
+    private Map<String, String> params = new HashMap<>();
+
+    @Parameter(names = "--help", help = true)
+    private boolean help;
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public void setApp(String app) {
+        this.app = app;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public int getPartitionGroups() {
+        return partitionGroups;
+    }
+
+    public void setPartitionGroups(int partitionGroups) {
+        this.partitionGroups = partitionGroups;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public void setBatch(int batch) {
+        this.batch = batch;
+    }
+
+    public QosLevel getQosLevel() {
+        return qosLevel;
+    }
+
+    public void setQosLevel(QosLevel qosLevel) {
+        this.qosLevel = qosLevel;
+    }
+
+    public int getProducers() {
+        return producers;
+    }
+
+    public void setProducers(int producers) {
+        this.producers = producers;
+    }
+
+    public int getConsumers() {
+        return consumers;
+    }
+
+    public void setConsumers(int consumers) {
+        this.consumers = consumers;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    public int getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(int reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public int getPersistProbeInterval() {
+        return persistProbeInterval;
+    }
+
+    public void setPersistProbeInterval(int persistProbeInterval) {
+        this.persistProbeInterval = persistProbeInterval;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getDataPath() {
+        return dataPath;
+    }
+
+    public void setDataPath(String dataPath) {
+        this.dataPath = dataPath;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public void setParams(Map<String, String> params) {
+        this.params = params;
+    }
+
+    public boolean isHelp() {
+        return help;
+    }
+
+    public void setHelp(boolean help) {
+        this.help = help;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.tools.load;
+
+import org.joyqueue.broker.Plugins;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.ClientType;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Replica;
+import org.joyqueue.domain.Subscription;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class LocalNameServiceTest {
+    private static final TopicName TOPIC = TopicName.parse("test_topic");
+    private static final String APP = "test_app";
+
+    private LocalNameService nameService;
+    private Broker broker;
+
+    @Before
+    public void before() {
+        nameService = new LocalNameService();
+        broker = nameService.register(null, "127.0.0.1", 50088);
+
+        Topic topic = new Topic();
+        topic.setName(TOPIC);
+        topic.setPartitions((short) 2);
+        topic.setType(Topic.Type.TOPIC);
+        nameService.addTopic(topic, Arrays.asList(partitionGroup(0, (short) 0), partitionGroup(1, (short) 1)));
+    }
+
+    @Test
+    public void spiTest() {
+        Assert.assertTrue(Plugins.NAMESERVICE.get(LocalNameService.TYPE) instanceof LocalNameService);
+    }
+
+    @Test
+    public void registerTest() {
+        // 同一端口重复注册返回同一个Broker
+        Assert.assertEquals(broker.getId(), nameService.register(null, "127.0.0.1", 50088).getId());
+        Broker another = nameService.register(null, "127.0.0.1", 50188);
+        Assert.assertNotEquals(broker.getId(), another.getId());
+        Assert.assertEquals(2, nameService.getAllBrokers().size());
+        Assert.assertEquals(50188, nameService.getBroker(another.getId()).getPort());
+    }
+
+    @Test
+    public void topicConfigTest() {
+        TopicConfig topicConfig = nameService.getTopicConfig(TOPIC);
+        Assert.assertNotNull(topicConfig);
+        Assert.assertEquals(2, topicConfig.getPartitionGroups().size());
+        Assert.assertEquals(broker.getId(), topicConfig.getPartitionGroups().get(1).getBrokers().get(broker.getId()).getId());
+        Assert.assertNull(nameService.getTopicConfig(TopicName.parse("not_exist")));
+
+        List<Replica> replicas = nameService.getReplicaByBroker(broker.getId());
+        Assert.assertEquals(2, replicas.size());
+        Map<TopicName, TopicConfig> byBroker = nameService.getTopicConfigByBroker(broker.getId());
+        Assert.assertEquals(Collections.singleton(TOPIC), byBroker.keySet());
+
+        nameService.leaderReport(TOPIC, 1, broker.getId(), Collections.singleton(broker.getId()), 3);
+        Assert.assertEquals(3, nameService.getTopicConfig(TOPIC).getPartitionGroups().get(1).getTerm().intValue());
+    }
+
+    @Test
+    public void subscribeTest() {
+        Assert.assertFalse(nameService.hasSubscribe(APP, Subscription.Type.PRODUCTION));
+        Assert.assertNotNull(nameService.subscribe(new Subscription(TOPIC, APP, Subscription.Type.PRODUCTION), ClientType.JOYQUEUE));
+        Assert.assertNotNull(nameService.subscribe(new Subscription(TOPIC, APP, Subscription.Type.CONSUMPTION), ClientType.JOYQUEUE));
+        Assert.assertNull(nameService.subscribe(new Subscription(TopicName.parse("not_exist"), APP, Subscription.Type.PRODUCTION), ClientType.JOYQUEUE));
+
+        Assert.assertTrue(nameService.hasSubscribe(APP, Subscription.Type.PRODUCTION));
+        Assert.assertNotNull(nameService.getProducerByTopicAndApp(TOPIC, APP));
+        Assert.assertNotNull(nameService.getConsumerByTopicAndApp(TOPIC, APP));
+        Assert.assertEquals(1, nameService.getConsumerByTopic(TOPIC).size());
+        Assert.assertEquals(Collections.singleton(TOPIC), nameService.getTopicConfigByApp(APP, Subscription.Type.CONSUMPTION).keySet());
+
+        nameService.unSubscribe(new Subscription(TOPIC, APP, Subscription.Type.PRODUCTION));
+        Assert.assertNull(nameService.getProducerByTopicAndApp(TOPIC, APP));
+        Assert.assertFalse(nameService.hasSubscribe(APP, Subscription.Type.PRODUCTION));
+        Assert.assertTrue(nameService.hasSubscribe(APP, Subscription.Type.CONSUMPTION));
+    }
+
+    @Test
+    public void appTokenTest() {
+        AppToken appToken = new AppToken();
+        appToken.setApp(APP);
+        appToken.setToken("token");
+        nameService.addAppToken(appToken);
+        Assert.assertSame(appToken, nameService.getAppToken(APP, "token"));
+        Assert.assertNull(nameService.getAppToken(APP, "other"));
+        Assert.assertEquals(1, nameService.getAllMetadata().getAppTokens().size());
+    }
+
+    private PartitionGroup partitionGroup(int group, short partition) {
+        PartitionGroup partitionGroup = new PartitionGroup();
+        partitionGroup.setTopic(TOPIC);
+        partitionGroup.setGroup(group);
+        partitionGroup.setPartitions(new TreeSet<>(Collections.singleton(partition)));
+        partitionGroup.setLeader(broker.getId());
+        partitionGroup.setReplicas(new TreeSet<>(Collections.singleton(broker.getId())));
+        partitionGroup.setIsrs(new TreeSet<>(Collections.singleton(broker.getId())));
+        partitionGroup.setTerm(0);
+        return partitionGroup;
+    }
+}
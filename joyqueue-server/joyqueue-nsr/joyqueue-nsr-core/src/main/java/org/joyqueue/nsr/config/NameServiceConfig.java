@@ -67,6 +67,14 @@ public class NameServiceConfig {
         return getAndCreateDataPath() + PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_CACHE_FILE);
     }
 
+    public boolean getAllMetadataSnapshotEnable() {
+        return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_SNAPSHOT_ENABLE);
+    }
+
+    public String getAllMetadataSnapshotFile() {
+        return getAndCreateDataPath() + PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_SNAPSHOT_FILE);
+    }
+
     public int getAllMetadataCacheExpireTime() {
         return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_CACHE_EXPIRE_TIME);
     }
@@ -75,6 +83,22 @@ public class NameServiceConfig {
         return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_INTERVAL);
     }
 
+    public boolean getAllMetadataDeltaEnable() {
+        return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_DELTA_ENABLE);
+    }
+
+    public int getAllMetadataFullInterval() {
+        return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_FULL_INTERVAL);
+    }
+
+    public int getChangeLogCapacity() {
+        return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_CHANGE_LOG_CAPACITY);
+    }
+
+    public int getChangeLogBatchSize() {
+        return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_CHANGE_LOG_BATCH_SIZE);
+    }
+
     public boolean getAllMetadataRewriteEnable() {
         return PropertySupplier.getValue(propertySupplier, NameServiceConfigKey.NAMESERVER_ALL_METADATA_REWRITE_ENABLE);
     }
@@ -39,6 +39,11 @@ public class CompensateMetadataThread extends Service implements Runnable {
     private MetadataCompensator metadataCompensator;
 
     private MetadataValidator metadataValidator;
+    private MetadataCacheUpdater metadataCacheUpdater = new MetadataCacheUpdater();
+    // 增量同步的位置，epoch为0时需要全量同步
+    private long changeEpoch = 0;
+    private long changeVersion = 0;
+    private long lastFullTime = 0;
     private Thread compensationThread;
     private volatile boolean started = false;
 
@@ -89,6 +94,7 @@ public class CompensateMetadataThread extends Service implements Runnable {
         }
 
         if (metadataCacheManager.getCache() == null) {
+            MetadataChanges fullChanges = getMetadataChanges(true);
             AllMetadata allMetadata = delegate.getAllMetadata();
             AllMetadataCache newCache = metadataCacheManager.buildCache(allMetadata);
 
@@ -98,6 +104,7 @@ public class CompensateMetadataThread extends Service implements Runnable {
 
             metadataCacheManager.fillCache(newCache);
             metadataCacheManager.flushCache();
+            onFullCompensated(fullChanges);
         } else {
             if (metadataCompensator.getBrokerId() < 0) {
                 return;
@@ -106,6 +113,11 @@ public class CompensateMetadataThread extends Service implements Runnable {
                 return;
             }
             try {
+                MetadataChanges fullChanges = doCompensateChanges();
+                if (fullChanges != null && !fullChanges.isFull()) {
+                    return;
+                }
+
                 boolean isFlush = true;
                 AllMetadata allMetadata = null;
                 AllMetadataCache newCache = null;
@@ -171,10 +183,70 @@ public class CompensateMetadataThread extends Service implements Runnable {
                 if (newCache != null && isFlush) {
                     metadataCacheManager.fillCache(newCache);
                     metadataCacheManager.flushCache();
+                    onFullCompensated(fullChanges);
                 }
             } finally {
                 metadataCacheManager.unlock();
             }
         }
     }
+
+    /**
+     * 增量同步，需要全量同步时返回全量元数据对应的版本，不支持增量同步时返回null
+     * @return
+     */
+    protected MetadataChanges doCompensateChanges() {
+        boolean full = (SystemClock.now() - lastFullTime >= config.getAllMetadataFullInterval());
+        MetadataChanges changes = getMetadataChanges(full);
+        while (changes != null && !changes.isFull()) {
+            if (changes.getEvents().isEmpty()) {
+                break;
+            }
+            AllMetadataCache oldCache = metadataCacheManager.getCache();
+            AllMetadataCache newCache = null;
+            try {
+                newCache = metadataCacheUpdater.apply(oldCache, changes.getEvents());
+            } catch (Exception e) {
+                logger.error("apply metadata changes exception, changes: {}", changes, e);
+                return null;
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("doCompensateChanges, changes: {}, events: {}", changes, JSON.toJSONString(changes.getEvents()));
+            }
+
+            if (config.getCompensationEnable()) {
+                metadataCompensator.compensate(oldCache, newCache);
+            }
+            metadataCacheManager.fillCache(newCache);
+            metadataCacheManager.flushCache();
+            changeVersion = changes.getVersion();
+            changes = getMetadataChanges(false);
+        }
+        return changes;
+    }
+
+    protected MetadataChanges getMetadataChanges(boolean full) {
+        if (!config.getAllMetadataDeltaEnable() || !(delegate instanceof MetadataChangeService)) {
+            return null;
+        }
+        try {
+            // epoch为0时nameserver总是返回全量元数据对应的版本
+            return ((MetadataChangeService) delegate).getMetadataChanges((full ? 0 : changeEpoch), changeVersion);
+        } catch (Exception e) {
+            logger.warn("getMetadataChanges exception, fallback to getAllMetadata", e);
+            return null;
+        }
+    }
+
+    protected void onFullCompensated(MetadataChanges fullChanges) {
+        lastFullTime = SystemClock.now();
+        if (fullChanges == null) {
+            changeEpoch = 0;
+            changeVersion = 0;
+        } else {
+            changeEpoch = fullChanges.getEpoch();
+            changeVersion = fullChanges.getVersion();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按需解码的主题配置映射
+ * <p>
+ * 值是主题配置，或者还未解码的主题序号，第一次读取时从快照解码并替换，支持并发读取和修改。
+ */
+public class LazyTopicConfigMap extends AbstractMap<TopicName, TopicConfig> {
+
+    private final MetadataSnapshotDecoder decoder;
+    private final ConcurrentMap<TopicName, Object> topics;
+
+    public LazyTopicConfigMap(MetadataSnapshotDecoder decoder, ConcurrentMap<TopicName, Object> topics) {
+        this.decoder = decoder;
+        this.topics = topics;
+    }
+
+    @Override
+    public TopicConfig get(Object key) {
+        return resolve(key, topics.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return topics.containsKey(key);
+    }
+
+    @Override
+    public TopicConfig put(TopicName key, TopicConfig value) {
+        return resolve(key, topics.put(key, value));
+    }
+
+    @Override
+    public TopicConfig remove(Object key) {
+        return resolve(key, topics.remove(key));
+    }
+
+    @Override
+    public int size() {
+        return topics.size();
+    }
+
+    @Override
+    public Set<TopicName> keySet() {
+        return topics.keySet();
+    }
+
+    @Override
+    public Set<Entry<TopicName, TopicConfig>> entrySet() {
+        return new AbstractSet<Entry<TopicName, TopicConfig>>() {
+            @Override
+            public Iterator<Entry<TopicName, TopicConfig>> iterator() {
+                Iterator<Entry<TopicName, Object>> iterator = topics.entrySet().iterator();
+                return new Iterator<Entry<TopicName, TopicConfig>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<TopicName, TopicConfig> next() {
+                        Entry<TopicName, Object> entry = iterator.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), resolve(entry.getKey(), entry.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return topics.size();
+            }
+        };
+    }
+
+    protected TopicConfig resolve(Object key, Object value) {
+        if (value == null || value instanceof TopicConfig) {
+            return (TopicConfig) value;
+        }
+        TopicConfig topicConfig = decoder.getTopicConfig((Integer) value);
+        topics.replace((TopicName) key, value, topicConfig);
+        return topicConfig;
+    }
+}
@@ -58,6 +58,7 @@ public class MetadataCacheManager extends Service {
 
     private NameServiceConfig config;
 
+    private MetadataCacheSnapshot metadataCacheSnapshot;
     private MetadataCacheDoubleCopy metadataCacheDoubleCopy;
     private volatile AllMetadataCache cache;
     private ReentrantLock lock = new ReentrantLock();
@@ -69,13 +70,42 @@ public class MetadataCacheManager extends Service {
 
     @Override
     protected void validate() throws Exception {
-        metadataCacheDoubleCopy = new MetadataCacheDoubleCopy(new File(config.getAllMetadataCacheFile()));
+        if (config.getAllMetadataSnapshotEnable()) {
+            metadataCacheSnapshot = new MetadataCacheSnapshot(new File(config.getAllMetadataSnapshotFile()));
+        } else {
+            metadataCacheDoubleCopy = new MetadataCacheDoubleCopy(new File(config.getAllMetadataCacheFile()));
+        }
     }
 
     @Override
     protected void doStart() throws Exception {
-        metadataCacheDoubleCopy.recover();
-        this.cache = metadataCacheDoubleCopy.getCache();
+        if (metadataCacheSnapshot != null) {
+            this.cache = metadataCacheSnapshot.load(this::buildCache);
+            if (this.cache == null) {
+                this.cache = recoverLegacyCache();
+            }
+        } else {
+            metadataCacheDoubleCopy.recover();
+            this.cache = metadataCacheDoubleCopy.getCache();
+        }
+    }
+
+    /**
+     * 没有快照时读取旧格式的缓存文件，用于升级
+     */
+    protected AllMetadataCache recoverLegacyCache() {
+        File legacyFile = new File(config.getAllMetadataCacheFile());
+        if (!legacyFile.exists() || legacyFile.length() == 0) {
+            return null;
+        }
+        try {
+            MetadataCacheDoubleCopy legacyDoubleCopy = new MetadataCacheDoubleCopy(legacyFile);
+            legacyDoubleCopy.recover();
+            return legacyDoubleCopy.getCache();
+        } catch (Exception e) {
+            logger.warn("recover legacy metadata cache exception, file: {}", legacyFile, e);
+            return null;
+        }
     }
 
     public AllMetadataCache buildCache(AllMetadata allMetadata) {
@@ -222,7 +252,11 @@ public class MetadataCacheManager extends Service {
     }
 
     public void flushCache() {
-        metadataCacheDoubleCopy.flush(cache);
+        if (metadataCacheSnapshot != null) {
+            metadataCacheSnapshot.flush(cache);
+        } else {
+            metadataCacheDoubleCopy.flush(cache);
+        }
     }
 
     public Broker getBroker(int brokerId) {
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import io.netty.buffer.ByteBuf;
+import org.joyqueue.domain.AllMetadata;
+import org.joyqueue.nsr.exception.NsrException;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * 元数据缓存的二进制快照
+ * <p>
+ * 文件格式: magic(int) + schemaVersion(short) + timestamp(long) + checksum(long) + length(int) + 快照内容，
+ * 快照内容见{@link MetadataSnapshotEncoder}。
+ * 写入时先通过内存映射写临时文件，刷盘后再原子替换，加载时映射文件，主题按需解码。
+ */
+public class MetadataCacheSnapshot {
+
+    protected static final Logger logger = LoggerFactory.getLogger(MetadataCacheSnapshot.class);
+
+    private static final int MAGIC = 0x4A514D53;
+    private static final short SCHEMA_VERSION_V1 = 1;
+    private static final short CURRENT_SCHEMA_VERSION = SCHEMA_VERSION_V1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 4;
+
+    private File file;
+    private File tempFile;
+    private long timestamp;
+
+    public MetadataCacheSnapshot(File file) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * 加载快照
+     *
+     * @param cacheBuilder 用主题以外的元数据构建缓存
+     * @return 缓存，没有快照或快照无效返回null
+     */
+    public AllMetadataCache load(Function<AllMetadata, AllMetadataCache> cacheBuilder) {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = buffer.getInt();
+            short schemaVersion = buffer.getShort();
+            long timestamp = buffer.getLong();
+            long checksum = buffer.getLong();
+            int length = buffer.getInt();
+
+            if (magic != MAGIC) {
+                throw new NsrException(String.format("check magic failed, magic: %s", magic));
+            }
+            if (schemaVersion != CURRENT_SCHEMA_VERSION) {
+                throw new NsrException(String.format("check schema version failed, current: %s, required: %s", schemaVersion, CURRENT_SCHEMA_VERSION));
+            }
+            if (length != buffer.remaining()) {
+                throw new NsrException(String.format("check length failed, length: %s, remaining: %s", length, buffer.remaining()));
+            }
+
+            ByteBuffer body = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new NsrException(String.format("check checksum failed, checksum: %s, required: %s", crc.getValue(), checksum));
+            }
+
+            MetadataSnapshotDecoder decoder = new MetadataSnapshotDecoder(body.asReadOnlyBuffer());
+            AllMetadataCache cache = cacheBuilder.apply(decoder.decode());
+            decoder.fillTopics(cache);
+            this.timestamp = timestamp;
+
+            logger.info("load metadata snapshot, file: {}, length: {}, timestamp: {}", file, length, timestamp);
+            return cache;
+        } catch (Exception e) {
+            logger.warn("load metadata snapshot exception, file: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入快照
+     *
+     * @param cache 缓存
+     */
+    public synchronized void flush(AllMetadataCache cache) {
+        ByteBuf body = null;
+        try {
+            body = new MetadataSnapshotEncoder().encode(cache);
+            ByteBuffer bodyBuffer = body.nioBuffer();
+            CRC32 crc = new CRC32();
+            crc.update(bodyBuffer.duplicate());
+            long timestamp = SystemClock.now();
+
+            if (file.getParentFile() != null && !file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + bodyBuffer.remaining());
+                buffer.putInt(MAGIC);
+                buffer.putShort(CURRENT_SCHEMA_VERSION);
+                buffer.putLong(timestamp);
+                buffer.putLong(crc.getValue());
+                buffer.putInt(bodyBuffer.remaining());
+                buffer.put(bodyBuffer);
+                buffer.force();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.timestamp = timestamp;
+        } catch (Exception e) {
+            logger.error("flush metadata snapshot exception, file: {}", file, e);
+        } finally {
+            if (body != null) {
+                body.release();
+            }
+        }
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import org.joyqueue.event.MetaEvent;
+
+/**
+ * 变更日志中的一条元数据变更
+ * <p>
+ * event为null时表示无法增量同步的变更，broker同步到这里时改为拉取全量元数据。
+ */
+public class MetadataChange {
+
+    private long version;
+    private MetaEvent event;
+
+    public MetadataChange() {
+
+    }
+
+    public MetadataChange(long version, MetaEvent event) {
+        this.version = version;
+        this.event = event;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public MetaEvent getEvent() {
+        return event;
+    }
+
+    public void setEvent(MetaEvent event) {
+        this.event = event;
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataChange{" +
+                "version=" + version +
+                ", event=" + event +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+/**
+ * 元数据增量同步
+ */
+public interface MetadataChangeService {
+
+    /**
+     * 返回指定版本之后的元数据变更
+     * @param epoch 上次同步返回的epoch
+     * @param version 已同步的版本号
+     * @return
+     */
+    MetadataChanges getMetadataChanges(long epoch, long version);
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import org.joyqueue.event.MetaEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 元数据变更
+ * <p>
+ * epoch标识变更日志，nameserver重启后变化；version是返回的最后一条变更的版本号，下次从该版本继续拉取。
+ * full为true时变更日志无法连续覆盖请求的版本(epoch不一致、版本已被淘汰或有无法增量表示的变更)，需要拉取全量元数据，
+ * 此时version是全量元数据已包含的版本号。
+ */
+public class MetadataChanges {
+
+    private long epoch;
+    private long version;
+    private boolean full;
+    private List<MetaEvent> events = Collections.emptyList();
+
+    public MetadataChanges() {
+
+    }
+
+    public MetadataChanges(long epoch, long version, boolean full, List<MetaEvent> events) {
+        this.epoch = epoch;
+        this.version = version;
+        this.full = full;
+        this.events = events;
+    }
+
+    public static MetadataChanges full(long epoch, long version) {
+        return new MetadataChanges(epoch, version, true, Collections.emptyList());
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<MetaEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<MetaEvent> events) {
+        this.events = events;
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataChanges{" +
+                "epoch=" + epoch +
+                ", version=" + version +
+                ", full=" + full +
+                ", events=" + events.size() +
+                '}';
+    }
+}
@@ -0,0 +1,502 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import com.google.common.collect.Maps;
+import org.joyqueue.domain.AllMetadata;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.ClientType;
+import org.joyqueue.domain.Config;
+import org.joyqueue.domain.Consumer;
+import org.joyqueue.domain.DataCenter;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Producer;
+import org.joyqueue.domain.Subscription;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.domain.TopicType;
+import org.joyqueue.nsr.exception.NsrException;
+import org.joyqueue.toolkit.retry.RetryPolicy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 元数据快照解码，格式见{@link MetadataSnapshotEncoder}
+ * <p>
+ * broker、producer、consumer等在{@link #decode()}时解码，主题在第一次访问时才解码，
+ * broker启动时只需要解码自己的分区组，其他主题在补偿或读取时再解码。
+ */
+public class MetadataSnapshotDecoder {
+
+    private final ByteBuffer buffer;
+
+    private String[] strings;
+    private TopicName[] topicNames;
+    private Map<Integer, Broker> brokers;
+
+    private TopicName[] topics;
+    private int[] topicOffsets;
+    private int topicBase;
+    private Map<Integer, int[]> brokerTopics;
+    private AtomicReferenceArray<TopicConfig> topicConfigs;
+
+    public MetadataSnapshotDecoder(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * 解码主题以外的元数据，返回的元数据不包含主题
+     *
+     * @return 元数据
+     */
+    public AllMetadata decode() {
+        ByteBuffer in = buffer.duplicate();
+
+        int stringCount = in.getInt();
+        strings = new String[stringCount];
+        topicNames = new TopicName[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int brokerCount = in.getInt();
+        brokers = Maps.newHashMapWithExpectedSize(brokerCount);
+        for (int i = 0; i < brokerCount; i++) {
+            Broker broker = readBroker(in);
+            brokers.put(broker.getId(), broker);
+        }
+
+        int topicCount = in.getInt();
+        topics = new TopicName[topicCount];
+        topicOffsets = new int[topicCount];
+        topicConfigs = new AtomicReferenceArray<>(topicCount);
+        for (int i = 0; i < topicCount; i++) {
+            topics[i] = readTopicName(in);
+            topicOffsets[i] = in.getInt();
+        }
+
+        int brokerTopicCount = in.getInt();
+        brokerTopics = Maps.newHashMapWithExpectedSize(brokerTopicCount);
+        for (int i = 0; i < brokerTopicCount; i++) {
+            int brokerId = in.getInt();
+            int[] topicIndexes = new int[in.getInt()];
+            for (int j = 0; j < topicIndexes.length; j++) {
+                topicIndexes[j] = in.getInt();
+            }
+            brokerTopics.put(brokerId, topicIndexes);
+        }
+
+        int producerCount = in.getInt();
+        List<Producer> producers = new ArrayList<>(producerCount);
+        for (int i = 0; i < producerCount; i++) {
+            producers.add(readProducer(in));
+        }
+
+        int consumerCount = in.getInt();
+        List<Consumer> consumers = new ArrayList<>(consumerCount);
+        for (int i = 0; i < consumerCount; i++) {
+            consumers.add(readConsumer(in));
+        }
+
+        int configCount = in.getInt();
+        List<Config> configs = new ArrayList<>(configCount);
+        for (int i = 0; i < configCount; i++) {
+            configs.add(readConfig(in));
+        }
+
+        int appTokenCount = in.getInt();
+        List<AppToken> appTokens = new ArrayList<>(appTokenCount);
+        for (int i = 0; i < appTokenCount; i++) {
+            appTokens.add(readAppToken(in));
+        }
+
+        int dataCenterCount = in.getInt();
+        List<DataCenter> dataCenters = new ArrayList<>(dataCenterCount);
+        for (int i = 0; i < dataCenterCount; i++) {
+            dataCenters.add(readDataCenter(in));
+        }
+
+        int topicLength = in.getInt();
+        topicBase = in.position();
+        if (topicBase + topicLength != in.limit()) {
+            throw new NsrException(String.format("snapshot length mismatch, topic base: %s, topic length: %s, limit: %s", topicBase, topicLength, in.limit()));
+        }
+
+        AllMetadata metadata = new AllMetadata();
+        metadata.setBrokers(brokers);
+        metadata.setTopics(Maps.newHashMap());
+        metadata.setProducers(producers);
+        metadata.setConsumers(consumers);
+        metadata.setConfigs(configs);
+        metadata.setAppTokens(appTokens);
+        metadata.setDataCenters(dataCenters);
+        return metadata;
+    }
+
+    /**
+     * 用按需解码的主题填充缓存，需要先调用{@link #decode()}
+     *
+     * @param cache 缓存
+     */
+    public void fillTopics(AllMetadataCache cache) {
+        ConcurrentMap<TopicName, Object> topicConfigMap = new ConcurrentHashMap<>(topics.length);
+        List<String> allTopicCodes = new ArrayList<>(topics.length);
+        for (int i = 0; i < topics.length; i++) {
+            topicConfigMap.put(topics[i], i);
+            allTopicCodes.add(topics[i].getFullName());
+        }
+
+        Map<Integer, Map<TopicName, TopicConfig>> topicConfigBrokerMap = Maps.newHashMapWithExpectedSize(brokerTopics.size());
+        for (Map.Entry<Integer, int[]> entry : brokerTopics.entrySet()) {
+            ConcurrentMap<TopicName, Object> brokerTopicConfigMap = new ConcurrentHashMap<>(entry.getValue().length);
+            for (int index : entry.getValue()) {
+                brokerTopicConfigMap.put(topics[index], index);
+            }
+            topicConfigBrokerMap.put(entry.getKey(), new LazyTopicConfigMap(this, brokerTopicConfigMap));
+        }
+
+        cache.setTopicConfigMap(new LazyTopicConfigMap(this, topicConfigMap));
+        cache.setAllTopicConfigs(new TopicConfigList());
+        cache.setAllTopicCodes(allTopicCodes);
+        cache.setTopicConfigBrokerMap(topicConfigBrokerMap);
+    }
+
+    /**
+     * 返回主题配置，第一次访问时解码
+     *
+     * @param index 主题序号
+     * @return 主题配置
+     */
+    public TopicConfig getTopicConfig(int index) {
+        TopicConfig topicConfig = topicConfigs.get(index);
+        if (topicConfig != null) {
+            return topicConfig;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(topicBase + topicOffsets[index]);
+        topicConfig = readTopicConfig(in);
+        if (!topicConfigs.compareAndSet(index, null, topicConfig)) {
+            topicConfig = topicConfigs.get(index);
+        }
+        return topicConfig;
+    }
+
+    protected Broker readBroker(ByteBuffer in) {
+        Broker broker = new Broker();
+        broker.setId(in.getInt());
+        broker.setIp(readString(in));
+        broker.setPort(in.getInt());
+        broker.setDataCenter(readString(in));
+        broker.setRetryType(readString(in));
+        broker.setPermission(readEnum(in, Broker.PermissionEnum.class));
+        return broker;
+    }
+
+    protected TopicConfig readTopicConfig(ByteBuffer in) {
+        TopicConfig topicConfig = new TopicConfig();
+        TopicName topicName = readTopicName(in);
+        topicConfig.setName(topicName);
+        topicConfig.setPartitions(in.getShort());
+        topicConfig.setType(readEnum(in, Topic.Type.class));
+        topicConfig.setPriorityPartitions(readShorts(in));
+
+        if (in.get() != 0) {
+            Topic.TopicPolicy policy = new Topic.TopicPolicy();
+            policy.setStoreMaxTime(readLong(in));
+            policy.setStoreCleanKeepUnconsumed(readBoolean(in));
+            policy.setParams(readStringMap(in));
+            topicConfig.setPolicy(policy);
+        }
+
+        int partitionGroupCount = in.getInt();
+        if (partitionGroupCount < 0) {
+            return topicConfig;
+        }
+        Map<Integer, PartitionGroup> partitionGroups = Maps.newHashMapWithExpectedSize(partitionGroupCount);
+        for (int i = 0; i < partitionGroupCount; i++) {
+            PartitionGroup partitionGroup = new PartitionGroup();
+            partitionGroup.setTopic(topicName);
+            partitionGroup.setGroup(in.getInt());
+            partitionGroup.setLeader(readInt(in));
+            partitionGroup.setRecLeader(readInt(in));
+            partitionGroup.setTerm(readInt(in));
+            partitionGroup.setPartitions(readShorts(in));
+            partitionGroup.setReplicas(readInts(in));
+            partitionGroup.setIsrs(readInts(in));
+            partitionGroup.setLearners(readInts(in));
+            Set<Integer> outSyncReplicas = readInts(in);
+            partitionGroup.setOutSyncReplicas(outSyncReplicas == null ? null : new ArrayList<>(outSyncReplicas));
+            partitionGroup.setElectType(readEnum(in, PartitionGroup.ElectType.class));
+
+            Map<Integer, Broker> partitionGroupBrokerMap = Maps.newHashMap();
+            if (partitionGroup.getReplicas() != null) {
+                for (Integer replica : partitionGroup.getReplicas()) {
+                    Broker broker = brokers.get(replica);
+                    if (broker != null) {
+                        partitionGroupBrokerMap.put(replica, broker);
+                    }
+                }
+            }
+            partitionGroup.setBrokers(partitionGroupBrokerMap);
+            partitionGroups.put(partitionGroup.getGroup(), partitionGroup);
+        }
+        topicConfig.setPartitionGroups(partitionGroups);
+        return topicConfig;
+    }
+
+    protected Producer readProducer(ByteBuffer in) {
+        Producer producer = new Producer();
+        producer.setTopic(readTopicName(in));
+        producer.setApp(readString(in));
+        producer.setType(readEnum(in, Subscription.Type.class));
+        producer.setClientType(readEnum(in, ClientType.class));
+
+        if (in.get() != 0) {
+            Producer.ProducerPolicy policy = new Producer.ProducerPolicy();
+            policy.setNearby(readBoolean(in));
+            policy.setSingle(readBoolean(in));
+            policy.setArchive(readBoolean(in));
+            int weightCount = in.getInt();
+            if (weightCount >= 0) {
+                Map<String, Short> weight = Maps.newHashMapWithExpectedSize(weightCount);
+                for (int i = 0; i < weightCount; i++) {
+                    weight.put(readString(in), readShort(in));
+                }
+                policy.setWeight(weight);
+            } else {
+                policy.setWeight(null);
+            }
+            policy.setBlackList(readStrings(in));
+            policy.setTimeOut(readInt(in));
+            policy.setQosLevel(readInt(in));
+            policy.setRegion(readString(in));
+            policy.setParams(readStringMap(in));
+            producer.setProducerPolicy(policy);
+        }
+
+        if (in.get() != 0) {
+            Producer.ProducerLimitPolicy limitPolicy = new Producer.ProducerLimitPolicy();
+            limitPolicy.setTps(readInt(in));
+            limitPolicy.setTraffic(readInt(in));
+            producer.setLimitPolicy(limitPolicy);
+        }
+        return producer;
+    }
+
+    protected Consumer readConsumer(ByteBuffer in) {
+        Consumer consumer = new Consumer();
+        consumer.setTopic(readTopicName(in));
+        consumer.setApp(readString(in));
+        consumer.setType(readEnum(in, Subscription.Type.class));
+        consumer.setClientType(readEnum(in, ClientType.class));
+        consumer.setTopicType(readEnum(in, TopicType.class));
+
+        if (in.get() != 0) {
+            RetryPolicy retryPolicy = new RetryPolicy();
+            retryPolicy.setMaxRetrys(readInt(in));
+            retryPolicy.setMaxRetryDelay(readInt(in));
+            retryPolicy.setRetryDelay(readInt(in));
+            retryPolicy.setUseExponentialBackOff(readBoolean(in));
+            retryPolicy.setBackOffMultiplier(readDouble(in));
+            retryPolicy.setExpireTime(readInt(in));
+            retryPolicy.setRandomBound(readInt(in));
+            consumer.setRetryPolicy(retryPolicy);
+        }
+
+        if (in.get() != 0) {
+            Consumer.ConsumerPolicy policy = new Consumer.ConsumerPolicy();
+            policy.setNearby(readBoolean(in));
+            policy.setPaused(readBoolean(in));
+            policy.setArchive(readBoolean(in));
+            policy.setRetry(readBoolean(in));
+            policy.setSeq(readBoolean(in));
+            policy.setAckTimeout(readInt(in));
+            policy.setBatchSize(readShort(in));
+            policy.setConcurrent(readInt(in));
+            policy.setDelay(readInt(in));
+            policy.setBlackList(readStrings(in));
+            policy.setErrTimes(readInt(in));
+            policy.setMaxPartitionNum(readInt(in));
+            policy.setReadRetryProbability(readInt(in));
+            policy.setFilters(readStringMap(in));
+            policy.setRegion(readString(in));
+            policy.setParams(readStringMap(in));
+            consumer.setConsumerPolicy(policy);
+        }
+
+        if (in.get() != 0) {
+            Consumer.ConsumerLimitPolicy limitPolicy = new Consumer.ConsumerLimitPolicy();
+            limitPolicy.setTps(readInt(in));
+            limitPolicy.setTraffic(readInt(in));
+            consumer.setLimitPolicy(limitPolicy);
+        }
+        return consumer;
+    }
+
+    protected Config readConfig(ByteBuffer in) {
+        Config config = new Config();
+        config.setGroup(readString(in));
+        config.setKey(readString(in));
+        config.setValue(readString(in));
+        config.setPriority(in.getInt());
+        return config;
+    }
+
+    protected AppToken readAppToken(ByteBuffer in) {
+        AppToken appToken = new AppToken();
+        appToken.setId(readLong(in));
+        appToken.setApp(readString(in));
+        appToken.setToken(readString(in));
+        Long effectiveTime = readLong(in);
+        appToken.setEffectiveTime(effectiveTime == null ? null : new Date(effectiveTime));
+        Long expirationTime = readLong(in);
+        appToken.setExpirationTime(expirationTime == null ? null : new Date(expirationTime));
+        return appToken;
+    }
+
+    protected DataCenter readDataCenter(ByteBuffer in) {
+        DataCenter dataCenter = new DataCenter();
+        dataCenter.setCode(readString(in));
+        dataCenter.setName(readString(in));
+        dataCenter.setRegion(readString(in));
+        dataCenter.setUrl(readString(in));
+        return dataCenter;
+    }
+
+    protected String readString(ByteBuffer in) {
+        int index = in.getInt();
+        return index < 0 ? null : strings[index];
+    }
+
+    protected TopicName readTopicName(ByteBuffer in) {
+        int index = in.getInt();
+        if (index < 0) {
+            return null;
+        }
+        TopicName topicName = topicNames[index];
+        if (topicName == null) {
+            topicName = TopicName.parse(strings[index]);
+            topicNames[index] = topicName;
+        }
+        return topicName;
+    }
+
+    protected <E extends Enum<E>> E readEnum(ByteBuffer in, Class<E> type) {
+        String name = readString(in);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    protected Set<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Set<String> result = new HashSet<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(readString(in));
+        }
+        return result;
+    }
+
+    protected Map<String, String> readStringMap(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, String> result = Maps.newHashMapWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            result.put(readString(in), readString(in));
+        }
+        return result;
+    }
+
+    protected Set<Short> readShorts(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Set<Short> result = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            result.add(in.getShort());
+        }
+        return result;
+    }
+
+    protected Set<Integer> readInts(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Set<Integer> result = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            result.add(in.getInt());
+        }
+        return result;
+    }
+
+    protected Boolean readBoolean(ByteBuffer in) {
+        byte value = in.get();
+        return value == 0 ? null : value == 2;
+    }
+
+    protected Short readShort(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getShort();
+    }
+
+    protected Integer readInt(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getInt();
+    }
+
+    protected Long readLong(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getLong();
+    }
+
+    protected Double readDouble(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getDouble();
+    }
+
+    /**
+     * 按快照中的顺序访问所有主题，只读
+     */
+    protected class TopicConfigList extends AbstractList<TopicConfig> {
+
+        @Override
+        public TopicConfig get(int index) {
+            return getTopicConfig(index);
+        }
+
+        @Override
+        public int size() {
+            return topics.length;
+        }
+    }
+}
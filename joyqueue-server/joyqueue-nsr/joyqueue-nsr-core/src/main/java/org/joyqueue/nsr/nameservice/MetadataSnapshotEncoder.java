@@ -0,0 +1,391 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.nameservice;
+
+import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.Config;
+import org.joyqueue.domain.Consumer;
+import org.joyqueue.domain.DataCenter;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Producer;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.nsr.util.DCWrapper;
+import org.joyqueue.toolkit.retry.RetryPolicy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 元数据快照编码
+ * <p>
+ * 快照内容:
+ * <pre>
+ * 字符串表: count(int) + [length(int) + utf8]
+ * broker: count(int) + [broker]
+ * 主题索引: count(int) + [name(string) + offset(int)]，offset是主题记录相对主题区的位置
+ * broker主题索引: count(int) + [brokerId(int) + count(int) + [主题序号(int)]]
+ * producer、consumer、config、appToken、dataCenter: count(int) + [记录]
+ * 主题区: length(int) + [主题记录]
+ * </pre>
+ * 所有字符串写入字符串表，记录中只保存字符串序号，字符串序号和集合长度为-1表示null，加载时相同的字符串只创建一次。
+ * 主题记录单独存放，加载时按需解码。
+ */
+public class MetadataSnapshotEncoder {
+
+    protected static final int NULL_VALUE = -1;
+
+    private final Map<String, Integer> stringIndex = Maps.newHashMap();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteBuf records = Unpooled.buffer(1024 * 64);
+    private final ByteBuf topics = Unpooled.buffer(1024 * 64);
+
+    /**
+     * 编码缓存，返回快照内容
+     *
+     * @param cache 缓存
+     * @return 快照内容
+     */
+    public ByteBuf encode(AllMetadataCache cache) {
+        Map<TopicName, Integer> topicIndex = Maps.newHashMapWithExpectedSize(cache.getTopicConfigMap().size());
+
+        records.writeInt(cache.getBrokerMap().size());
+        for (Broker broker : cache.getBrokerMap().values()) {
+            writeBroker(broker, records);
+        }
+
+        records.writeInt(cache.getTopicConfigMap().size());
+        for (TopicConfig topicConfig : cache.getTopicConfigMap().values()) {
+            topicIndex.put(topicConfig.getName(), topicIndex.size());
+            writeString(topicConfig.getName().getFullName(), records);
+            records.writeInt(topics.writerIndex());
+            writeTopicConfig(topicConfig, topics);
+        }
+
+        records.writeInt(cache.getTopicConfigBrokerMap().size());
+        for (Map.Entry<Integer, Map<TopicName, TopicConfig>> entry : cache.getTopicConfigBrokerMap().entrySet()) {
+            records.writeInt(entry.getKey());
+            int countIndex = records.writerIndex();
+            int count = 0;
+            records.writeInt(count);
+            for (TopicName topicName : entry.getValue().keySet()) {
+                Integer index = topicIndex.get(topicName);
+                if (index != null) {
+                    records.writeInt(index);
+                    count++;
+                }
+            }
+            records.setInt(countIndex, count);
+        }
+
+        records.writeInt(cache.getAllProducers().size());
+        for (Producer producer : cache.getAllProducers()) {
+            writeProducer(producer, records);
+        }
+
+        records.writeInt(cache.getAllConsumers().size());
+        for (Consumer consumer : cache.getAllConsumers()) {
+            writeConsumer(consumer, records);
+        }
+
+        records.writeInt(cache.getAllConfigs().size());
+        for (Config config : cache.getAllConfigs()) {
+            writeConfig(config, records);
+        }
+
+        List<AppToken> appTokens = new ArrayList<>();
+        for (List<AppToken> appTokenList : cache.getAllAppTokenMap().values()) {
+            appTokens.addAll(appTokenList);
+        }
+        records.writeInt(appTokens.size());
+        for (AppToken appToken : appTokens) {
+            writeAppToken(appToken, records);
+        }
+
+        records.writeInt(cache.getAllDataCenters().size());
+        for (DCWrapper dataCenter : cache.getAllDataCenters()) {
+            writeDataCenter(dataCenter.getDataCenter(), records);
+        }
+
+        ByteBuf result = Unpooled.buffer(records.readableBytes() + topics.readableBytes() + strings.size() * 16);
+        result.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            result.writeInt(bytes.length);
+            result.writeBytes(bytes);
+        }
+        result.writeBytes(records);
+        result.writeInt(topics.readableBytes());
+        result.writeBytes(topics);
+        records.release();
+        topics.release();
+        return result;
+    }
+
+    protected void writeBroker(Broker broker, ByteBuf out) {
+        out.writeInt(broker.getId());
+        writeString(broker.getIp(), out);
+        out.writeInt(broker.getPort());
+        writeString(broker.getDataCenter(), out);
+        writeString(broker.getRetryType(), out);
+        writeEnum(broker.getPermission(), out);
+    }
+
+    protected void writeTopicConfig(TopicConfig topicConfig, ByteBuf out) {
+        writeString(topicConfig.getName().getFullName(), out);
+        out.writeShort(topicConfig.getPartitions());
+        writeEnum(topicConfig.getType(), out);
+        writeShorts(topicConfig.getPriorityPartitions(), out);
+
+        Topic.TopicPolicy policy = topicConfig.getPolicy();
+        out.writeBoolean(policy != null);
+        if (policy != null) {
+            writeLong(policy.getStoreMaxTime(), out);
+            writeBoolean(policy.getStoreCleanKeepUnconsumed(), out);
+            writeStringMap(policy.getParams(), out);
+        }
+
+        Map<Integer, PartitionGroup> partitionGroups = topicConfig.getPartitionGroups();
+        if (partitionGroups == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        out.writeInt(partitionGroups.size());
+        for (PartitionGroup partitionGroup : partitionGroups.values()) {
+            out.writeInt(partitionGroup.getGroup());
+            writeInt(partitionGroup.getLeader(), out);
+            writeInt(partitionGroup.getRecLeader(), out);
+            writeInt(partitionGroup.getTerm(), out);
+            writeShorts(partitionGroup.getPartitions(), out);
+            writeInts(partitionGroup.getReplicas(), out);
+            writeInts(partitionGroup.getIsrs(), out);
+            writeInts(partitionGroup.getLearners(), out);
+            writeInts(partitionGroup.getOutSyncReplicas(), out);
+            writeEnum(partitionGroup.getElectType(), out);
+        }
+    }
+
+    protected void writeProducer(Producer producer, ByteBuf out) {
+        writeString(producer.getTopic().getFullName(), out);
+        writeString(producer.getApp(), out);
+        writeEnum(producer.getType(), out);
+        writeEnum(producer.getClientType(), out);
+
+        Producer.ProducerPolicy policy = producer.getProducerPolicy();
+        out.writeBoolean(policy != null);
+        if (policy != null) {
+            writeBoolean(policy.getNearby(), out);
+            writeBoolean(policy.isSingle(), out);
+            writeBoolean(policy.getArchive(), out);
+            Map<String, Short> weight = policy.getWeight();
+            if (weight == null) {
+                out.writeInt(NULL_VALUE);
+            } else {
+                out.writeInt(weight.size());
+                for (Map.Entry<String, Short> entry : weight.entrySet()) {
+                    writeString(entry.getKey(), out);
+                    writeShort(entry.getValue(), out);
+                }
+            }
+            writeStrings(policy.getBlackList(), out);
+            writeInt(policy.getTimeOut(), out);
+            writeInt(policy.getQosLevel(), out);
+            writeString(policy.getRegion(), out);
+            writeStringMap(policy.getParams(), out);
+        }
+
+        Producer.ProducerLimitPolicy limitPolicy = producer.getLimitPolicy();
+        out.writeBoolean(limitPolicy != null);
+        if (limitPolicy != null) {
+            writeInt(limitPolicy.getTps(), out);
+            writeInt(limitPolicy.getTraffic(), out);
+        }
+    }
+
+    protected void writeConsumer(Consumer consumer, ByteBuf out) {
+        writeString(consumer.getTopic().getFullName(), out);
+        writeString(consumer.getApp(), out);
+        writeEnum(consumer.getType(), out);
+        writeEnum(consumer.getClientType(), out);
+        writeEnum(consumer.getTopicType(), out);
+
+        RetryPolicy retryPolicy = consumer.getRetryPolicy();
+        out.writeBoolean(retryPolicy != null);
+        if (retryPolicy != null) {
+            writeInt(retryPolicy.getMaxRetrys(), out);
+            writeInt(retryPolicy.getMaxRetryDelay(), out);
+            writeInt(retryPolicy.getRetryDelay(), out);
+            writeBoolean(retryPolicy.getUseExponentialBackOff(), out);
+            writeDouble(retryPolicy.getBackOffMultiplier(), out);
+            writeInt(retryPolicy.getExpireTime(), out);
+            writeInt(retryPolicy.getRandomBound(), out);
+        }
+
+        Consumer.ConsumerPolicy policy = consumer.getConsumerPolicy();
+        out.writeBoolean(policy != null);
+        if (policy != null) {
+            writeBoolean(policy.getNearby(), out);
+            writeBoolean(policy.getPaused(), out);
+            writeBoolean(policy.getArchive(), out);
+            writeBoolean(policy.getRetry(), out);
+            writeBoolean(policy.getSeq(), out);
+            writeInt(policy.getAckTimeout(), out);
+            writeShort(policy.getBatchSize(), out);
+            writeInt(policy.getConcurrent(), out);
+            writeInt(policy.getDelay(), out);
+            writeStrings(policy.getBlackList(), out);
+            writeInt(policy.getErrTimes(), out);
+            writeInt(policy.getMaxPartitionNum(), out);
+            writeInt(policy.getReadRetryProbability(), out);
+            writeStringMap(policy.getFilters(), out);
+            writeString(policy.getRegion(), out);
+            writeStringMap(policy.getParams(), out);
+        }
+
+        Consumer.ConsumerLimitPolicy limitPolicy = consumer.getLimitPolicy();
+        out.writeBoolean(limitPolicy != null);
+        if (limitPolicy != null) {
+            writeInt(limitPolicy.getTps(), out);
+            writeInt(limitPolicy.getTraffic(), out);
+        }
+    }
+
+    protected void writeConfig(Config config, ByteBuf out) {
+        writeString(config.getGroup(), out);
+        writeString(config.getKey(), out);
+        writeString(config.getValue(), out);
+        out.writeInt(config.getPriority());
+    }
+
+    protected void writeAppToken(AppToken appToken, ByteBuf out) {
+        writeLong(appToken.getId(), out);
+        writeString(appToken.getApp(), out);
+        writeString(appToken.getToken(), out);
+        writeLong(appToken.getEffectiveTime() == null ? null : appToken.getEffectiveTime().getTime(), out);
+        writeLong(appToken.getExpirationTime() == null ? null : appToken.getExpirationTime().getTime(), out);
+    }
+
+    protected void writeDataCenter(DataCenter dataCenter, ByteBuf out) {
+        writeString(dataCenter.getCode(), out);
+        writeString(dataCenter.getName(), out);
+        writeString(dataCenter.getRegion(), out);
+        writeString(dataCenter.getUrl(), out);
+    }
+
+    protected void writeString(String value, ByteBuf out) {
+        if (value == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        out.writeInt(index);
+    }
+
+    protected void writeEnum(Enum<?> value, ByteBuf out) {
+        writeString(value == null ? null : value.name(), out);
+    }
+
+    protected void writeStrings(Collection<String> values, ByteBuf out) {
+        if (values == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(value, out);
+        }
+    }
+
+    protected void writeStringMap(Map<String, String> values, ByteBuf out) {
+        if (values == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        out.writeInt(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeString(entry.getValue(), out);
+        }
+    }
+
+    protected void writeShorts(Collection<Short> values, ByteBuf out) {
+        if (values == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        out.writeInt(values.size());
+        for (Short value : values) {
+            out.writeShort(value);
+        }
+    }
+
+    protected void writeInts(Collection<Integer> values, ByteBuf out) {
+        if (values == null) {
+            out.writeInt(NULL_VALUE);
+            return;
+        }
+        out.writeInt(values.size());
+        for (Integer value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    protected void writeBoolean(Boolean value, ByteBuf out) {
+        // 0: null, 1: false, 2: true
+        out.writeByte(value == null ? 0 : (value ? 2 : 1));
+    }
+
+    protected void writeShort(Short value, ByteBuf out) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeShort(value);
+        }
+    }
+
+    protected void writeInt(Integer value, ByteBuf out) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    protected void writeLong(Long value, ByteBuf out) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    protected void writeDouble(Double value, ByteBuf out) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.joyqueue.nsr.NsrPlugins;
 import org.joyqueue.nsr.config.NameServerConfig;
 import org.joyqueue.nsr.exception.NsrException;
 import org.joyqueue.nsr.network.NsrTransportServerFactory;
+import org.joyqueue.nsr.support.MetadataChangeLog;
 import org.joyqueue.toolkit.concurrent.EventListener;
 import org.joyqueue.toolkit.config.PropertySupplier;
 import org.joyqueue.toolkit.config.PropertySupplierAware;
@@ -65,7 +66,7 @@ import java.util.concurrent.TimeUnit;
  * author: gaohaoxiang
  * date: 2020/2/24
  */
-public class NameServer extends Service implements NameService, PropertySupplierAware, Type {
+public class NameServer extends Service implements NameService, MetadataChangeService, PropertySupplierAware, Type {
 
     protected static final Logger logger = LoggerFactory.getLogger(NameServer.class);
 
@@ -452,6 +453,23 @@ public class NameServer extends Service implements NameService, PropertySupplier
         }
     }
 
+    @Override
+    public MetadataChanges getMetadataChanges(long epoch, long version) {
+        TraceStat trace = tracer.begin("NameService.getMetadataChanges");
+        try {
+            MetadataChanges result = delegate.getMetadataChanges(epoch, version);
+            tracer.end(trace);
+            return result;
+        } catch (Exception e) {
+            tracer.error(trace);
+            throw e;
+        }
+    }
+
+    public MetadataChangeLog getMetadataChangeLog() {
+        return delegate.getMetadataChangeLog();
+    }
+
     @Override
     public void addListener(EventListener<NameServerEvent> listener) {
         delegate.addListener(listener);
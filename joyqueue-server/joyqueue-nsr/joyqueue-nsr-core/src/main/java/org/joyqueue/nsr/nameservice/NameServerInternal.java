@@ -54,6 +54,8 @@ import org.joyqueue.nsr.service.PartitionGroupReplicaService;
 import org.joyqueue.nsr.service.PartitionGroupService;
 import org.joyqueue.nsr.service.ProducerService;
 import org.joyqueue.nsr.service.TopicService;
+import org.joyqueue.nsr.support.DefaultServiceProvider;
+import org.joyqueue.nsr.support.MetadataChangeLog;
 import org.joyqueue.nsr.util.DCWrapper;
 import org.joyqueue.toolkit.concurrent.EventBus;
 import org.joyqueue.toolkit.concurrent.EventListener;
@@ -87,7 +89,7 @@ import java.util.stream.Collectors;
  * @author wylixiaobin
  * @date 2018/9/4
  */
-public class NameServerInternal extends Service implements NameService, PropertySupplierAware {
+public class NameServerInternal extends Service implements NameService, MetadataChangeService, PropertySupplierAware {
     /**
      * name server config
      */
@@ -529,6 +531,26 @@ public class NameServerInternal extends Service implements NameService, Property
         return metaManager.getProducerByTopic(topic);
     }
 
+    @Override
+    public MetadataChanges getMetadataChanges(long epoch, long version) {
+        MetadataChangeLog metadataChangeLog = getMetadataChangeLog();
+        if (metadataChangeLog == null) {
+            return MetadataChanges.full(0, 0);
+        }
+        return metadataChangeLog.getChanges(epoch, version);
+    }
+
+    /**
+     * 变更日志，只有默认的ServiceProvider记录变更
+     * @return
+     */
+    public MetadataChangeLog getMetadataChangeLog() {
+        if (serviceProvider instanceof DefaultServiceProvider) {
+            return ((DefaultServiceProvider) serviceProvider).getMetadataChangeLog();
+        }
+        return null;
+    }
+
     @Override
     public AllMetadata getAllMetadata() {
         Map<TopicName, TopicConfig> topicConfigs = getAllTopicConfigs();
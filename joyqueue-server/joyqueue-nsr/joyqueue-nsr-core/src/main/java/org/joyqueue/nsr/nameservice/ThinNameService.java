@@ -62,6 +62,8 @@ import org.joyqueue.nsr.network.command.GetAllConfigs;
 import org.joyqueue.nsr.network.command.GetAllConfigsAck;
 import org.joyqueue.nsr.network.command.GetAllMetadataRequest;
 import org.joyqueue.nsr.network.command.GetAllMetadataResponse;
+import org.joyqueue.nsr.network.command.GetMetadataChangesRequest;
+import org.joyqueue.nsr.network.command.GetMetadataChangesResponse;
 import org.joyqueue.nsr.network.command.GetAllTopics;
 import org.joyqueue.nsr.network.command.GetAllTopicsAck;
 import org.joyqueue.nsr.network.command.GetAppToken;
@@ -122,7 +124,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * @author wylixiaobin
  * Date: 2019/1/27
  */
-public class ThinNameService extends Service implements NameService, PropertySupplierAware, Type {
+public class ThinNameService extends Service implements NameService, MetadataChangeService, PropertySupplierAware, Type {
     private static final Logger logger = LoggerFactory.getLogger(ThinNameService.class);
 
     private NameServiceConfig nameServiceConfig;
@@ -486,6 +488,17 @@ public class ThinNameService extends Service implements NameService, PropertySup
         return ((GetAllMetadataResponse) response.getPayload()).getMetadata();
     }
 
+    @Override
+    public MetadataChanges getMetadataChanges(long epoch, long version) {
+        Command request = new Command(new JoyQueueHeader(Direction.REQUEST, NsrCommandType.NSR_GET_METADATA_CHANGES_REQUEST), new GetMetadataChangesRequest(epoch, version));
+        Command response = send(request, nameServiceConfig.getAllMetadataTransportTimeout());
+        if (!response.isSuccess()) {
+            logger.error("getMetadataChanges error request {},response {}", request, response);
+            throw new RuntimeException(String.format("getMetadataChanges error request %s,response %s", request, response));
+        }
+        return ((GetMetadataChangesResponse) response.getPayload()).getChanges();
+    }
+
     @Override
     public void addListener(EventListener<NameServerEvent> listener) {
         eventBus.addListener(listener);
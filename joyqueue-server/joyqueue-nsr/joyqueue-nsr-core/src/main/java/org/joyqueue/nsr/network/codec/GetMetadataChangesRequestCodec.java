@@ -0,0 +1,45 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.network.codec;
+
+import io.netty.buffer.ByteBuf;
+import org.joyqueue.network.transport.command.Header;
+import org.joyqueue.network.transport.command.Type;
+import org.joyqueue.nsr.network.NsrPayloadCodec;
+import org.joyqueue.nsr.network.command.GetMetadataChangesRequest;
+import org.joyqueue.nsr.network.command.NsrCommandType;
+
+/**
+ * GetMetadataChangesRequestCodec
+ */
+public class GetMetadataChangesRequestCodec implements NsrPayloadCodec<GetMetadataChangesRequest>, Type {
+
+    @Override
+    public GetMetadataChangesRequest decode(Header header, ByteBuf buffer) throws Exception {
+        return new GetMetadataChangesRequest(buffer.readLong(), buffer.readLong());
+    }
+
+    @Override
+    public void encode(GetMetadataChangesRequest payload, ByteBuf buffer) throws Exception {
+        buffer.writeLong(payload.getEpoch());
+        buffer.writeLong(payload.getVersion());
+    }
+
+    @Override
+    public int type() {
+        return NsrCommandType.NSR_GET_METADATA_CHANGES_REQUEST;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.network.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import io.netty.buffer.ByteBuf;
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.network.serializer.Serializer;
+import org.joyqueue.network.transport.command.Header;
+import org.joyqueue.network.transport.command.Type;
+import org.joyqueue.nsr.nameservice.MetadataChanges;
+import org.joyqueue.nsr.network.NsrPayloadCodec;
+import org.joyqueue.nsr.network.command.GetMetadataChangesResponse;
+import org.joyqueue.nsr.network.command.NsrCommandType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GetMetadataChangesResponseCodec
+ * 事件和推送一样按类名和json编码
+ */
+public class GetMetadataChangesResponseCodec implements NsrPayloadCodec<GetMetadataChangesResponse>, Type {
+
+    @Override
+    public GetMetadataChangesResponse decode(Header header, ByteBuf buffer) throws Exception {
+        long epoch = buffer.readLong();
+        long version = buffer.readLong();
+        boolean full = buffer.readBoolean();
+        int size = buffer.readInt();
+        List<MetaEvent> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String classType = Serializer.readString(buffer, Serializer.SHORT_SIZE);
+            String json = Serializer.readString(buffer, Serializer.INT_SIZE);
+            events.add((MetaEvent) JSON.parseObject(json, Class.forName(classType)));
+        }
+        return new GetMetadataChangesResponse(new MetadataChanges(epoch, version, full, events));
+    }
+
+    @Override
+    public void encode(GetMetadataChangesResponse payload, ByteBuf buffer) throws Exception {
+        MetadataChanges changes = payload.getChanges();
+        buffer.writeLong(changes.getEpoch());
+        buffer.writeLong(changes.getVersion());
+        buffer.writeBoolean(changes.isFull());
+        buffer.writeInt(changes.getEvents().size());
+        for (MetaEvent event : changes.getEvents()) {
+            Serializer.write(event.getClass().getName(), buffer, Serializer.SHORT_SIZE);
+            Serializer.write(JSON.toJSONString(event, SerializerFeature.DisableCircularReferenceDetect), buffer, Serializer.INT_SIZE);
+        }
+    }
+
+    @Override
+    public int type() {
+        return NsrCommandType.NSR_GET_METADATA_CHANGES_RESPONSE;
+    }
+}
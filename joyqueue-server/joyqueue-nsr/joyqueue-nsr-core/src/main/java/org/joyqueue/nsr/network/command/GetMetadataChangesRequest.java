@@ -0,0 +1,57 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.network.command;
+
+import org.joyqueue.network.transport.command.JoyQueuePayload;
+
+/**
+ * GetMetadataChangesRequest
+ */
+public class GetMetadataChangesRequest extends JoyQueuePayload {
+
+    private long epoch;
+    private long version;
+
+    public GetMetadataChangesRequest() {
+
+    }
+
+    public GetMetadataChangesRequest(long epoch, long version) {
+        this.epoch = epoch;
+        this.version = version;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public int type() {
+        return NsrCommandType.NSR_GET_METADATA_CHANGES_REQUEST;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.network.command;
+
+import org.joyqueue.network.transport.command.JoyQueuePayload;
+import org.joyqueue.nsr.nameservice.MetadataChanges;
+
+/**
+ * GetMetadataChangesResponse
+ */
+public class GetMetadataChangesResponse extends JoyQueuePayload {
+
+    private MetadataChanges changes;
+
+    public GetMetadataChangesResponse() {
+
+    }
+
+    public GetMetadataChangesResponse(MetadataChanges changes) {
+        this.changes = changes;
+    }
+
+    public MetadataChanges getChanges() {
+        return changes;
+    }
+
+    public void setChanges(MetadataChanges changes) {
+        this.changes = changes;
+    }
+
+    @Override
+    public int type() {
+        return NsrCommandType.NSR_GET_METADATA_CHANGES_RESPONSE;
+    }
+}
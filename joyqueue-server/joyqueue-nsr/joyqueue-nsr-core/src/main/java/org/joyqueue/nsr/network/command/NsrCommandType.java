@@ -123,4 +123,7 @@ public class NsrCommandType {
     // 返回所有元数据
     public static final int NSR_GET_ALL_METADATA_REQUEST = 52;
     public static final int NSR_GET_ALL_METADATA_RESPONSE = -52;
+    // 返回指定版本之后的元数据变更
+    public static final int NSR_GET_METADATA_CHANGES_REQUEST = 53;
+    public static final int NSR_GET_METADATA_CHANGES_RESPONSE = -53;
 }
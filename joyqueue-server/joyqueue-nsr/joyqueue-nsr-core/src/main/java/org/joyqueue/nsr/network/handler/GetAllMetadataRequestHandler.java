@@ -24,11 +24,13 @@ import org.joyqueue.network.transport.command.Command;
 import org.joyqueue.network.transport.command.Types;
 import org.joyqueue.nsr.NameService;
 import org.joyqueue.nsr.config.NameServiceConfig;
+import org.joyqueue.nsr.nameservice.NameServer;
 import org.joyqueue.nsr.network.NsrCommandHandler;
 import org.joyqueue.nsr.network.codec.GetAllMetadataResponseCodec;
 import org.joyqueue.nsr.network.command.GetAllMetadataRequest;
 import org.joyqueue.nsr.network.command.GetAllMetadataResponse;
 import org.joyqueue.nsr.network.command.NsrCommandType;
+import org.joyqueue.nsr.support.MetadataChangeLog;
 import org.joyqueue.toolkit.config.Property;
 import org.joyqueue.toolkit.config.PropertySupplier;
 import org.joyqueue.toolkit.config.PropertySupplierAware;
@@ -53,6 +55,8 @@ public class GetAllMetadataRequestHandler implements NsrCommandHandler, Property
 
     private volatile AllMetadata allMetadataCache;
     private volatile byte[] allMetadataCacheByte;
+    // 构建缓存前变更日志的版本号
+    private volatile long allMetadataCacheVersion = -1;
     private Thread refreshCacheThread;
 
     @Override
@@ -69,6 +73,9 @@ public class GetAllMetadataRequestHandler implements NsrCommandHandler, Property
                 try {
                     if (config.getAllMetadataCacheEnable()) {
                         allMetadataCacheByte = doGetAllMetadata();
+                        updateSnapshotVersion(allMetadataCacheVersion);
+                    } else {
+                        updateSnapshotVersion(-1);
                     }
                     Thread.currentThread().sleep(config.getAllMetadataCacheExpireTime());
                 } catch (Exception e) {
@@ -88,6 +95,7 @@ public class GetAllMetadataRequestHandler implements NsrCommandHandler, Property
         if (config.getAllMetadataCacheEnable()) {
             if (allMetadataCacheByte == null) {
                 allMetadataCacheByte = doGetAllMetadata();
+                updateSnapshotVersion(allMetadataCacheVersion);
             }
             response = allMetadataCacheByte;
         } else {
@@ -101,8 +109,12 @@ public class GetAllMetadataRequestHandler implements NsrCommandHandler, Property
 
     protected byte[] doGetAllMetadata() {
         boolean isException = false;
+        MetadataChangeLog metadataChangeLog = getMetadataChangeLog();
         try {
+            // 先读取变更版本再读取元数据，缓存至少包含这个版本之前的变更
+            long changeVersion = (metadataChangeLog != null ? metadataChangeLog.getVersion() : -1);
             allMetadataCache = nameService.getAllMetadata();
+            allMetadataCacheVersion = changeVersion;
         } catch (Exception e) {
             if (allMetadataCache == null) {
                 throw e;
@@ -122,6 +134,21 @@ public class GetAllMetadataRequestHandler implements NsrCommandHandler, Property
         return GetAllMetadataResponseCodec.toJson(allMetadataCache);
     }
 
+    // 增量同步时，broker拉取全量元数据后从缓存包含的版本继续同步
+    protected void updateSnapshotVersion(long version) {
+        MetadataChangeLog metadataChangeLog = getMetadataChangeLog();
+        if (metadataChangeLog != null) {
+            metadataChangeLog.setSnapshotVersion(version);
+        }
+    }
+
+    protected MetadataChangeLog getMetadataChangeLog() {
+        if (nameService instanceof NameServer) {
+            return ((NameServer) nameService).getMetadataChangeLog();
+        }
+        return null;
+    }
+
     protected List<Config> mergeMemoryConfigs(List<Config> configs) {
         Set<Config> result = Sets.newHashSet();
         result.addAll(configs);
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.network.handler;
+
+import org.joyqueue.network.transport.Transport;
+import org.joyqueue.network.transport.command.Command;
+import org.joyqueue.network.transport.command.Types;
+import org.joyqueue.nsr.NameService;
+import org.joyqueue.nsr.nameservice.MetadataChangeService;
+import org.joyqueue.nsr.nameservice.MetadataChanges;
+import org.joyqueue.nsr.network.NsrCommandHandler;
+import org.joyqueue.nsr.network.command.GetMetadataChangesRequest;
+import org.joyqueue.nsr.network.command.GetMetadataChangesResponse;
+import org.joyqueue.nsr.network.command.NsrCommandType;
+
+/**
+ * GetMetadataChangesRequestHandler
+ * 返回指定版本之后的元数据变更，nameserver不支持增量同步时返回全量
+ */
+public class GetMetadataChangesRequestHandler implements NsrCommandHandler, Types, com.jd.laf.extension.Type<String> {
+
+    private NameService nameService;
+
+    @Override
+    public void setNameService(NameService nameService) {
+        this.nameService = nameService;
+    }
+
+    @Override
+    public Command handle(Transport transport, Command command) {
+        GetMetadataChangesRequest request = (GetMetadataChangesRequest) command.getPayload();
+        MetadataChanges changes = null;
+        if (nameService instanceof MetadataChangeService) {
+            changes = ((MetadataChangeService) nameService).getMetadataChanges(request.getEpoch(), request.getVersion());
+        } else {
+            changes = MetadataChanges.full(0, 0);
+        }
+        return new Command(new GetMetadataChangesResponse(changes));
+    }
+
+    @Override
+    public String type() {
+        return SERVER_TYPE;
+    }
+
+    @Override
+    public int[] types() {
+        return new int[] {NsrCommandType.NSR_GET_METADATA_CHANGES_REQUEST};
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.service.internal;
+
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.nameservice.MetadataChange;
+
+import java.util.List;
+
+/**
+ * 元数据变更日志的存储
+ * <p>
+ * 变更和元数据保存在同一个共享存储中，版本号由存储分配，所有nameserver看到同样的版本号和变更。
+ * 在事务中追加时，变更和元数据的修改一起提交。
+ */
+public interface MetadataChangeInternalService {
+
+    /**
+     * 变更日志的标识，存储重建后变化
+     * @return
+     */
+    long getEpoch();
+
+    /**
+     * 最新变更的版本号，没有变更时返回0
+     * @return
+     */
+    long getVersion();
+
+    /**
+     * 追加变更，版本号为当前最新版本号加1
+     * @param event 为null时表示无法增量同步的变更
+     */
+    void add(MetaEvent event);
+
+    /**
+     * 返回版本号大于version的变更，按版本号升序排列
+     * @param version
+     * @param count 最多返回的条数
+     * @return
+     */
+    List<MetadataChange> getAfter(long version, int count);
+
+    /**
+     * 删除版本号小于等于version的变更
+     * @param version
+     */
+    void deleteBefore(long version);
+}
@@ -29,9 +29,11 @@ import java.util.List;
 public class DefaultAppTokenService implements AppTokenService {
 
     private AppTokenInternalService appTokenInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
-    public DefaultAppTokenService(AppTokenInternalService appTokenInternalService) {
+    public DefaultAppTokenService(AppTokenInternalService appTokenInternalService, MetadataChangeLog metadataChangeLog) {
         this.appTokenInternalService = appTokenInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -56,16 +58,21 @@ public class DefaultAppTokenService implements AppTokenService {
 
     @Override
     public AppToken add(AppToken appToken) {
-        return appTokenInternalService.add(appToken);
+        AppToken result = appTokenInternalService.add(appToken);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public AppToken update(AppToken appToken) {
-        return appTokenInternalService.update(appToken);
+        AppToken result = appTokenInternalService.update(appToken);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public void delete(long id) {
         appTokenInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
\ No newline at end of file
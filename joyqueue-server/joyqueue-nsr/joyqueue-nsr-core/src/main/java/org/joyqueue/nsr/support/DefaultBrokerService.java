@@ -44,13 +44,15 @@ public class DefaultBrokerService implements BrokerService {
     private TransactionInternalService transactionInternalService;
     private NameServiceConfig config;
     private Messenger messenger;
+    private MetadataChangeLog metadataChangeLog;
 
     public DefaultBrokerService(BrokerInternalService brokerInternalService, TransactionInternalService transactionInternalService,
-                                NameServiceConfig config, Messenger messenger) {
+                                NameServiceConfig config, Messenger messenger, MetadataChangeLog metadataChangeLog) {
         this.brokerInternalService = brokerInternalService;
         this.transactionInternalService = transactionInternalService;
         this.config = config;
         this.messenger = messenger;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -85,7 +87,9 @@ public class DefaultBrokerService implements BrokerService {
 
     @Override
     public Broker add(Broker broker) {
-        return brokerInternalService.add(broker);
+        Broker result = brokerInternalService.add(broker);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
@@ -95,6 +99,8 @@ public class DefaultBrokerService implements BrokerService {
             throw new NsrException(String.format("broker: %s is not exist", broker.getId()));
         }
 
+        UpdateBrokerEvent event = new UpdateBrokerEvent(oldBroker, broker);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -106,6 +112,7 @@ public class DefaultBrokerService implements BrokerService {
 
         try {
             brokerInternalService.update(broker);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("updateBroker exception, broker: {}", broker, e);
@@ -114,7 +121,7 @@ public class DefaultBrokerService implements BrokerService {
         }
 
         if (config.getMessengerPublishBrokerEnable()) {
-            messenger.publish(new UpdateBrokerEvent(oldBroker, broker), broker);
+            messenger.publish(event, broker);
         }
         return broker;
     }
@@ -122,5 +129,6 @@ public class DefaultBrokerService implements BrokerService {
     @Override
     public void delete(int id) {
         brokerInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
\ No newline at end of file
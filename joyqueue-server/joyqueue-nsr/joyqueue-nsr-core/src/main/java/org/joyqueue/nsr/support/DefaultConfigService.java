@@ -29,9 +29,11 @@ import java.util.List;
 public class DefaultConfigService implements ConfigService {
 
     private ConfigInternalService configInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
-    public DefaultConfigService(ConfigInternalService configInternalService) {
+    public DefaultConfigService(ConfigInternalService configInternalService, MetadataChangeLog metadataChangeLog) {
         this.configInternalService = configInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -51,16 +53,21 @@ public class DefaultConfigService implements ConfigService {
 
     @Override
     public Config add(Config config) {
-        return configInternalService.add(config);
+        Config result = configInternalService.add(config);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public Config update(Config config) {
-        return configInternalService.update(config);
+        Config result = configInternalService.update(config);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public void delete(String id) {
         configInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
\ No newline at end of file
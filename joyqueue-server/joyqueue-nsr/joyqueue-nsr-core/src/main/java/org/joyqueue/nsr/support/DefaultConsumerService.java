@@ -56,10 +56,12 @@ public class DefaultConsumerService implements ConsumerService {
     private TransactionInternalService transactionInternalService;
     private NameServiceConfig config;
     private Messenger messenger;
+    private MetadataChangeLog metadataChangeLog;
 
     public DefaultConsumerService(TopicInternalService topicInternalService, PartitionGroupInternalService partitionGroupInternalService,
                                   BrokerInternalService brokerInternalService, ConsumerInternalService consumerInternalService,
-                                  TransactionInternalService transactionInternalService, NameServiceConfig config, Messenger messenger) {
+                                  TransactionInternalService transactionInternalService, NameServiceConfig config, Messenger messenger,
+                                  MetadataChangeLog metadataChangeLog) {
         this.topicInternalService = topicInternalService;
         this.partitionGroupInternalService = partitionGroupInternalService;
         this.brokerInternalService = brokerInternalService;
@@ -67,6 +69,7 @@ public class DefaultConsumerService implements ConsumerService {
         this.transactionInternalService = transactionInternalService;
         this.config = config;
         this.messenger = messenger;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -108,6 +111,8 @@ public class DefaultConsumerService implements ConsumerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(consumer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        AddConsumerEvent event = new AddConsumerEvent(consumer.getTopic(), consumer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -117,6 +122,7 @@ public class DefaultConsumerService implements ConsumerService {
 
         try {
             consumerInternalService.add(consumer);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("addConsumer exception, topic: {}, app: {}", consumer.getTopic(), consumer.getApp(), e);
@@ -125,7 +131,7 @@ public class DefaultConsumerService implements ConsumerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new AddConsumerEvent(consumer.getTopic(), consumer), replicas);
+            messenger.publish(event, replicas);
         }
         return consumer;
     }
@@ -142,6 +148,8 @@ public class DefaultConsumerService implements ConsumerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(consumer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        UpdateConsumerEvent event = new UpdateConsumerEvent(consumer.getTopic(), oldConsumer, consumer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -151,6 +159,7 @@ public class DefaultConsumerService implements ConsumerService {
 
         try {
             consumerInternalService.update(consumer);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("updateConsumer exception, topic: {}, app: {}", consumer.getTopic(), consumer.getApp(), e);
@@ -159,7 +168,7 @@ public class DefaultConsumerService implements ConsumerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new UpdateConsumerEvent(consumer.getTopic(), oldConsumer, consumer), replicas);
+            messenger.publish(event, replicas);
         }
         return consumer;
     }
@@ -176,6 +185,8 @@ public class DefaultConsumerService implements ConsumerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(consumer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        RemoveConsumerEvent event = new RemoveConsumerEvent(consumer.getTopic(), consumer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -185,6 +196,7 @@ public class DefaultConsumerService implements ConsumerService {
 
         try {
             consumerInternalService.delete(id);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("deleteConsumer exception, topic: {}, app: {}", consumer.getTopic(), consumer.getApp(), e);
@@ -193,7 +205,7 @@ public class DefaultConsumerService implements ConsumerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new RemoveConsumerEvent(consumer.getTopic(), consumer), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -29,9 +29,11 @@ import java.util.List;
 public class DefaultDataCenterService implements DataCenterService {
 
     private DataCenterInternalService dataCenterInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
-    public DefaultDataCenterService(DataCenterInternalService dataCenterInternalService) {
+    public DefaultDataCenterService(DataCenterInternalService dataCenterInternalService, MetadataChangeLog metadataChangeLog) {
         this.dataCenterInternalService = dataCenterInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -46,16 +48,21 @@ public class DefaultDataCenterService implements DataCenterService {
 
     @Override
     public DataCenter add(DataCenter dataCenter) {
-        return dataCenterInternalService.add(dataCenter);
+        DataCenter result = dataCenterInternalService.add(dataCenter);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public DataCenter update(DataCenter dataCenter) {
-        return dataCenterInternalService.update(dataCenter);
+        DataCenter result = dataCenterInternalService.update(dataCenter);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public void delete(String id) {
         dataCenterInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
\ No newline at end of file
@@ -30,9 +30,11 @@ import java.util.List;
 public class DefaultPartitionGroupReplicaService implements PartitionGroupReplicaService {
 
     private PartitionGroupReplicaInternalService partitionGroupReplicaInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
-    public DefaultPartitionGroupReplicaService(PartitionGroupReplicaInternalService partitionGroupReplicaInternalService) {
+    public DefaultPartitionGroupReplicaService(PartitionGroupReplicaInternalService partitionGroupReplicaInternalService, MetadataChangeLog metadataChangeLog) {
         this.partitionGroupReplicaInternalService = partitionGroupReplicaInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -62,16 +64,21 @@ public class DefaultPartitionGroupReplicaService implements PartitionGroupReplic
 
     @Override
     public Replica add(Replica replica) {
-        return partitionGroupReplicaInternalService.add(replica);
+        Replica result = partitionGroupReplicaInternalService.add(replica);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public Replica update(Replica replica) {
-        return partitionGroupReplicaInternalService.update(replica);
+        Replica result = partitionGroupReplicaInternalService.update(replica);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public void delete(String id) {
         partitionGroupReplicaInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
@@ -30,9 +30,11 @@ import java.util.List;
 public class DefaultPartitionGroupService implements PartitionGroupService {
 
     private PartitionGroupInternalService partitionGroupInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
-    public DefaultPartitionGroupService(PartitionGroupInternalService partitionGroupInternalService) {
+    public DefaultPartitionGroupService(PartitionGroupInternalService partitionGroupInternalService, MetadataChangeLog metadataChangeLog) {
         this.partitionGroupInternalService = partitionGroupInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -57,16 +59,21 @@ public class DefaultPartitionGroupService implements PartitionGroupService {
 
     @Override
     public PartitionGroup add(PartitionGroup partitionGroup) {
-        return partitionGroupInternalService.add(partitionGroup);
+        PartitionGroup result = partitionGroupInternalService.add(partitionGroup);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public PartitionGroup update(PartitionGroup partitionGroup) {
-        return partitionGroupInternalService.update(partitionGroup);
+        PartitionGroup result = partitionGroupInternalService.update(partitionGroup);
+        metadataChangeLog.appendFull();
+        return result;
     }
 
     @Override
     public void delete(String id) {
         partitionGroupInternalService.delete(id);
+        metadataChangeLog.appendFull();
     }
 }
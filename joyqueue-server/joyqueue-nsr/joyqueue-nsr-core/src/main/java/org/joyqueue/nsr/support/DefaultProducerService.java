@@ -56,10 +56,12 @@ public class DefaultProducerService implements ProducerService {
     private TransactionInternalService transactionInternalService;
     private NameServiceConfig config;
     private Messenger messenger;
+    private MetadataChangeLog metadataChangeLog;
 
     public DefaultProducerService(TopicInternalService topicInternalService, PartitionGroupInternalService partitionGroupInternalService,
                                   BrokerInternalService brokerInternalService, ProducerInternalService producerInternalService,
-                                  TransactionInternalService transactionInternalService, NameServiceConfig config, Messenger messenger) {
+                                  TransactionInternalService transactionInternalService, NameServiceConfig config, Messenger messenger,
+                                  MetadataChangeLog metadataChangeLog) {
         this.topicInternalService = topicInternalService;
         this.partitionGroupInternalService = partitionGroupInternalService;
         this.brokerInternalService = brokerInternalService;
@@ -67,6 +69,7 @@ public class DefaultProducerService implements ProducerService {
         this.transactionInternalService = transactionInternalService;
         this.config = config;
         this.messenger = messenger;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -108,6 +111,8 @@ public class DefaultProducerService implements ProducerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(producer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        AddProducerEvent event = new AddProducerEvent(producer.getTopic(), producer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -117,6 +122,7 @@ public class DefaultProducerService implements ProducerService {
 
         try {
             producerInternalService.add(producer);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("addProducer exception, topic: {}, app: {}", producer.getTopic(), producer.getApp(), e);
@@ -125,7 +131,7 @@ public class DefaultProducerService implements ProducerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new AddProducerEvent(producer.getTopic(), producer), replicas);
+            messenger.publish(event, replicas);
         }
         return producer;
     }
@@ -142,6 +148,8 @@ public class DefaultProducerService implements ProducerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(producer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        UpdateProducerEvent event = new UpdateProducerEvent(producer.getTopic(), oldProducer, producer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -151,6 +159,7 @@ public class DefaultProducerService implements ProducerService {
 
         try {
             producerInternalService.update(producer);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("updateProducer exception, topic: {}, app: {}", producer.getTopic(), producer.getApp(), e);
@@ -159,7 +168,7 @@ public class DefaultProducerService implements ProducerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new UpdateProducerEvent(producer.getTopic(), oldProducer, producer), replicas);
+            messenger.publish(event, replicas);
         }
         return producer;
     }
@@ -176,6 +185,8 @@ public class DefaultProducerService implements ProducerService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(producer.getTopic());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        RemoveProducerEvent event = new RemoveProducerEvent(producer.getTopic(), producer);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -185,6 +196,7 @@ public class DefaultProducerService implements ProducerService {
 
         try {
             producerInternalService.delete(id);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("deleteProducer exception, topic: {}, app: {}", producer.getTopic(), producer.getApp(), e);
@@ -193,7 +205,7 @@ public class DefaultProducerService implements ProducerService {
         }
 
         if (config.getMessengerPublishSubscriptionEnable()) {
-            messenger.publish(new RemoveProducerEvent(producer.getTopic(), producer), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -37,6 +37,7 @@ import org.joyqueue.nsr.service.internal.BrokerInternalService;
 import org.joyqueue.nsr.service.internal.ConfigInternalService;
 import org.joyqueue.nsr.service.internal.ConsumerInternalService;
 import org.joyqueue.nsr.service.internal.DataCenterInternalService;
+import org.joyqueue.nsr.service.internal.MetadataChangeInternalService;
 import org.joyqueue.nsr.service.internal.NamespaceInternalService;
 import org.joyqueue.nsr.service.internal.PartitionGroupInternalService;
 import org.joyqueue.nsr.service.internal.PartitionGroupReplicaInternalService;
@@ -47,6 +48,8 @@ import org.joyqueue.toolkit.config.PropertySupplier;
 import org.joyqueue.toolkit.config.PropertySupplierAware;
 import org.joyqueue.toolkit.lang.LifeCycle;
 import org.joyqueue.toolkit.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * DefaultServiceProvider
@@ -55,6 +58,8 @@ import org.joyqueue.toolkit.service.Service;
  */
 public class DefaultServiceProvider extends Service implements ServiceProvider, PropertySupplierAware {
 
+    protected static final Logger logger = LoggerFactory.getLogger(DefaultServiceProvider.class);
+
     private ExtensionPoint<InternalServiceProvider, String> INTERNAL_SERVICE_PROVIDER_POINT = new ExtensionPointLazy<>(InternalServiceProvider.class);
     private ExtensionPoint<Messenger, String> MESSENGER_POINT = new ExtensionPointLazy<>(Messenger.class);
 
@@ -73,6 +78,7 @@ public class DefaultServiceProvider extends Service implements ServiceProvider,
     private TopicService topicService;
     private NameServiceConfig config;
     private Messenger messenger;
+    private MetadataChangeLog metadataChangeLog;
 
     @Override
     public void setSupplier(PropertySupplier supplier) {
@@ -93,23 +99,34 @@ public class DefaultServiceProvider extends Service implements ServiceProvider,
         enrichIfNecessary(internalServiceProvider);
         enrichIfNecessary(messenger);
 
-        appTokenService = new DefaultAppTokenService(internalServiceProvider.getService(AppTokenInternalService.class));
+        metadataChangeLog = new MetadataChangeLog(getMetadataChangeInternalService(), config.getChangeLogCapacity(), config.getChangeLogBatchSize());
+        appTokenService = new DefaultAppTokenService(internalServiceProvider.getService(AppTokenInternalService.class), metadataChangeLog);
         brokerService = new DefaultBrokerService(internalServiceProvider.getService(BrokerInternalService.class), internalServiceProvider.getService(TransactionInternalService.class),
-                config, messenger);
-        configService = new DefaultConfigService(internalServiceProvider.getService(ConfigInternalService.class));
+                config, messenger, metadataChangeLog);
+        configService = new DefaultConfigService(internalServiceProvider.getService(ConfigInternalService.class), metadataChangeLog);
         consumerService = new DefaultConsumerService(internalServiceProvider.getService(TopicInternalService.class), internalServiceProvider.getService(PartitionGroupInternalService.class),
                 internalServiceProvider.getService(BrokerInternalService.class), internalServiceProvider.getService(ConsumerInternalService.class),
-                internalServiceProvider.getService(TransactionInternalService.class), config, messenger);
-        dataCenterService = new DefaultDataCenterService(internalServiceProvider.getService(DataCenterInternalService.class));
+                internalServiceProvider.getService(TransactionInternalService.class), config, messenger, metadataChangeLog);
+        dataCenterService = new DefaultDataCenterService(internalServiceProvider.getService(DataCenterInternalService.class), metadataChangeLog);
         namespaceService = new DefaultNamespaceService(internalServiceProvider.getService(NamespaceInternalService.class));
-        partitionGroupService = new DefaultPartitionGroupService(internalServiceProvider.getService(PartitionGroupInternalService.class));
-        partitionGroupReplicaService = new DefaultPartitionGroupReplicaService(internalServiceProvider.getService(PartitionGroupReplicaInternalService.class));
+        partitionGroupService = new DefaultPartitionGroupService(internalServiceProvider.getService(PartitionGroupInternalService.class), metadataChangeLog);
+        partitionGroupReplicaService = new DefaultPartitionGroupReplicaService(internalServiceProvider.getService(PartitionGroupReplicaInternalService.class), metadataChangeLog);
         producerService = new DefaultProducerService(internalServiceProvider.getService(TopicInternalService.class), internalServiceProvider.getService(PartitionGroupInternalService.class),
                 internalServiceProvider.getService(BrokerInternalService.class), internalServiceProvider.getService(ProducerInternalService.class),
-                internalServiceProvider.getService(TransactionInternalService.class), config, messenger);
+                internalServiceProvider.getService(TransactionInternalService.class), config, messenger, metadataChangeLog);
         topicService = new DefaultTopicService(config, messenger, internalServiceProvider.getService(TopicInternalService.class),
                 internalServiceProvider.getService(PartitionGroupInternalService.class), internalServiceProvider.getService(BrokerInternalService.class),
-                internalServiceProvider.getService(TransactionInternalService.class));
+                internalServiceProvider.getService(TransactionInternalService.class), metadataChangeLog);
+    }
+
+    // 存储不支持变更日志时返回null，不记录变更，broker始终全量同步
+    protected MetadataChangeInternalService getMetadataChangeInternalService() {
+        try {
+            return internalServiceProvider.getService(MetadataChangeInternalService.class);
+        } catch (Exception e) {
+            logger.info("metadata change log is not supported by {}", internalServiceProvider.getClass().getSimpleName());
+            return null;
+        }
     }
 
     protected  <T> T enrichIfNecessary(T obj) throws Exception {
@@ -127,6 +144,10 @@ public class DefaultServiceProvider extends Service implements ServiceProvider,
         return obj;
     }
 
+    public MetadataChangeLog getMetadataChangeLog() {
+        return metadataChangeLog;
+    }
+
     @Override
     public <T> T getService(Class<T> service) {
         if (service.equals(AppTokenService.class)) {
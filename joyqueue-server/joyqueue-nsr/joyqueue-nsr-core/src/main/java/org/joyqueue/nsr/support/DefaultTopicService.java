@@ -64,15 +64,17 @@ public class DefaultTopicService implements TopicService {
     private PartitionGroupInternalService partitionGroupInternalService;
     private BrokerInternalService brokerInternalService;
     private TransactionInternalService transactionInternalService;
+    private MetadataChangeLog metadataChangeLog;
 
     public DefaultTopicService(NameServiceConfig config, Messenger messenger, TopicInternalService topicInternalService, PartitionGroupInternalService partitionGroupInternalService,
-                               BrokerInternalService brokerInternalService, TransactionInternalService transactionInternalService) {
+                               BrokerInternalService brokerInternalService, TransactionInternalService transactionInternalService, MetadataChangeLog metadataChangeLog) {
         this.config = config;
         this.messenger = messenger;
         this.topicInternalService = topicInternalService;
         this.partitionGroupInternalService = partitionGroupInternalService;
         this.brokerInternalService = brokerInternalService;
         this.transactionInternalService = transactionInternalService;
+        this.metadataChangeLog = metadataChangeLog;
     }
 
     @Override
@@ -117,6 +119,8 @@ public class DefaultTopicService implements TopicService {
             }
         }
 
+        AddTopicEvent event = new AddTopicEvent(topic, partitionGroups);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -126,6 +130,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.addTopic(topic, partitionGroups);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("addTopic exception, topic: {}, partitionGroups: {}", topic, partitionGroups, e);
@@ -134,7 +139,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new AddTopicEvent(topic, partitionGroups), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -151,6 +156,8 @@ public class DefaultTopicService implements TopicService {
         fillBroker(partitionGroups);
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        RemoveTopicEvent event = new RemoveTopicEvent(topic, partitionGroups);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -160,6 +167,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.removeTopic(topic);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("removeTopic exception, topic: {}, partitionGroups: {}", topic, partitionGroups, e);
@@ -168,7 +176,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new RemoveTopicEvent(topic, partitionGroups), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -190,6 +198,8 @@ public class DefaultTopicService implements TopicService {
             partitionGroup.setLeader(partitionGroup.getReplicas().iterator().next());
         }
 
+        AddPartitionGroupEvent event = new AddPartitionGroupEvent(partitionGroup.getTopic(), partitionGroup);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -199,6 +209,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.addPartitionGroup(partitionGroup);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("addPartitionGroup exception, topic: {}, partitionGroup: {}", partitionGroup.getTopic(), partitionGroup.getGroup(), e);
@@ -207,7 +218,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new AddPartitionGroupEvent(partitionGroup.getTopic(), partitionGroup), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -227,6 +238,8 @@ public class DefaultTopicService implements TopicService {
         fillBroker(oldPartitionGroup);
         List<Broker> replicas = getReplicas(oldPartitionGroup);
 
+        RemovePartitionGroupEvent event = new RemovePartitionGroupEvent(partitionGroup.getTopic(), oldPartitionGroup);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -236,6 +249,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.removePartitionGroup(partitionGroup);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("removePartitionGroup exception, topic: {}, partitionGroup: {}", partitionGroup.getTopic(), partitionGroup.getGroup(), e);
@@ -244,7 +258,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new RemovePartitionGroupEvent(partitionGroup.getTopic(), oldPartitionGroup), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -280,6 +294,8 @@ public class DefaultTopicService implements TopicService {
             partitionGroup.setTerm(0);
         }
 
+        UpdatePartitionGroupEvent event = new UpdatePartitionGroupEvent(partitionGroup.getTopic(), oldPartitionGroup, partitionGroup);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -289,6 +305,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.updatePartitionGroup(partitionGroup);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("updatePartitionGroup exception, topic: {}, partitionGroup: {}", partitionGroup.getTopic(), partitionGroup.getGroup(), e);
@@ -297,7 +314,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new UpdatePartitionGroupEvent(partitionGroup.getTopic(), oldPartitionGroup, partitionGroup), Lists.newArrayList(replicas));
+            messenger.publish(event, Lists.newArrayList(replicas));
         }
         return Collections.emptyList();
     }
@@ -323,6 +340,8 @@ public class DefaultTopicService implements TopicService {
 
         logger.info("leader report, topic: {}, partitionGroup: {}", group.getTopic(), group.getGroup());
 
+        UpdatePartitionGroupEvent event = new UpdatePartitionGroupEvent(oldPartitionGroup.getTopic(), oldPartitionGroup, newPartitionGroup);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -332,6 +351,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.leaderReport(newPartitionGroup);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("leader report exception, topic: {}, partitionGroup: {}", newPartitionGroup.getTopic(), newPartitionGroup.getGroup(), e);
@@ -340,7 +360,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishLeaderReportEnable()) {
-            messenger.publish(new UpdatePartitionGroupEvent(oldPartitionGroup.getTopic(), oldPartitionGroup, newPartitionGroup), replicas);
+            messenger.publish(event, replicas);
         }
     }
 
@@ -375,6 +395,8 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.leaderChange(group);
+            // 请求中的分区组不完整，不能作为增量变更
+            metadataChangeLog.appendFull();
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("leaderChange exception, topic: {}, partitionGroup: {}", group.getTopic(), group.getGroup(), e);
@@ -404,6 +426,8 @@ public class DefaultTopicService implements TopicService {
         List<PartitionGroup> partitionGroups = partitionGroupInternalService.getByTopic(topic.getName());
         List<Broker> replicas = getReplicas(partitionGroups);
 
+        UpdateTopicEvent event = new UpdateTopicEvent(oldTopic, topic);
+
         try {
             transactionInternalService.begin();
         } catch (Exception e) {
@@ -413,6 +437,7 @@ public class DefaultTopicService implements TopicService {
 
         try {
             topicInternalService.update(topic);
+            metadataChangeLog.append(event);
             transactionInternalService.commit();
         } catch (Exception e) {
             logger.error("removeTopic exception, topic: {}, partitionGroups: {}", topic, partitionGroups, e);
@@ -424,7 +449,7 @@ public class DefaultTopicService implements TopicService {
         }
 
         if (config.getMessengerPublishTopicEnable()) {
-            messenger.publish(new UpdateTopicEvent(oldTopic, topic), replicas);
+            messenger.publish(event, replicas);
         }
         return topic;
     }
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.support;
+
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.nameservice.MetadataChange;
+import org.joyqueue.nsr.nameservice.MetadataChanges;
+import org.joyqueue.nsr.service.internal.MetadataChangeInternalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 元数据变更日志
+ * <p>
+ * 元数据修改后追加一条变更(在事务中修改时和修改一起提交)，变更保存在共享的元数据存储中，版本号由存储分配，
+ * 所有nameserver返回同样的变更序列，broker通过版本号增量同步。存储中保留最近capacity条变更。
+ * 令牌、配置、数据中心等没有对应事件的修改追加一条空变更，broker同步到这里时改为拉取全量元数据。
+ * epoch保存在存储中，存储重建后epoch不一致，broker同样拉取全量元数据。
+ * <p>
+ * 存储不支持变更日志时(metadataChangeInternalService为null)不记录变更，始终返回全量同步。
+ */
+public class MetadataChangeLog {
+
+    protected static final Logger logger = LoggerFactory.getLogger(MetadataChangeLog.class);
+
+    // 每追加多少条变更清理一次过期的变更
+    private static final int CLEAN_INTERVAL = 100;
+
+    private final MetadataChangeInternalService metadataChangeInternalService;
+    private final int capacity;
+    private final int batchSize;
+    private final AtomicLong appendCount = new AtomicLong();
+    // 全量元数据缓存包含的版本号，小于0时表示全量元数据没有缓存
+    private volatile long snapshotVersion = -1;
+
+    public MetadataChangeLog(MetadataChangeInternalService metadataChangeInternalService, int capacity, int batchSize) {
+        this.metadataChangeInternalService = metadataChangeInternalService;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 追加变更，在元数据修改的事务中调用，失败时抛出异常，由调用方回滚
+     * @param event
+     */
+    public void append(MetaEvent event) {
+        if (metadataChangeInternalService == null) {
+            return;
+        }
+        metadataChangeInternalService.add(event);
+        if (appendCount.incrementAndGet() % CLEAN_INTERVAL == 0) {
+            metadataChangeInternalService.deleteBefore(metadataChangeInternalService.getVersion() - capacity);
+        }
+    }
+
+    /**
+     * 追加无法增量同步的变更，失败时只记录日志，broker在定时全量同步时更新
+     */
+    public void appendFull() {
+        try {
+            append(null);
+        } catch (Exception e) {
+            logger.error("append full change exception", e);
+        }
+    }
+
+    /**
+     * 返回指定版本之后的变更，每次最多返回batchSize条
+     * @param epoch
+     * @param version
+     * @return
+     */
+    public MetadataChanges getChanges(long epoch, long version) {
+        if (metadataChangeInternalService == null) {
+            return MetadataChanges.full(0, 0);
+        }
+        long currentEpoch = metadataChangeInternalService.getEpoch();
+        long currentVersion = metadataChangeInternalService.getVersion();
+        if (epoch != currentEpoch || version > currentVersion) {
+            return MetadataChanges.full(currentEpoch, getFullVersion(currentVersion));
+        }
+        if (version == currentVersion) {
+            return new MetadataChanges(currentEpoch, version, false, Collections.emptyList());
+        }
+
+        List<MetadataChange> changes = metadataChangeInternalService.getAfter(version, batchSize);
+        List<MetaEvent> result = new ArrayList<>(changes.size());
+        long next = version + 1;
+        for (MetadataChange change : changes) {
+            // 版本不连续说明变更已被清理
+            if (change.getVersion() != next || change.getEvent() == null) {
+                return MetadataChanges.full(currentEpoch, getFullVersion(currentVersion));
+            }
+            result.add(change.getEvent());
+            next++;
+        }
+        if (result.isEmpty()) {
+            return MetadataChanges.full(currentEpoch, getFullVersion(currentVersion));
+        }
+        return new MetadataChanges(currentEpoch, next - 1, false, result);
+    }
+
+    // 全量元数据有缓存时，只能保证包含缓存构建前的变更
+    protected long getFullVersion(long version) {
+        long snapshotVersion = this.snapshotVersion;
+        return (snapshotVersion < 0 ? version : Math.min(snapshotVersion, version));
+    }
+
+    public long getEpoch() {
+        return (metadataChangeInternalService == null ? 0 : metadataChangeInternalService.getEpoch());
+    }
+
+    /**
+     * 最新变更的版本号，存储不支持变更日志时返回-1
+     * @return
+     */
+    public long getVersion() {
+        return (metadataChangeInternalService == null ? -1 : metadataChangeInternalService.getVersion());
+    }
+
+    public void setSnapshotVersion(long snapshotVersion) {
+        this.snapshotVersion = snapshotVersion;
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+}
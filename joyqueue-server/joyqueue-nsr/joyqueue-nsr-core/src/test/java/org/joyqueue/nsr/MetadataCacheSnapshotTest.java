@@ -0,0 +1,216 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.joyqueue.domain.AllMetadata;
+import org.joyqueue.domain.AppToken;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.ClientType;
+import org.joyqueue.domain.Config;
+import org.joyqueue.domain.Consumer;
+import org.joyqueue.domain.DataCenter;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Producer;
+import org.joyqueue.domain.Subscription;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.nsr.config.NameServiceConfig;
+import org.joyqueue.nsr.nameservice.AllMetadataCache;
+import org.joyqueue.nsr.nameservice.MetadataCacheManager;
+import org.joyqueue.nsr.nameservice.MetadataCacheSnapshot;
+import org.joyqueue.toolkit.config.PropertySupplier;
+import org.joyqueue.toolkit.retry.RetryPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * MetadataCacheSnapshotTest
+ */
+public class MetadataCacheSnapshotTest {
+
+    private static final TopicName TOPIC_1 = TopicName.parse("test_topic_1");
+    private static final TopicName TOPIC_2 = new TopicName("test_topic_2", "test_namespace");
+
+    private File file;
+    private MetadataCacheManager metadataCacheManager;
+
+    @Before
+    public void before() throws Exception {
+        file = new File(Files.createTempDirectory("metadata-snapshot").toFile(), "snapshot");
+        metadataCacheManager = new MetadataCacheManager(new NameServiceConfig(new PropertySupplier.MapSupplier(Maps.newHashMap())));
+    }
+
+    @After
+    public void after() {
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    @Test
+    public void testFlushAndLoad() {
+        AllMetadataCache cache = metadataCacheManager.buildCache(newMetadata());
+        MetadataCacheSnapshot snapshot = new MetadataCacheSnapshot(file);
+        snapshot.flush(cache);
+
+        AllMetadataCache loadCache = new MetadataCacheSnapshot(file).load(metadataCacheManager::buildCache);
+        Assert.assertNotNull(loadCache);
+
+        Assert.assertEquals(cache.getBrokerMap(), loadCache.getBrokerMap());
+        Assert.assertEquals(Broker.PermissionEnum.READ, loadCache.getBrokerMap().get(2).getPermission());
+        Assert.assertEquals(Sets.newHashSet(cache.getAllTopicCodes()), Sets.newHashSet(loadCache.getAllTopicCodes()));
+        Assert.assertEquals(cache.getTopicConfigMap().keySet(), loadCache.getTopicConfigMap().keySet());
+        Assert.assertEquals(cache.getTopicConfigBrokerMap().keySet(), loadCache.getTopicConfigBrokerMap().keySet());
+        Assert.assertEquals(cache.getTopicConfigBrokerMap().get(3).keySet(), loadCache.getTopicConfigBrokerMap().get(3).keySet());
+
+        // 同一个主题只解码一次
+        TopicConfig topicConfig = loadCache.getTopicConfigBrokerMap().get(3).get(TOPIC_2);
+        Assert.assertSame(topicConfig, loadCache.getTopicConfigMap().get(TOPIC_2));
+        Assert.assertTrue(loadCache.getAllTopicConfigs().contains(topicConfig));
+
+        TopicConfig oldTopicConfig = cache.getTopicConfigMap().get(TOPIC_2);
+        Assert.assertEquals(oldTopicConfig.getPartitions(), topicConfig.getPartitions());
+        Assert.assertEquals(oldTopicConfig.getType(), topicConfig.getType());
+        Assert.assertEquals(oldTopicConfig.getPriorityPartitions(), topicConfig.getPriorityPartitions());
+        Assert.assertEquals(oldTopicConfig.getPolicy().getStoreMaxTime(), topicConfig.getPolicy().getStoreMaxTime());
+        Assert.assertEquals(oldTopicConfig.getPolicy().getParams(), topicConfig.getPolicy().getParams());
+        Assert.assertEquals(oldTopicConfig.getPartitionGroups(), topicConfig.getPartitionGroups());
+        Assert.assertEquals(cache.getBrokerMap().get(3), topicConfig.getPartitionGroups().get(0).getLeaderBroker());
+        Assert.assertEquals(topicConfig.getPartitionGroups().get(0), topicConfig.fetchPartitionGroupByPartition((short) 1));
+
+        Assert.assertEquals(cache.getAllProducers(), loadCache.getAllProducers());
+        Assert.assertEquals(cache.getProducerAppMap(), loadCache.getProducerAppMap());
+        Assert.assertEquals(cache.getAllConsumers(), loadCache.getAllConsumers());
+        Assert.assertEquals(cache.getConsumerTopicMap(), loadCache.getConsumerTopicMap());
+        Assert.assertEquals(cache.getConfigKeyMap(), loadCache.getConfigKeyMap());
+        Assert.assertEquals(cache.getAllAppTokenMap().get("test_app").get(0).getToken(), loadCache.getAllAppTokenMap().get("test_app").get(0).getToken());
+        Assert.assertEquals(cache.getAllAppTokenMap().get("test_app").get(0).getExpirationTime(), loadCache.getAllAppTokenMap().get("test_app").get(0).getExpirationTime());
+        Assert.assertEquals(cache.getDataCenterCodeMap().keySet(), loadCache.getDataCenterCodeMap().keySet());
+
+        // 加载后的缓存可以继续修改和写入
+        AllMetadataCache newCache = loadCache.clone();
+        newCache.getTopicConfigMap().remove(TOPIC_1);
+        snapshot.flush(newCache);
+        loadCache = snapshot.load(metadataCacheManager::buildCache);
+        Assert.assertEquals(Sets.newHashSet(TOPIC_2), loadCache.getTopicConfigMap().keySet());
+        Assert.assertEquals(3, loadCache.getTopicConfigMap().get(TOPIC_2).getPartitions());
+    }
+
+    @Test
+    public void testCorrupted() throws Exception {
+        MetadataCacheSnapshot snapshot = new MetadataCacheSnapshot(file);
+        Assert.assertNull(snapshot.load(metadataCacheManager::buildCache));
+
+        snapshot.flush(metadataCacheManager.buildCache(newMetadata()));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            byte value = raf.readByte();
+            raf.seek(raf.length() - 1);
+            raf.writeByte(value + 1);
+        }
+        Assert.assertNull(snapshot.load(metadataCacheManager::buildCache));
+    }
+
+    protected AllMetadata newMetadata() {
+        AllMetadata allMetadata = new AllMetadata();
+        allMetadata.setBrokers(Maps.newHashMap());
+        for (int i = 1; i <= 3; i++) {
+            Broker broker = new Broker();
+            broker.setId(i);
+            broker.setIp("127.0.0." + i);
+            broker.setPort(50088);
+            broker.setDataCenter("test_dc");
+            allMetadata.getBrokers().put(i, broker);
+        }
+        allMetadata.getBrokers().get(2).setPermission(Broker.PermissionEnum.READ);
+
+        allMetadata.setTopics(Maps.newHashMap());
+        allMetadata.getTopics().put(TOPIC_1, newTopicConfig(TOPIC_1, 1, 2));
+        TopicConfig topicConfig = newTopicConfig(TOPIC_2, 2, 3);
+        topicConfig.setPriorityPartitions(Sets.newTreeSet(Lists.newArrayList((short) 1)));
+        Topic.TopicPolicy topicPolicy = new Topic.TopicPolicy();
+        topicPolicy.setStoreMaxTime(1000L * 60);
+        topicPolicy.setParams(Collections.singletonMap("key", "value"));
+        topicConfig.setPolicy(topicPolicy);
+        allMetadata.getTopics().put(TOPIC_2, topicConfig);
+
+        Producer producer = new Producer();
+        producer.setTopic(TOPIC_1);
+        producer.setApp("test_app");
+        producer.setType(Subscription.Type.PRODUCTION);
+        producer.setClientType(ClientType.JOYQUEUE);
+        Producer.ProducerPolicy producerPolicy = new Producer.ProducerPolicy();
+        producerPolicy.setWeight(Collections.singletonMap("1", (short) 10));
+        producerPolicy.setBlackList(Sets.newHashSet("127.0.0.1"));
+        producerPolicy.setRegion("test_region");
+        producer.setProducerPolicy(producerPolicy);
+        Producer.ProducerLimitPolicy producerLimitPolicy = new Producer.ProducerLimitPolicy();
+        producerLimitPolicy.setTps(100);
+        producer.setLimitPolicy(producerLimitPolicy);
+        allMetadata.setProducers(Lists.newArrayList(producer));
+
+        Consumer consumer = new Consumer();
+        consumer.setTopic(TOPIC_2);
+        consumer.setApp("test_app");
+        consumer.setType(Subscription.Type.CONSUMPTION);
+        consumer.setClientType(ClientType.KAFKA);
+        consumer.setRetryPolicy(new RetryPolicy(1000, 2000, 3, true, 2.0, 1000 * 60));
+        consumer.setConsumerPolicy(Consumer.ConsumerPolicy.Builder.build().batchSize((short) 20).paused(true).create());
+        consumer.getConsumerPolicy().setFilters(Collections.singletonMap("tag", "test"));
+        allMetadata.setConsumers(Lists.newArrayList(consumer));
+
+        allMetadata.setConfigs(Lists.newArrayList(new Config("test_group", "test_key", "test_value", 1)));
+
+        AppToken appToken = new AppToken();
+        appToken.setId(1L);
+        appToken.setApp("test_app");
+        appToken.setToken("test_token");
+        appToken.setEffectiveTime(new Date(1000));
+        appToken.setExpirationTime(new Date(2000));
+        allMetadata.setAppTokens(Lists.newArrayList(appToken));
+
+        allMetadata.setDataCenters(Lists.newArrayList(new DataCenter("test_dc", "test_dc", "test_region", "IPRANGE://?pattern=127.0.0.1-127.0.0.255")));
+        return allMetadata;
+    }
+
+    protected TopicConfig newTopicConfig(TopicName topicName, Integer... replicas) {
+        Topic topic = new Topic();
+        topic.setName(topicName);
+        topic.setPartitions((short) 3);
+
+        PartitionGroup partitionGroup = new PartitionGroup();
+        partitionGroup.setTopic(topicName);
+        partitionGroup.setGroup(0);
+        partitionGroup.setPartitions(Sets.newTreeSet(Lists.newArrayList((short) 0, (short) 1, (short) 2)));
+        partitionGroup.setReplicas(Sets.newTreeSet(Lists.newArrayList(replicas)));
+        partitionGroup.setIsrs(Sets.newTreeSet(Lists.newArrayList(replicas)));
+        partitionGroup.setLearners(Sets.newTreeSet());
+        partitionGroup.setLeader(replicas[replicas.length - 1]);
+        partitionGroup.setTerm(2);
+        return TopicConfig.toTopicConfig(topic, Lists.newArrayList(partitionGroup));
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.joyqueue.domain.AllMetadata;
+import org.joyqueue.domain.Broker;
+import org.joyqueue.domain.PartitionGroup;
+import org.joyqueue.domain.Producer;
+import org.joyqueue.domain.Topic;
+import org.joyqueue.domain.TopicConfig;
+import org.joyqueue.domain.TopicName;
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.config.NameServiceConfig;
+import org.joyqueue.nsr.event.AddPartitionGroupEvent;
+import org.joyqueue.nsr.event.AddProducerEvent;
+import org.joyqueue.nsr.event.RemovePartitionGroupEvent;
+import org.joyqueue.nsr.event.RemoveProducerEvent;
+import org.joyqueue.nsr.event.RemoveTopicEvent;
+import org.joyqueue.nsr.event.UpdatePartitionGroupEvent;
+import org.joyqueue.nsr.event.UpdateTopicEvent;
+import org.joyqueue.nsr.nameservice.AllMetadataCache;
+import org.joyqueue.nsr.nameservice.MetadataCacheManager;
+import org.joyqueue.nsr.nameservice.MetadataCacheUpdater;
+import org.joyqueue.toolkit.config.PropertySupplier;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MetadataCacheUpdaterTest
+ */
+public class MetadataCacheUpdaterTest {
+
+    private static final TopicName TOPIC_1 = TopicName.parse("test_topic_1");
+    private static final TopicName TOPIC_2 = TopicName.parse("test_topic_2");
+
+    private MetadataCacheUpdater metadataCacheUpdater = new MetadataCacheUpdater();
+    private AllMetadataCache cache;
+
+    @Before
+    public void before() {
+        Map<Integer, Broker> brokers = Maps.newHashMap();
+        for (int i = 1; i <= 3; i++) {
+            Broker broker = new Broker();
+            broker.setId(i);
+            brokers.put(i, broker);
+        }
+        Map<TopicName, TopicConfig> topics = Maps.newHashMap();
+        topics.put(TOPIC_1, newTopicConfig(TOPIC_1, 1, 2));
+        topics.put(TOPIC_2, newTopicConfig(TOPIC_2, 1, 2));
+
+        AllMetadata allMetadata = new AllMetadata();
+        allMetadata.setBrokers(brokers);
+        allMetadata.setTopics(topics);
+        allMetadata.setProducers(Collections.emptyList());
+        allMetadata.setConsumers(Collections.emptyList());
+        allMetadata.setDataCenters(Collections.emptyList());
+        allMetadata.setConfigs(Collections.emptyList());
+        allMetadata.setAppTokens(Collections.emptyList());
+        cache = new MetadataCacheManager(new NameServiceConfig(new PropertySupplier.MapSupplier(Maps.newHashMap()))).buildCache(allMetadata);
+    }
+
+    @Test
+    public void testApply() {
+        TopicConfig oldTopicConfig = cache.getTopicConfigMap().get(TOPIC_1);
+        PartitionGroup oldPartitionGroup = oldTopicConfig.getPartitionGroups().get(0);
+        PartitionGroup newPartitionGroup = oldPartitionGroup.clone();
+        newPartitionGroup.setReplicas(Sets.newTreeSet(Lists.newArrayList(2, 3)));
+
+        Topic newTopic = new Topic();
+        newTopic.setName(TOPIC_1);
+        newTopic.setPartitions((short) 10);
+
+        Producer producer = new Producer();
+        producer.setTopic(TOPIC_1);
+        producer.setApp("test_app");
+
+        List<MetaEvent> events = Lists.newArrayList(
+                new UpdatePartitionGroupEvent(TOPIC_1, oldPartitionGroup, newPartitionGroup),
+                new UpdateTopicEvent(oldTopicConfig, newTopic),
+                new AddProducerEvent(TOPIC_1, producer),
+                new RemoveTopicEvent(cache.getTopicConfigMap().get(TOPIC_2), Lists.newArrayList(cache.getTopicConfigMap().get(TOPIC_2).getPartitionGroups().values())));
+        AllMetadataCache newCache = metadataCacheUpdater.apply(cache, events);
+
+        TopicConfig newTopicConfig = newCache.getTopicConfigMap().get(TOPIC_1);
+        Assert.assertEquals(10, newTopicConfig.getPartitions());
+        Assert.assertEquals(Sets.newHashSet(2, 3), newTopicConfig.getPartitionGroups().get(0).getReplicas());
+        Assert.assertFalse(newCache.getTopicConfigBrokerMap().get(1).containsKey(TOPIC_1));
+        Assert.assertSame(newTopicConfig, newCache.getTopicConfigBrokerMap().get(3).get(TOPIC_1));
+        Assert.assertEquals(producer, newCache.getProducerTopicMap().get(TOPIC_1).get("test_app"));
+        Assert.assertFalse(newCache.getTopicConfigBrokerMap().get(2).containsKey(TOPIC_2));
+
+        // 原缓存不变
+        Assert.assertEquals(3, oldTopicConfig.getPartitions());
+        Assert.assertSame(oldTopicConfig, cache.getTopicConfigMap().get(TOPIC_1));
+        Assert.assertEquals(Sets.newHashSet(1, 2), oldTopicConfig.getPartitionGroups().get(0).getReplicas());
+        Assert.assertTrue(cache.getTopicConfigBrokerMap().get(1).containsKey(TOPIC_1));
+        Assert.assertFalse(cache.getTopicConfigBrokerMap().containsKey(3));
+        Assert.assertFalse(cache.getProducerTopicMap().containsKey(TOPIC_1));
+        Assert.assertTrue(cache.getTopicConfigMap().containsKey(TOPIC_2));
+        Assert.assertTrue(cache.getTopicConfigBrokerMap().get(2).containsKey(TOPIC_2));
+    }
+
+    @Test
+    public void testRemoveTopic() {
+        TopicConfig topicConfig = cache.getTopicConfigMap().get(TOPIC_2);
+        Assert.assertTrue(cache.getAllTopicCodes().contains(TOPIC_2.getFullName()));
+
+        Assert.assertTrue(metadataCacheUpdater.update(new RemoveTopicEvent(topicConfig, Lists.newArrayList(topicConfig.getPartitionGroups().values())), cache));
+        Assert.assertFalse(cache.getTopicConfigMap().containsKey(TOPIC_2));
+        Assert.assertFalse(cache.getAllTopicConfigs().contains(topicConfig));
+        Assert.assertFalse(cache.getAllTopicCodes().contains(TOPIC_2.getFullName()));
+        Assert.assertFalse(cache.getTopicConfigBrokerMap().get(1).containsKey(TOPIC_2));
+        Assert.assertTrue(cache.getTopicConfigMap().containsKey(TOPIC_1));
+    }
+
+    @Test
+    public void testRemovePartitionGroup() {
+        TopicConfig topicConfig = cache.getTopicConfigMap().get(TOPIC_1);
+        PartitionGroup partitionGroup = new PartitionGroup();
+        partitionGroup.setTopic(TOPIC_1);
+        partitionGroup.setGroup(1);
+        partitionGroup.setPartitions(Sets.newTreeSet(Lists.newArrayList((short) 3)));
+        partitionGroup.setReplicas(Sets.newTreeSet(Lists.newArrayList(2, 3)));
+        partitionGroup.setLeader(2);
+        Assert.assertTrue(metadataCacheUpdater.update(new AddPartitionGroupEvent(TOPIC_1, partitionGroup), cache));
+        Assert.assertTrue(cache.getTopicConfigBrokerMap().get(3).containsKey(TOPIC_1));
+
+        // broker 1只有分区组0的副本，删除后不再包含主题，broker 2还有分区组1的副本
+        PartitionGroup removed = topicConfig.getPartitionGroups().get(0);
+        Assert.assertTrue(metadataCacheUpdater.update(new RemovePartitionGroupEvent(TOPIC_1, removed), cache));
+        Assert.assertFalse(cache.getTopicConfigBrokerMap().get(1).containsKey(TOPIC_1));
+        Assert.assertTrue(cache.getTopicConfigBrokerMap().get(2).containsKey(TOPIC_1));
+        Assert.assertTrue(cache.getTopicConfigBrokerMap().get(3).containsKey(TOPIC_1));
+        Assert.assertFalse(topicConfig.getPartitionGroups().containsKey(0));
+    }
+
+    @Test
+    public void testRemoveProducer() {
+        Producer producer1 = new Producer();
+        producer1.setTopic(TOPIC_1);
+        producer1.setApp("test_app");
+        Producer producer2 = new Producer();
+        producer2.setTopic(TOPIC_2);
+        producer2.setApp("test_app");
+        Assert.assertTrue(metadataCacheUpdater.update(new AddProducerEvent(TOPIC_1, producer1), cache));
+        Assert.assertTrue(metadataCacheUpdater.update(new AddProducerEvent(TOPIC_2, producer2), cache));
+
+        Assert.assertTrue(metadataCacheUpdater.update(new RemoveProducerEvent(TOPIC_1, producer1), cache));
+        Assert.assertFalse(cache.getProducerTopicMap().get(TOPIC_1).containsKey("test_app"));
+        Assert.assertFalse(cache.getProducerAppMap().get("test_app").containsKey(TOPIC_1));
+        Assert.assertEquals(producer2, cache.getProducerAppMap().get("test_app").get(TOPIC_2));
+    }
+
+    protected TopicConfig newTopicConfig(TopicName topicName, Integer... replicas) {
+        Topic topic = new Topic();
+        topic.setName(topicName);
+        topic.setPartitions((short) 3);
+
+        PartitionGroup partitionGroup = new PartitionGroup();
+        partitionGroup.setTopic(topicName);
+        partitionGroup.setGroup(0);
+        partitionGroup.setPartitions(Sets.newTreeSet(Lists.newArrayList((short) 0, (short) 1, (short) 2)));
+        partitionGroup.setReplicas(Sets.newTreeSet(Lists.newArrayList(replicas)));
+        partitionGroup.setLeader(replicas[0]);
+        return TopicConfig.toTopicConfig(topic, Lists.newArrayList(partitionGroup));
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr;
+
+import org.joyqueue.domain.Broker;
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.event.UpdateBrokerEvent;
+import org.joyqueue.nsr.nameservice.MetadataChange;
+import org.joyqueue.nsr.nameservice.MetadataChanges;
+import org.joyqueue.nsr.service.internal.MetadataChangeInternalService;
+import org.joyqueue.nsr.support.MetadataChangeLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MetadataChangeLogTest
+ */
+public class MetadataChangeLogTest {
+
+    @Test
+    public void testChanges() {
+        MetadataChangeLog changeLog = new MetadataChangeLog(new MemoryMetadataChangeInternalService(), 10, 3);
+        for (int i = 0; i < 5; i++) {
+            changeLog.append(newEvent(i));
+        }
+
+        MetadataChanges changes = changeLog.getChanges(changeLog.getEpoch(), 0);
+        Assert.assertFalse(changes.isFull());
+        Assert.assertEquals(3, changes.getVersion());
+        Assert.assertEquals(3, changes.getEvents().size());
+        Assert.assertEquals(0, ((UpdateBrokerEvent) changes.getEvents().get(0)).getNewBroker().getId().intValue());
+
+        changes = changeLog.getChanges(changeLog.getEpoch(), changes.getVersion());
+        Assert.assertFalse(changes.isFull());
+        Assert.assertEquals(5, changes.getVersion());
+        Assert.assertEquals(2, changes.getEvents().size());
+        Assert.assertEquals(4, ((UpdateBrokerEvent) changes.getEvents().get(1)).getNewBroker().getId().intValue());
+
+        changes = changeLog.getChanges(changeLog.getEpoch(), changes.getVersion());
+        Assert.assertFalse(changes.isFull());
+        Assert.assertEquals(5, changes.getVersion());
+        Assert.assertTrue(changes.getEvents().isEmpty());
+    }
+
+    @Test
+    public void testFull() {
+        MemoryMetadataChangeInternalService store = new MemoryMetadataChangeInternalService();
+        MetadataChangeLog changeLog = new MetadataChangeLog(store, 10, 100);
+        for (int i = 0; i < 15; i++) {
+            changeLog.append(newEvent(i));
+        }
+
+        // epoch不一致
+        MetadataChanges changes = changeLog.getChanges(0, 15);
+        Assert.assertTrue(changes.isFull());
+        Assert.assertEquals(changeLog.getEpoch(), changes.getEpoch());
+        Assert.assertEquals(15, changes.getVersion());
+
+        // 版本已被清理
+        store.deleteBefore(5);
+        Assert.assertTrue(changeLog.getChanges(changeLog.getEpoch(), 4).isFull());
+        Assert.assertFalse(changeLog.getChanges(changeLog.getEpoch(), 5).isFull());
+        Assert.assertTrue(changeLog.getChanges(changeLog.getEpoch(), 16).isFull());
+
+        // 无法增量同步的变更
+        changeLog.appendFull();
+        changeLog.append(newEvent(16));
+        Assert.assertTrue(changeLog.getChanges(changeLog.getEpoch(), 15).isFull());
+        Assert.assertFalse(changeLog.getChanges(changeLog.getEpoch(), 16).isFull());
+
+        // 全量元数据缓存的版本
+        changeLog.setSnapshotVersion(12);
+        Assert.assertEquals(12, changeLog.getChanges(0, 0).getVersion());
+        changeLog.setSnapshotVersion(-1);
+        Assert.assertEquals(17, changeLog.getChanges(0, 0).getVersion());
+    }
+
+    @Test
+    public void testShared() {
+        // 两个nameserver共享存储，任意一个节点的修改在两个节点上版本号一致
+        MemoryMetadataChangeInternalService store = new MemoryMetadataChangeInternalService();
+        MetadataChangeLog changeLog1 = new MetadataChangeLog(store, 10, 100);
+        MetadataChangeLog changeLog2 = new MetadataChangeLog(store, 10, 100);
+        changeLog1.append(newEvent(1));
+        changeLog2.append(newEvent(2));
+        changeLog1.append(newEvent(3));
+
+        Assert.assertEquals(changeLog1.getEpoch(), changeLog2.getEpoch());
+        MetadataChanges changes1 = changeLog1.getChanges(changeLog1.getEpoch(), 1);
+        MetadataChanges changes2 = changeLog2.getChanges(changeLog2.getEpoch(), 1);
+        Assert.assertFalse(changes2.isFull());
+        Assert.assertEquals(3, changes2.getVersion());
+        Assert.assertEquals(changes1.getVersion(), changes2.getVersion());
+        Assert.assertEquals(2, changes2.getEvents().size());
+        Assert.assertEquals(2, ((UpdateBrokerEvent) changes2.getEvents().get(0)).getNewBroker().getId().intValue());
+        Assert.assertEquals(3, ((UpdateBrokerEvent) changes2.getEvents().get(1)).getNewBroker().getId().intValue());
+    }
+
+    @Test
+    public void testClean() {
+        MemoryMetadataChangeInternalService store = new MemoryMetadataChangeInternalService();
+        MetadataChangeLog changeLog = new MetadataChangeLog(store, 10, 100);
+        for (int i = 0; i < 100; i++) {
+            changeLog.append(newEvent(i));
+        }
+
+        // 追加时定期清理，只保留最近capacity条
+        Assert.assertEquals(10, store.changes.size());
+        Assert.assertTrue(changeLog.getChanges(changeLog.getEpoch(), 89).isFull());
+        MetadataChanges changes = changeLog.getChanges(changeLog.getEpoch(), 90);
+        Assert.assertFalse(changes.isFull());
+        Assert.assertEquals(10, changes.getEvents().size());
+    }
+
+    @Test
+    public void testUnsupported() {
+        MetadataChangeLog changeLog = new MetadataChangeLog(null, 10, 100);
+        changeLog.append(newEvent(1));
+        Assert.assertEquals(-1, changeLog.getVersion());
+        Assert.assertTrue(changeLog.getChanges(changeLog.getEpoch(), 0).isFull());
+    }
+
+    protected UpdateBrokerEvent newEvent(int id) {
+        Broker broker = new Broker();
+        broker.setId(id);
+        return new UpdateBrokerEvent(null, broker);
+    }
+
+    private static class MemoryMetadataChangeInternalService implements MetadataChangeInternalService {
+
+        private final TreeMap<Long, MetaEvent> changes = new TreeMap<>();
+        private long version = 0;
+
+        @Override
+        public long getEpoch() {
+            return 1;
+        }
+
+        @Override
+        public synchronized long getVersion() {
+            return version;
+        }
+
+        @Override
+        public synchronized void add(MetaEvent event) {
+            changes.put(++version, event);
+        }
+
+        @Override
+        public synchronized List<MetadataChange> getAfter(long version, int count) {
+            List<MetadataChange> result = new ArrayList<>();
+            for (Map.Entry<Long, MetaEvent> entry : changes.tailMap(version, false).entrySet()) {
+                if (result.size() >= count) {
+                    break;
+                }
+                result.add(new MetadataChange(entry.getKey(), entry.getValue()));
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized void deleteBefore(long version) {
+            changes.headMap(version, true).clear();
+        }
+    }
+}
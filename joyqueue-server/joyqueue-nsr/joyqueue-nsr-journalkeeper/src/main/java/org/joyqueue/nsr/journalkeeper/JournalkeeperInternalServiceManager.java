@@ -25,6 +25,7 @@ import org.joyqueue.nsr.journalkeeper.repository.BrokerRepository;
 import org.joyqueue.nsr.journalkeeper.repository.ConfigRepository;
 import org.joyqueue.nsr.journalkeeper.repository.ConsumerRepository;
 import org.joyqueue.nsr.journalkeeper.repository.DataCenterRepository;
+import org.joyqueue.nsr.journalkeeper.repository.MetadataChangeRepository;
 import org.joyqueue.nsr.journalkeeper.repository.NamespaceRepository;
 import org.joyqueue.nsr.journalkeeper.repository.PartitionGroupReplicaRepository;
 import org.joyqueue.nsr.journalkeeper.repository.PartitionGroupRepository;
@@ -36,6 +37,7 @@ import org.joyqueue.nsr.journalkeeper.service.JournalkeeperClusterInternalServic
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperConfigInternalService;
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperConsumerInternalService;
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperDataCenterInternalService;
+import org.joyqueue.nsr.journalkeeper.service.JournalkeeperMetadataChangeInternalService;
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperNamespaceInternalService;
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperOperationInternalService;
 import org.joyqueue.nsr.journalkeeper.service.JournalkeeperPartitionGroupInternalService;
@@ -49,6 +51,7 @@ import org.joyqueue.nsr.service.internal.ClusterInternalService;
 import org.joyqueue.nsr.service.internal.ConfigInternalService;
 import org.joyqueue.nsr.service.internal.ConsumerInternalService;
 import org.joyqueue.nsr.service.internal.DataCenterInternalService;
+import org.joyqueue.nsr.service.internal.MetadataChangeInternalService;
 import org.joyqueue.nsr.service.internal.NamespaceInternalService;
 import org.joyqueue.nsr.service.internal.OperationInternalService;
 import org.joyqueue.nsr.service.internal.PartitionGroupInternalService;
@@ -80,6 +83,7 @@ public class JournalkeeperInternalServiceManager extends Service {
     private NamespaceRepository namespaceRepository;
     private ConfigRepository configRepository;
     private AppTokenRepository appTokenRepository;
+    private MetadataChangeRepository metadataChangeRepository;
     private PointTracer tracer;
 
     private JournalkeeperTopicInternalService journalkeeperTopicInternalService;
@@ -95,6 +99,7 @@ public class JournalkeeperInternalServiceManager extends Service {
     private JournalkeeperTransactionInternalService journalkeeperTransactionInternalService;
     private JournalkeeperOperationInternalService journalkeeperOperationInternalService;
     private JournalkeeperClusterInternalService journalkeeperClusterInternalService;
+    private JournalkeeperMetadataChangeInternalService journalkeeperMetadataChangeInternalService;
 
     public JournalkeeperInternalServiceManager(SQLServer sqlServer, SQLClient sqlClient, SQLOperator sqlOperator, PointTracer tracer) {
         this.sqlServer = sqlServer;
@@ -116,6 +121,7 @@ public class JournalkeeperInternalServiceManager extends Service {
         namespaceRepository = new NamespaceRepository(baseRepository);
         configRepository = new ConfigRepository(baseRepository);
         appTokenRepository = new AppTokenRepository(baseRepository);
+        metadataChangeRepository = new MetadataChangeRepository(baseRepository);
 
         journalkeeperTopicInternalService = new JournalkeeperTopicInternalService(topicRepository, partitionGroupRepository, partitionGroupReplicaRepository);
         journalkeeperPartitionGroupInternalService = new JournalkeeperPartitionGroupInternalService(partitionGroupRepository);
@@ -130,6 +136,7 @@ public class JournalkeeperInternalServiceManager extends Service {
         journalkeeperTransactionInternalService = new JournalkeeperTransactionInternalService();
         journalkeeperOperationInternalService = new JournalkeeperOperationInternalService(baseRepository);
         journalkeeperClusterInternalService = new JournalkeeperClusterInternalService(sqlClient);
+        journalkeeperMetadataChangeInternalService = new JournalkeeperMetadataChangeInternalService(metadataChangeRepository);
     }
 
     public <T> T getService(Class<T> service) {
@@ -159,6 +166,8 @@ public class JournalkeeperInternalServiceManager extends Service {
             return (T) journalkeeperOperationInternalService;
         } else if (service.equals(ClusterInternalService.class)) {
             return (T) journalkeeperClusterInternalService;
+        } else if (service.equals(MetadataChangeInternalService.class)) {
+            return (T) journalkeeperMetadataChangeInternalService;
         }
         throw new UnsupportedOperationException(service.getName());
     }
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.journalkeeper.converter;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.google.common.collect.Lists;
+import org.apache.commons.collections.CollectionUtils;
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.journalkeeper.domain.MetadataChangeDTO;
+import org.joyqueue.nsr.nameservice.MetadataChange;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MetadataChangeConverter
+ * 事件和推送一样按类名和json保存
+ */
+public class MetadataChangeConverter {
+
+    public static MetadataChangeDTO convert(MetaEvent event) {
+        MetadataChangeDTO metadataChangeDTO = new MetadataChangeDTO();
+        if (event != null) {
+            metadataChangeDTO.setType(event.getClass().getName());
+            metadataChangeDTO.setContent(JSON.toJSONString(event, SerializerFeature.DisableCircularReferenceDetect));
+        }
+        return metadataChangeDTO;
+    }
+
+    public static MetadataChange convert(MetadataChangeDTO metadataChangeDTO) {
+        if (metadataChangeDTO == null) {
+            return null;
+        }
+        MetaEvent event = null;
+        if (metadataChangeDTO.getType() != null) {
+            try {
+                event = (MetaEvent) JSON.parseObject(metadataChangeDTO.getContent(), Class.forName(metadataChangeDTO.getType()));
+            } catch (ClassNotFoundException e) {
+                // 不认识的事件按无法增量同步的变更处理
+                event = null;
+            }
+        }
+        return new MetadataChange(metadataChangeDTO.getVersion(), event);
+    }
+
+    public static List<MetadataChange> convert(List<MetadataChangeDTO> metadataChangeDTOList) {
+        if (CollectionUtils.isEmpty(metadataChangeDTOList)) {
+            return Collections.emptyList();
+        }
+        List<MetadataChange> result = Lists.newArrayListWithCapacity(metadataChangeDTOList.size());
+        for (MetadataChangeDTO metadataChangeDTO : metadataChangeDTOList) {
+            result.add(convert(metadataChangeDTO));
+        }
+        return result;
+    }
+}
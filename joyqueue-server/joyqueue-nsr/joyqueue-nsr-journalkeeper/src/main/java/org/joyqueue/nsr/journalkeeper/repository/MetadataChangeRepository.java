@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.journalkeeper.repository;
+
+import io.journalkeeper.sql.client.domain.ResultSet;
+import org.apache.commons.collections.CollectionUtils;
+import org.joyqueue.nsr.journalkeeper.domain.MetadataChangeDTO;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MetadataChangeRepository
+ * 版本号在状态机中按当前最大版本号加1生成，各节点执行结果一致，不使用自增列
+ */
+public class MetadataChangeRepository {
+
+    private static final String TABLE = "metadata_change";
+    private static final String EPOCH_TABLE = "metadata_change_epoch";
+    private static final String COLUMNS = "version, type, content";
+    private static final int EPOCH_ID = 1;
+
+    private static final String GET_AFTER = String.format("SELECT %s FROM %s WHERE version > ? ORDER BY version LIMIT ?", COLUMNS, TABLE);
+    private static final String GET_VERSION = String.format("SELECT COALESCE(MAX(version), 0) AS version FROM %s", TABLE);
+    private static final String ADD = String.format("INSERT INTO %s(%s) SELECT COALESCE(MAX(version), 0) + 1, ?, ? FROM %s", TABLE, COLUMNS, TABLE);
+    private static final String DELETE_BEFORE = String.format("DELETE FROM %s WHERE version <= ?", TABLE);
+    private static final String GET_EPOCH = String.format("SELECT epoch FROM %s WHERE id = ?", EPOCH_TABLE);
+    private static final String ADD_EPOCH = String.format("INSERT INTO %s(id, epoch) VALUES(?,?)", EPOCH_TABLE);
+
+    private BaseRepository baseRepository;
+
+    public MetadataChangeRepository(BaseRepository baseRepository) {
+        this.baseRepository = baseRepository;
+    }
+
+    public List<MetadataChangeDTO> getAfter(long version, int count) {
+        return baseRepository.query(MetadataChangeDTO.class, GET_AFTER, version, count);
+    }
+
+    public long getVersion() {
+        Long version = getLong(baseRepository.query(GET_VERSION));
+        return (version == null ? 0 : version);
+    }
+
+    public void add(MetadataChangeDTO metadataChangeDTO) {
+        baseRepository.insert(ADD, metadataChangeDTO.getType(), metadataChangeDTO.getContent());
+    }
+
+    public int deleteBefore(long version) {
+        return baseRepository.delete(DELETE_BEFORE, version);
+    }
+
+    public Long getEpoch() {
+        return getLong(baseRepository.query(GET_EPOCH, EPOCH_ID));
+    }
+
+    public void addEpoch(long epoch) {
+        baseRepository.insert(ADD_EPOCH, EPOCH_ID, epoch);
+    }
+
+    protected Long getLong(ResultSet resultSet) {
+        List<Map<String, String>> rows = resultSet.getRows();
+        if (CollectionUtils.isEmpty(rows)) {
+            return null;
+        }
+        String value = rows.get(0).values().iterator().next();
+        return (value == null ? null : Long.valueOf(value));
+    }
+}
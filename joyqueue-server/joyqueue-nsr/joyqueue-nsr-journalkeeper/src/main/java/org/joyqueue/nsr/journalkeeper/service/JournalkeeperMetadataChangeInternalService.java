@@ -0,0 +1,97 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.nsr.journalkeeper.service;
+
+import org.joyqueue.event.MetaEvent;
+import org.joyqueue.nsr.journalkeeper.converter.MetadataChangeConverter;
+import org.joyqueue.nsr.journalkeeper.repository.MetadataChangeRepository;
+import org.joyqueue.nsr.nameservice.MetadataChange;
+import org.joyqueue.nsr.service.internal.MetadataChangeInternalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * JournalkeeperMetadataChangeInternalService
+ * 变更和元数据在同一个journalkeeper集群中，在事务中追加时和元数据的修改一起提交。
+ * epoch第一次使用时生成并写入存储，多个nameserver同时生成时以先写入的为准。
+ */
+public class JournalkeeperMetadataChangeInternalService implements MetadataChangeInternalService {
+
+    protected static final Logger logger = LoggerFactory.getLogger(JournalkeeperMetadataChangeInternalService.class);
+
+    private MetadataChangeRepository metadataChangeRepository;
+    private volatile long epoch = 0;
+
+    public JournalkeeperMetadataChangeInternalService(MetadataChangeRepository metadataChangeRepository) {
+        this.metadataChangeRepository = metadataChangeRepository;
+    }
+
+    @Override
+    public long getEpoch() {
+        if (epoch == 0) {
+            synchronized (this) {
+                if (epoch == 0) {
+                    epoch = loadEpoch();
+                }
+            }
+        }
+        return epoch;
+    }
+
+    protected long loadEpoch() {
+        Long epoch = metadataChangeRepository.getEpoch();
+        if (epoch != null) {
+            return epoch;
+        }
+        try {
+            metadataChangeRepository.addEpoch(newEpoch());
+        } catch (Exception e) {
+            logger.warn("add metadata change epoch exception, maybe added by other nameserver", e);
+        }
+        return metadataChangeRepository.getEpoch();
+    }
+
+    protected long newEpoch() {
+        long epoch = 0;
+        while (epoch == 0) {
+            epoch = UUID.randomUUID().getMostSignificantBits();
+        }
+        return epoch;
+    }
+
+    @Override
+    public long getVersion() {
+        return metadataChangeRepository.getVersion();
+    }
+
+    @Override
+    public void add(MetaEvent event) {
+        metadataChangeRepository.add(MetadataChangeConverter.convert(event));
+    }
+
+    @Override
+    public List<MetadataChange> getAfter(long version, int count) {
+        return MetadataChangeConverter.convert(metadataChangeRepository.getAfter(version, count));
+    }
+
+    @Override
+    public void deleteBefore(long version) {
+        metadataChangeRepository.deleteBefore(version);
+    }
+}
@@ -120,4 +120,17 @@ CREATE TABLE IF NOT EXISTS `config` (
 	PRIMARY KEY (`id`)
 );
 CREATE INDEX IF NOT EXISTS idx_key_group ON config(`key`, `group`);
-CREATE INDEX IF NOT EXISTS idx_group ON config(`group`);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_group ON config(`group`);
+
+CREATE TABLE IF NOT EXISTS `metadata_change` (
+	`version` bigint(20) NOT NULL,
+	`type` varchar(255),
+	`content` varchar,
+	PRIMARY KEY (`version`)
+);
+
+CREATE TABLE IF NOT EXISTS `metadata_change_epoch` (
+	`id` int(11) NOT NULL,
+	`epoch` bigint(20),
+	PRIMARY KEY (`id`)
+);
\ No newline at end of file
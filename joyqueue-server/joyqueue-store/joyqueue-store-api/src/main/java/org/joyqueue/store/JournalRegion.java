@@ -0,0 +1,105 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+
+/**
+ * Journal文件中一段连续的、已经刷盘的消息，可以直接从文件发送到网络（sendfile）。
+ */
+public class JournalRegion {
+    /**
+     * 所在文件
+     */
+    private final File file;
+    /**
+     * 文件的只读通道，由存储持有并在多次读取间共用，使用方不能关闭
+     */
+    private final FileChannel channel;
+    /**
+     * 在文件内的物理偏移量（包含文件头）
+     */
+    private final long position;
+    /**
+     * 长度
+     */
+    private int length;
+    /**
+     * 包含的消息（Journal记录）条数，一批消息记为一条
+     */
+    private int count;
+    /**
+     * 对应的索引条数，批消息按批内的消息条数计
+     */
+    private int indexCount;
+
+    public JournalRegion(File file, long position) {
+        this(file, null, position);
+    }
+
+    public JournalRegion(File file, FileChannel channel, long position) {
+        this.file = file;
+        this.channel = channel;
+        this.position = position;
+    }
+
+    /**
+     * 在区域末尾追加一条消息
+     *
+     * @param length     消息长度
+     * @param indexCount 消息对应的索引条数
+     */
+    public void append(int length, int indexCount) {
+        this.length += length;
+        this.count++;
+        this.indexCount += indexCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRegion{" +
+                "file=" + file +
+                ", position=" + position +
+                ", length=" + length +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -132,5 +132,26 @@ public interface PartitionGroupStore {
      */
     ReadResult read(short partition, long index, int count, long maxSize) throws IOException;
 
+    /**
+     * 非阻塞批量读取消息所在的文件区域，不读取消息内容，用于零拷贝（sendfile）发送消息。
+     * 只返回已经刷盘的消息，遇到未刷盘的消息时立即返回；物理位置连续的消息合并为一个区域。
+     * @param partition partition序号
+     * @param index partition内的全局消息序号
+     * @param count 要求读取的消息数量，当count < 1 时，按count ==1处理。
+     * @param maxSize 返回所有消息的长度之和最大值，含义同{@link #read(short, long, int, long)}。
+     * @return 文件区域数组，没有已刷盘的消息时返回空数组，调用方可以改用{@link #read(short, long, int, long)}读取。
+     * @see ReadResult#getRegions()
+     */
+    ReadResult readRegions(short partition, long index, int count, long maxSize) throws IOException;
+
+    /**
+     * 按标签索引跳过一定不包含指定标签的消息，用于按标签过滤消息的消费者，跳过的消息不需要从日志中读取。
+     * @param partition partition序号
+     * @param index 开始查找的消息序号
+     * @param flagMask 所需标签的掩码，见{@link org.joyqueue.store.message.FlagMask}
+     * @return 不小于index的消息序号，index到返回值之间的消息一定不包含指定标签；没有标签索引时返回index。
+     */
+    long nextIndexOfFlags(short partition, long index, long flagMask);
+
 
 }
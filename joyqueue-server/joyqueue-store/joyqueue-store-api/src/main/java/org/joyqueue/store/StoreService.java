@@ -17,6 +17,7 @@ package org.joyqueue.store;
 
 import org.joyqueue.domain.QosLevel;
 import org.joyqueue.monitor.BufferPoolMonitorInfo;
+import org.joyqueue.store.event.StoreCommitEvent;
 import org.joyqueue.store.event.StoreEvent;
 import org.joyqueue.store.replication.ReplicableStore;
 import org.joyqueue.store.transaction.TransactionStore;
@@ -158,4 +159,16 @@ public interface StoreService {
      * @param listener
      */
     void removeListener(EventListener<StoreEvent> listener);
-}
\ No newline at end of file
+
+    /**
+     * 添加消息提交监听器，分区组提交新消息后在提交线程中同步回调，监听器不能阻塞
+     * @param listener
+     */
+    void addCommitListener(EventListener<StoreCommitEvent> listener);
+
+    /**
+     * 移除消息提交监听器
+     * @param listener
+     */
+    void removeCommitListener(EventListener<StoreCommitEvent> listener);
+}
@@ -0,0 +1,38 @@
+package org.joyqueue.store.event;
+
+/**
+ * 分区组提交了新消息，提交位置之前的消息可以被消费
+ */
+public class StoreCommitEvent extends StoreEvent {
+
+    private final String topic;
+    private final int group;
+    private final long commitPosition;
+
+    public StoreCommitEvent(String topic, int group, long commitPosition) {
+        this.topic = topic;
+        this.group = group;
+        this.commitPosition = commitPosition;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getGroup() {
+        return group;
+    }
+
+    public long getCommitPosition() {
+        return commitPosition;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreCommitEvent{" +
+                "topic='" + topic + '\'' +
+                ", group=" + group +
+                ", commitPosition=" + commitPosition +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.message;
+
+/**
+ * 消息标签掩码，用于分区的标签索引。
+ * <p>
+ * 每个标签映射到64位中的一位，一组消息的掩码是其中所有消息标签掩码的并集，相当于只有一个哈希函数的布隆过滤器：
+ * 两个掩码不相交，说明这组消息中一定没有指定的标签；相交时只是可能有。
+ */
+public final class FlagMask {
+    /**
+     * 包含所有标签，不能据此跳过任何消息
+     */
+    public static final long ALL = -1L;
+    /**
+     * 不包含任何标签
+     */
+    public static final long NONE = 0L;
+
+    private FlagMask() {
+    }
+
+    /**
+     * 单个标签的掩码
+     */
+    public static long of(short flag) {
+        // 斐波那契散列，取高6位作为位序号
+        return 1L << ((flag * 0x9E3779B1) >>> 26);
+    }
+
+    /**
+     * 两个掩码是否可能包含相同的标签
+     */
+    public static boolean mayIntersect(long mask1, long mask2) {
+        return (mask1 & mask2) != 0L;
+    }
+}
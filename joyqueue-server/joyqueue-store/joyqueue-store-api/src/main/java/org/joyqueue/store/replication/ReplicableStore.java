@@ -15,6 +15,7 @@
  */
 package org.joyqueue.store.replication;
 
+import org.joyqueue.store.JournalRegion;
 import org.joyqueue.store.ReadException;
 
 import java.io.IOException;
@@ -99,6 +100,18 @@ public interface ReplicableStore {
      */
     ByteBuffer readEntryBuffer(long position, int length) throws IOException;
 
+    /**
+     * 与{@link #readEntryBuffer(long, int)}读取的范围相同，但不复制数据，返回这段日志在Journal文件中的区域，
+     * 用于直接从文件发送到网络（sendfile）。只有已经刷盘并且已经提交的日志可以这样读取，且区域不跨越文件。
+     * @param position 起始位置，必须是一条日志的开始位置。
+     * @param length 返回数据的最大长度。
+     * @return 日志所在的文件区域，不支持或者起始位置之后没有可以这样读取的完整日志时返回null，需要改用{@link #readEntryBuffer(long, int)}。
+     * @throws IOException 发生IO错误
+     */
+    default JournalRegion readEntryRegion(long position, int length) throws IOException {
+        return null;
+    }
+
     /**
      * 追加写入一段消息数据，给定的ByteBuffer必须满足如下条件：
      * 1. 连续且完整的多条消息。
@@ -139,4 +152,12 @@ public interface ReplicableStore {
      */
     int getEntryTerm(long position) throws IOException;
 
+    /**
+     * 设置写入监听器，每次有新数据写入（{@link #rightPosition()}增大）后回调，用于唤醒复制。
+     * 监听器在写入线程中同步执行，不能阻塞。
+     * @param writeListener 写入监听器，为null时取消监听
+     */
+    default void setWriteListener(Runnable writeListener) {
+    }
+
 }
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store;
+
+import org.joyqueue.toolkit.concurrent.LoopThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按磁盘分组提交刷盘。
+ * <p>
+ * 同一块磁盘（同一个挂载点）上的所有Partition Group由同一个刷盘线程负责，每一轮刷盘分为三步：
+ * 1. 每个Partition Group把内存中的脏数据写入文件，每轮最多一个刷盘块，不会因为某个写入繁忙的Partition Group饿死其它的；
+ * 2. 对本轮写入过数据的Journal文件依次执行fsync；
+ * 3. 执行本轮覆盖到的QosLevel.PERSISTENCE回调，回调按轮执行，不等所有数据刷完。
+ * <p>
+ * 分组提交减少的是刷盘线程数量，并不合并fsync：fsync是按文件执行的，
+ * 开启force后同一磁盘上每个写入过数据的Partition Group每轮各执行一次；不开启force时只写入PageCache，不执行fsync。
+ * 索引可以在恢复时从Journal重建，所以只对Journal执行fsync。
+ * <p>
+ * 磁盘上最后一个Partition Group移除后，停止该磁盘的刷盘线程。
+ */
+public class GroupCommitFlusher {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitFlusher.class);
+    private static final String DEFAULT_VOLUME = "default";
+    private final Map<Object /* FileStore */, Volume> volumes = new ConcurrentHashMap<>();
+    private final Map<PartitionGroupStoreManager, Volume> memberVolumes = new ConcurrentHashMap<>();
+    private final long flushIntervalMs;
+    private final boolean force;
+
+    /**
+     * @param flushIntervalMs 刷盘最大时间间隔
+     * @param force           每轮刷盘是否对Journal执行fsync
+     */
+    public GroupCommitFlusher(long flushIntervalMs, boolean force) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.force = force;
+    }
+
+    /**
+     * 加入所在磁盘的刷盘组，由该磁盘的刷盘线程负责刷盘。
+     */
+    synchronized void register(PartitionGroupStoreManager member, File base) {
+        Volume volume = volumes.computeIfAbsent(volumeOf(base), key -> {
+            Volume v = new Volume(key);
+            v.thread.start();
+            logger.info("Group commit flush thread started, volume: {}.", key);
+            return v;
+        });
+        volume.members.add(member);
+        memberVolumes.put(member, volume);
+    }
+
+    synchronized void unregister(PartitionGroupStoreManager member) {
+        Volume volume = memberVolumes.remove(member);
+        if (null != volume) {
+            volume.members.remove(member);
+            if (volume.members.isEmpty()) {
+                volumes.remove(volume.key);
+                volume.thread.stop();
+                logger.info("Group commit flush thread stopped, volume: {}.", volume.key);
+            }
+        }
+    }
+
+    /**
+     * 有新数据写入时，唤醒所在磁盘的刷盘线程
+     */
+    void wakeup(PartitionGroupStoreManager member) {
+        Volume volume = memberVolumes.get(member);
+        if (null != volume) {
+            volume.thread.wakeup();
+        }
+    }
+
+    public int volumeCount() {
+        return volumes.size();
+    }
+
+    public synchronized void stop() {
+        volumes.values().forEach(volume -> volume.thread.stop());
+        volumes.clear();
+        memberVolumes.clear();
+    }
+
+    private Object volumeOf(File base) {
+        try {
+            FileStore fileStore = Files.getFileStore(base.toPath());
+            if (null != fileStore) {
+                return fileStore;
+            }
+        } catch (IOException e) {
+            logger.warn("Get file store of {} failed, use default volume.", base.getAbsolutePath(), e);
+        }
+        return DEFAULT_VOLUME;
+    }
+
+    private class Volume {
+        private final Object key;
+        private final Set<PartitionGroupStoreManager> members = ConcurrentHashMap.newKeySet();
+        private final LoopThread thread;
+
+        private Volume(Object key) {
+            this.key = key;
+            this.thread = LoopThread.builder()
+                    .name(String.format("GroupCommitFlushThread-%s", key))
+                    .doWork(this::flush)
+                    .sleepTime(flushIntervalMs, flushIntervalMs)
+                    .daemon(true)
+                    .onException(e -> logger.warn("Flush Exception: ", e))
+                    .build();
+        }
+
+        private void flush() {
+            boolean flushed;
+            do {
+                flushed = false;
+                // 1. 所有Partition Group的脏数据写入文件
+                for (PartitionGroupStoreManager member : members) {
+                    try {
+                        flushed = member.flushDirty() || flushed;
+                    } catch (Throwable t) {
+                        logger.warn("Flush {}-{} exception: ", member.getTopic(), member.getPartitionGroup(), t);
+                    }
+                }
+
+                // 2. 统一fsync
+                List<PartitionGroupStoreManager> pending = new ArrayList<>();
+                List<Long> positions = new ArrayList<>();
+                for (PartitionGroupStoreManager member : members) {
+                    if (member.needPersist()) {
+                        try {
+                            long position = member.force(force);
+                            if (position >= 0) {
+                                pending.add(member);
+                                positions.add(position);
+                            }
+                        } catch (Throwable t) {
+                            logger.warn("Force {}-{} exception: ", member.getTopic(), member.getPartitionGroup(), t);
+                        }
+                    }
+                }
+
+                // 3. 统一回调
+                for (int i = 0; i < pending.size(); i++) {
+                    PartitionGroupStoreManager member = pending.get(i);
+                    try {
+                        member.onPersisted(positions.get(i));
+                    } catch (Throwable t) {
+                        logger.warn("Persist callback {}-{} exception: ", member.getTopic(), member.getPartitionGroup(), t);
+                    }
+                }
+            } while (flushed && thread.isStarted());
+        }
+    }
+}
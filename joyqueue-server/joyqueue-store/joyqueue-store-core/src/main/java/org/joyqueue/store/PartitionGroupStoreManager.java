@@ -19,15 +19,23 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import org.joyqueue.domain.QosLevel;
 import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.store.event.StoreCommitEvent;
 import org.joyqueue.store.file.Checkpoint;
 import org.joyqueue.store.file.DiskFullException;
 import org.joyqueue.store.file.PositioningStore;
 import org.joyqueue.store.file.RollBackException;
+import org.joyqueue.store.file.StoreFile;
 import org.joyqueue.store.file.StoreMessageSerializer;
+import org.joyqueue.store.index.CompactIndexStore;
+import org.joyqueue.store.index.FixedIndexStore;
+import org.joyqueue.store.index.FlagIndex;
 import org.joyqueue.store.index.IndexItem;
-import org.joyqueue.store.index.IndexSerializer;
+import org.joyqueue.store.index.IndexStore;
+import org.joyqueue.store.index.TimeIndex;
 import org.joyqueue.store.message.BatchMessageParser;
 import org.joyqueue.store.message.MessageParser;
+import org.joyqueue.store.nsm.VirtualThread;
+import org.joyqueue.store.nsm.VirtualThreadExecutor;
 import org.joyqueue.store.replication.ReplicableStore;
 import org.joyqueue.store.utils.PreloadBufferPool;
 import org.joyqueue.toolkit.concurrent.CasLock;
@@ -66,7 +74,6 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * root                 Partition group root
@@ -110,6 +117,18 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
     private final PreloadBufferPool bufferPool;
     // 写入线程，刷盘线程，每个Partition Group唯一
     private final LoopThread writeLoopThread, flushLoopThread;
+    // 共享的写入、刷盘线程池，不为null时使用虚拟线程代替writeLoopThread和flushLoopThread。
+    // 同一个虚拟线程同一时刻只会在一个物理线程上执行，保证每个Partition Group仍然是单线程写入。
+    private final VirtualThreadExecutor writeExecutor, flushExecutor;
+    private final VirtualThread writeVirtualThread, flushVirtualThread;
+    // 按磁盘分组提交的刷盘器，不为null时由它代替本Partition Group的刷盘线程。
+    private final GroupCommitFlusher groupCommitFlusher;
+    private final ReadAhead readAhead;
+    // 消息提交监听器，提交位置前进时回调
+    private volatile EventListener<StoreCommitEvent> commitListener;
+    private volatile Runnable writeListener;
+    // 分组提交模式下，已经fsync并完成PERSISTENCE回调的位置。
+    private volatile long persistPosition = 0L;
     // 记录Metric的线程
     private final LoopThread metricThread;
     // 写入消息缓冲队列
@@ -118,6 +137,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
     private long replicationPosition;
     // 索引位置，该位置之前的消息都有索引。指向Journal store的绝对偏移量。
     private long indexPosition;
+    // 恢复时是否变更过索引格式
+    private boolean indexMigrated = false;
     // Store是否可供生产消费。
     //  true：生产消费可以读写，复制线程不可读写；
     //  false：复制线程可读写，生产消费不可读写。
@@ -142,6 +163,31 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
 
     public PartitionGroupStoreManager(String topic, int partitionGroup, File base, Config config,
                                       PreloadBufferPool bufferPool) {
+        this(topic, partitionGroup, base, config, bufferPool, null, null, null);
+    }
+
+    /**
+     * @param writeExecutor 共享的写入线程池，为null时创建独立的写入线程
+     * @param flushExecutor 共享的刷盘线程池，为null时创建独立的刷盘线程
+     * @param groupCommitFlusher 按磁盘分组提交的刷盘器，不为null时忽略flushExecutor
+     */
+    public PartitionGroupStoreManager(String topic, int partitionGroup, File base, Config config,
+                                      PreloadBufferPool bufferPool,
+                                      VirtualThreadExecutor writeExecutor, VirtualThreadExecutor flushExecutor,
+                                      GroupCommitFlusher groupCommitFlusher) {
+        this(topic, partitionGroup, base, config, bufferPool, writeExecutor, flushExecutor, groupCommitFlusher, null);
+    }
+
+    /**
+     * @param writeExecutor 共享的写入线程池，为null时创建独立的写入线程
+     * @param flushExecutor 共享的刷盘线程池，为null时创建独立的刷盘线程
+     * @param groupCommitFlusher 按磁盘分组提交的刷盘器，不为null时忽略flushExecutor
+     * @param readAhead 共享的顺序读预读器，为null时不预读
+     */
+    public PartitionGroupStoreManager(String topic, int partitionGroup, File base, Config config,
+                                      PreloadBufferPool bufferPool,
+                                      VirtualThreadExecutor writeExecutor, VirtualThreadExecutor flushExecutor,
+                                      GroupCommitFlusher groupCommitFlusher, ReadAhead readAhead) {
         this.base = base;
         this.topic = topic;
         this.partitionGroup = partitionGroup;
@@ -159,7 +205,13 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         }
         term = getMaxTerm(store);
 
-        this.writeLoopThread = LoopThread.builder()
+        this.groupCommitFlusher = groupCommitFlusher;
+        this.readAhead = readAhead;
+        this.writeExecutor = writeExecutor;
+        this.flushExecutor = null == groupCommitFlusher ? flushExecutor : null;
+        this.writeVirtualThread = null == writeExecutor ? null : this::tryWrite;
+        this.flushVirtualThread = null == this.flushExecutor ? null : this::tryFlush;
+        this.writeLoopThread = null != writeExecutor ? null : LoopThread.builder()
                 .name(String.format("WriteThread-%s-%d", topic, partitionGroup))
                 .doWork(this::write)
                 .sleepTime(0, 0)
@@ -170,7 +222,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                     } catch (InterruptedException ignored) {}
                 })
                 .build();
-        this.flushLoopThread = LoopThread.builder()
+        this.flushLoopThread = null != this.flushExecutor || null != groupCommitFlusher ? null : LoopThread.builder()
                 .name(String.format("FlushThread-%s-%d", topic, partitionGroup))
                 .doWork(this::flush)
                 .sleepTime(config.flushIntervalMs, config.flushIntervalMs)
@@ -293,13 +345,13 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                 continue;
             }
 
-            PositioningStore<IndexItem> indexStore = partition.store;
+            IndexStore indexStore = partition.store;
             long indexItemPosition = indexItem.getIndex() * IndexItem.STORAGE_SIZE;
 
             if (indexStore.right() == 0 || indexItemPosition < indexStore.right()) {
                 // 如果当前分区没有索引，或者当前分区的下一条索引大于即将写入的索引，
                 // 删除当前索引之后的所有索引。
-                indexStore.setRight(indexItemPosition);
+                partition.setRight(indexItemPosition);
             } else if ( indexItemPosition > indexStore.right()) {
                 // 正常情况下不会出现索引不连续
                 throw new WriteException(
@@ -319,7 +371,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                 indexItem.setBatchMessage(true);
                 indexItem.setBatchMessageSize(batchSize);
             }
-            writeIndex(indexItem, partition.store);
+            writeIndex(indexItem, partition, byteBuffer);
 
             // 每写入10M索引，执行一次刷盘
             if (indexStore.right() - indexStore.flushPosition() >= 10 * 1024 * 1024) {
@@ -330,7 +382,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         }
 
         for (Partition partition : partitionMap.values()) {
-            PositioningStore<IndexItem> indexStore = partition.store;
+            IndexStore indexStore = partition.store;
             if (indexStore.right() > indexStore.flushPosition()) {
                 indexStore.flush();
             }
@@ -356,7 +408,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
 //    如果是，使用checkpoint中记录的indexPosition继续恢复索引；
 //    否则，使用目前的逻辑计算出的indexPosition继续恢复索引。
     private long recoverIndexPositionFromCheckpoint(Checkpoint checkpoint) {
-        if (null != checkpoint && checkpoint.getIndexPosition() > indexPosition &&
+        // 索引格式变更后，需要从头重建索引
+        if (null != checkpoint && !indexMigrated && checkpoint.getIndexPosition() > indexPosition &&
                 checkpoint.getPartitions().entrySet().stream()
                         .allMatch(entry -> {
                             short partition = entry.getKey();
@@ -449,10 +502,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             // 1. 创建Partition对象，加入到partitionMap中
 
             File partitionBase = new File(indexBase, String.valueOf(partitionIndex));
-            PositioningStore<IndexItem> indexStore =
-                    new PositioningStore<>(partitionBase, config.indexStoreConfig, bufferPool, new IndexSerializer());
             // 恢复索引存储
-            indexStore.recover();
+            IndexStore indexStore = createIndexStore(partitionBase);
 
             //截掉末尾可能存在的半条索引
             indexStore.setRight(indexStore.right() - indexStore.right() % IndexItem.STORAGE_SIZE);
@@ -477,7 +528,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             indexStore.setRight(validPosition + IndexItem.STORAGE_SIZE);
 
 
-            partitionMap.put(partitionIndex, new Partition(indexStore));
+            Partition partition = new Partition(indexStore, createTimeIndex(partitionBase), createFlagIndex(partitionBase));
+            partitionMap.put(partitionIndex, partition);
 
             if (indexStore.right() - indexStore.left() > 0) {
 
@@ -508,6 +560,14 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             } else {
                 indexPosition = store.left();
             }
+
+            // 3. 恢复时间索引和标签索引，之后缺少的部分在重建索引时补齐
+            if (null != partition.timeIndex) {
+                partition.timeIndex.recover(indexStore.left() / IndexItem.STORAGE_SIZE, indexStore.right() / IndexItem.STORAGE_SIZE);
+            }
+            if (null != partition.flagIndex) {
+                partition.flagIndex.recover(indexStore.left() / IndexItem.STORAGE_SIZE, indexStore.right() / IndexItem.STORAGE_SIZE);
+            }
         }
 
         return indexPosition;
@@ -523,6 +583,67 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return current.getLength() > 0 && current.getOffset() > previous.getOffset();
     }
 
+    /**
+     * 按配置的索引格式创建并恢复分区索引。
+     * 如果分区目录下存在另一种格式的索引，删除之，索引从原来的最大索引序号开始，稍后从消息文件中重建。
+     */
+    private IndexStore createIndexStore(File partitionBase) throws IOException {
+        boolean compact = null != config.compactIndexStoreConfig;
+        boolean migrate = compact ? FixedIndexStore.exists(partitionBase) : CompactIndexStore.exists(partitionBase);
+        IndexStore indexStore = compact ?
+                new CompactIndexStore(partitionBase, config.compactIndexStoreConfig, config.indexStoreConfig, bufferPool) :
+                new FixedIndexStore(partitionBase, config.indexStoreConfig, bufferPool);
+        indexStore.recover();
+
+        if (migrate) {
+            IndexStore legacyStore = compact ?
+                    new FixedIndexStore(partitionBase, config.indexStoreConfig, bufferPool) :
+                    new CompactIndexStore(partitionBase, config.indexStoreConfig, config.indexStoreConfig, bufferPool);
+            legacyStore.recover();
+            long legacyRight = legacyStore.right() - legacyStore.right() % IndexItem.STORAGE_SIZE;
+            legacyStore.close();
+            logger.info("Migrate index of topic: {}, group: {}, directory: {} to {} format, right index: {}.",
+                    topic, partitionGroup, partitionBase.getAbsolutePath(), compact ? "compact" : "fixed",
+                    Format.formatWithComma(legacyRight / IndexItem.STORAGE_SIZE));
+
+            if (compact) {
+                File[] files = partitionBase.listFiles(file -> file.isFile() && file.getName().matches("\\d+"));
+                if (null != files) {
+                    for (File file : files) {
+                        deleteIndexFile(file);
+                    }
+                }
+            } else {
+                deleteIndexFile(legacyStore.base());
+            }
+            if (indexStore.right() == indexStore.left() && legacyRight > indexStore.right()) {
+                indexStore.setRight(legacyRight);
+            }
+            indexMigrated = true;
+        }
+        return indexStore;
+    }
+
+    private void deleteIndexFile(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (null != children) {
+            for (File child : children) {
+                deleteIndexFile(child);
+            }
+        }
+        if (!file.delete()) {
+            throw new IOException(String.format("Delete file %s failed!", file.getAbsolutePath()));
+        }
+    }
+
+    private TimeIndex createTimeIndex(File partitionBase) throws IOException {
+        return config.timeIndexInterval > 0 ? new TimeIndex(partitionBase, config.timeIndexInterval) : null;
+    }
+
+    private FlagIndex createFlagIndex(File partitionBase) throws IOException {
+        return config.flagIndexBlockSize > 0 ? new FlagIndex(partitionBase, config.flagIndexBlockSize) : null;
+    }
+
     private Short[] loadPartitionIndices(File indexBase) {
         Short[] partitionIndices = null;
         File[] files = indexBase.listFiles(file -> file.isDirectory() && file.getName().matches("^\\d+$"));
@@ -542,7 +663,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return partitionIndices;
     }
 
-    private void verifyBatchMessage(IndexItem lastIndexItem, PositioningStore<IndexItem> indexStore, PositioningStore<ByteBuffer> store) throws IOException {
+    private void verifyBatchMessage(IndexItem lastIndexItem, IndexStore indexStore, PositioningStore<ByteBuffer> store) throws IOException {
 
         if (lastIndexItem.getOffset() < store.right()) {
             ByteBuffer msg = store.read(lastIndexItem.getOffset());
@@ -578,6 +699,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
     private void removePartition(short partition) {
         Partition p = partitionMap.remove(partition);
         if (null != p) {
+            p.closeIndices();
             // 重命名目录
             File partitionBase = new File(base, "index" + File.separator + partition);
             if (!partitionBase.renameTo(new File(partitionBase.getParent(), partitionBase.getName() + ".d." + SystemClock.now()))) {
@@ -594,10 +716,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
 
             File partitionBase = new File(base, "index" + File.separator + partition);
             if (partitionBase.mkdirs()) {
-                PositioningStore<IndexItem> indexStore =
-                        new PositioningStore<>(partitionBase, config.indexStoreConfig, bufferPool, new IndexSerializer());
-                indexStore.recover();
-                partitionMap.put(partition, new Partition(indexStore));
+                IndexStore indexStore = createIndexStore(partitionBase);
+                partitionMap.put(partition, new Partition(indexStore, createTimeIndex(partitionBase), createFlagIndex(partitionBase)));
             } else {
                 throw new IOException(String.format("Create directory: %s failed!", partitionBase.getAbsolutePath()));
             }
@@ -608,7 +728,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         long t0 = System.nanoTime();
         ReadResult readResult = new ReadResult();
         checkPartition(partition);
-        PositioningStore<IndexItem> indexStore = partitionMap.get(partition).store;
+        Partition p = partitionMap.get(partition);
+        IndexStore indexStore = p.store;
         List<IndexItem> indexItemList = indexStore.batchRead(index * IndexItem.STORAGE_SIZE, count);
 
         long size = 0L;
@@ -672,6 +793,10 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         }
         readResult.setMessages(buffers.toArray(new ByteBuffer[0]));
         readResult.setCode(JoyQueueCode.SUCCESS);
+        if (null != readAhead && null != lastIndexItem) {
+            readAhead.onRead(p.readAheadStreams, index, indexItemList.size(), indexItemList.get(0).getOffset(),
+                    lastIndexItem.getOffset() + lastIndexItem.getLength(), indexStore, store);
+        }
         if (null != consumeMetric) {
             consumeMetric.addCounter("ReadCount", buffers.size());
             consumeMetric.addLatency("ReadLatency", System.nanoTime() - t0);
@@ -681,6 +806,70 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return readResult;
     }
 
+    /**
+     * 读取消息所在的Journal文件区域，只返回已经刷盘并且已经提交的消息，
+     * 物理位置连续并且在同一个文件中的消息合并为一个区域。
+     */
+    public ReadResult readRegions(short partition, long index, int count, long maxSize) throws IOException {
+        long t0 = System.nanoTime();
+        ReadResult readResult = new ReadResult();
+        checkPartition(partition);
+        Partition p = partitionMap.get(partition);
+        IndexStore indexStore = p.store;
+        List<IndexItem> indexItemList = indexStore.batchRead(index * IndexItem.STORAGE_SIZE, Math.max(count, 1));
+        readResult.setEop(indexItemList.size() < count);
+
+        long readablePosition = Math.min(store.flushPosition(), commitPosition());
+        List<JournalRegion> regions = new ArrayList<>();
+        JournalRegion region = null;
+        StoreFile<ByteBuffer> storeFile = null;
+        long regionEnd = -1L;
+        long size = 0L;
+        int messageCount = 0;
+        for (int i = 0; i < indexItemList.size(); ) {
+            IndexItem indexItem = indexItemList.get(i);
+            // 同一批消息的索引offset相同，只发送一次
+            int indexCount = 1;
+            while (i + indexCount < indexItemList.size() && indexItemList.get(i + indexCount).getOffset() == indexItem.getOffset()) {
+                indexCount++;
+            }
+            i += indexCount;
+
+            long offset = indexItem.getOffset();
+            if (offset + indexItem.getLength() > readablePosition) {
+                break;
+            }
+            if (maxSize > 0 && messageCount > 0 && size + indexItem.getLength() > maxSize) {
+                break;
+            }
+            if (null == storeFile || offset < storeFile.position() || offset + indexItem.getLength() > storeFile.position() + storeFile.fileDataSize()) {
+                storeFile = store.storeFile(offset);
+                region = null;
+            }
+            if (null == region || offset != regionEnd) {
+                region = new JournalRegion(storeFile.file(), storeFile.readChannel(), store.fileHeaderSize() + offset - storeFile.position());
+                regions.add(region);
+            }
+            region.append(indexItem.getLength(), indexCount);
+            regionEnd = offset + indexItem.getLength();
+            size += indexItem.getLength();
+            messageCount++;
+        }
+
+        readResult.setRegions(regions.toArray(new JournalRegion[0]));
+        readResult.setCode(JoyQueueCode.SUCCESS);
+        if (null != readAhead && messageCount > 0) {
+            readAhead.onRead(p.readAheadStreams, index, indexItemList.size(), indexItemList.get(0).getOffset(),
+                    regionEnd, indexStore, store);
+        }
+        if (null != consumeMetric) {
+            consumeMetric.addCounter("ReadCount", messageCount);
+            consumeMetric.addLatency("ReadLatency", System.nanoTime() - t0);
+            consumeMetric.addTraffic("ReadTraffic", size);
+        }
+        return readResult;
+    }
+
     private void checkPartition(short partition) {
         if (!partitionMap.containsKey(partition))
             throw new ReadException(String.format("No such partition: %d in topic: %s, partition group: %d.", partition, topic, partitionGroup));
@@ -728,10 +917,10 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                     indexItem.setBatchMessage(true);
                     indexItem.setBatchMessageSize(batchSize);
                 }
-                writeIndex(indexItem, partition.store);
+                writeIndex(indexItem, partition, byteBuffer);
 
                 // 唤醒刷盘线程
-                flushLoopThread.wakeup();
+                wakeupFlushThread();
             }
         } catch (Throwable t) {
             onWriteException(start, partitionSnapshot , t);
@@ -745,42 +934,80 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                 .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().store.right()));
     }
 
-    private void writeIndex(IndexItem indexItem, PositioningStore<IndexItem> indexStore) throws IOException {
-        if (indexItem.isBatchMessage()) {
-            // 批消息内每条消息的索引都指向批消息的起始位置，长度都是都批消息的总长度
-            appendBatchMessageIndices(indexStore, indexItem);
-        } else {
-            indexStore.append(indexItem);
+    private void writeIndex(IndexItem indexItem, Partition partition, ByteBuffer message) throws IOException {
+        partition.store.append(indexItem);
+        if (null != partition.timeIndex) {
+            partition.timeIndex.append(indexItem.getIndex(), getStorageTimestamp(message));
         }
-        indexPosition += indexItem.getLength();
-    }
-
-    private void appendBatchMessageIndices(PositioningStore<IndexItem> indexStore, IndexItem indexItem) throws IOException {
-        ByteBuffer indexBuffer = ByteBuffer.allocate(indexItem.getBatchMessageSize() * IndexItem.STORAGE_SIZE);
-        for (int j = 0; j < indexItem.getBatchMessageSize(); j++) {
-            indexItem.serializeTo(indexBuffer);
+        if (null != partition.flagIndex) {
+            partition.flagIndex.append(indexItem.getIndex(), indexItem.isBatchMessage() ? indexItem.getBatchMessageSize() : 1,
+                    MessageParser.getShort(message, MessageParser.FLAG));
         }
-        indexBuffer.flip();
-        indexStore.appendByteBuffer(indexBuffer);
+        indexPosition += indexItem.getLength();
     }
 
     /**
      * 从写入请求队列中获取写入请求，单线程写入消息。
      */
     private void write() {
-        WriteCommand writeCommand = null;
-
         // 加写锁，防止Leader切换的时候，和复制线程并发写入
         if(!writeLock.tryLock()) {
             throw new IllegalStateException("Acquire write lock failed!");
         }
-        // 检查Store状态
-        verifyState(true);
-
         try {
+            // 检查Store状态
+            verifyState(true);
+
             // 获取写入请求
-            writeCommand = writeCommandCache.take();
+            write(writeCommandCache.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
+    /**
+     * 虚拟线程执行的写入方法，不阻塞物理线程。
+     * 如果内存中脏数据过多，暂不取出写入请求，让出物理线程等待刷盘，写入请求超时后直接返回超时。
+     * @return true：处理了一个写入请求，false：没有可处理的写入请求
+     */
+    private boolean tryWrite() {
+        if (!writeLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (!enabled.get()) {
+                return false;
+            }
+            WriteCommand writeCommand = writeCommandCache.peek();
+            if (null == writeCommand) {
+                return false;
+            }
+            if (store.right() - store.flushPosition() >= config.maxDirtySize) {
+                if (SystemClock.now() - writeCommand.timestamp <= config.writeTimeoutMs) {
+                    wakeupFlushThread();
+                    return false;
+                }
+                // 超时，写入失败
+                writeCommandCache.poll();
+                if (writeCommand.eventListener != null) {
+                    writeCommand.eventListener.onEvent(new WriteResult(JoyQueueCode.SE_WRITE_TIMEOUT, null));
+                }
+                return true;
+            }
+            write(writeCommandCache.poll());
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 写入一个写入请求，并处理回调。调用方需持有writeLock。
+     */
+    private void write(WriteCommand writeCommand) {
+        try {
             // 记录Metric
             if (null != produceMetric) {
                 produceMetric.addTraffic("WriteTraffic", Arrays.stream(writeCommand.messages).mapToInt(ByteBuffer::remaining).sum());
@@ -796,7 +1023,8 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             } else {
                 // 继续写入
                 long[] indices = write(writeCommand.messages);
-                // 处理回调
+                // 先通知复制，再处理回调
+                fireWriteEvent();
                 handleCallback(writeCommand, store.right(), indices);
             }
             long t1 = System.nanoTime();
@@ -807,21 +1035,17 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
 
             }
         } catch (DiskFullException e) {
-            if (null != writeCommand && writeCommand.eventListener != null)
+            if (writeCommand.eventListener != null)
                 writeCommand.eventListener.onEvent(new WriteResult(JoyQueueCode.SE_DISK_FULL, null));
             logger.warn("Write failed, cause: disk full! Store: {}.", base.getAbsolutePath());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         } catch (IllegalStateException e) {
-            if (null != writeCommand && writeCommand.eventListener != null)
+            if (writeCommand.eventListener != null)
                 writeCommand.eventListener.onEvent(new WriteResult(JoyQueueCode.CY_STATUS_ERROR, null));
             logger.warn("Write failed, cause: store disabled! Store: {}.", base.getAbsolutePath());
         } catch (Throwable t) {
-            if (null != writeCommand && writeCommand.eventListener != null)
+            if (writeCommand.eventListener != null)
                 writeCommand.eventListener.onEvent(new WriteResult(JoyQueueCode.SE_WRITE_FAILED, null));
             logger.warn("Write failed, cause: exception! Store: {}.", base.getAbsolutePath(), t);
-        } finally {
-            writeLock.unlock();
         }
     }
 
@@ -864,27 +1088,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             try {
                 boolean flushed;
                 do {
-                    long t0 = System.nanoTime();
-                    long before = store.flushPosition();
-
-                    //执行Journal和Index刷盘操作，返回值标识是否有数据写入了磁盘
-                    flushed = store.flush() | flushIndices();
-
-                    // 记录Metric
-                    if (null != produceMetric && flushed) {
-                        long t1 = System.nanoTime();
-                        produceMetric.addTraffic("FlushTraffic", store.flushPosition() - before);
-                        produceMetric.addLatency("FlushLatency", t1 - t0);
-                        produceMetric.addCounter("FlushCount", 1);
-                    }
-
-                    // 执行回调
-                    if (flushed) {
-                        callbackMap.get(QosLevel.PERSISTENCE).callbackBefore(flushPosition());
-                    }
-
-                    // 定期更新CheckPoint
-                    flushCheckpointPeriodically();
+                    flushed = flushOnce();
                 } while (flushed && isStarted());
             } catch (IOException e) {
                 logger.warn("Exception:", e);
@@ -894,6 +1098,136 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         }
     }
 
+    /**
+     * 虚拟线程执行的刷盘方法，每次只刷一轮，由VirtualThreadExecutor决定是否继续执行。
+     * @return true：有数据写入了磁盘，false：没有需要刷盘的数据
+     */
+    private boolean tryFlush() {
+        if(flushLock.tryLock()) {
+            try {
+                return flushOnce();
+            } catch (IOException e) {
+                logger.warn("Exception:", e);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 执行一轮Journal和Index刷盘，调用方需持有flushLock。
+     * @return true：有数据写入了磁盘
+     */
+    private boolean flushOnce() throws IOException {
+        boolean flushed;
+        long t0 = System.nanoTime();
+        long before = store.flushPosition();
+
+        //执行Journal和Index刷盘操作，返回值标识是否有数据写入了磁盘
+        flushed = store.flush() | flushIndices();
+
+        // 记录Metric
+        if (null != produceMetric && flushed) {
+            long t1 = System.nanoTime();
+            produceMetric.addTraffic("FlushTraffic", store.flushPosition() - before);
+            produceMetric.addLatency("FlushLatency", t1 - t0);
+            produceMetric.addCounter("FlushCount", 1);
+        }
+
+        // 执行回调
+        if (flushed) {
+            callbackMap.get(QosLevel.PERSISTENCE).callbackBefore(flushPosition());
+        }
+
+        // 定期更新CheckPoint
+        flushCheckpointPeriodically();
+        return flushed;
+    }
+
+    /**
+     * 分组提交第一步：将内存中的脏数据写入文件，不执行回调。
+     * 每次只刷一轮，避免写入繁忙的Partition Group占住刷盘线程，剩余的数据留到下一轮。
+     * @return true：有数据写入了文件
+     */
+    boolean flushDirty() throws IOException {
+        if (flushLock.tryLock()) {
+            try {
+                long t0 = System.nanoTime();
+                long before = store.flushPosition();
+                boolean flushed = store.flush() | flushIndices();
+                if (null != produceMetric && flushed) {
+                    produceMetric.addTraffic("FlushTraffic", store.flushPosition() - before);
+                    produceMetric.addLatency("FlushLatency", System.nanoTime() - t0);
+                    produceMetric.addCounter("FlushCount", 1);
+                }
+                return flushed;
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否有已写入文件但还未完成分组提交的数据
+     */
+    boolean needPersist() {
+        return persistPosition < store.flushPosition();
+    }
+
+    /**
+     * 分组提交第二步：对Journal执行fsync。
+     * @param force 是否执行fsync
+     * @return 已写入磁盘的位置，获取锁失败时返回-1
+     */
+    long force(boolean force) throws IOException {
+        if (flushLock.tryLock()) {
+            try {
+                long position = store.flushPosition();
+                if (force) {
+                    store.force();
+                }
+                return position;
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * 分组提交第三步：执行QosLevel.PERSISTENCE回调，并定期更新CheckPoint。
+     */
+    void onPersisted(long position) throws IOException {
+        persistPosition = position;
+        callbackMap.get(QosLevel.PERSISTENCE).callbackBefore(persistPosition());
+        if (flushLock.tryLock()) {
+            try {
+                flushCheckpointPeriodically();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 已经写入磁盘并且可以应答QosLevel.PERSISTENCE的位置
+     */
+    private long persistPosition() {
+        return null == groupCommitFlusher ? store.flushPosition() : Math.min(persistPosition, store.flushPosition());
+    }
+
+    private void wakeupFlushThread() {
+        if (null != groupCommitFlusher) {
+            groupCommitFlusher.wakeup(this);
+        } else if (null != flushExecutor) {
+            flushExecutor.wakeup(flushVirtualThread);
+        } else {
+            flushLoopThread.wakeup();
+        }
+    }
+
     private boolean flushIndices() {
         try {
             boolean flushed = false;
@@ -976,6 +1310,9 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         // 放入队列中，如果队列满，阻塞等待
         try {
             this.writeCommandCache.put(writeCommand);
+            if (null != writeExecutor) {
+                writeExecutor.wakeup(writeVirtualThread);
+            }
         } catch (InterruptedException e) {
             logger.warn("Exception: ", e);
             if (eventListener != null)
@@ -991,7 +1328,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return indexPosition;
     }
 
-    PositioningStore<IndexItem> indexStore(short partition) {
+    IndexStore indexStore(short partition) {
         if (partitionMap.containsKey(partition)) {
             return partitionMap.get(partition).store;
         } else {
@@ -1003,7 +1340,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return store;
     }
 
-    Set<PositioningStore<IndexItem>> meetPositioningStores() {
+    Set<IndexStore> meetPositioningStores() {
         return partitionMap.values().stream().map(p -> p.store).collect(Collectors.toSet());
     }
 
@@ -1016,7 +1353,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         for (Map.Entry<Short, Long> partition : partitionAckMap.entrySet()) {
             Short p = partition.getKey();
             long minPartitionIndex = partition.getValue();
-            PositioningStore<IndexItem> indexStore = indexStore(p);
+            IndexStore indexStore = indexStore(p);
             if (indexStore != null) {
                 if (minPartitionIndex != Long.MAX_VALUE && keepUnconsumed) {
                     minPartitionIndex *= IndexItem.STORAGE_SIZE;
@@ -1041,6 +1378,15 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                     }
                 }
 
+                // 删除时间索引中已经被删除的部分
+                Partition indexPartition = partitionMap.get(p);
+                if (null != indexPartition && null != indexPartition.timeIndex) {
+                    indexPartition.timeIndex.deleteBefore(indexStore.left() / IndexItem.STORAGE_SIZE);
+                }
+                if (null != indexPartition && null != indexPartition.flagIndex) {
+                    indexPartition.flagIndex.deleteBefore(indexStore.left() / IndexItem.STORAGE_SIZE);
+                }
+
                 try {
                     long storeMinMessagePosition = indexStore.read(indexStore.left()).getOffset();
                     if (minMessagePosition < 0 || minMessagePosition > storeMinMessagePosition) {
@@ -1068,7 +1414,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
      * @return true if partition 的最早消息时间小于指定时间
      *
      **/
-    private  boolean hasEarly(PositioningStore<IndexItem> indexStore,long time) throws IOException{
+    private  boolean hasEarly(IndexStore indexStore,long time) throws IOException{
         long left=indexStore.left();
         IndexItem item=indexStore.read(left);
         ByteBuffer message=store.read(item.getOffset());
@@ -1117,13 +1463,23 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
 
 
     private void startFlushThread() {
-       flushLoopThread.start();
+        if (null != groupCommitFlusher) {
+            persistPosition = store.flushPosition();
+            groupCommitFlusher.register(this, base);
+        } else if (null != flushExecutor) {
+            flushExecutor.start(flushVirtualThread, config.flushIntervalMs, String.format("FlushThread-%s-%d", topic, partitionGroup));
+        } else {
+            flushLoopThread.start();
+        }
     }
 
 
     private void startWriteThread() {
-
-        this.writeLoopThread.start();
+        if (null != writeExecutor) {
+            writeExecutor.start(writeVirtualThread, String.format("WriteThread-%s-%d", topic, partitionGroup));
+        } else {
+            this.writeLoopThread.start();
+        }
     }
 
     @Override
@@ -1170,16 +1526,34 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         }
     }
     private boolean isAllStoreClean() {
-        return Stream.concat(Stream.of(store), partitionMap.values().stream().map(partition -> partition.store)).allMatch(PositioningStore::isClean);
+        return store.isClean() && partitionMap.values().stream().allMatch(partition -> partition.store.isClean());
     }
 
 
     private void stopFlushThread() {
-        flushLoopThread.stop();
+        if (null != groupCommitFlusher) {
+            groupCommitFlusher.unregister(this);
+        } else if (null != flushExecutor) {
+            stopVirtualThread(flushExecutor, flushVirtualThread);
+        } else {
+            flushLoopThread.stop();
+        }
     }
 
     private void stopWriteThread() {
-        writeLoopThread.stop();
+        if (null != writeExecutor) {
+            stopVirtualThread(writeExecutor, writeVirtualThread);
+        } else {
+            writeLoopThread.stop();
+        }
+    }
+
+    private void stopVirtualThread(VirtualThreadExecutor executor, VirtualThread virtualThread) {
+        try {
+            executor.stop(virtualThread);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public long getLeftIndex(short partition) {
@@ -1264,7 +1638,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         flushLock.waitAndLock();
         try {
             for (Partition partition : partitionMap.values()) {
-                partition.store.setRight(0L);
+                partition.setRight(0L);
             }
             store.clear(position);
         } finally {
@@ -1288,7 +1662,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             //  如果被选为LEADER，index是不正确的。
             if (clearIndexStore) {
                 for (Partition partition : partitionMap.values()) {
-                    partition.store.setRight(0L);
+                    partition.setRight(0L);
                 }
             } else {
                 rollbackPartitions(position);
@@ -1363,6 +1737,26 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         return buffer;
     }
 
+    @Override
+    public JournalRegion readEntryRegion(long position, int length) throws IOException {
+        // 已提交的日志不会被截断，发送时再从文件读取也不会读到被覆盖的数据
+        long readablePosition = Math.min(store.flushPosition(), commitPosition());
+        if (position >= readablePosition) {
+            return null;
+        }
+        long t0 = System.nanoTime();
+        JournalRegion region = store.readRegion(position, (int) Math.min(length, readablePosition - position));
+        if (region.getLength() == 0) {
+            return null;
+        }
+        if (null != consumeMetric) {
+            consumeMetric.addCounter("ReadCount", 1);
+            consumeMetric.addLatency("ReadLatency", System.nanoTime() - t0);
+            consumeMetric.addTraffic("ReadTraffic", region.getLength());
+        }
+        return region;
+    }
+
     /**
      * 追加写入一段消息数据，给定的ByteBuffer必须满足如下条件：
      * 1. 连续且完整的多条消息。
@@ -1404,7 +1798,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                     Partition partition = partitionMap.get(indexItem.getPartition());
                     if (partition.store.right() == 0L) {
                         // 如果当前分区没有消息，以这条消息记录的索引序号为准
-                        partition.store.setRight(indexItem.getIndex() * IndexItem.STORAGE_SIZE);
+                        partition.setRight(indexItem.getIndex() * IndexItem.STORAGE_SIZE);
                     } else if (indexItem.getIndex() * IndexItem.STORAGE_SIZE != partition.store.right()) {
                         // 检查索引序号在分区内是否连续
                         throw new WriteException(
@@ -1423,7 +1817,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                         indexItem.setBatchMessageSize(batchSize);
                     }
 
-                    writeIndex(indexItem, partition.store);
+                    writeIndex(indexItem, partition, byteBuffer);
                     updateLastEntryTerm(byteBuffer);
                     byteBuffer.position(byteBuffer.position() + indexItem.getLength());
                     counter++;
@@ -1437,6 +1831,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                     produceMetric.addCounter("WriteCount", counter);
 
                 }
+                fireWriteEvent();
                 return position;
             } catch (Throwable t) {
                 onWriteException(start, partitionSnapshot , t);
@@ -1484,7 +1879,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             // 回滚分区索引
             partitionSnapshot.forEach((partition, snapshotPosition) -> {
                 try {
-                    partitionMap.get(partition).store.setRight(snapshotPosition);
+                    partitionMap.get(partition).setRight(snapshotPosition);
                 } catch (Throwable e) {
                     logger.warn("Rollback partition failed! " +
                                     "topic: {}, group: {}, partition: {}, rollback position: {}, current position: {}, store: {}.",
@@ -1532,11 +1927,42 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
             belt = this.callbackMap.get(QosLevel.REPLICATION);
             belt.callbackBefore(this.commitPosition());
 
+            EventListener<StoreCommitEvent> listener = this.commitListener;
+            if (null != listener) {
+                try {
+                    listener.onEvent(new StoreCommitEvent(topic, partitionGroup, position));
+                } catch (Throwable t) {
+                    logger.warn("Commit listener exception, topic: {}, partitionGroup: {}.", topic, partitionGroup, t);
+                }
+            }
         }
 
         belt = this.callbackMap.get(QosLevel.ALL);
-        belt.callbackBefore(Math.min(this.flushPosition(), this.commitPosition()));
+        belt.callbackBefore(Math.min(this.persistPosition(), this.commitPosition()));
+
+    }
+
+    /**
+     * 设置消息提交监听器，监听器在提交线程中同步执行
+     */
+    void setCommitListener(EventListener<StoreCommitEvent> commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    @Override
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
 
+    private void fireWriteEvent() {
+        Runnable listener = this.writeListener;
+        if (null != listener) {
+            try {
+                listener.run();
+            } catch (Throwable t) {
+                logger.warn("Write listener exception, topic: {}, partitionGroup: {}.", topic, partitionGroup, t);
+            }
+        }
     }
 
     @Override
@@ -1574,27 +2000,93 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         if (null != store) store.close();
         for (Partition partition : partitionMap.values()) {
             partition.store.close();
+            partition.closeIndices();
         }
     }
 
+    /**
+     * 按标签索引跳过一定不包含指定标签的消息，返回值不会超过第一条未提交消息的序号，
+     * 未提交的消息可能被回滚，不能跳过。
+     */
+    public long nextIndexOfFlags(short partition, long index, long flagMask) {
+        Partition p = partitionMap.get(partition);
+        if (null == p || null == p.flagIndex) {
+            return index;
+        }
+        long next = Math.min(p.flagIndex.next(index, flagMask), p.store.right() / IndexItem.STORAGE_SIZE);
+        if (next <= index) {
+            return index;
+        }
+        try {
+            return committedIndex(p.store, index, next);
+        } catch (IOException e) {
+            logger.warn("Read index failed, partition: {}, index: {}, store: {}.", partition, index, base.getAbsolutePath(), e);
+            return index;
+        }
+    }
+
+    /**
+     * 在[from, to)中折半查找第一条消息位置不小于提交位置的序号，都已经提交时返回to。
+     */
+    private long committedIndex(IndexStore indexStore, long from, long to) throws IOException {
+        long commitPosition = commitPosition();
+        if (isCommitted(indexStore, to - 1, commitPosition)) {
+            return to;
+        }
+        long left = from, right = to - 1;
+        while (left < right) {
+            long mid = (left + right) >>> 1;
+            if (isCommitted(indexStore, mid, commitPosition)) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    private boolean isCommitted(IndexStore indexStore, long index, long commitPosition) throws IOException {
+        IndexItem indexItem = indexStore.read(index * IndexItem.STORAGE_SIZE);
+        return null != indexItem && indexItem.getOffset() < commitPosition;
+    }
+
     /**
      * 根据消息存储时间获取索引。
-     * 如果找到，返回最后一条 “存储时间 <= timestamp” 消息的索引。
+     * 如果找到，返回第一条 “存储时间 >= timestamp” 消息的索引。
      * 如果找不到，返回负值。
+     * 先在稀疏时间索引中定位区间，再在区间内折半查找。
      */
     public long getIndex(short partition, long timestamp) {
 
         try {
-            if (partitionMap.containsKey(partition)) {
-                PositioningStore<IndexItem> indexStore = partitionMap.get(partition).store;
-                long searchedIndex = binarySearchByTimestamp(timestamp, store, indexStore, indexStore.left() / IndexItem.STORAGE_SIZE, indexStore.right() / IndexItem.STORAGE_SIZE - 1);
+            Partition p = partitionMap.get(partition);
+            if (null != p) {
+                IndexStore indexStore = p.store;
+                long leftIndex = indexStore.left() / IndexItem.STORAGE_SIZE;
+                long rightIndex = indexStore.right() / IndexItem.STORAGE_SIZE - 1;
+                if (rightIndex < leftIndex) {
+                    return -1L;
+                }
 
-                // 考虑到有可能出现连续n条消息时间相同，找到这n条消息的第一条
-                while (searchedIndex - 1 >= indexStore.left() && timestamp <= getStorageTimestamp(store, indexStore, searchedIndex - 1)) {
-                    searchedIndex--;
+                long from = leftIndex, to = rightIndex;
+                if (null != p.timeIndex) {
+                    long[] range = p.timeIndex.range(timestamp);
+                    if (range[0] > from && range[0] <= to) {
+                        from = range[0];
+                    }
+                    if (range[1] >= from && range[1] < to) {
+                        to = range[1];
+                    }
                 }
-                return searchedIndex;
 
+                // 区间内最后一条消息的存储时间仍小于timestamp，扩大到分区的最后一条消息
+                if (to < rightIndex && getStorageTimestamp(store, indexStore, to) < timestamp) {
+                    to = rightIndex;
+                }
+                if (getStorageTimestamp(store, indexStore, to) < timestamp) {
+                    return -1L;
+                }
+                return binarySearchByTimestamp(timestamp, store, indexStore, from, to);
             }
         } catch (PositionOverflowException | PositionUnderflowException | IOException e) {
             logger.warn("Exception: ", e);
@@ -1603,46 +2095,35 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
     }
 
     private long getStorageTimestamp(PositioningStore<ByteBuffer> journalStore,
-                                     PositioningStore<IndexItem> indexStore,
+                                     IndexStore indexStore,
                                      long index) throws IOException {
         IndexItem indexItem = indexStore.read(index * IndexItem.STORAGE_SIZE);
         ByteBuffer journal = journalStore.read(indexItem.getOffset(), indexItem.getLength());
 
-        return MessageParser.getLong(journal, MessageParser.CLIENT_TIMESTAMP) + MessageParser.getInt(journal, MessageParser.STORAGE_TIMESTAMP);
+        return getStorageTimestamp(journal);
+    }
+
+    private static long getStorageTimestamp(ByteBuffer message) {
+        return MessageParser.getLong(message, MessageParser.CLIENT_TIMESTAMP) + MessageParser.getInt(message, MessageParser.STORAGE_TIMESTAMP);
     }
 
-    // 折半查找
+    // 折半查找区间 [leftIndexInclude, rightIndexInclude] 内第一条 “存储时间 >= timestamp” 的消息，
+    // 调用方保证最后一条消息满足条件
     private long binarySearchByTimestamp(long timestamp,
                                          PositioningStore<ByteBuffer> journalStore,
-                                         PositioningStore<IndexItem> indexStore,
+                                         IndexStore indexStore,
                                          long leftIndexInclude,
                                          long rightIndexInclude) throws IOException {
 
-        if (rightIndexInclude <= leftIndexInclude) {
-            return -1L;
-        }
-
-        if (timestamp <= getStorageTimestamp(journalStore, indexStore, leftIndexInclude)) {
-            return leftIndexInclude;
-        }
-
-        if (timestamp > getStorageTimestamp(journalStore, indexStore, rightIndexInclude)) {
-            return -1;
-        }
-
-        if (leftIndexInclude + 1 == rightIndexInclude) {
-            return rightIndexInclude;
-        }
-
-        long mid = leftIndexInclude + (rightIndexInclude - leftIndexInclude) / 2;
-
-        long midTimestamp = getStorageTimestamp(journalStore, indexStore, mid);
-
-        if (timestamp < midTimestamp) {
-            return binarySearchByTimestamp(timestamp, journalStore, indexStore, leftIndexInclude, mid);
-        } else {
-            return binarySearchByTimestamp(timestamp, journalStore, indexStore, mid, rightIndexInclude);
+        while (leftIndexInclude < rightIndexInclude) {
+            long mid = leftIndexInclude + (rightIndexInclude - leftIndexInclude) / 2;
+            if (getStorageTimestamp(journalStore, indexStore, mid) < timestamp) {
+                leftIndexInclude = mid + 1;
+            } else {
+                rightIndexInclude = mid;
+            }
         }
+        return leftIndexInclude;
     }
 
     QosStore getQosStore(QosLevel level) {
@@ -1664,11 +2145,42 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
     }
 
     private static class Partition {
-        private final PositioningStore<IndexItem> store;
+        private final IndexStore store;
+        private final TimeIndex timeIndex;
+        private final FlagIndex flagIndex;
+        private final ReadAhead.Streams readAheadStreams = new ReadAhead.Streams();
 
-
-        private Partition(PositioningStore<IndexItem> store) {
+        private Partition(IndexStore store, TimeIndex timeIndex, FlagIndex flagIndex) {
             this.store = store;
+            this.timeIndex = timeIndex;
+            this.flagIndex = flagIndex;
+        }
+
+        private void setRight(long position) throws IOException {
+            store.setRight(position);
+            if (null != timeIndex) {
+                timeIndex.rollbackTo(store.right() / IndexItem.STORAGE_SIZE);
+            }
+            if (null != flagIndex) {
+                flagIndex.rollbackTo(store.right() / IndexItem.STORAGE_SIZE);
+            }
+        }
+
+        private void closeIndices() {
+            if (null != timeIndex) {
+                try {
+                    timeIndex.close();
+                } catch (IOException e) {
+                    logger.warn("Close time index {} failed!", store.base().getAbsolutePath(), e);
+                }
+            }
+            if (null != flagIndex) {
+                try {
+                    flagIndex.close();
+                } catch (IOException e) {
+                    logger.warn("Close flag index {} failed!", store.base().getAbsolutePath(), e);
+                }
+            }
         }
 
         private void rollbackTo(long messagePosition) throws IOException {
@@ -1684,7 +2196,7 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
                 indexPosition -= IndexItem.STORAGE_SIZE;
             }
 
-            store.setRight(indexPosition <= store.left() ? 0L : indexPosition + IndexItem.STORAGE_SIZE);
+            setRight(indexPosition <= store.left() ? 0L : indexPosition + IndexItem.STORAGE_SIZE);
 
         }
 
@@ -1694,11 +2206,13 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         private final QosLevel qosLevel;
         private final EventListener<WriteResult> eventListener;
         private final ByteBuffer[] messages;
+        private final long timestamp;
 
         private WriteCommand(QosLevel qosLevel, EventListener<WriteResult> eventListener, ByteBuffer[] messages) {
             this.qosLevel = qosLevel;
             this.eventListener = eventListener;
             this.messages = messages;
+            this.timestamp = SystemClock.now();
         }
     }
 
@@ -1710,6 +2224,9 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         public static final long DEFAULT_WRITE_TIMEOUT_MS = 3000L;
         public static final long DEFAULT_MAX_DIRTY_SIZE = 10L * 1024 * 1024;
         public static final long DEFAULT_PRINT_METRIC_INTERVAL_MS = 0L;
+        public static final int DEFAULT_TIME_INDEX_INTERVAL = 1024;
+        public static final int DEFAULT_FLAG_INDEX_BLOCK_SIZE = 1024;
+        public static final PositioningStore.Config DEFAULT_COMPACT_INDEX_STORE_CONFIG = null;
 
         /**
          * 允许脏数据的最大长度，超过这个长度就阻塞写入。
@@ -1741,8 +2258,22 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
          */
         private final long printMetricIntervalMs;
 
+        /**
+         * 每隔多少条消息记录一条时间索引，小于等于0时不记录
+         */
+        private final int timeIndexInterval;
+
+        /**
+         * 标签索引每个索引块包含的消息数量，小于等于0时不记录
+         */
+        private final int flagIndexBlockSize;
+
         private final PositioningStore.Config storeConfig;
         private final PositioningStore.Config indexStoreConfig;
+        /**
+         * 紧凑格式索引块文件的配置，为null时使用定长格式的索引
+         */
+        private final PositioningStore.Config compactIndexStoreConfig;
 
         public Config() {
 
@@ -1756,14 +2287,40 @@ public class PartitionGroupStoreManager extends Service implements ReplicableSto
         public Config(int maxMessageLength, int writeRequestCacheSize, long flushIntervalMs,
                       long writeTimeoutMs, long maxDirtySize, long printMetricIntervalMs,
                       PositioningStore.Config storeConfig, PositioningStore.Config indexStoreConfig) {
+            this(maxMessageLength, writeRequestCacheSize, flushIntervalMs, writeTimeoutMs, maxDirtySize, printMetricIntervalMs,
+                    DEFAULT_TIME_INDEX_INTERVAL, storeConfig, indexStoreConfig);
+        }
+
+        public Config(int maxMessageLength, int writeRequestCacheSize, long flushIntervalMs,
+                      long writeTimeoutMs, long maxDirtySize, long printMetricIntervalMs, int timeIndexInterval,
+                      PositioningStore.Config storeConfig, PositioningStore.Config indexStoreConfig) {
+            this(maxMessageLength, writeRequestCacheSize, flushIntervalMs, writeTimeoutMs, maxDirtySize, printMetricIntervalMs,
+                    timeIndexInterval, storeConfig, indexStoreConfig, DEFAULT_COMPACT_INDEX_STORE_CONFIG);
+        }
+
+        public Config(int maxMessageLength, int writeRequestCacheSize, long flushIntervalMs,
+                      long writeTimeoutMs, long maxDirtySize, long printMetricIntervalMs, int timeIndexInterval,
+                      PositioningStore.Config storeConfig, PositioningStore.Config indexStoreConfig,
+                      PositioningStore.Config compactIndexStoreConfig) {
+            this(maxMessageLength, writeRequestCacheSize, flushIntervalMs, writeTimeoutMs, maxDirtySize, printMetricIntervalMs,
+                    timeIndexInterval, DEFAULT_FLAG_INDEX_BLOCK_SIZE, storeConfig, indexStoreConfig, compactIndexStoreConfig);
+        }
+
+        public Config(int maxMessageLength, int writeRequestCacheSize, long flushIntervalMs,
+                      long writeTimeoutMs, long maxDirtySize, long printMetricIntervalMs, int timeIndexInterval, int flagIndexBlockSize,
+                      PositioningStore.Config storeConfig, PositioningStore.Config indexStoreConfig,
+                      PositioningStore.Config compactIndexStoreConfig) {
             this.maxMessageLength = maxMessageLength;
             this.writeRequestCacheSize = writeRequestCacheSize;
             this.flushIntervalMs = flushIntervalMs;
             this.writeTimeoutMs = writeTimeoutMs;
             this.maxDirtySize = maxDirtySize;
             this.printMetricIntervalMs = printMetricIntervalMs;
+            this.timeIndexInterval = timeIndexInterval;
+            this.flagIndexBlockSize = flagIndexBlockSize;
             this.storeConfig = storeConfig;
             this.indexStoreConfig = indexStoreConfig;
+            this.compactIndexStoreConfig = compactIndexStoreConfig;
         }
     }
 
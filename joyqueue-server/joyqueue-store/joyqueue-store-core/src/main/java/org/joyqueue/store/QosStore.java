@@ -16,7 +16,7 @@
 package org.joyqueue.store;
 
 import org.joyqueue.domain.QosLevel;
-import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.index.IndexStore;
 import org.joyqueue.toolkit.concurrent.EventFuture;
 import org.joyqueue.toolkit.concurrent.EventListener;
 import org.slf4j.Logger;
@@ -77,7 +77,7 @@ public class QosStore implements PartitionGroupStore {
 
     @Override
     public long getTotalPhysicalStorageSize() {
-        return store.messageStore().physicalSize() + store.meetPositioningStores().stream().mapToLong(PositioningStore::physicalSize).sum();
+        return store.messageStore().physicalSize() + store.meetPositioningStores().stream().mapToLong(IndexStore::physicalSize).sum();
     }
 
     @Override
@@ -116,4 +116,14 @@ public class QosStore implements PartitionGroupStore {
 
         return store.read(partition, index, count, maxSize);
     }
+
+    @Override
+    public ReadResult readRegions(short partition, long index, int count, long maxSize) throws IOException {
+        return store.readRegions(partition, index, count, maxSize);
+    }
+
+    @Override
+    public long nextIndexOfFlags(short partition, long index, long flagMask) {
+        return store.nextIndexOfFlags(partition, index, flagMask);
+    }
 }
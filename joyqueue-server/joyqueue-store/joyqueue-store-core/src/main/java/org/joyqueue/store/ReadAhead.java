@@ -0,0 +1,203 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store;
+
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.index.IndexItem;
+import org.joyqueue.store.index.IndexStore;
+import org.joyqueue.store.utils.PreloadBufferPool;
+import org.joyqueue.toolkit.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 顺序读预读。
+ * <p>
+ * 消费落后时，消费者按索引顺序读取历史消息，读取映射文件时每次缺页都要同步等待读盘。
+ * 某个分区连续多次从上次读取结束的位置继续读取，并且读取位置远落后于最新消息时，
+ * 在后台线程中预读之后一段消息和索引所在的文件页。
+ * <p>
+ * 预读窗口从{@link #MIN_WINDOW_SIZE}开始，每次预读后加倍，直到最大窗口；读取不连续时重置。
+ * 缓存页内存不足时暂停预读，并把窗口重置为最小值。
+ * <p>
+ * 同一个分区可能同时被多个消费者读取，每个分区最多跟踪{@link Streams#MAX_STREAMS}个顺序读。
+ */
+public class ReadAhead {
+    private static final Logger logger = LoggerFactory.getLogger(ReadAhead.class);
+    static final int MIN_WINDOW_SIZE = 1024 * 1024;
+    // 连续顺序读取多少次之后开始预读
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+    private static final int QUEUE_SIZE = 1024;
+    private final int maxWindowSize;
+    private final int threads;
+    private final PreloadBufferPool bufferPool;
+    private volatile ThreadPoolExecutor executor;
+    private final AtomicLong preloadedSize = new AtomicLong(0L);
+
+    /**
+     * @param maxWindowSize 最大预读窗口，字节
+     * @param threads       预读线程数量
+     * @param bufferPool    缓存页管理器
+     */
+    public ReadAhead(int maxWindowSize, int threads, PreloadBufferPool bufferPool) {
+        this.maxWindowSize = Math.max(maxWindowSize, MIN_WINDOW_SIZE);
+        this.threads = threads;
+        this.bufferPool = bufferPool;
+        start();
+    }
+
+    /**
+     * 启动预读线程，创建时已经启动，调用stop()之后可以再次启动
+     */
+    public synchronized void start() {
+        if (null == executor || executor.isShutdown()) {
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE), new NamedThreadFactory("StoreReadAheadThread", true),
+                    new ThreadPoolExecutor.DiscardPolicy());
+        }
+    }
+
+    /**
+     * 读取消息后调用，检测顺序读并提交预读。
+     *
+     * @param streams      分区的顺序读状态
+     * @param index        本次读取的起始索引序号
+     * @param count        本次读取到的索引数量
+     * @param journalStart 本次读取的第一条消息在Journal中的位置
+     * @param journalEnd   本次读取的最后一条消息在Journal中的结束位置
+     * @param indexStore   分区索引
+     * @param journal      Journal
+     */
+    void onRead(Streams streams, long index, int count, long journalStart, long journalEnd,
+                IndexStore indexStore, PositioningStore<?> journal) {
+        if (count <= 0 || journalEnd <= journalStart) {
+            return;
+        }
+        long journalFrom, journalTo, indexFrom, indexTo;
+        synchronized (streams) {
+            Sequence sequence = streams.match(index);
+            sequence.lastIndex = index;
+            sequence.nextIndex = index + count;
+            if (++sequence.sequentialCount < SEQUENTIAL_THRESHOLD) {
+                return;
+            }
+            // 接近最新消息时，数据大多还在写入缓存或者刚刚被访问过，不需要预读
+            if (journal.right() - journalEnd <= sequence.windowSize) {
+                return;
+            }
+            if (bufferPool.isUnderPressure()) {
+                sequence.windowSize = MIN_WINDOW_SIZE;
+                return;
+            }
+            // 之前预读的数据还够用
+            if (sequence.journalPreloaded - journalEnd >= sequence.windowSize / 2) {
+                return;
+            }
+
+            journalFrom = Math.max(journalEnd, sequence.journalPreloaded);
+            journalTo = journalEnd + sequence.windowSize;
+            // 按本次读取的平均消息长度估算窗口内的消息数量
+            long averageSize = Math.max((journalEnd - journalStart) / count, 1L);
+            indexFrom = Math.max(sequence.nextIndex * IndexItem.STORAGE_SIZE, sequence.indexPreloaded);
+            indexTo = (sequence.nextIndex + sequence.windowSize / averageSize) * IndexItem.STORAGE_SIZE;
+
+            sequence.journalPreloaded = journalTo;
+            sequence.indexPreloaded = Math.max(indexTo, sequence.indexPreloaded);
+            sequence.windowSize = Math.min(sequence.windowSize * 2, maxWindowSize);
+        }
+
+        executor.execute(() -> {
+            try {
+                if (indexTo > indexFrom) {
+                    indexStore.preload(indexFrom, (int) (indexTo - indexFrom));
+                }
+                journal.preload(journalFrom, (int) (journalTo - journalFrom));
+                preloadedSize.addAndGet(journalTo - journalFrom);
+            } catch (Throwable t) {
+                logger.debug("Read ahead failed, journal: {}, position: {}.", journal.base().getAbsolutePath(), journalFrom, t);
+            }
+        });
+    }
+
+    /**
+     * 累计预读的Journal字节数
+     */
+    public long preloadedSize() {
+        return preloadedSize.get();
+    }
+
+    public synchronized void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一个分区上的所有顺序读
+     */
+    static class Streams {
+        static final int MAX_STREAMS = 4;
+        private final Sequence[] sequences = new Sequence[MAX_STREAMS];
+        private long clock = 0L;
+
+        /**
+         * 查找从index继续读取的顺序读，找不到时替换最久没有读取的那个
+         */
+        private Sequence match(long index) {
+            clock++;
+            Sequence oldest = null;
+            for (int i = 0; i < sequences.length; i++) {
+                Sequence sequence = sequences[i];
+                if (null == sequence) {
+                    sequence = sequences[i] = new Sequence();
+                    sequence.lastAccess = clock;
+                    return sequence;
+                }
+                if (index > sequence.lastIndex && index <= sequence.nextIndex) {
+                    sequence.lastAccess = clock;
+                    return sequence;
+                }
+                if (null == oldest || sequence.lastAccess < oldest.lastAccess) {
+                    oldest = sequence;
+                }
+            }
+            oldest.reset();
+            oldest.lastAccess = clock;
+            return oldest;
+        }
+    }
+
+    private static class Sequence {
+        private long lastIndex = -1L;
+        private long nextIndex = -1L;
+        private long lastAccess = 0L;
+        private int sequentialCount = 0;
+        private int windowSize = MIN_WINDOW_SIZE;
+        // 已经提交预读的Journal和索引位置
+        private long journalPreloaded = -1L;
+        private long indexPreloaded = -1L;
+
+        private void reset() {
+            lastIndex = nextIndex = -1L;
+            sequentialCount = 0;
+            windowSize = MIN_WINDOW_SIZE;
+            journalPreloaded = indexPreloaded = -1L;
+        }
+    }
+}
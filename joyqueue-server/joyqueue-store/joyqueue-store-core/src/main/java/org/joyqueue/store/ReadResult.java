@@ -35,6 +35,11 @@ public class ReadResult {
      */
     private ByteBuffer[] messages;
 
+    /**
+     * 消息所在的文件区域，仅由{@link PartitionGroupStore#readRegions(short, long, int, long)}返回
+     */
+    private JournalRegion[] regions;
+
     /**
      * 给定index超过队尾，说明暂时没有消息可以消费了。
      */
@@ -56,6 +61,14 @@ public class ReadResult {
         this.messages = messages;
     }
 
+    public JournalRegion[] getRegions() {
+        return regions;
+    }
+
+    public void setRegions(JournalRegion[] regions) {
+        this.regions = regions;
+    }
+
     public boolean isEop() {
         return eop;
     }
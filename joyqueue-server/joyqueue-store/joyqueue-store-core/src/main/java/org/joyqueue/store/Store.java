@@ -17,9 +17,12 @@ package org.joyqueue.store;
 
 import org.joyqueue.domain.QosLevel;
 import org.joyqueue.monitor.BufferPoolMonitorInfo;
+import org.joyqueue.store.event.StoreCommitEvent;
 import org.joyqueue.store.event.StoreEvent;
 import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.index.CompactIndexStore;
 import org.joyqueue.store.index.IndexItem;
+import org.joyqueue.store.nsm.VirtualThreadExecutor;
 import org.joyqueue.store.replication.ReplicableStore;
 import org.joyqueue.store.transaction.TransactionStore;
 import org.joyqueue.store.transaction.TransactionStoreManager;
@@ -27,6 +30,7 @@ import org.joyqueue.store.utils.PreloadBufferPool;
 import org.joyqueue.toolkit.concurrent.EventListener;
 import org.joyqueue.toolkit.config.PropertySupplier;
 import org.joyqueue.toolkit.config.PropertySupplierAware;
+import org.joyqueue.toolkit.format.Format;
 import org.joyqueue.toolkit.service.Service;
 import org.joyqueue.toolkit.time.SystemClock;
 import org.slf4j.Logger;
@@ -40,6 +44,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -60,6 +65,11 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
     private static final String TOPICS_DIR = "topics";
     private static final String TX_DIR = "tx";
     private static final String DEL_PREFIX = ".d.";
+    // 虚拟线程执行器参数，见VirtualThreadExecutor
+    private static final long VIRTUAL_THREAD_KEEP_ALIVE_MS = 10L;
+    private static final long VIRTUAL_THREAD_MAX_INTERVAL_MS = 50L;
+    private static final int VIRTUAL_THREAD_STEPS = 10;
+    private static final long VIRTUAL_THREAD_MAX_USE_TIME_MS = 20L;
 
     private final Map<String /* Partition Group，格式为：[topic]/[group index] */, PartitionGroupStoreManager> storeMap = new HashMap<>();
     private final Map<String, TransactionStoreManager> txStoreMap = new HashMap<>();
@@ -69,6 +79,13 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
     private PropertySupplier propertySupplier;
     // 文件锁，防止同一Store目录被多个进程读写
     private StoreLock storeLock;
+    // 所有Partition Group共享的写入、刷盘线程池，仅在开启虚拟线程时使用
+    private VirtualThreadExecutor writeExecutor, flushExecutor;
+    // 按磁盘分组提交的刷盘器，仅在开启分组提交时使用
+    private GroupCommitFlusher groupCommitFlusher;
+    private ReadAhead readAhead;
+    // 消息提交监听器
+    private final List<EventListener<StoreCommitEvent>> commitListeners = new CopyOnWriteArrayList<>();
 
     public Store() {
         //do nothing
@@ -98,9 +115,34 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
             System.setProperty(PreloadBufferPool.PRINT_METRIC_INTERVAL_MS_KEY, String.valueOf(config.getPrintMetricIntervalMs()));
             this.bufferPool = PreloadBufferPool.getInstance();
         }
-        this.bufferPool.addPreLoad(config.getIndexFileSize(), config.getPreLoadBufferCoreCount(), config.getPreLoadBufferMaxCount());
-        this.bufferPool.addPreLoad(config.getMessageFileSize(), config.getPreLoadBufferCoreCount(), config.getPreLoadBufferMaxCount());
+        this.bufferPool.addPreLoad(config.getIndexFileSize(), config.getPreLoadBufferCoreCount(), config.getPreLoadBufferMaxCount(),
+                config.getPreLoadBufferIndexMemoryRatio());
+        this.bufferPool.addPreLoad(config.getMessageFileSize(), config.getPreLoadBufferCoreCount(), config.getPreLoadBufferMaxCount(),
+                config.getPreLoadBufferMessageMemoryRatio());
+
+        // 初始化共享的写入、刷盘线程池
+        if (config.isVirtualThreadEnable() && writeExecutor == null) {
+            writeExecutor = new VirtualThreadExecutor("StoreWriteThread",
+                    VIRTUAL_THREAD_KEEP_ALIVE_MS, VIRTUAL_THREAD_MAX_INTERVAL_MS, VIRTUAL_THREAD_STEPS,
+                    VIRTUAL_THREAD_MAX_USE_TIME_MS, config.getVirtualThreadWriteCount());
+            flushExecutor = new VirtualThreadExecutor("StoreFlushThread",
+                    VIRTUAL_THREAD_KEEP_ALIVE_MS, config.getFlushIntervalMs(), VIRTUAL_THREAD_STEPS,
+                    VIRTUAL_THREAD_MAX_USE_TIME_MS, config.getVirtualThreadFlushCount());
+            logger.info("Store virtual thread enabled, write threads: {}, flush threads: {}.",
+                    writeExecutor.getThreadCount(), flushExecutor.getThreadCount());
+        }
+
+        // 初始化分组提交刷盘器
+        if (config.isGroupCommitEnable() && groupCommitFlusher == null) {
+            groupCommitFlusher = new GroupCommitFlusher(config.getFlushIntervalMs(), config.isGroupCommitForce());
+            logger.info("Store group commit enabled, force: {}.", config.isGroupCommitForce());
+        }
 
+        // 初始化顺序读预读
+        if (config.getReadAheadMaxSize() > 0 && readAhead == null) {
+            readAhead = new ReadAhead(config.getReadAheadMaxSize(), Math.max(config.getReadAheadThreads(), 1), bufferPool);
+            logger.info("Store read ahead enabled, max window: {}.", Format.formatSize(config.getReadAheadMaxSize()));
+        }
     }
 
     @Override
@@ -109,6 +151,15 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
 
         logger.info("Starting store {}...", base.getPath());
 
+        // 重新启动时，共享线程已经在doStop()中停止，分区组仍然持有它们的引用，需要在分区组启动前重新启动
+        if (null != writeExecutor) {
+            writeExecutor.start();
+            flushExecutor.start();
+        }
+        if (null != readAhead) {
+            readAhead.start();
+        }
+
         for (PartitionGroupStoreManager manger : storeMap.values()) {
             if (!manger.isStarted()) manger.start();
         }
@@ -128,6 +179,18 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
             p.stop();
         });
 
+        // 只停止不释放，分区组仍然持有这些共享组件，重新启动时在doStart()中再次启动
+        if (null != writeExecutor) {
+            writeExecutor.stop();
+            flushExecutor.stop();
+        }
+        if (null != groupCommitFlusher) {
+            groupCommitFlusher.stop();
+        }
+        if (null != readAhead) {
+            readAhead.stop();
+        }
+
         storeLock.unlock();
 
         logger.info("Store {} stopped.", base.getPath());
@@ -247,7 +310,8 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
             File groupBase = new File(base, getPartitionGroupRelPath(topic, partitionGroup));
             partitionGroupStoreManger = new PartitionGroupStoreManager(topic, partitionGroup, groupBase
                     , getPartitionGroupConfig(config)
-                    , bufferPool);
+                    , bufferPool, writeExecutor, flushExecutor, groupCommitFlusher, readAhead);
+            partitionGroupStoreManger.setCommitListener(this::fireCommitEvent);
             partitionGroupStoreManger.recover();
             if (isStarted()) {
                 partitionGroupStoreManger.start();
@@ -273,10 +337,17 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
 
         PositioningStore.Config messageConfig = getMessageStoreConfig(config);
         PositioningStore.Config indexConfig = getIndexStoreConfig(config);
+        PositioningStore.Config compactIndexConfig = config.isIndexCompactEnable() ? getCompactIndexStoreConfig(config) : null;
         return new PartitionGroupStoreManager.Config(
                 config.getMaxMessageLength(), config.getWriteRequestCacheSize(), config.getFlushIntervalMs(),
                 config.getWriteTimeoutMs(), config.getMaxDirtySize(),
-                config.getPrintMetricIntervalMs(), messageConfig, indexConfig);
+                config.getPrintMetricIntervalMs(), config.getTimeIndexInterval(), config.getFlagIndexBlockSize(),
+                messageConfig, indexConfig, compactIndexConfig);
+    }
+
+    private PositioningStore.Config getCompactIndexStoreConfig(StoreConfig config) {
+        return new PositioningStore.Config(config.getIndexFileSize(),
+                config.getFileHeaderSize(), config.getDiskFullRatio(), CompactIndexStore.MAX_BLOCK_SIZE, config.isIndexFileLoadOnRead(), config.isFlushForce());
     }
 
     private PositioningStore.Config getIndexStoreConfig(StoreConfig config) {
@@ -364,6 +435,22 @@ public class Store extends Service implements StoreService, Closeable, PropertyS
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void addCommitListener(EventListener<StoreCommitEvent> listener) {
+        commitListeners.add(listener);
+    }
+
+    @Override
+    public void removeCommitListener(EventListener<StoreCommitEvent> listener) {
+        commitListeners.remove(listener);
+    }
+
+    private void fireCommitEvent(StoreCommitEvent event) {
+        for (EventListener<StoreCommitEvent> listener : commitListeners) {
+            listener.onEvent(event);
+        }
+    }
+
     private String getPartitionGroupRelPath(String topic, int partitionGroup) {
         return TOPICS_DIR + File.separator + topic.replace('/', '@') + File.separator + partitionGroup;
     }
@@ -32,10 +32,20 @@ public class StoreConfig {
     public static final int DEFAULT_INDEX_FILE_SIZE = 512 * 1024;
     public static final int DEFAULT_PRE_LOAD_BUFFER_CORE_COUNT = 3;
     public static final int DEFAULT_PRE_LOAD_BUFFER_MAX_COUNT = 10;
+    public static final int DEFAULT_PRE_LOAD_BUFFER_MESSAGE_MEMORY_RATIO = 80;
+    public static final int DEFAULT_PRE_LOAD_BUFFER_INDEX_MEMORY_RATIO = 20;
     public static final long DEFAULT_PRINT_METRIC_INTERVAL_MS = 0;
     public static final boolean DEFAULT_MESSAGE_FILE_LOAD_ON_READ = false;
     public static final boolean DEFAULT_INDEX_FILE_LOAD_ON_READ = true;
     public static final boolean DEFAULT_FLUSH_FORCE = true;
+    public static final boolean DEFAULT_VIRTUAL_THREAD_ENABLE = false;
+    public static final int DEFAULT_VIRTUAL_THREAD_WRITE_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_VIRTUAL_THREAD_FLUSH_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final boolean DEFAULT_GROUP_COMMIT_ENABLE = false;
+    public static final boolean DEFAULT_GROUP_COMMIT_FORCE = false;
+    public static final boolean DEFAULT_INDEX_COMPACT_ENABLE = false;
+    public static final int DEFAULT_READ_AHEAD_MAX_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD_THREADS = 2;
 
     public static final String STORE_PATH = "/store";
     /**
@@ -59,6 +69,14 @@ public class StoreConfig {
      * 预加载DirectBuffer的最大数量
      */
     private int preLoadBufferMaxCount = DEFAULT_PRE_LOAD_BUFFER_MAX_COUNT;
+    /**
+     * 消息文件缓存页的内存预算占缓存最大内存的百分比
+     */
+    private int preLoadBufferMessageMemoryRatio = DEFAULT_PRE_LOAD_BUFFER_MESSAGE_MEMORY_RATIO;
+    /**
+     * 索引文件缓存页的内存预算占缓存最大内存的百分比
+     */
+    private int preLoadBufferIndexMemoryRatio = DEFAULT_PRE_LOAD_BUFFER_INDEX_MEMORY_RATIO;
 
     private long printMetricIntervalMs = DEFAULT_PRINT_METRIC_INTERVAL_MS;
 
@@ -89,6 +107,56 @@ public class StoreConfig {
 
     private int diskFullRatio = PositioningStore.Config.DEFAULT_DISK_FULL_RATIO;
 
+    /**
+     * 是否使用共享的虚拟线程池执行所有Partition Group的写入和刷盘
+     */
+    private boolean virtualThreadEnable = DEFAULT_VIRTUAL_THREAD_ENABLE;
+
+    /**
+     * 共享写入线程数量
+     */
+    private int virtualThreadWriteCount = DEFAULT_VIRTUAL_THREAD_WRITE_COUNT;
+
+    /**
+     * 共享刷盘线程数量
+     */
+    private int virtualThreadFlushCount = DEFAULT_VIRTUAL_THREAD_FLUSH_COUNT;
+
+    /**
+     * 是否按磁盘分组提交刷盘
+     */
+    private boolean groupCommitEnable = DEFAULT_GROUP_COMMIT_ENABLE;
+
+    /**
+     * 分组提交时，每轮刷盘是否对Journal执行fsync，每个Partition Group各执行一次
+     */
+    private boolean groupCommitForce = DEFAULT_GROUP_COMMIT_FORCE;
+
+    /**
+     * 每隔多少条消息记录一条时间索引
+     */
+    private int timeIndexInterval = PartitionGroupStoreManager.Config.DEFAULT_TIME_INDEX_INTERVAL;
+
+    /**
+     * 标签索引每个索引块包含的消息数量
+     */
+    private int flagIndexBlockSize = PartitionGroupStoreManager.Config.DEFAULT_FLAG_INDEX_BLOCK_SIZE;
+
+    /**
+     * 是否使用紧凑格式的分区索引
+     */
+    private boolean indexCompactEnable = DEFAULT_INDEX_COMPACT_ENABLE;
+
+    /**
+     * 顺序读最大预读窗口
+     */
+    private int readAheadMaxSize = DEFAULT_READ_AHEAD_MAX_SIZE;
+
+    /**
+     * 预读线程数量
+     */
+    private int readAheadThreads = DEFAULT_READ_AHEAD_THREADS;
+
 
     private PropertySupplier propertySupplier;
 
@@ -196,6 +264,22 @@ public class StoreConfig {
         this.preLoadBufferMaxCount = preLoadBufferMaxCount;
     }
 
+    public int getPreLoadBufferMessageMemoryRatio() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.PRELOAD_BUFFER_MESSAGE_MEMORY_RATIO, this.preLoadBufferMessageMemoryRatio);
+    }
+
+    public void setPreLoadBufferMessageMemoryRatio(int preLoadBufferMessageMemoryRatio) {
+        this.preLoadBufferMessageMemoryRatio = preLoadBufferMessageMemoryRatio;
+    }
+
+    public int getPreLoadBufferIndexMemoryRatio() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.PRELOAD_BUFFER_INDEX_MEMORY_RATIO, this.preLoadBufferIndexMemoryRatio);
+    }
+
+    public void setPreLoadBufferIndexMemoryRatio(int preLoadBufferIndexMemoryRatio) {
+        this.preLoadBufferIndexMemoryRatio = preLoadBufferIndexMemoryRatio;
+    }
+
     public long getMaxDirtySize() {
         return PropertySupplier.getValue(propertySupplier, StoreConfigKey.MAX_DIRTY_SIZE, this.maxDirtySize);
     }
@@ -229,5 +313,84 @@ public class StoreConfig {
         return PropertySupplier.getValue(propertySupplier, StoreConfigKey.INDEX_FILE_LOAD_ON_READ, DEFAULT_INDEX_FILE_LOAD_ON_READ);
     }
 
-}
+    public boolean isVirtualThreadEnable() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.VIRTUAL_THREAD_ENABLE, this.virtualThreadEnable);
+    }
+
+    public void setVirtualThreadEnable(boolean virtualThreadEnable) {
+        this.virtualThreadEnable = virtualThreadEnable;
+    }
+
+    public int getVirtualThreadWriteCount() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.VIRTUAL_THREAD_WRITE_COUNT, this.virtualThreadWriteCount);
+    }
 
+    public void setVirtualThreadWriteCount(int virtualThreadWriteCount) {
+        this.virtualThreadWriteCount = virtualThreadWriteCount;
+    }
+
+    public int getVirtualThreadFlushCount() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.VIRTUAL_THREAD_FLUSH_COUNT, this.virtualThreadFlushCount);
+    }
+
+    public void setVirtualThreadFlushCount(int virtualThreadFlushCount) {
+        this.virtualThreadFlushCount = virtualThreadFlushCount;
+    }
+
+    public boolean isGroupCommitEnable() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.GROUP_COMMIT_ENABLE, this.groupCommitEnable);
+    }
+
+    public void setGroupCommitEnable(boolean groupCommitEnable) {
+        this.groupCommitEnable = groupCommitEnable;
+    }
+
+    public boolean isGroupCommitForce() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.GROUP_COMMIT_FORCE, this.groupCommitForce);
+    }
+
+    public void setGroupCommitForce(boolean groupCommitForce) {
+        this.groupCommitForce = groupCommitForce;
+    }
+
+    public int getTimeIndexInterval() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.TIME_INDEX_INTERVAL, this.timeIndexInterval);
+    }
+
+    public void setTimeIndexInterval(int timeIndexInterval) {
+        this.timeIndexInterval = timeIndexInterval;
+    }
+
+    public int getFlagIndexBlockSize() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.FLAG_INDEX_BLOCK_SIZE, this.flagIndexBlockSize);
+    }
+
+    public void setFlagIndexBlockSize(int flagIndexBlockSize) {
+        this.flagIndexBlockSize = flagIndexBlockSize;
+    }
+
+    public boolean isIndexCompactEnable() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.INDEX_COMPACT_ENABLE, this.indexCompactEnable);
+    }
+
+    public void setIndexCompactEnable(boolean indexCompactEnable) {
+        this.indexCompactEnable = indexCompactEnable;
+    }
+
+    public int getReadAheadMaxSize() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.READ_AHEAD_MAX_SIZE, this.readAheadMaxSize);
+    }
+
+    public void setReadAheadMaxSize(int readAheadMaxSize) {
+        this.readAheadMaxSize = readAheadMaxSize;
+    }
+
+    public int getReadAheadThreads() {
+        return PropertySupplier.getValue(propertySupplier, StoreConfigKey.READ_AHEAD_THREADS, this.readAheadThreads);
+    }
+
+    public void setReadAheadThreads(int readAheadThreads) {
+        this.readAheadThreads = readAheadThreads;
+    }
+
+}
@@ -18,9 +18,11 @@ package org.joyqueue.store;
 import org.joyqueue.store.file.PositioningStore;
 import org.joyqueue.toolkit.config.PropertyDef;
 
+import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_FLAG_INDEX_BLOCK_SIZE;
 import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_FLUSH_INTERVAL_MS;
 import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_MAX_DIRTY_SIZE;
 import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_MAX_MESSAGE_LENGTH;
+import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_TIME_INDEX_INTERVAL;
 import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_WRITE_REQUEST_CACHE_SIZE;
 import static org.joyqueue.store.PartitionGroupStoreManager.Config.DEFAULT_WRITE_TIMEOUT_MS;
 import static org.joyqueue.store.file.PositioningStore.Config.DEFAULT_FILE_HEADER_SIZE;
@@ -59,6 +61,14 @@ public enum StoreConfigKey implements PropertyDef {
      * 预加载DirectBuffer的最大数量
      */
     PRELOAD_BUFFER_MAX_COUNT("store.preload.buffer.max.count", StoreConfig.DEFAULT_PRE_LOAD_BUFFER_MAX_COUNT, Type.INT),
+    /**
+     * 消息文件缓存页的内存预算占缓存最大内存的百分比，只在总内存超过清理阈值时生效，0表示不限制
+     */
+    PRELOAD_BUFFER_MESSAGE_MEMORY_RATIO("store.preload.buffer.message.memory.ratio", StoreConfig.DEFAULT_PRE_LOAD_BUFFER_MESSAGE_MEMORY_RATIO, Type.INT),
+    /**
+     * 索引文件缓存页的内存预算占缓存最大内存的百分比，只在总内存超过清理阈值时生效，0表示不限制
+     */
+    PRELOAD_BUFFER_INDEX_MEMORY_RATIO("store.preload.buffer.index.memory.ratio", StoreConfig.DEFAULT_PRE_LOAD_BUFFER_INDEX_MEMORY_RATIO, Type.INT),
     /**
      * 最大消息长度
      */
@@ -88,7 +98,54 @@ public enum StoreConfigKey implements PropertyDef {
 
     DISK_FULL_RATIO("store.disk.full.ratio", PositioningStore.Config.DEFAULT_DISK_FULL_RATIO, Type.INT),
 
-    PRINT_METRIC_INTERVAL_MS("print.metric.interval", StoreConfig.DEFAULT_PRINT_METRIC_INTERVAL_MS, Type.LONG);
+    PRINT_METRIC_INTERVAL_MS("print.metric.interval", StoreConfig.DEFAULT_PRINT_METRIC_INTERVAL_MS, Type.LONG),
+
+    /**
+     * 是否使用共享的虚拟线程池执行所有Partition Group的写入和刷盘
+     */
+    VIRTUAL_THREAD_ENABLE("store.virtual.thread.enable", StoreConfig.DEFAULT_VIRTUAL_THREAD_ENABLE, Type.BOOLEAN),
+    /**
+     * 共享写入线程数量
+     */
+    VIRTUAL_THREAD_WRITE_COUNT("store.virtual.thread.write.count", StoreConfig.DEFAULT_VIRTUAL_THREAD_WRITE_COUNT, Type.INT),
+    /**
+     * 共享刷盘线程数量
+     */
+    VIRTUAL_THREAD_FLUSH_COUNT("store.virtual.thread.flush.count", StoreConfig.DEFAULT_VIRTUAL_THREAD_FLUSH_COUNT, Type.INT),
+
+    /**
+     * 是否按磁盘分组提交刷盘，同一磁盘上的所有Partition Group共享一个刷盘线程
+     */
+    GROUP_COMMIT_ENABLE("store.group.commit.enable", StoreConfig.DEFAULT_GROUP_COMMIT_ENABLE, Type.BOOLEAN),
+    /**
+     * 分组提交时，每轮刷盘是否对Journal执行fsync。
+     * 默认和不分组时一样只写入文件，开启后每个Partition Group每轮各执行一次fsync，持久化更可靠但是写入延迟更高
+     */
+    GROUP_COMMIT_FORCE("store.group.commit.force", StoreConfig.DEFAULT_GROUP_COMMIT_FORCE, Type.BOOLEAN),
+
+    /**
+     * 每隔多少条消息记录一条时间索引，小于等于0时不记录
+     */
+    TIME_INDEX_INTERVAL("store.time.index.interval", DEFAULT_TIME_INDEX_INTERVAL, Type.INT),
+
+    /**
+     * 标签索引每个索引块包含的消息数量，小于等于0时不记录
+     */
+    FLAG_INDEX_BLOCK_SIZE("store.flag.index.block.size", DEFAULT_FLAG_INDEX_BLOCK_SIZE, Type.INT),
+
+    /**
+     * 是否使用紧凑格式的分区索引
+     */
+    INDEX_COMPACT_ENABLE("store.index.compact.enable", StoreConfig.DEFAULT_INDEX_COMPACT_ENABLE, Type.BOOLEAN),
+
+    /**
+     * 顺序读最大预读窗口，小于等于0时不预读
+     */
+    READ_AHEAD_MAX_SIZE("store.read.ahead.max.size", StoreConfig.DEFAULT_READ_AHEAD_MAX_SIZE, Type.INT),
+    /**
+     * 预读线程数量
+     */
+    READ_AHEAD_THREADS("store.read.ahead.threads", StoreConfig.DEFAULT_READ_AHEAD_THREADS, Type.INT);
 
 
     private String name;
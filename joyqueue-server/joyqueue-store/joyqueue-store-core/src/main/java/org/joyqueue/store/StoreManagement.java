@@ -19,6 +19,7 @@ import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.store.file.PositioningStore;
 import org.joyqueue.store.file.StoreFile;
 import org.joyqueue.store.index.IndexItem;
+import org.joyqueue.store.index.IndexStore;
 import org.joyqueue.store.utils.ByteBufferUtils;
 import org.joyqueue.store.utils.PreloadBufferPool;
 import org.slf4j.Logger;
@@ -90,7 +91,7 @@ public class StoreManagement implements StoreManagementService {
     private PartitionMetric getPartitionMetric(PartitionGroupStoreManager partitionGroupStoreManger, short partition) {
         PartitionMetric partitionMetric = null;
 
-        PositioningStore<IndexItem> indexStore = partitionGroupStoreManger.indexStore(partition);
+        IndexStore indexStore = partitionGroupStoreManger.indexStore(partition);
         if (null != indexStore) {
             partitionMetric = new PartitionMetric();
             partitionMetric.setPartition(partition);
@@ -15,6 +15,7 @@
  */
 package org.joyqueue.store.file;
 
+import org.joyqueue.store.JournalRegion;
 import org.joyqueue.store.PositionOverflowException;
 import org.joyqueue.store.PositionUnderflowException;
 import org.joyqueue.store.WriteException;
@@ -431,6 +432,18 @@ public class PositioningStore<T /* 保存的数据类型 */> implements Closeabl
         return false;
     }
 
+    /**
+     * 对刷盘位置所在的文件调用fsync，确保已刷盘的数据写入到磁盘上。
+     * 之前的文件在切换文件时已经fsync（见{@link #flush()}）。
+     * @throws IOException 发生IO异常时抛出
+     */
+    public void force() throws IOException {
+        Map.Entry<Long, StoreFile<T>> entry = storeFileMap.floorEntry(flushPosition() - 1);
+        if (null != entry && entry.getValue().hasPage()) {
+            entry.getValue().force();
+        }
+    }
+
     private StoreFile<T> createStoreFile(long position) {
         StoreFile<T> storeFile = new StoreFileImpl<>(position, base, fileHeaderSize, serializer, bufferPool, fileDataSize, loadOnRead, flushForce);
         StoreFile<T> present;
@@ -542,6 +555,48 @@ public class PositioningStore<T /* 保存的数据类型 */> implements Closeabl
         }
     }
 
+    /**
+     * 与{@link #readByteBuffer(long, int)}读取的范围相同，但不复制数据，只返回这段数据在文件中的区域。
+     * 区域不会跨越文件，整段数据登记为一条记录。调用方需要保证区域内的数据已经刷盘。
+     */
+    public JournalRegion readRegion(long position, int length) throws IOException {
+        checkReadPosition(position);
+        StoreFile<T> storeFile = storeFileMap.floorEntry(position).getValue();
+        int relPosition = (int) (position - storeFile.position());
+        int size = storeFile.read(relPosition, Math.min(length, storeFile.writePosition() - relPosition), (src, len) -> {
+            if (len < src.remaining()) {
+                src.limit(src.position() + len);
+            }
+            return serializer.trim(src, len);
+        });
+        JournalRegion region = new JournalRegion(storeFile.file(), storeFile.readChannel(), fileHeaderSize + relPosition);
+        if (size > 0) {
+            region.append(size, 0);
+        }
+        return region;
+    }
+
+    /**
+     * 预读 [position, position + length) 范围内的数据所在的文件页，超出存储范围的部分忽略。
+     */
+    public void preload(long position, int length) throws IOException {
+        long start = Math.max(position, left());
+        long end = Math.min(position + length, right());
+        while (start < end) {
+            Map.Entry<Long, StoreFile<T>> entry = storeFileMap.floorEntry(start);
+            if (null == entry) {
+                return;
+            }
+            StoreFile<T> storeFile = entry.getValue();
+            int relPosition = (int) (start - storeFile.position());
+            int preloadLength = (int) Math.min(end - start, storeFile.writePosition() - relPosition);
+            if (preloadLength <= 0) {
+                return;
+            }
+            storeFile.preload(relPosition, preloadLength);
+            start += preloadLength;
+        }
+    }
 
     private void checkReadPosition(long position) {
         long p;
@@ -636,6 +691,7 @@ public class PositioningStore<T /* 保存的数据类型 */> implements Closeabl
      */
     private void forceDeleteStoreFile(StoreFile<T> storeFile) throws IOException {
         storeFile.forceUnload();
+        storeFile.closeReadChannel();
         File file = storeFile.file();
         if (file.exists()) {
             if (file.delete()) {
@@ -705,6 +761,7 @@ public class PositioningStore<T /* 保存的数据类型 */> implements Closeabl
     public void close() {
         for (StoreFile<T> storeFile : storeFileMap.values()) {
             storeFile.unload();
+            storeFile.closeReadChannel();
         }
     }
 
@@ -715,6 +772,21 @@ public class PositioningStore<T /* 保存的数据类型 */> implements Closeabl
         return storeFile.readByteBuffer(relPosition, length).array();
     }
 
+    /**
+     * 给定位置所在的文件
+     */
+    public StoreFile<T> storeFile(long position) {
+        checkReadPosition(position);
+        return storeFileMap.floorEntry(position).getValue();
+    }
+
+    /**
+     * 文件头长度，数据在文件内的物理偏移量 = 文件头长度 + 相对位置
+     */
+    public int fileHeaderSize() {
+        return fileHeaderSize;
+    }
+
     public int fileCount() {
         return storeFileMap.size();
     }
@@ -18,6 +18,7 @@ package org.joyqueue.store.file;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * 带缓存页的，存储数据的文件
@@ -46,6 +47,16 @@ public interface StoreFile<T> extends Timed {
      */
     void forceUnload();
 
+    /**
+     * 只读的文件通道，用于从文件直接发送数据（sendfile）。通道在首次调用时打开，之后的读取共用同一个通道。
+     */
+    FileChannel readChannel() throws IOException;
+
+    /**
+     * 关闭只读的文件通道，文件删除或存储关闭时调用。正在使用该通道发送的数据会失败。
+     */
+    void closeReadChannel();
+
     /**
      * 缓存页是否已加载
      */
@@ -59,6 +70,23 @@ public interface StoreFile<T> extends Timed {
      */
     T read(int position, int length) throws IOException;
 
+    /**
+     * 不复制数据，直接在缓存页上读取
+     *
+     * @param position     文件内的相对位置
+     * @param length       数据长度
+     * @param bufferReader 读取器，传入缓存页的只读视图，position为给定位置，limit为当前写入位置
+     */
+    <R> R read(int position, int length, BufferReader<R> bufferReader) throws IOException;
+
+    /**
+     * 预读：加载缓存页，并依次访问给定范围内的每一页，让操作系统提前把数据读入内存。
+     *
+     * @param position 文件内的相对位置
+     * @param length   预读长度
+     */
+    void preload(int position, int length) throws IOException;
+
     /**
      * 追加写入数据
      *
@@ -47,6 +47,8 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
     // 读写：
     // DIRECT_BUFFER: 数据先写入DirectBuffer，异步刷盘到文件，性能最好；
     private static final int MAPPED_BUFFER = 0, DIRECT_BUFFER = 1, NO_BUFFER = -1;
+    // 预读时每隔一个操作系统内存页访问一次
+    private static final int OS_PAGE_SIZE = 4096;
     // 文件全局位置
     private final long filePosition;
     // 文件头长度
@@ -67,6 +69,8 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
     private PreloadBufferPool bufferPool;
     private final int capacity;
     private long lastAccessTime = SystemClock.now();
+    // 预读时累加访问到的字节，避免访问被编译器优化掉
+    private volatile int preloadChecksum = 0;
     // 当前刷盘位置
     private int flushPosition;
     // 当前写入位置
@@ -79,6 +83,8 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
     private FileChannel fileChannel;
     private RandomAccessFile raf;
     private volatile boolean writeClosed = true;
+    // 只读通道，发送文件区域时共用
+    private volatile FileChannel readChannel;
 
     StoreFileImpl(long filePosition, File base, int headerSize, LogSerializer<T> serializer, PreloadBufferPool bufferPool, int maxFileDataLength, boolean loadOnRead, boolean flushForce) {
         this.filePosition = filePosition;
@@ -230,6 +236,34 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
         }
     }
 
+    @Override
+    public FileChannel readChannel() throws IOException {
+        FileChannel channel = readChannel;
+        if (null == channel || !channel.isOpen()) {
+            synchronized (this) {
+                channel = readChannel;
+                if (null == channel || !channel.isOpen()) {
+                    channel = new RandomAccessFile(file, "r").getChannel();
+                    readChannel = channel;
+                }
+            }
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void closeReadChannel() {
+        FileChannel channel = readChannel;
+        readChannel = null;
+        if (null != channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Close read channel of file {} exception: ", file.getAbsolutePath(), e);
+            }
+        }
+    }
+
     @Override
     public boolean hasPage() {
         return this.bufferType != NO_BUFFER;
@@ -240,10 +274,12 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
         return read(position, length, serializer);
     }
 
+    @Override
     public <R> R read(int position, int length, BufferReader<R> bufferReader) throws IOException {
         touch();
         long stamp = bufferLock.readLock();
         try {
+            bufferPool.recordRead(this, hasPage());
             while (!hasPage()) {
                 long ws = bufferLock.tryConvertToWriteLock(stamp);
                 if (ws != 0L) {
@@ -268,6 +304,39 @@ public class StoreFileImpl<T> implements StoreFile<T>, BufferHolder {
         }
     }
 
+    @Override
+    public void preload(int position, int length) throws IOException {
+        long stamp = bufferLock.readLock();
+        try {
+            while (!hasPage()) {
+                long ws = bufferLock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    // 升级成写锁成功
+                    stamp = ws;
+                    loadRoUnsafe();
+                } else {
+                    bufferLock.unlockRead(stamp);
+                    stamp = bufferLock.writeLock();
+                }
+            }
+            long rs = bufferLock.tryConvertToReadLock(stamp);
+            if (rs != 0L) {
+                stamp = rs;
+            }
+            // DirectBuffer中的数据已经在内存中，只需要预读映射的文件
+            if (bufferType == MAPPED_BUFFER) {
+                int end = Math.min(position + length, writePosition);
+                int checksum = 0;
+                for (int i = Math.max(position, 0); i < end; i += OS_PAGE_SIZE) {
+                    checksum += pageBuffer.get(i);
+                }
+                preloadChecksum = checksum;
+            }
+        } finally {
+            bufferLock.unlock(stamp);
+        }
+    }
+
     @Override
     public ByteBuffer readByteBuffer(int position, int length) throws IOException {
         return read(position, Math.min(length, writePosition - position), (src, len) -> {
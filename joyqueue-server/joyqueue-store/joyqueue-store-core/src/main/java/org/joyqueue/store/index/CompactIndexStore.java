@@ -0,0 +1,741 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.store.PartialLogException;
+import org.joyqueue.store.PositionOverflowException;
+import org.joyqueue.store.PositionUnderflowException;
+import org.joyqueue.store.ReadException;
+import org.joyqueue.store.file.LogSerializer;
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.utils.PreloadBufferPool;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 紧凑格式的分区索引。
+ * <p>
+ * 连续的索引按段组织，每段BLOCK_INDEX_COUNT条索引，写入若干个索引块，索引块不跨段。
+ * 索引块内连续指向同一条消息的索引（批消息）合并为一条记录，只记录一次：
+ * <pre>
+ * 索引块：length(int) | crc(int) | 第一条索引序号(long) | 基准偏移量(long) | 记录...
+ * 记录：与上一条消息尾部的偏移量差值(zigzag varlong) | 消息长度(varint) | 索引条数(varint)
+ * </pre>
+ * 块目录中每段一条目录项，记录该段第一个索引块的位置，按索引序号查找时先定位段，再在段内的索引块中查找。
+ * <p>
+ * 正在写入的索引块保存在内存中，写满一段或者超过SEAL_INTERVAL_MS后写入文件。
+ * 异常掉电时丢失的索引块，在恢复时从消息文件中重建。
+ * <p>
+ * 写操作之间互斥，每次写操作完成后发布一个不可变的视图{@link View}，包含索引范围和正在写入的索引块的快照。
+ * 读操作不加锁，只读取视图和已经写入文件的索引块。
+ */
+public class CompactIndexStore implements IndexStore {
+    private static final Logger logger = LoggerFactory.getLogger(CompactIndexStore.class);
+    public static final String DIRECTORY = "compact";
+    private static final String BLOCK_DIRECTORY = "directory";
+    /**
+     * 每段包含的索引数量
+     */
+    public static final int BLOCK_INDEX_COUNT = 64;
+    /**
+     * 索引块的最大长度
+     */
+    public static final int MAX_BLOCK_SIZE = 4 * 1024;
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int MAX_RECORD_SIZE = 10 + 5 + 5;
+    private static final long SEAL_INTERVAL_MS = 1000L;
+
+    private final File base;
+    private final PositioningStore<ByteBuffer> blockStore;
+    private final PositioningStore<IndexItem> blockDirectory;
+    private final Lock writeLock = new ReentrantLock();
+
+    // 以下写入状态只在持有writeLock时访问
+    private long leftIndex = 0L;
+    private long rightIndex = 0L;
+    // 已经写入文件的索引块的最大索引序号（不含）
+    private long sealedIndex = 0L;
+    // 正在写入的索引块
+    private final Block openBlock = new Block();
+    private long openTimestamp = 0L;
+    // 截断或删除已写入文件的索引块后递增，使之前缓存的索引块失效
+    private long generation = 0L;
+
+    private volatile long flushedIndex = 0L;
+    // 读操作使用的视图
+    private volatile View view = new View(0L, 0L, 0L, 0L, openBlock.snapshot());
+    // 最近一次读取的索引块
+    private volatile CachedBlock cachedBlock = null;
+
+    /**
+     * @param base            分区索引目录
+     * @param blockConfig     索引块文件配置
+     * @param directoryConfig 块目录文件配置
+     */
+    public CompactIndexStore(File base, PositioningStore.Config blockConfig, PositioningStore.Config directoryConfig,
+                             PreloadBufferPool bufferPool) throws IOException {
+        this.base = new File(base, DIRECTORY);
+        File directoryBase = new File(this.base, BLOCK_DIRECTORY);
+        if (!directoryBase.isDirectory() && !directoryBase.mkdirs()) {
+            throw new IOException(String.format("Create directory: %s failed!", directoryBase.getAbsolutePath()));
+        }
+        this.blockStore = new PositioningStore<>(this.base, blockConfig, bufferPool, new BlockSerializer());
+        this.blockDirectory = new PositioningStore<>(directoryBase, directoryConfig, bufferPool, new IndexSerializer());
+    }
+
+    /**
+     * 是否存在紧凑格式的索引文件
+     */
+    public static boolean exists(File base) {
+        return new File(base, DIRECTORY).isDirectory();
+    }
+
+    @Override
+    public long left() {
+        return view.leftIndex * IndexItem.STORAGE_SIZE;
+    }
+
+    @Override
+    public long right() {
+        return view.rightIndex * IndexItem.STORAGE_SIZE;
+    }
+
+    @Override
+    public long flushPosition() {
+        return flushedIndex * IndexItem.STORAGE_SIZE;
+    }
+
+    @Override
+    public void setRight(long position) throws IOException {
+        long index = position / IndexItem.STORAGE_SIZE;
+        writeLock.lock();
+        try {
+            if (index == rightIndex) {
+                return;
+            }
+            if (index <= leftIndex || index > rightIndex) {
+                generation++;
+                // 清空所有索引，写入一个空的索引块记录新的位置
+                blockStore.setRight(blockStore.left());
+                blockDirectory.setRight(blockDirectory.left());
+                leftIndex = rightIndex = sealedIndex = flushedIndex = index;
+                openBlock.reset(index);
+                seal();
+            } else if (index >= sealedIndex) {
+                openBlock.truncate(index);
+                rightIndex = index;
+            } else {
+                // 删除index所在的索引块及之后的索引块，再把截断后的索引块重新写入
+                generation++;
+                Block block = findBlock(view, index);
+                long stride = block.firstIndex / BLOCK_INDEX_COUNT;
+                IndexItem entry = blockDirectory.read(stride * IndexItem.STORAGE_SIZE);
+                long directoryRight = (entry.getOffset() >= block.position ? stride : stride + 1) * IndexItem.STORAGE_SIZE;
+                if (directoryRight < blockDirectory.right()) {
+                    blockDirectory.setRight(directoryRight);
+                }
+                blockStore.setRight(block.position);
+
+                openBlock.copyFrom(block);
+                openBlock.truncate(index);
+                openTimestamp = SystemClock.now();
+                sealedIndex = block.firstIndex;
+                rightIndex = index;
+                flushedIndex = Math.min(flushedIndex, sealedIndex);
+                seal();
+            }
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void recover() throws IOException {
+        writeLock.lock();
+        try {
+            blockStore.recover();
+            blockDirectory.recover();
+            generation++;
+
+            // 截掉块目录末尾可能存在的半条目录项和指向无效位置的目录项
+            long directoryRight = blockDirectory.right() - blockDirectory.right() % IndexItem.STORAGE_SIZE;
+            while (directoryRight > blockDirectory.left()
+                    && blockDirectory.read(directoryRight - IndexItem.STORAGE_SIZE).getOffset() >= blockStore.right()) {
+                directoryRight -= IndexItem.STORAGE_SIZE;
+            }
+            if (directoryRight < blockDirectory.right()) {
+                blockDirectory.setRight(directoryRight);
+            }
+
+            long endIndex = -1L;
+            if (blockStore.right() > blockStore.left()) {
+                leftIndex = readBlock(blockStore.left()).firstIndex;
+                // 从最后一个目录项指向的索引块开始，检查索引块是否连续，并补齐缺少的目录项
+                long position = blockStore.left();
+                if (blockDirectory.right() > blockDirectory.left()) {
+                    position = Math.max(blockStore.left(),
+                            blockDirectory.read(blockDirectory.right() - IndexItem.STORAGE_SIZE).getOffset());
+                }
+                endIndex = scanBlocks(position);
+                if (endIndex < 0 && position > blockStore.left()) {
+                    blockDirectory.setRight(blockDirectory.left());
+                    endIndex = scanBlocks(blockStore.left());
+                }
+            }
+
+            if (endIndex < 0) {
+                blockStore.setRight(blockStore.left());
+                blockDirectory.setRight(blockDirectory.left());
+                leftIndex = endIndex = 0L;
+            }
+            rightIndex = sealedIndex = flushedIndex = endIndex;
+            openBlock.reset(endIndex);
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+        logger.info("Compact index store recovered, leftIndex: {}, rightIndex: {}, store: {}.", leftIndex, rightIndex, base.getAbsolutePath());
+    }
+
+    /**
+     * 从position开始向后检查索引块，截掉不连续的部分，补齐缺少的目录项。
+     *
+     * @return 最后一个索引块的最大索引序号（不含），position处的索引块无效时返回-1
+     */
+    private long scanBlocks(long position) throws IOException {
+        long endIndex = -1L;
+        while (position < blockStore.right()) {
+            Block block = null;
+            try {
+                block = readBlock(position);
+            } catch (Throwable t) {
+                logger.warn("Invalid index block at position {}, store: {}.", position, base.getAbsolutePath(), t);
+            }
+            if (null == block || (endIndex >= 0 && block.firstIndex != endIndex)
+                    || block.endIndex() > (block.firstIndex / BLOCK_INDEX_COUNT + 1) * BLOCK_INDEX_COUNT) {
+                logger.info("Truncate index blocks to position {}, store: {}.", position, base.getAbsolutePath());
+                blockStore.setRight(position);
+                break;
+            }
+            addDirectoryEntry(block.firstIndex / BLOCK_INDEX_COUNT, position);
+            endIndex = block.endIndex();
+            position = block.nextPosition();
+        }
+        return endIndex;
+    }
+
+    @Override
+    public IndexItem read(long position) throws IOException {
+        long index = position / IndexItem.STORAGE_SIZE;
+        View view = this.view;
+        checkReadPosition(view, position);
+        Block block = index >= view.sealedIndex ? view.openBlock : findBlock(view, index);
+        return block.get(index);
+    }
+
+    @Override
+    public List<IndexItem> batchRead(long position, int count) throws IOException {
+        long index = position / IndexItem.STORAGE_SIZE;
+        View view = this.view;
+        checkReadPosition(view, position);
+        List<IndexItem> list = new ArrayList<>(count);
+        while (list.size() < count && index < view.rightIndex) {
+            Block block = index >= view.sealedIndex ? view.openBlock : findBlock(view, index);
+            index = block.collect(index, count, list);
+        }
+        return list;
+    }
+
+    @Override
+    public long append(IndexItem indexItem) throws IOException {
+        writeLock.lock();
+        try {
+            int count = indexItem.isBatchMessage() ? indexItem.getBatchMessageSize() : 1;
+            while (count > 0) {
+                if (openBlock.indexCount == 0) {
+                    openTimestamp = SystemClock.now();
+                }
+                long strideEnd = (rightIndex / BLOCK_INDEX_COUNT + 1) * BLOCK_INDEX_COUNT;
+                int n = (int) Math.min(count, strideEnd - rightIndex);
+                openBlock.add(indexItem.getOffset(), indexItem.getLength(), n);
+                rightIndex += n;
+                count -= n;
+                if (rightIndex == strideEnd) {
+                    seal();
+                }
+            }
+            return rightIndex * IndexItem.STORAGE_SIZE;
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        long sealed;
+        writeLock.lock();
+        try {
+            if (openBlock.indexCount > 0 && SystemClock.now() - openTimestamp >= SEAL_INTERVAL_MS) {
+                seal();
+            }
+            sealed = sealedIndex;
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+
+        boolean flushed = blockStore.flush();
+        flushed = blockDirectory.flush() || flushed;
+
+        if (blockStore.isClean()) {
+            writeLock.lock();
+            try {
+                flushedIndex = Math.min(sealed, sealedIndex);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return flushed;
+    }
+
+    @Override
+    public int fileCount() {
+        return blockStore.fileCount();
+    }
+
+    @Override
+    public int meetMinStoreFile(long position) {
+        long index = position / IndexItem.STORAGE_SIZE;
+        View view = this.view;
+        try {
+            if (index >= view.sealedIndex) {
+                return blockStore.meetMinStoreFile(blockStore.right());
+            } else if (index < view.leftIndex) {
+                return 0;
+            } else {
+                return blockStore.meetMinStoreFile(findBlock(view, index).position);
+            }
+        } catch (IOException e) {
+            logger.warn("Find index block failed, index: {}, store: {}.", index, base.getAbsolutePath(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public long physicalDeleteLeftFile() throws IOException {
+        writeLock.lock();
+        try {
+            long deletedSize = blockStore.physicalDeleteLeftFile();
+            if (deletedSize > 0) {
+                generation++;
+                leftIndex = blockStore.right() > blockStore.left() ? readBlock(blockStore.left()).firstIndex : sealedIndex;
+                deletedSize += blockDirectory.physicalDeleteTo(leftIndex / BLOCK_INDEX_COUNT * IndexItem.STORAGE_SIZE);
+            }
+            return deletedSize;
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long physicalSize() {
+        return blockStore.physicalSize() + blockDirectory.physicalSize();
+    }
+
+    @Override
+    public File base() {
+        return base;
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (openBlock.indexCount > 0) {
+                seal();
+            }
+            while (blockStore.flush()) {
+                logger.debug("Flush index blocks before close, store: {}.", base.getAbsolutePath());
+            }
+            while (blockDirectory.flush()) {
+                logger.debug("Flush index block directory before close, store: {}.", base.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            logger.warn("Flush compact index store {} failed!", base.getAbsolutePath(), e);
+        } finally {
+            publish();
+            writeLock.unlock();
+        }
+        blockStore.close();
+        blockDirectory.close();
+    }
+
+    /**
+     * 把正在写入的索引块写入文件
+     */
+    private void seal() throws IOException {
+        long position = blockStore.right();
+        blockStore.appendByteBuffer(openBlock.encode());
+        addDirectoryEntry(openBlock.firstIndex / BLOCK_INDEX_COUNT, position);
+        sealedIndex = rightIndex;
+        openBlock.reset(sealedIndex);
+    }
+
+    /**
+     * 发布当前的写入状态，供读操作使用
+     */
+    private void publish() {
+        view = new View(leftIndex, rightIndex, sealedIndex, generation, openBlock.snapshot());
+    }
+
+    private void addDirectoryEntry(long stride, long blockPosition) throws IOException {
+        long position = stride * IndexItem.STORAGE_SIZE;
+        if (blockDirectory.right() > position) {
+            // 这一段已经有目录项
+            return;
+        }
+        if (blockDirectory.right() < position) {
+            // 块目录为空
+            blockDirectory.setRight(position);
+        }
+        blockDirectory.append(new IndexItem((short) 0, stride, 0, blockPosition));
+    }
+
+    private void checkReadPosition(View view, long position) {
+        long p;
+        if ((p = view.leftIndex * IndexItem.STORAGE_SIZE) > position) {
+            throw new PositionUnderflowException(position, p);
+        } else if (position >= (p = view.rightIndex * IndexItem.STORAGE_SIZE)) {
+            throw new PositionOverflowException(position, p);
+        }
+    }
+
+    /**
+     * 查找包含index的已写入文件的索引块
+     */
+    private Block findBlock(View view, long index) throws IOException {
+        CachedBlock cached = cachedBlock;
+        if (null != cached && cached.generation == view.generation
+                && cached.block.firstIndex <= index && index < cached.block.endIndex()) {
+            return cached.block;
+        }
+        IndexItem entry = blockDirectory.read(index / BLOCK_INDEX_COUNT * IndexItem.STORAGE_SIZE);
+        long position = Math.max(entry.getOffset(), blockStore.left());
+        while (position < blockStore.right()) {
+            Block block = readBlock(position);
+            if (index < block.endIndex()) {
+                cachedBlock = new CachedBlock(view.generation, block);
+                return block;
+            }
+            position = block.nextPosition();
+        }
+        throw new ReadException(String.format("Index block not found, index: %d, store: %s.", index, base.getAbsolutePath()));
+    }
+
+    private Block readBlock(long position) throws IOException {
+        return Block.decode(blockStore.read(position), position);
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, Integer.BYTES + Integer.BYTES, length - Integer.BYTES - Integer.BYTES);
+        return (int) crc32.getValue();
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * 读操作使用的不可变视图
+     */
+    private static class View {
+        private final long leftIndex;
+        private final long rightIndex;
+        private final long sealedIndex;
+        private final long generation;
+        // 正在写入的索引块的快照
+        private final Block openBlock;
+
+        private View(long leftIndex, long rightIndex, long sealedIndex, long generation, Block openBlock) {
+            this.leftIndex = leftIndex;
+            this.rightIndex = rightIndex;
+            this.sealedIndex = sealedIndex;
+            this.generation = generation;
+            this.openBlock = openBlock;
+        }
+    }
+
+    private static class CachedBlock {
+        private final long generation;
+        private final Block block;
+
+        private CachedBlock(long generation, Block block) {
+            this.generation = generation;
+            this.block = block;
+        }
+    }
+
+    /**
+     * 索引块，同一段内连续的若干条索引。
+     * <p>
+     * 正在写入的索引块与它的快照共用数组：写入只追加新的记录，不修改已有的记录，
+     * 重置和截断时换用新的数组，因此快照看到的记录不会被改变。
+     */
+    private static class Block {
+        // 在文件中的位置，未写入文件时为-1
+        private long position = -1L;
+        private int size = 0;
+        private long firstIndex = 0L;
+        private int indexCount = 0;
+        private int recordCount = 0;
+        private long[] offsets = new long[8];
+        private int[] lengths = new int[8];
+        private int[] counts = new int[8];
+
+        private long endIndex() {
+            return firstIndex + indexCount;
+        }
+
+        private long nextPosition() {
+            return position + size;
+        }
+
+        private void reset(long firstIndex) {
+            this.position = -1L;
+            this.size = 0;
+            this.firstIndex = firstIndex;
+            this.indexCount = 0;
+            this.recordCount = 0;
+            this.offsets = new long[8];
+            this.lengths = new int[8];
+            this.counts = new int[8];
+        }
+
+        private void copyFrom(Block block) {
+            reset(block.firstIndex);
+            for (int i = 0; i < block.recordCount; i++) {
+                add(block.offsets[i], block.lengths[i], block.counts[i]);
+            }
+        }
+
+        /**
+         * 与已有数组共用记录的快照，只读
+         */
+        private Block snapshot() {
+            Block block = new Block();
+            block.firstIndex = firstIndex;
+            block.indexCount = indexCount;
+            block.recordCount = recordCount;
+            block.offsets = offsets;
+            block.lengths = lengths;
+            block.counts = counts;
+            return block;
+        }
+
+        /**
+         * 追加一条记录，指向同一条消息的连续记录在编码时合并
+         */
+        private void add(long offset, int length, int count) {
+            if (recordCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, recordCount * 2);
+                lengths = Arrays.copyOf(lengths, recordCount * 2);
+                counts = Arrays.copyOf(counts, recordCount * 2);
+            }
+            offsets[recordCount] = offset;
+            lengths[recordCount] = length;
+            counts[recordCount] = count;
+            recordCount++;
+            indexCount += count;
+        }
+
+        /**
+         * 删除index及之后的索引
+         */
+        private void truncate(long index) {
+            offsets = Arrays.copyOf(offsets, offsets.length);
+            lengths = Arrays.copyOf(lengths, lengths.length);
+            counts = Arrays.copyOf(counts, counts.length);
+            long end = firstIndex;
+            for (int i = 0; i < recordCount; i++) {
+                if (index <= end + counts[i]) {
+                    counts[i] = (int) (index - end);
+                    recordCount = counts[i] > 0 ? i + 1 : i;
+                    break;
+                }
+                end += counts[i];
+            }
+            indexCount = (int) (index - firstIndex);
+        }
+
+        private IndexItem get(long index) {
+            long end = firstIndex;
+            for (int i = 0; i < recordCount; i++) {
+                end += counts[i];
+                if (index < end) {
+                    return new IndexItem((short) 0, index, lengths[i], offsets[i]);
+                }
+            }
+            throw new PositionOverflowException(index * IndexItem.STORAGE_SIZE, endIndex() * IndexItem.STORAGE_SIZE);
+        }
+
+        /**
+         * 从index开始读取索引，直到list中有count条索引或者到达块的末尾
+         *
+         * @return 下一条要读取的索引序号
+         */
+        private long collect(long index, int count, List<IndexItem> list) {
+            long end = firstIndex;
+            for (int i = 0; i < recordCount && list.size() < count; i++) {
+                end += counts[i];
+                for (; index < end && list.size() < count; index++) {
+                    list.add(new IndexItem((short) 0, index, lengths[i], offsets[i]));
+                }
+            }
+            return index;
+        }
+
+        private ByteBuffer encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + recordCount * MAX_RECORD_SIZE);
+            long baseOffset = recordCount > 0 ? offsets[0] : 0L;
+            buffer.position(Integer.BYTES + Integer.BYTES);
+            buffer.putLong(firstIndex);
+            buffer.putLong(baseOffset);
+            long previousEnd = baseOffset;
+            for (int i = 0; i < recordCount; i++) {
+                int count = counts[i];
+                while (i + 1 < recordCount && offsets[i + 1] == offsets[i] && lengths[i + 1] == lengths[i]) {
+                    count += counts[++i];
+                }
+                long delta = offsets[i] - previousEnd;
+                putVarLong(buffer, (delta << 1) ^ (delta >> 63));
+                putVarLong(buffer, lengths[i]);
+                putVarLong(buffer, count);
+                previousEnd = offsets[i] + lengths[i];
+            }
+            int length = buffer.position();
+            buffer.putInt(0, length);
+            buffer.putInt(Integer.BYTES, crc(buffer.array(), length));
+            buffer.flip();
+            return buffer;
+        }
+
+        private static Block decode(ByteBuffer buffer, long position) {
+            Block block = new Block();
+            int start = buffer.position();
+            block.size = buffer.getInt(start);
+            block.position = position;
+            buffer.position(start + Integer.BYTES + Integer.BYTES);
+            block.firstIndex = buffer.getLong();
+            long previousEnd = buffer.getLong();
+            while (buffer.position() < start + block.size) {
+                long zigzag = getVarLong(buffer);
+                long offset = previousEnd + ((zigzag >>> 1) ^ -(zigzag & 1));
+                int length = (int) getVarLong(buffer);
+                int count = (int) getVarLong(buffer);
+                block.add(offset, length, count);
+                previousEnd = offset + length;
+            }
+            return block;
+        }
+    }
+
+    private static class BlockSerializer implements LogSerializer<ByteBuffer> {
+
+        @Override
+        public ByteBuffer read(ByteBuffer src, int length) {
+            int start = src.position();
+            boolean verify = length < 0;
+            if (verify) {
+                if (src.remaining() < HEADER_SIZE) {
+                    throw new PartialLogException();
+                }
+                length = src.getInt(start);
+                if (length < HEADER_SIZE || length > MAX_BLOCK_SIZE) {
+                    throw new ReadException();
+                }
+            }
+            if (src.remaining() < length) {
+                throw new PartialLogException();
+            }
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (verify && buffer.getInt(Integer.BYTES) != crc(bytes, length)) {
+                src.position(start);
+                throw new ReadException();
+            }
+            return buffer;
+        }
+
+        @Override
+        public int size(ByteBuffer byteBuffer) {
+            return byteBuffer.remaining();
+        }
+
+        @Override
+        public int trim(ByteBuffer byteBuffer, int length) {
+            ByteBuffer sliced = byteBuffer.slice();
+            int limit = Math.min(length, sliced.remaining());
+            int position = 0;
+            while (limit - position >= HEADER_SIZE) {
+                int blockSize = sliced.getInt(position);
+                if (blockSize < HEADER_SIZE || position + blockSize > limit) {
+                    break;
+                }
+                position += blockSize;
+            }
+            return position;
+        }
+
+        @Override
+        public int append(ByteBuffer byteBuffer, ByteBuffer to) {
+            int size = byteBuffer.remaining();
+            to.put(byteBuffer.duplicate());
+            return size;
+        }
+    }
+}
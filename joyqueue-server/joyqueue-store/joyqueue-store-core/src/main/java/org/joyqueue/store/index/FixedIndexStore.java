@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.utils.PreloadBufferPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 定长索引：每条索引12字节，索引序号 * 12 就是索引在文件中的位置。
+ */
+public class FixedIndexStore implements IndexStore {
+    private final PositioningStore<IndexItem> store;
+
+    public FixedIndexStore(File base, PositioningStore.Config config, PreloadBufferPool bufferPool) {
+        this.store = new PositioningStore<>(base, config, bufferPool, new IndexSerializer());
+    }
+
+    /**
+     * 是否存在定长格式的索引文件
+     */
+    public static boolean exists(File base) {
+        File[] files = base.listFiles(file -> file.isFile() && file.getName().matches("\\d+"));
+        return null != files && files.length > 0;
+    }
+
+    @Override
+    public long left() {
+        return store.left();
+    }
+
+    @Override
+    public long right() {
+        return store.right();
+    }
+
+    @Override
+    public long flushPosition() {
+        return store.flushPosition();
+    }
+
+    @Override
+    public void setRight(long position) throws IOException {
+        store.setRight(position);
+    }
+
+    @Override
+    public void recover() throws IOException {
+        store.recover();
+    }
+
+    @Override
+    public IndexItem read(long position) throws IOException {
+        return store.read(position);
+    }
+
+    @Override
+    public List<IndexItem> batchRead(long position, int count) throws IOException {
+        return store.batchRead(position, count);
+    }
+
+    @Override
+    public void preload(long position, int length) throws IOException {
+        store.preload(position, length);
+    }
+
+    @Override
+    public long append(IndexItem indexItem) throws IOException {
+        if (indexItem.isBatchMessage()) {
+            // 批消息内每条消息的索引都指向批消息的起始位置，长度都是都批消息的总长度
+            ByteBuffer indexBuffer = ByteBuffer.allocate(indexItem.getBatchMessageSize() * IndexItem.STORAGE_SIZE);
+            for (int j = 0; j < indexItem.getBatchMessageSize(); j++) {
+                indexItem.serializeTo(indexBuffer);
+            }
+            indexBuffer.flip();
+            return store.appendByteBuffer(indexBuffer);
+        } else {
+            return store.append(indexItem);
+        }
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        return store.flush();
+    }
+
+    @Override
+    public int fileCount() {
+        return store.fileCount();
+    }
+
+    @Override
+    public int meetMinStoreFile(long position) {
+        return store.meetMinStoreFile(position);
+    }
+
+    @Override
+    public long physicalDeleteLeftFile() throws IOException {
+        return store.physicalDeleteLeftFile();
+    }
+
+    @Override
+    public long physicalSize() {
+        return store.physicalSize();
+    }
+
+    @Override
+    public File base() {
+        return store.base();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
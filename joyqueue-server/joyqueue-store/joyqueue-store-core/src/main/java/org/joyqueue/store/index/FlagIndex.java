@@ -0,0 +1,258 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.store.message.FlagMask;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 分区的标签索引。
+ * <p>
+ * 分区索引按blockSize条消息划分为索引块，每个索引块记录块内所有消息标签的{@link FlagMask}。
+ * 按标签过滤的消费者读取消息前，可以跳过掩码不相交的索引块，不需要从日志中读取这些消息。
+ * <p>
+ * 写满的索引块全部常驻内存，同时追加写入分区索引目录下的flag.index文件，每条 [块序号, 掩码]。
+ * 正在写入的索引块、恢复时丢失的索引块都视为包含所有标签，不会被跳过，所以写入时不执行fsync。
+ */
+public class FlagIndex implements Closeable {
+    public static final String FILE_NAME = "flag.index";
+    public static final int ENTRY_SIZE = Long.BYTES * 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final File file;
+    private final int blockSize;
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+    private RandomAccessFile raf;
+    private FileChannel fileChannel;
+    // 内存中第一个写满的索引块的序号
+    private long firstBlock = 0L;
+    private long[] masks = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    // 正在写入的索引块，-1表示下次写入时再确定
+    private long currentBlock = -1L;
+    private long currentMask = FlagMask.ALL;
+
+    /**
+     * @param base      分区索引目录
+     * @param blockSize 每个索引块包含的消息数量
+     */
+    public FlagIndex(File base, int blockSize) throws IOException {
+        this.file = new File(base, FILE_NAME);
+        this.blockSize = blockSize;
+        open();
+    }
+
+    /**
+     * 从文件中加载标签索引，删除不在 [left, right) 范围内和不递增的条目。
+     *
+     * @param left  分区索引的最小序号
+     * @param right 分区索引的最大序号（不含）
+     */
+    public synchronized void recover(long left, long right) throws IOException {
+        size = 0;
+        currentBlock = -1L;
+        currentMask = FlagMask.ALL;
+        long length = fileChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) (length - length % ENTRY_SIZE));
+        fileChannel.read(buffer, 0L);
+        buffer.flip();
+        boolean trimmed = length % ENTRY_SIZE != 0;
+        while (buffer.remaining() >= ENTRY_SIZE) {
+            long block = buffer.getLong();
+            long mask = buffer.getLong();
+            if ((block + 1) * blockSize <= left) {
+                trimmed = true;
+                continue;
+            }
+            if ((block + 1) * blockSize > right || (size > 0 && block < firstBlock + size)) {
+                trimmed = true;
+                break;
+            }
+            if (size > 0 && block > firstBlock + size) {
+                // 中间丢失的索引块
+                trimmed = true;
+            }
+            add(block, mask);
+        }
+        if (trimmed) {
+            rewrite();
+        }
+    }
+
+    /**
+     * 写入一条消息的索引后调用，把消息标签加入所在索引块的掩码，写满的索引块追加到文件中。
+     *
+     * @param index 消息序号
+     * @param count 消息数量，批消息占用多个序号
+     * @param flag  消息标签
+     */
+    public synchronized void append(long index, int count, short flag) throws IOException {
+        long block = index / blockSize;
+        if (currentBlock < 0 || block < currentBlock) {
+            // 首次写入或者回滚之后，从块的中间开始写入时块内之前的消息未知
+            currentBlock = block;
+            currentMask = index % blockSize == 0 ? FlagMask.NONE : FlagMask.ALL;
+        } else if (block > currentBlock) {
+            // 正常情况下索引连续，不会出现。中间的索引块在下次写满时补齐
+            currentBlock = block;
+            currentMask = FlagMask.ALL;
+        }
+
+        long bit = FlagMask.of(flag);
+        long end = index + Math.max(count, 1);
+        while (true) {
+            currentMask |= bit;
+            long blockEnd = (currentBlock + 1) * blockSize;
+            if (end < blockEnd) {
+                break;
+            }
+            seal();
+            if (end == blockEnd) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 从index开始，跳过掩码与flagMask不相交的索引块。
+     *
+     * @return 不小于index的消息序号，index到返回值之间的消息一定不包含flagMask中的标签。
+     */
+    public synchronized long next(long index, long flagMask) {
+        long block = index / blockSize;
+        if (flagMask == FlagMask.ALL || block < firstBlock || block >= firstBlock + size) {
+            return index;
+        }
+        int i = (int) (block - firstBlock);
+        while (i < size && !FlagMask.mayIntersect(masks[i], flagMask)) {
+            i++;
+        }
+        long nextBlock = firstBlock + i;
+        return nextBlock == block ? index : nextBlock * blockSize;
+    }
+
+    /**
+     * 回滚分区索引后调用，删除所有包含序号不小于right的索引块。
+     */
+    public synchronized void rollbackTo(long right) throws IOException {
+        currentBlock = -1L;
+        currentMask = FlagMask.ALL;
+        int newSize = size;
+        while (newSize > 0 && (firstBlock + newSize) * blockSize > right) {
+            newSize--;
+        }
+        if (newSize < size) {
+            size = newSize;
+            rewrite();
+        }
+    }
+
+    /**
+     * 删除分区索引左侧的文件后调用，删除所有序号都小于left的索引块。
+     */
+    public synchronized void deleteBefore(long left) throws IOException {
+        int from = 0;
+        while (from < size && (firstBlock + from + 1) * blockSize <= left) {
+            from++;
+        }
+        if (from > 0) {
+            System.arraycopy(masks, from, masks, 0, size - from);
+            firstBlock += from;
+            size -= from;
+            rewrite();
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        fileChannel.close();
+        raf.close();
+    }
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        fileChannel = raf.getChannel();
+        fileChannel.position(fileChannel.size());
+    }
+
+    /**
+     * 当前索引块写满，记录到内存和文件中，开始下一个索引块
+     */
+    private void seal() throws IOException {
+        add(currentBlock, currentMask);
+        entryBuffer.clear();
+        entryBuffer.putLong(currentBlock).putLong(currentMask).flip();
+        while (entryBuffer.hasRemaining()) {
+            fileChannel.write(entryBuffer);
+        }
+        currentBlock++;
+        currentMask = FlagMask.NONE;
+    }
+
+    private void add(long block, long mask) {
+        if (size == 0) {
+            firstBlock = block;
+        }
+        // 不连续的索引块之间补齐包含所有标签的块
+        while (firstBlock + size < block) {
+            add(FlagMask.ALL);
+        }
+        add(mask);
+    }
+
+    private void add(long mask) {
+        if (size == masks.length) {
+            masks = Arrays.copyOf(masks, size * 2);
+        }
+        masks[size++] = mask;
+    }
+
+    /**
+     * 用内存中的标签索引重写文件
+     */
+    private void rewrite() throws IOException {
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(size * ENTRY_SIZE);
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(firstBlock + i).putLong(masks[i]);
+        }
+        buffer.flip();
+        try (RandomAccessFile tempRaf = new RandomAccessFile(tempFile, "rw")) {
+            tempRaf.setLength(0L);
+            FileChannel tempChannel = tempRaf.getChannel();
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            tempChannel.force(false);
+        }
+        close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 分区索引存储。
+ * <p>
+ * 所有位置都是逻辑位置：索引序号 * IndexItem.STORAGE_SIZE，与索引在磁盘上的实际格式无关。
+ *
+ * @see FixedIndexStore 每条索引定长12字节
+ * @see CompactIndexStore 批消息的索引只记录一次，偏移量差值编码
+ */
+public interface IndexStore extends Closeable {
+
+    long left();
+
+    long right();
+
+    long flushPosition();
+
+    /**
+     * 回滚到position，position不大于left或者大于right时，清空所有索引，left和right都置为position
+     */
+    void setRight(long position) throws IOException;
+
+    void recover() throws IOException;
+
+    IndexItem read(long position) throws IOException;
+
+    List<IndexItem> batchRead(long position, int count) throws IOException;
+
+    /**
+     * 预读 [position, position + length) 范围内的索引所在的文件页
+     */
+    default void preload(long position, int length) throws IOException {
+    }
+
+    /**
+     * 写入一条消息的索引，批消息写入 batchMessageSize 条索引，都指向批消息的起始位置
+     *
+     * @return 写入后的right
+     */
+    long append(IndexItem indexItem) throws IOException;
+
+    /**
+     * 刷盘，每次最多刷盘一个文件
+     *
+     * @return 是否有数据被写入磁盘中
+     */
+    boolean flush() throws IOException;
+
+    /**
+     * 所有索引是否都已写入磁盘
+     */
+    default boolean isClean() {
+        return flushPosition() == right();
+    }
+
+    /**
+     * 索引文件数量
+     */
+    int fileCount();
+
+    /**
+     * 起始位置小于position所在文件的索引文件数量
+     */
+    int meetMinStoreFile(long position);
+
+    /**
+     * 删除最左侧的索引文件
+     *
+     * @return 删除的字节数
+     */
+    long physicalDeleteLeftFile() throws IOException;
+
+    /**
+     * 索引文件占用的磁盘空间
+     */
+    long physicalSize();
+
+    File base();
+
+    @Override
+    void close();
+}
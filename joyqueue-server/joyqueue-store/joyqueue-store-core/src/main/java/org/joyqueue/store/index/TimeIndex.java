@@ -0,0 +1,206 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 分区的稀疏时间索引。
+ * <p>
+ * 每隔interval条消息记录一条 [存储时间, 索引序号]，按存储时间和索引序号递增，
+ * 全部常驻内存，同时追加写入分区索引目录下的time.index文件。
+ * 按时间查找索引时，先在内存中定位区间，再在区间内查找分区索引。
+ * <p>
+ * 时间索引只是查找的提示，丢失的条目可以在恢复索引时补齐，所以写入时不执行fsync。
+ */
+public class TimeIndex implements Closeable {
+    public static final String FILE_NAME = "time.index";
+    public static final int ENTRY_SIZE = Long.BYTES * 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final File file;
+    private final int interval;
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+    private RandomAccessFile raf;
+    private FileChannel fileChannel;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] indices = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param base     分区索引目录
+     * @param interval 每隔多少条消息记录一条时间索引
+     */
+    public TimeIndex(File base, int interval) throws IOException {
+        this.file = new File(base, FILE_NAME);
+        this.interval = interval;
+        open();
+    }
+
+    /**
+     * 从文件中加载时间索引，删除不在 [left, right) 范围内和不递增的条目。
+     *
+     * @param left  分区索引的最小序号
+     * @param right 分区索引的最大序号（不含）
+     */
+    public synchronized void recover(long left, long right) throws IOException {
+        size = 0;
+        long length = fileChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) (length - length % ENTRY_SIZE));
+        fileChannel.read(buffer, 0L);
+        buffer.flip();
+        boolean trimmed = length % ENTRY_SIZE != 0;
+        while (buffer.remaining() >= ENTRY_SIZE) {
+            long timestamp = buffer.getLong();
+            long index = buffer.getLong();
+            if (index < left) {
+                trimmed = true;
+                continue;
+            }
+            if (index >= right || (size > 0 && (index <= indices[size - 1] || timestamp < timestamps[size - 1]))) {
+                trimmed = true;
+                break;
+            }
+            add(timestamp, index);
+        }
+        if (trimmed) {
+            rewrite();
+        }
+    }
+
+    /**
+     * 写入一条消息的索引后调用，距上一条时间索引满interval条消息时记录一条新的时间索引。
+     */
+    public synchronized void append(long index, long timestamp) throws IOException {
+        if (size > 0 && (index - indices[size - 1] < interval || timestamp < timestamps[size - 1])) {
+            return;
+        }
+        add(timestamp, index);
+        entryBuffer.clear();
+        entryBuffer.putLong(timestamp).putLong(index).flip();
+        while (entryBuffer.hasRemaining()) {
+            fileChannel.write(entryBuffer);
+        }
+    }
+
+    /**
+     * 回滚分区索引后调用，删除所有序号不小于right的时间索引。
+     */
+    public synchronized void rollbackTo(long right) throws IOException {
+        int newSize = size;
+        while (newSize > 0 && indices[newSize - 1] >= right) {
+            newSize--;
+        }
+        if (newSize < size) {
+            size = newSize;
+            fileChannel.truncate((long) size * ENTRY_SIZE);
+            fileChannel.position((long) size * ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * 删除分区索引左侧的文件后调用，删除所有序号小于left的时间索引。
+     */
+    public synchronized void deleteBefore(long left) throws IOException {
+        int from = 0;
+        while (from < size && indices[from] < left) {
+            from++;
+        }
+        if (from > 0) {
+            System.arraycopy(timestamps, from, timestamps, 0, size - from);
+            System.arraycopy(indices, from, indices, 0, size - from);
+            size -= from;
+            rewrite();
+        }
+    }
+
+    /**
+     * 查找存储时间不小于timestamp的第一条消息所在的索引区间。
+     *
+     * @return [from, to]，第一条存储时间不小于timestamp的消息的索引序号在 [from, to] 之间，
+     * from为-1表示从分区最左侧开始，to为-1表示直到分区最右侧。
+     */
+    public synchronized long[] range(long timestamp) {
+        // 第一条存储时间 >= timestamp 的时间索引
+        int i = 0, j = size;
+        while (i < j) {
+            int mid = (i + j) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                i = mid + 1;
+            } else {
+                j = mid;
+            }
+        }
+        return new long[]{i > 0 ? indices[i - 1] : -1L, i < size ? indices[i] : -1L};
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        fileChannel.close();
+        raf.close();
+    }
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        fileChannel = raf.getChannel();
+        fileChannel.position(fileChannel.size());
+    }
+
+    private void add(long timestamp, long index) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        timestamps[size] = timestamp;
+        indices[size] = index;
+        size++;
+    }
+
+    /**
+     * 用内存中的时间索引重写文件
+     */
+    private void rewrite() throws IOException {
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(size * ENTRY_SIZE);
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(timestamps[i]).putLong(indices[i]);
+        }
+        buffer.flip();
+        try (RandomAccessFile tempRaf = new RandomAccessFile(tempFile, "rw")) {
+            tempRaf.setLength(0L);
+            FileChannel tempChannel = tempRaf.getChannel();
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            tempChannel.force(false);
+        }
+        close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+}
@@ -19,7 +19,9 @@ import org.joyqueue.toolkit.time.SystemClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.DelayQueue;
@@ -79,13 +81,16 @@ import java.util.stream.IntStream;
 public class VirtualThreadExecutor {
     private static final Logger logger = LoggerFactory.getLogger(VirtualThreadExecutor.class);
 
+    private final String name;
     private final long keepAliveTimeMs, maxIntervalMs;
     private final int steps;
     private final long maxUseTime;
+    private final int threadCount;
     private final DelayQueue<DelayCommand> commandQueue = new DelayQueue<>();
-    private final List<Thread> workThreads;
+    private List<Thread> workThreads = Collections.emptyList();
     private final Set<VirtualThread> toBeRemoved = ConcurrentHashMap.newKeySet();
     private final Set<VirtualThread> virtualThreads = ConcurrentHashMap.newKeySet();
+    private final Map<VirtualThread, DelayCommand> commands = new ConcurrentHashMap<>();
 
     /**
      * @param keepAliveTimeMs 每次执行完任务后线程空转的时长，在空转期内一旦有任务立即就能执行，避免等待；
@@ -95,31 +100,84 @@ public class VirtualThreadExecutor {
      * @param threadCount     物理线程数量
      */
     public VirtualThreadExecutor(long keepAliveTimeMs, long maxIntervalMs, int steps, long maxUseTime, int threadCount) {
+        this("VirtualThreadExecutor", keepAliveTimeMs, maxIntervalMs, steps, maxUseTime, threadCount);
+    }
+
+    /**
+     * @param name            物理线程名称前缀
+     * @param keepAliveTimeMs 每次执行完任务后线程空转的时长，在空转期内一旦有任务立即就能执行，避免等待；
+     * @param maxIntervalMs   最大等待时长
+     * @param steps           递增次数
+     * @param maxUseTime      虚拟线程每次最大占用物理线程的时长
+     * @param threadCount     物理线程数量
+     */
+    public VirtualThreadExecutor(String name, long keepAliveTimeMs, long maxIntervalMs, int steps, long maxUseTime, int threadCount) {
+        this.name = name;
         this.keepAliveTimeMs = keepAliveTimeMs;
         this.maxIntervalMs = maxIntervalMs;
         this.steps = steps;
         this.maxUseTime = maxUseTime;
+        this.threadCount = threadCount;
+        start();
+    }
+
+    /**
+     * 启动物理线程，创建时已经启动，调用stop()之后可以再次启动
+     */
+    public synchronized void start() {
+        if (!workThreads.isEmpty()) {
+            return;
+        }
         workThreads = IntStream.range(0, threadCount)
                 .mapToObj(index -> {
                     Thread thread = new Thread(new WorkThread());
-                    thread.setName("VirtualThreadExecutor-" + index);
+                    thread.setName(name + "-" + index);
+                    thread.setDaemon(true);
                     thread.start();
                     return thread;
                 }).collect(Collectors.toList());
     }
 
     public void start(VirtualThread vt, String name) {
-        virtualThreads.add(vt);
-        commandQueue.add(new DelayCommand(vt, name));
+        start(vt, 0L, name);
     }
 
     public void start(VirtualThread vt, long minDelayMs, String name) {
-        virtualThreads.add(vt);
-        commandQueue.add(new DelayCommand(vt, minDelayMs, name));
+        if (virtualThreads.add(vt)) {
+            DelayCommand cmd = new DelayCommand(vt, minDelayMs, name);
+            commands.put(vt, cmd);
+            commandQueue.add(cmd);
+        }
+    }
+
+    /**
+     * 唤醒正在等待的虚拟线程，使其尽快执行一次。
+     * 虚拟线程连续空转后等待时长会逐渐增大，有新任务到来时调用此方法，避免新任务等待最长maxIntervalMs。
+     * 如果虚拟线程正在执行，或者已经到了执行时间，什么都不做。
+     */
+    public void wakeup(VirtualThread vt) {
+        DelayCommand cmd = commands.get(vt);
+        if (null != cmd) {
+            cmd.wakeup = true;
+            if (cmd.startTime > SystemClock.now() && commandQueue.remove(cmd)) {
+                cmd.delay = cmd.minDelayMs;
+                cmd.startTime = SystemClock.now();
+                commandQueue.put(cmd);
+            }
+        }
+    }
+
+    public boolean isRunning(VirtualThread vt) {
+        return virtualThreads.contains(vt);
+    }
+
+    public int getThreadCount() {
+        return threadCount;
     }
 
     public void stop(VirtualThread vt) throws InterruptedException {
         if (virtualThreads.remove(vt)) {
+            commands.remove(vt);
             toBeRemoved.add(vt);
             if (commandQueue.removeIf(cmd -> cmd.virtualThread == vt)) {
                 toBeRemoved.remove(vt);
@@ -143,9 +201,10 @@ public class VirtualThreadExecutor {
         }
     }
 
-    public void stop() {
+    public synchronized void stop() {
         workThreads.forEach(Thread::interrupt);
         workThreads.forEach(this::wait);
+        workThreads = Collections.emptyList();
     }
 
     private static class DelayCommand implements Delayed {
@@ -155,6 +214,7 @@ public class VirtualThreadExecutor {
         private volatile long startTime = SystemClock.now();
         private volatile long lastRunTime = SystemClock.now(); // 上一次有效运行的结束时间
         private volatile long delay = 0;
+        private volatile boolean wakeup = false; // 执行期间是否被唤醒过
 
         private DelayCommand(VirtualThread virtualThread, String name) {
             this(virtualThread, 0L, name);
@@ -190,17 +250,22 @@ public class VirtualThreadExecutor {
     private class WorkThread implements Runnable {
         @Override
         public void run() {
-            DelayCommand cmd = null;
-            boolean dryRun = true;
+            DelayCommand cmd;
             while (!Thread.currentThread().isInterrupted()) {
 
                 try {
                     cmd = commandQueue.take();
-                    if (toBeRemoved.remove(cmd.virtualThread)) {
-                        continue;
-                    }
-                    long start = SystemClock.now();
-                    dryRun = true;
+                } catch (InterruptedException e) {
+                    logger.warn("Virtual thread interrupted!");
+                    break;
+                }
+                if (toBeRemoved.remove(cmd.virtualThread)) {
+                    continue;
+                }
+                long start = SystemClock.now();
+                boolean dryRun = true;
+                cmd.wakeup = false;
+                try {
                     while (maxUseTime + start > SystemClock.now()) {
                         if (cmd.virtualThread.run()) {
                             if (dryRun) dryRun = false;
@@ -210,26 +275,25 @@ public class VirtualThreadExecutor {
                         Thread.yield();
                     }
                 } catch (InterruptedException e) {
-                    logger.warn("Virtual thread interrupted!");
-                    break;
+                    // 执行期间被中断，先把虚拟线程放回队列再退出，避免丢失
+                    logger.warn("Virtual thread {} interrupted!", cmd.name);
+                    Thread.currentThread().interrupt();
                 } catch (Throwable e) {
-                    logger.warn("Exception on {} :", cmd == null ? "" : cmd.name, e);
+                    logger.warn("Exception on {} :", cmd.name, e);
                 }
-                if (null != cmd) {
-                    long now = SystemClock.now();
-                    if (dryRun) {
-                        if (keepAliveTimeMs + cmd.lastRunTime <= now) {
-                            if (cmd.delay < maxIntervalMs) {
-                                cmd.delay += maxIntervalMs / steps;
-                            }
+                long now = SystemClock.now();
+                if (dryRun && !cmd.wakeup) {
+                    if (keepAliveTimeMs + cmd.lastRunTime <= now) {
+                        if (cmd.delay < maxIntervalMs) {
+                            cmd.delay += maxIntervalMs / steps;
                         }
-                    } else {
-                        cmd.delay = cmd.minDelayMs;
-                        cmd.lastRunTime = now;
                     }
-                    cmd.startTime = now + cmd.delay;
-                    commandQueue.put(cmd);
+                } else {
+                    cmd.delay = cmd.minDelayMs;
+                    cmd.lastRunTime = now;
                 }
+                cmd.startTime = now + cmd.delay;
+                commandQueue.put(cmd);
             }
         }
 
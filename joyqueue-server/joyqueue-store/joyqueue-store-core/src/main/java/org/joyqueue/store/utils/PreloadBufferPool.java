@@ -28,20 +28,31 @@ import sun.nio.ch.DirectBuffer;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
+ * 缓存页管理器。
+ * <p>
+ * 缓存页按大小分类（通常是消息文件和索引文件两类），每一类可以配置内存预算，
+ * 内存不足时优先驱逐超出预算的那一类缓存页，避免扫描历史消息的慢消费者把索引等热点页挤出内存。
+ * <p>
+ * 驱逐时按权重从小到大选择缓存页，权重 = 上次访问时间 + 写入页额外权重 + 访问频率 * 频率权重。
+ * 访问频率每秒采样一次，采样周期内被访问过就加一，定期减半。
+ * 只被短时间访问过的页（比如慢消费者扫描过的历史页）频率低，先于持续被访问的热点页被驱逐。
+ * <p>
+ * 每一类缓存页都统计命中、未命中、驱逐和申请内存等待的次数，通过{@link #monitorInfo()}输出到Broker监控。
  *
  * @author liyue25
  * Date: 2018-12-20
@@ -67,6 +78,13 @@ public class PreloadBufferPool {
     private static final String WRITE_PAGE_EXTRA_WEIGHT_MS_KEY = "PreloadBufferPool.WritePageExtraWeightMs";
     private static final String MAX_PAGE_AGE = "PreloadBufferPool.MaxPageAge";
     private static final int DEFAULT_MAX_PAGE_AGE = 1000 * 60 * 5;
+    private static final String FREQUENCY_WEIGHT_MS_KEY = "PreloadBufferPool.FrequencyWeightMs";
+    private static final long DEFAULT_FREQUENCY_WEIGHT_MS = 2000L;
+    // 访问频率采样周期
+    private static final long SAMPLE_INTERVAL_MS = 1000L;
+    // 每采样多少次，所有缓存页的访问频率减半
+    private static final int DECAY_SAMPLES = 60;
+    private static final int MAX_FREQUENCY = 15;
     private final LoopThread preloadThread;
     private final LoopThread metricThread;
     private final LoopThread evictThread;
@@ -81,10 +99,16 @@ public class PreloadBufferPool {
     // 例如：一个只读的页，上次访问时间戳是T，一个读写页，上次访问时间是T - 60秒，
     // 这两个页在置换时有同样的权重
     private final long writePageExtraWeightMs;
+    // 访问频率的权重，每次采样到访问相当于晚访问了这么多毫秒
+    private final long frequencyWeightMs;
     private final AtomicLong usedSize = new AtomicLong(0L);
-    private final Set<BufferHolder> directBufferHolders = ConcurrentHashMap.newKeySet();
-    private final Set<BufferHolder> mMapBufferHolders = ConcurrentHashMap.newKeySet();
+    private final Map<BufferHolder, PageState> directBufferHolders = new ConcurrentHashMap<>();
+    private final Map<BufferHolder, PageState> mMapBufferHolders = new ConcurrentHashMap<>();
     private final Map<Integer, PreLoadCache> bufferCache = new ConcurrentHashMap<>();
+    // 和bufferCache相同，读取时按大小查找缓存页分类，避免装箱
+    private volatile PreLoadCache[] sizeClasses = new PreLoadCache[0];
+    private long lastSampleTime = 0L;
+    private long sampleCount = 0L;
     private static PreloadBufferPool instance = null;
 
     public static PreloadBufferPool getInstance() {
@@ -96,24 +120,30 @@ public class PreloadBufferPool {
     }
 
     private PreloadBufferPool() {
-        long printMetricInterval = Long.parseLong(System.getProperty(PRINT_METRIC_INTERVAL_MS_KEY,"30000"));
-        maxMemorySize = getMaxMemorySize();
+        this(getMaxMemorySize(), Long.parseLong(System.getProperty(PRINT_METRIC_INTERVAL_MS_KEY, "30000")));
+        preloadThread.start();
+        if (metricThread != null) {
+            metricThread.start();
+        }
+        evictThread.start();
+    }
+
+    /**
+     * 创建缓存页管理器，不启动预加载、监控和清理线程
+     *
+     * @param maxMemorySize       可供缓存使用的最大内存
+     * @param printMetricInterval 输出监控日志的间隔，小于等于0不输出
+     */
+    PreloadBufferPool(long maxMemorySize, long printMetricInterval) {
+        this.maxMemorySize = maxMemorySize;
         evictMemorySize = Math.round(maxMemorySize * EVICT_RATIO);
         coreMemorySize = Math.round(maxMemorySize * CORE_RATIO);
         writePageExtraWeightMs = Long.parseLong(System.getProperty(WRITE_PAGE_EXTRA_WEIGHT_MS_KEY, String.valueOf(DEFAULT_WRITE_PAGE_EXTRA_WEIGHT_MS)));
         maxPageAge = Integer.parseInt(System.getProperty(MAX_PAGE_AGE, String.valueOf(DEFAULT_MAX_PAGE_AGE)));
+        frequencyWeightMs = Long.parseLong(System.getProperty(FREQUENCY_WEIGHT_MS_KEY, String.valueOf(DEFAULT_FREQUENCY_WEIGHT_MS)));
         preloadThread = buildPreloadThread();
-        preloadThread.start();
-
-        if (printMetricInterval > 0) {
-            metricThread = buildMetricThread(printMetricInterval);
-            metricThread.start();
-        } else {
-            metricThread = null;
-        }
-
+        metricThread = printMetricInterval > 0 ? buildMetricThread(printMetricInterval) : null;
         evictThread = buildEvictThread();
-        evictThread.start();
 
         logger.info("Max direct memory: {}, core direct memory: {}, evict direct memory: {}.",
                 Format.formatSize(maxMemorySize),
@@ -131,7 +161,7 @@ public class PreloadBufferPool {
      *
      * @return 可使用的最大堆外内存大小。
      */
-    private long getMaxMemorySize() {
+    private static long getMaxMemorySize() {
         String mmsString = System.getProperty(MAX_MEMORY_KEY);
         int pct = Format.getPercentage(mmsString);
         if (pct > 0 && pct < 100) {
@@ -171,14 +201,18 @@ public class PreloadBufferPool {
             long cached = preLoadCache.cache.size();
             long usedPreLoad = preLoadCache.onFlyCounter.get();
             long totalSize = preLoadCache.bufferSize * (cached + usedPreLoad);
-            logger.info("PreloadCache usage: cached: {} * {} = {}, used: {} * {} = {}, total: {}",
+            logger.info("PreloadCache usage: cached: {} * {} = {}, used: {} * {} = {}, total: {}, " +
+                            "class used/budget: {}/{}, hit/miss/eviction/stall: {}/{}/{}/{}",
                     Format.formatSize(preLoadCache.bufferSize), cached, Format.formatSize(preLoadCache.bufferSize * cached),
                     Format.formatSize(preLoadCache.bufferSize), usedPreLoad, Format.formatSize(preLoadCache.bufferSize * usedPreLoad),
-                    Format.formatSize(totalSize));
+                    Format.formatSize(totalSize),
+                    Format.formatSize(usedMemory(preLoadCache)), Format.formatSize(preLoadCache.budget),
+                    preLoadCache.hitCounter.sum(), preLoadCache.missCounter.sum(),
+                    preLoadCache.evictCounter.sum(), preLoadCache.stallCounter.sum());
             return totalSize;
         }).sum();
-        long mmpUsed = mMapBufferHolders.stream().mapToLong(BufferHolder::capacity).sum();
-        long directUsed = directBufferHolders.stream().mapToLong(BufferHolder::capacity).sum();
+        long mmpUsed = mMapBufferHolders.keySet().stream().mapToLong(BufferHolder::capacity).sum();
+        long directUsed = directBufferHolders.keySet().stream().mapToLong(BufferHolder::capacity).sum();
         logger.info("Direct memory usage: preload/direct/mmp/used/max: {}/{}/{}/{}/{}.",
                 Format.formatSize(plUsed),
                 Format.formatSize(directUsed),
@@ -191,7 +225,10 @@ public class PreloadBufferPool {
         return LoopThread.builder()
                 .name("PreloadBufferPoolThread")
                 .sleepTime(INTERVAL_MS, INTERVAL_MS)
-                .doWork(this::preLoadBuffer)
+                .doWork(() -> {
+                    preLoadBuffer();
+                    samplePageAccess();
+                })
                 .onException(e -> logger.warn("PreloadBufferPoolThread exception:", e))
                 .daemon(true)
                 .build();
@@ -210,9 +247,10 @@ public class PreloadBufferPool {
 
 
     /**
-     * 清除文件缓存页。LRU。
+     * 清除文件缓存页，按权重从小到大驱逐，优先驱逐超出内存预算的那一类缓存页。
+     * 只在内存占用超过清理阈值时执行，没有超过阈值时即使某一类缓存页超出预算也不驱逐。
      */
-    private void evict() {
+    void evict() {
         // 清理超过maxCount的缓存页
         for (PreLoadCache preLoadCache : bufferCache.values()) {
             if (!needEviction()) {
@@ -225,9 +263,9 @@ public class PreloadBufferPool {
             }
         }
 
-        List<LruWrapper<BufferHolder>> sortedPage = Stream.concat(directBufferHolders.stream(), mMapBufferHolders.stream())
-                .filter(BufferHolder::isFree)
-                .map(bufferHolder -> new LruWrapper<>(bufferHolder, bufferHolder.lastAccessTime(), bufferHolder.writable() ? writePageExtraWeightMs : 0L))
+        List<LruWrapper<BufferHolder>> sortedPage = Stream.concat(directBufferHolders.entrySet().stream(), mMapBufferHolders.entrySet().stream())
+                .filter(entry -> entry.getKey().isFree())
+                .map(this::wrap)
                 .sorted(Comparator.comparing(LruWrapper::getWeight))
                 .collect(Collectors.toList());
 
@@ -235,7 +273,9 @@ public class PreloadBufferPool {
         while (sortedPageIterator.hasNext()) {
             LruWrapper<BufferHolder> lruWrapper = sortedPageIterator.next();
             if (SystemClock.now() - lruWrapper.getLastAccessTime() >= maxPageAge) {
-                lruWrapper.get().evict();
+                if (lruWrapper.get().evict()) {
+                    recordEviction(lruWrapper.get());
+                }
                 sortedPageIterator.remove();
             } else {
                 break;
@@ -244,16 +284,134 @@ public class PreloadBufferPool {
 
         // 清理使用中最旧的页面，直到内存占用率达标
         if (needEviction()) {
+            // 先清理超出内存预算的那一类缓存页
+            for (PreLoadCache sizeClass : sizeClasses) {
+                if (sizeClass.budget <= 0L) {
+                    continue;
+                }
+                long used = usedMemory(sizeClass);
+                sortedPageIterator = sortedPage.iterator();
+                while (needEviction() && used > sizeClass.budget && sortedPageIterator.hasNext()) {
+                    LruWrapper<BufferHolder> wrapper = sortedPageIterator.next();
+                    if (wrapper.get().capacity() == sizeClass.bufferSize) {
+                        sortedPageIterator.remove();
+                        if (evictPage(wrapper)) {
+                            used -= sizeClass.bufferSize;
+                        }
+                    }
+                }
+            }
+
             while (needEviction() && !sortedPage.isEmpty()) {
-                LruWrapper<BufferHolder> wrapper = sortedPage.remove(0);
-                BufferHolder holder = wrapper.get();
-                if (holder.lastAccessTime() == wrapper.getLastAccessTime()) {
-                    holder.evict();
+                evictPage(sortedPage.remove(0));
+            }
+        }
+    }
+
+    /**
+     * 如果缓存页在排序后没有被访问过，驱逐缓存页
+     *
+     * @return 是否驱逐成功
+     */
+    private boolean evictPage(LruWrapper<BufferHolder> wrapper) {
+        BufferHolder holder = wrapper.get();
+        if (holder.lastAccessTime() == wrapper.getLastAccessTime() && holder.evict()) {
+            recordEviction(holder);
+            return true;
+        }
+        return false;
+    }
+
+    private LruWrapper<BufferHolder> wrap(Map.Entry<BufferHolder, PageState> entry) {
+        BufferHolder bufferHolder = entry.getKey();
+        long extraWeight = entry.getValue().frequency * frequencyWeightMs;
+        if (bufferHolder.writable()) {
+            extraWeight += writePageExtraWeightMs;
+        }
+        return new LruWrapper<>(bufferHolder, bufferHolder.lastAccessTime(), extraWeight);
+    }
+
+    private void samplePageAccess() {
+        samplePageAccess(SystemClock.now());
+    }
+
+    /**
+     * 采样所有缓存页的访问时间，更新访问频率。只在预加载线程中执行。
+     */
+    void samplePageAccess(long now) {
+        if (now - lastSampleTime < SAMPLE_INTERVAL_MS) {
+            return;
+        }
+        lastSampleTime = now;
+        boolean decay = ++sampleCount % DECAY_SAMPLES == 0;
+        Stream.concat(directBufferHolders.entrySet().stream(), mMapBufferHolders.entrySet().stream()).forEach(entry -> {
+            PageState state = entry.getValue();
+            long accessTime = entry.getKey().lastAccessTime();
+            int frequency = state.frequency;
+            if (accessTime != state.sampledAccessTime) {
+                state.sampledAccessTime = accessTime;
+                if (frequency < MAX_FREQUENCY) {
+                    frequency++;
                 }
             }
+            if (decay) {
+                frequency >>= 1;
+            }
+            state.frequency = frequency;
+        });
+    }
+
+    /**
+     * 某一类缓存页占用的内存，包括池中缓存的和正在使用的
+     */
+    private long usedMemory(PreLoadCache sizeClass) {
+        long used = (long) sizeClass.bufferSize * sizeClass.cache.size();
+        used += Stream.concat(directBufferHolders.keySet().stream(), mMapBufferHolders.keySet().stream())
+                .filter(bufferHolder -> bufferHolder.capacity() == sizeClass.bufferSize)
+                .mapToLong(BufferHolder::capacity).sum();
+        return used;
+    }
+
+    private PreLoadCache sizeClass(int bufferSize) {
+        for (PreLoadCache sizeClass : sizeClasses) {
+            if (sizeClass.bufferSize == bufferSize) {
+                return sizeClass;
+            }
         }
+        return null;
     }
 
+    private void recordEviction(BufferHolder bufferHolder) {
+        PreLoadCache sizeClass = sizeClass(bufferHolder.capacity());
+        if (null != sizeClass) {
+            sizeClass.evictCounter.increment();
+        }
+    }
+
+    /**
+     * 记录一次读取
+     *
+     * @param bufferHolder 读取的文件
+     * @param hit          读取时缓存页是否已经加载
+     */
+    public void recordRead(BufferHolder bufferHolder, boolean hit) {
+        PreLoadCache sizeClass = sizeClass(bufferHolder.capacity());
+        if (null != sizeClass) {
+            if (hit) {
+                sizeClass.hitCounter.increment();
+            } else {
+                sizeClass.missCounter.increment();
+            }
+        }
+    }
+
+
+    /**
+     * 内存占用是否已经超过清理阈值，此时应当暂停预读等非必须的内存申请
+     */
+    public boolean isUnderPressure() {
+        return needEviction();
+    }
 
     private boolean needEviction() {
         return usedSize.get() > evictMemorySize;
@@ -268,7 +426,27 @@ public class PreloadBufferPool {
     }
 
     public synchronized boolean addPreLoad(int bufferSize, int coreCount, int maxCount) {
-        return bufferCache.putIfAbsent(bufferSize, new PreLoadCache(bufferSize, coreCount, maxCount)) == null;
+        return addPreLoad(bufferSize, coreCount, maxCount, 0);
+    }
+
+    /**
+     * 添加一类缓存页
+     *
+     * @param bufferSize  缓存页大小
+     * @param coreCount   预加载缓存页的核心数量
+     * @param maxCount    池中缓存页最大数量
+     * @param memoryRatio 这一类缓存页的内存预算占最大内存的百分比，内存不足时优先驱逐超出预算的缓存页，0表示不限制
+     * @return 是否添加成功，已存在相同大小的缓存页分类时返回false
+     */
+    public synchronized boolean addPreLoad(int bufferSize, int coreCount, int maxCount, int memoryRatio) {
+        PreLoadCache preLoadCache = new PreLoadCache(bufferSize, coreCount, maxCount, maxMemorySize * memoryRatio / 100);
+        if (bufferCache.putIfAbsent(bufferSize, preLoadCache) == null) {
+            PreLoadCache[] newSizeClasses = Arrays.copyOf(sizeClasses, sizeClasses.length + 1);
+            newSizeClasses[sizeClasses.length] = preLoadCache;
+            sizeClasses = newSizeClasses;
+            return true;
+        }
+        return false;
     }
 
     private void close() {
@@ -303,18 +481,14 @@ public class PreloadBufferPool {
                         return;
                     }
                 } else {
-                    List<LruWrapper<BufferHolder>> outdated = directBufferHolders.stream()
-                            .filter(b -> b.capacity() == preLoadCache.bufferSize)
-                            .filter(BufferHolder::isFree)
-                            .map(bufferHolder -> new LruWrapper<>(bufferHolder, bufferHolder.lastAccessTime(), bufferHolder.writable() ? writePageExtraWeightMs : 0L))
+                    List<LruWrapper<BufferHolder>> outdated = directBufferHolders.entrySet().stream()
+                            .filter(entry -> entry.getKey().capacity() == preLoadCache.bufferSize)
+                            .filter(entry -> entry.getKey().isFree())
+                            .map(this::wrap)
                             .sorted(Comparator.comparing(LruWrapper::getWeight))
                             .collect(Collectors.toList());
                     while (preLoadCache.cache.size() < preLoadCache.coreCount && !outdated.isEmpty()) {
-                        LruWrapper<BufferHolder> wrapper = outdated.remove(0);
-                        BufferHolder holder = wrapper.get();
-                        if (holder.lastAccessTime() == wrapper.getLastAccessTime()) {
-                            holder.evict();
-                        }
+                        evictPage(outdated.remove(0));
                     }
                 }
             }
@@ -341,6 +515,10 @@ public class PreloadBufferPool {
             }
 
             if (isOutOfMemory()) {
+                PreLoadCache sizeClass = sizeClass(size);
+                if (null != sizeClass) {
+                    sizeClass.stallCounter.increment();
+                }
                 // 如果内存不足，唤醒清理线程立即执行清理
                 evictThread.wakeup();
                 // 等待5x10ms，如果还不足抛出异常
@@ -376,12 +554,12 @@ public class PreloadBufferPool {
 
     public void allocateMMap(BufferHolder bufferHolder) {
         reserveMemory(bufferHolder.capacity());
-        mMapBufferHolders.add(bufferHolder);
+        mMapBufferHolders.put(bufferHolder, new PageState(bufferHolder.lastAccessTime()));
     }
 
     public ByteBuffer allocateDirect(BufferHolder bufferHolder) {
         ByteBuffer buffer = allocateDirect(bufferHolder.capacity());
-        directBufferHolders.add(bufferHolder);
+        directBufferHolders.put(bufferHolder, new PageState(bufferHolder.lastAccessTime()));
         return buffer;
     }
 
@@ -455,11 +633,17 @@ public class PreloadBufferPool {
             plMonitorInfo.setCached(Format.formatSize(preLoadCache.bufferSize * cached));
             plMonitorInfo.setUsedPreLoad(Format.formatSize(preLoadCache.bufferSize * usedPreLoad));
             plMonitorInfo.setTotalSize(Format.formatSize(totalSize));
+            plMonitorInfo.setClassUsed(Format.formatSize(usedMemory(preLoadCache)));
+            plMonitorInfo.setBudget(Format.formatSize(preLoadCache.budget));
+            plMonitorInfo.setHit(preLoadCache.hitCounter.sum());
+            plMonitorInfo.setMiss(preLoadCache.missCounter.sum());
+            plMonitorInfo.setEviction(preLoadCache.evictCounter.sum());
+            plMonitorInfo.setStall(preLoadCache.stallCounter.sum());
             plMonitorInfos.add(plMonitorInfo);
             return totalSize;
         }).sum();
-        long mmpUsed = mMapBufferHolders.stream().mapToLong(BufferHolder::capacity).sum();
-        long directUsed = directBufferHolders.stream().mapToLong(BufferHolder::capacity).sum();
+        long mmpUsed = mMapBufferHolders.keySet().stream().mapToLong(BufferHolder::capacity).sum();
+        long directUsed = directBufferHolders.keySet().stream().mapToLong(BufferHolder::capacity).sum();
 
         bufferPoolMonitorInfo.setPlMonitorInfos(plMonitorInfos);
         bufferPoolMonitorInfo.setPlUsed(Format.formatSize(plUsed));
@@ -472,13 +656,35 @@ public class PreloadBufferPool {
     static class PreLoadCache {
         final int bufferSize;
         final int coreCount, maxCount;
+        // 内存预算，0表示不限制
+        final long budget;
         final Queue<ByteBuffer> cache = new ConcurrentLinkedQueue<>();
         final AtomicLong onFlyCounter = new AtomicLong(0L);
-
-        PreLoadCache(int bufferSize, int coreCount, int maxCount) {
+        // 读取时缓存页已加载
+        final LongAdder hitCounter = new LongAdder();
+        // 读取时需要加载缓存页
+        final LongAdder missCounter = new LongAdder();
+        // 被驱逐的缓存页
+        final LongAdder evictCounter = new LongAdder();
+        // 申请内存时内存不足，需要等待清理
+        final LongAdder stallCounter = new LongAdder();
+
+        PreLoadCache(int bufferSize, int coreCount, int maxCount, long budget) {
             this.bufferSize = bufferSize;
             this.coreCount = coreCount;
             this.maxCount = maxCount;
+            this.budget = budget;
+        }
+    }
+
+    private static class PageState {
+        // 上次采样时缓存页的访问时间
+        private volatile long sampledAccessTime;
+        // 访问频率
+        private volatile int frequency = 0;
+
+        PageState(long sampledAccessTime) {
+            this.sampledAccessTime = sampledAccessTime;
         }
     }
 
@@ -21,7 +21,9 @@ import org.joyqueue.domain.QosLevel;
 import org.joyqueue.exception.JoyQueueCode;
 import org.joyqueue.store.file.Checkpoint;
 import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.message.FlagMask;
 import org.joyqueue.store.message.MessageParser;
+import org.joyqueue.store.nsm.VirtualThreadExecutor;
 import org.joyqueue.store.utils.MessageUtils;
 import org.joyqueue.store.utils.PreloadBufferPool;
 import org.joyqueue.toolkit.concurrent.EventFuture;
@@ -93,6 +95,184 @@ public class PartitionGroupStoreManagerTest {
 
     }
 
+    @Test
+    public void virtualThreadWriteReadTest() throws Exception {
+        VirtualThreadExecutor writeExecutor = new VirtualThreadExecutor("WriteExecutor", 10L, 50L, 10, 20L, 2);
+        VirtualThreadExecutor flushExecutor = new VirtualThreadExecutor("FlushExecutor", 10L, 1L, 10, 20L, 2);
+        try {
+            for (QosLevel qosLevel : new QosLevel[]{QosLevel.RECEIVE, QosLevel.PERSISTENCE, QosLevel.REPLICATION, QosLevel.ALL}) {
+                destroyStore();
+                destroyBaseDir();
+                prepareBaseDir();
+                PartitionGroupStoreSupport.init(groupBase, partitions);
+                recoverStore(writeExecutor, flushExecutor, null);
+                writeReadTest(qosLevel);
+            }
+        } finally {
+            destroyStore();
+            writeExecutor.stop();
+            flushExecutor.stop();
+        }
+    }
+
+    @Test
+    public void groupCommitWriteReadTest() throws Exception {
+        GroupCommitFlusher groupCommitFlusher = new GroupCommitFlusher(1L, true);
+        try {
+            for (QosLevel qosLevel : new QosLevel[]{QosLevel.RECEIVE, QosLevel.PERSISTENCE, QosLevel.REPLICATION, QosLevel.ALL}) {
+                destroyStore();
+                destroyBaseDir();
+                prepareBaseDir();
+                PartitionGroupStoreSupport.init(groupBase, partitions);
+                recoverStore(null, null, groupCommitFlusher);
+                writeReadTest(qosLevel);
+            }
+            Assert.assertEquals(1, groupCommitFlusher.volumeCount());
+            // 最后一个Partition Group停止后移除刷盘线程
+            destroyStore();
+            Assert.assertEquals(0, groupCommitFlusher.volumeCount());
+        } finally {
+            destroyStore();
+            groupCommitFlusher.stop();
+        }
+    }
+
+
+    @Test
+    public void readRegionsTest() throws Exception {
+        int count = 1024;
+        long timeout = 500000L;
+        short partition = 4;
+        List<ByteBuffer> messages = MessageUtils.build(count, 1024);
+        long length = messages.stream().mapToInt(Buffer::remaining).sum();
+
+        final EventFuture<WriteResult> future = new EventFuture<>();
+        store.asyncWrite(QosLevel.PERSISTENCE, future, messages.stream().map(b -> new WriteRequest(partition, b)).toArray(WriteRequest[]::new));
+        Assert.assertEquals(JoyQueueCode.SUCCESS, future.get().getCode());
+
+        long t0 = SystemClock.now();
+        while (SystemClock.now() - t0 < timeout && store.indexPosition() < length) {
+            Thread.sleep(10L);
+        }
+
+        // 未提交的消息不返回
+        ReadResult readResult = store.readRegions(partition, 0, count, 0);
+        Assert.assertEquals(0, readResult.getRegions().length);
+
+        store.commit(store.rightPosition());
+        readResult = store.readRegions(partition, 0, count, 0);
+        Assert.assertEquals(JoyQueueCode.SUCCESS, readResult.getCode());
+        Assert.assertEquals(1, readResult.getRegions().length);
+        JournalRegion region = readResult.getRegions()[0];
+        Assert.assertEquals(count, region.getCount());
+        Assert.assertEquals(length, region.getLength());
+
+        ByteBuffer fileBuffer = ByteBuffer.allocate(region.getLength());
+        try (FileInputStream in = new FileInputStream(region.getFile())) {
+            in.getChannel().read(fileBuffer, region.getPosition());
+        }
+        fileBuffer.flip();
+        for (ByteBuffer message : messages) {
+            message.clear();
+            ByteBuffer readBuffer = fileBuffer.slice();
+            readBuffer.limit(message.remaining());
+            Assert.assertEquals(MessageParser.getInt(readBuffer, MessageParser.LENGTH), message.remaining());
+            Assert.assertEquals(MessageParser.getLong(message, MessageParser.CRC), MessageParser.getLong(readBuffer, MessageParser.CRC));
+            fileBuffer.position(fileBuffer.position() + message.remaining());
+        }
+
+        // maxSize限制返回的消息数量
+        long maxSize = messages.subList(10, 15).stream().mapToInt(Buffer::remaining).sum();
+        readResult = store.readRegions(partition, 10, count, maxSize);
+        Assert.assertEquals(5, readResult.getRegions()[0].getCount());
+    }
+
+    @Test
+    public void nextIndexOfFlagsTest() throws Exception {
+        int blockSize = PartitionGroupStoreManager.Config.DEFAULT_FLAG_INDEX_BLOCK_SIZE;
+        int count = blockSize * 4;
+        long timeout = 500000L;
+        short partition = 4;
+        List<ByteBuffer> messages = MessageUtils.build(count, 128);
+        int messageLength = messages.get(0).remaining();
+        long length = messages.stream().mapToInt(Buffer::remaining).sum();
+
+        final EventFuture<WriteResult> future = new EventFuture<>();
+        store.asyncWrite(QosLevel.PERSISTENCE, future, messages.stream().map(b -> new WriteRequest(partition, b)).toArray(WriteRequest[]::new));
+        Assert.assertEquals(JoyQueueCode.SUCCESS, future.get().getCode());
+
+        long t0 = SystemClock.now();
+        while (SystemClock.now() - t0 < timeout && store.indexPosition() < length) {
+            Thread.sleep(10L);
+        }
+
+        // 所有消息都没有这个标签，但是只能跳过已经提交的消息
+        long flagMask = FlagMask.of((short) 3);
+        Assert.assertEquals(0L, store.nextIndexOfFlags(partition, 0L, flagMask));
+
+        store.commit((long) messageLength * blockSize * 2);
+        Assert.assertEquals(blockSize * 2, store.nextIndexOfFlags(partition, 0L, flagMask));
+        Assert.assertEquals(blockSize * 2, store.nextIndexOfFlags(partition, blockSize, flagMask));
+
+        store.commit(store.rightPosition());
+        Assert.assertEquals(count, store.nextIndexOfFlags(partition, 0L, flagMask));
+        Assert.assertEquals(0L, store.nextIndexOfFlags(partition, 0L, FlagMask.ALL));
+    }
+
+    @Test
+    public void readEntryRegionTest() throws Exception {
+        List<ByteBuffer> messages = MessageUtils.build(100, 1024);
+        long length = messages.stream().mapToInt(Buffer::remaining).sum();
+        final EventFuture<WriteResult> future = new EventFuture<>();
+        store.asyncWrite(QosLevel.PERSISTENCE, future, messages.stream().map(b -> new WriteRequest(partitions[0], b)).toArray(WriteRequest[]::new));
+        Assert.assertEquals(JoyQueueCode.SUCCESS, future.get().getCode());
+
+        long t0 = SystemClock.now();
+        while (SystemClock.now() - t0 < 500000L && (store.indexPosition() < length || store.flushPosition() < length)) {
+            Thread.sleep(10L);
+        }
+
+        // 未提交的日志不能以文件区域的方式读取
+        Assert.assertNull(store.readEntryRegion(0, 10 * 1024));
+
+        store.commit(store.rightPosition());
+        int maxLength = 10 * 1024 + 100;
+        JournalRegion region = store.readEntryRegion(0, maxLength);
+        ByteBuffer entries = store.readEntryBuffer(0, maxLength);
+        Assert.assertNotNull(region);
+        Assert.assertEquals(entries.remaining(), region.getLength());
+
+        ByteBuffer fileBuffer = ByteBuffer.allocate(region.getLength());
+        try (FileInputStream in = new FileInputStream(region.getFile())) {
+            in.getChannel().read(fileBuffer, region.getPosition());
+        }
+        fileBuffer.flip();
+        Assert.assertEquals(entries, fileBuffer);
+
+        // 只有最后一部分可读时，返回剩余的完整日志
+        long position = store.position(store.rightPosition(), -1);
+        region = store.readEntryRegion(position, maxLength);
+        Assert.assertEquals(store.rightPosition() - position, region.getLength());
+    }
+
+    @Test
+    public void writeListenerTest() throws Exception {
+        AtomicLong notified = new AtomicLong(0L);
+        store.setWriteListener(() -> notified.set(store.rightPosition()));
+
+        List<ByteBuffer> messages = MessageUtils.build(10, 255);
+        final EventFuture<WriteResult> future = new EventFuture<>();
+        store.asyncWrite(QosLevel.PERSISTENCE, future, messages.stream().map(b -> new WriteRequest(partitions[0], b)).toArray(WriteRequest[]::new));
+        Assert.assertEquals(JoyQueueCode.SUCCESS, future.get().getCode());
+        // 写入完成后回调，回调时已经可以读到新写入的数据
+        Assert.assertEquals(store.rightPosition(), notified.get());
+
+        store.setWriteListener(null);
+        final EventFuture<WriteResult> future2 = new EventFuture<>();
+        store.asyncWrite(QosLevel.PERSISTENCE, future2, new WriteRequest(partitions[0], MessageUtils.build(1, 255).get(0)));
+        Assert.assertEquals(JoyQueueCode.SUCCESS, future2.get().getCode());
+        Assert.assertTrue(notified.get() < store.rightPosition());
+    }
 
     @Test
     public void indexLengthTest() throws Exception {
@@ -919,6 +1099,11 @@ public class PartitionGroupStoreManagerTest {
     }
 
     private void recoverStore() throws Exception {
+        recoverStore(null, null, null);
+    }
+
+    private void recoverStore(VirtualThreadExecutor writeExecutor, VirtualThreadExecutor flushExecutor,
+                              GroupCommitFlusher groupCommitFlusher) throws Exception {
         if (null == bufferPool) {
             bufferPool = PreloadBufferPool.getInstance();
             bufferPool.addPreLoad(32 * 1024 * 1024, 2, 4);
@@ -934,7 +1119,7 @@ public class PartitionGroupStoreManagerTest {
                 new PositioningStore.Config(128 * 1024,true, false));
 
         this.store = new PartitionGroupStoreManager(topic, partitionGroup, groupBase, config,
-                bufferPool);
+                bufferPool, writeExecutor, flushExecutor, groupCommitFlusher);
         this.store.recover();
         this.store.start();
         this.store.enable();
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store;
+
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.index.FixedIndexStore;
+import org.joyqueue.store.index.IndexItem;
+import org.joyqueue.store.index.IndexSerializer;
+import org.joyqueue.store.index.IndexStore;
+import org.joyqueue.store.utils.PreloadBufferPool;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReadAheadTest {
+    private static final int FILE_SIZE = 1024 * 1024;
+    private File base = null;
+    private PositioningStore<IndexItem> journal = null;
+    private IndexStore indexStore = null;
+    private ReadAhead readAhead = null;
+
+    @Test
+    public void sequentialReadTest() throws Exception {
+        ReadAhead.Streams streams = new ReadAhead.Streams();
+        readAhead.onRead(streams, 0L, 100, 0L, 100_000L, indexStore, journal);
+        readAhead.onRead(streams, 100L, 100, 100_000L, 200_000L, indexStore, journal);
+
+        // 第二次顺序读之后，预读之后1MB的数据
+        long preloadPosition = FILE_SIZE + 100_000L;
+        for (int i = 0; i < 100 && readAhead.preloadedSize() == 0L; i++) {
+            Thread.sleep(20L);
+        }
+        Assert.assertTrue(journal.storeFile(preloadPosition).hasPage());
+        Assert.assertFalse(journal.storeFile(FILE_SIZE * 5L).hasPage());
+        Assert.assertEquals(ReadAhead.MIN_WINDOW_SIZE, readAhead.preloadedSize());
+    }
+
+    @Test
+    public void randomReadTest() throws Exception {
+        ReadAhead.Streams streams = new ReadAhead.Streams();
+        readAhead.onRead(streams, 0L, 100, 0L, 100_000L, indexStore, journal);
+        readAhead.onRead(streams, 300_000L, 100, 3_600_000L, 3_700_000L, indexStore, journal);
+        readAhead.onRead(streams, 100_000L, 100, 1_200_000L, 1_300_000L, indexStore, journal);
+        Thread.sleep(200L);
+        Assert.assertEquals(0L, readAhead.preloadedSize());
+        Assert.assertFalse(journal.storeFile(FILE_SIZE * 2L).hasPage());
+        Assert.assertFalse(journal.storeFile(FILE_SIZE * 4L).hasPage());
+    }
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir();
+        File journalBase = new File(base, "journal");
+        File indexBase = new File(base, "index");
+        Assert.assertTrue(journalBase.mkdirs() && indexBase.mkdirs());
+        PreloadBufferPool bufferPool = PreloadBufferPool.getInstance();
+
+        // 写入8MB数据，关闭后重新打开，所有文件都没有加载缓存页
+        PositioningStore<IndexItem> store = createJournal(journalBase, bufferPool);
+        List<IndexItem> items = new ArrayList<>(1024);
+        for (int i = 0; i < 1024; i++) {
+            items.add(new IndexItem((short) 0, i, 100, i * 100L));
+        }
+        while (store.right() < FILE_SIZE * 8L) {
+            store.append(items);
+        }
+        while (store.flush()) {
+            Thread.yield();
+        }
+        store.close();
+
+        journal = createJournal(journalBase, bufferPool);
+        journal.recover();
+        indexStore = new FixedIndexStore(indexBase, new PositioningStore.Config(FILE_SIZE), bufferPool);
+        indexStore.recover();
+        readAhead = new ReadAhead(4 * 1024 * 1024, 1, bufferPool);
+    }
+
+    private PositioningStore<IndexItem> createJournal(File journalBase, PreloadBufferPool bufferPool) throws IOException {
+        return new PositioningStore<>(journalBase, new PositioningStore.Config(FILE_SIZE), bufferPool, new IndexSerializer());
+    }
+
+    @After
+    public void after() {
+        readAhead.stop();
+        indexStore.close();
+        journal.close();
+        BaseDirUtils.destroyBaseDir(base);
+        base = null;
+    }
+}
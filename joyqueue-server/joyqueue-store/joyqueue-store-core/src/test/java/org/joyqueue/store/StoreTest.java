@@ -0,0 +1,86 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store;
+
+import org.joyqueue.domain.QosLevel;
+import org.joyqueue.exception.JoyQueueCode;
+import org.joyqueue.store.utils.MessageUtils;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+public class StoreTest {
+    private static final String TOPIC = "test_topic";
+    private static final int PARTITION_GROUP = 1;
+    private static final short[] PARTITIONS = new short[]{0, 1};
+    private File base = null;
+    private Store store = null;
+
+    /**
+     * 共享的写入、刷盘线程和预读线程在Store重新启动后仍然可用
+     */
+    @Test
+    public void restartTest() throws Exception {
+        StoreConfig config = new StoreConfig(null);
+        config.setPath(base.getAbsolutePath());
+        config.setVirtualThreadEnable(true);
+        config.setGroupCommitEnable(true);
+        config.setReadAheadMaxSize(4 * 1024 * 1024);
+        store = new Store(config);
+        store.start();
+        store.createPartitionGroup(TOPIC, PARTITION_GROUP, PARTITIONS);
+        store.getReplicableStore(TOPIC, PARTITION_GROUP).enable();
+        write();
+
+        store.stop();
+        store.start();
+        store.getReplicableStore(TOPIC, PARTITION_GROUP).enable();
+        write();
+
+        PartitionGroupStore partitionGroupStore = store.getStore(TOPIC, PARTITION_GROUP);
+        Assert.assertEquals(20, partitionGroupStore.getRightIndex(PARTITIONS[0]));
+    }
+
+    private void write() throws Exception {
+        PartitionGroupStore partitionGroupStore = store.getStore(TOPIC, PARTITION_GROUP, QosLevel.PERSISTENCE);
+        WriteRequest[] writeRequests = MessageUtils.build(10, 255).stream()
+                .map(b -> new WriteRequest(PARTITIONS[0], b)).toArray(WriteRequest[]::new);
+        WriteResult writeResult = partitionGroupStore.asyncWrite(writeRequests).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(JoyQueueCode.SUCCESS, writeResult.getCode());
+    }
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir();
+    }
+
+    @After
+    public void after() throws Exception {
+        if (null != store) {
+            store.stop();
+            store.close();
+            store.physicalDelete();
+            store = null;
+        }
+        BaseDirUtils.destroyBaseDir(base);
+        base = null;
+    }
+}
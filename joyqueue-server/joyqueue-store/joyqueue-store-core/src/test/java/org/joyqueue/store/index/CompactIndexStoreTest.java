@@ -0,0 +1,207 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.store.file.PositioningStore;
+import org.joyqueue.store.utils.PreloadBufferPool;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CompactIndexStoreTest {
+    private static final int FILE_DATA_SIZE = 16 * 1024;
+    private File base = null;
+    private File fixedBase = null;
+
+    @Test
+    public void appendAndReadTest() throws IOException {
+        try (IndexStore compact = createCompactStore();
+             IndexStore fixed = new FixedIndexStore(fixedBase, new PositioningStore.Config(FILE_DATA_SIZE), PreloadBufferPool.getInstance())) {
+            append(compact, fixed, 0, 5000);
+            Assert.assertEquals(fixed.right(), compact.right());
+            assertSame(compact, fixed);
+            // 批消息的索引只记录一次，占用的空间远小于定长索引
+            Assert.assertTrue(compact.physicalSize() * 4 < fixed.physicalSize());
+        }
+    }
+
+    @Test
+    public void rollbackTest() throws IOException {
+        try (IndexStore compact = createCompactStore();
+             IndexStore fixed = new FixedIndexStore(fixedBase, new PositioningStore.Config(FILE_DATA_SIZE), PreloadBufferPool.getInstance())) {
+            append(compact, fixed, 0, 2000);
+
+            // 回滚到已封装的索引块中
+            long position = compact.right() / 3 / IndexItem.STORAGE_SIZE * IndexItem.STORAGE_SIZE + IndexItem.STORAGE_SIZE;
+            compact.setRight(position);
+            fixed.setRight(position);
+            Assert.assertEquals(position, compact.right());
+            assertSame(compact, fixed);
+
+            append(compact, fixed, 2000, 10);
+            // 回滚到正在写入的索引块中
+            position = compact.right() - IndexItem.STORAGE_SIZE * 3;
+            compact.setRight(position);
+            fixed.setRight(position);
+            assertSame(compact, fixed);
+
+            append(compact, fixed, 2010, 500);
+            assertSame(compact, fixed);
+        }
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+        long right;
+        try (IndexStore compact = createCompactStore();
+             IndexStore fixed = new FixedIndexStore(fixedBase, new PositioningStore.Config(FILE_DATA_SIZE), PreloadBufferPool.getInstance())) {
+            append(compact, fixed, 0, 3000);
+            right = compact.right();
+            while (fixed.flush()) {
+                Thread.yield();
+            }
+        }
+
+        try (IndexStore compact = createCompactStore();
+             IndexStore fixed = new FixedIndexStore(fixedBase, new PositioningStore.Config(FILE_DATA_SIZE), PreloadBufferPool.getInstance())) {
+            compact.recover();
+            fixed.recover();
+            Assert.assertEquals(right, compact.right());
+            assertSame(compact, fixed);
+
+            // 恢复后继续写入
+            append(compact, fixed, 3000, 100);
+            assertSame(compact, fixed);
+        }
+
+        // 清空后的位置在重启后保持不变
+        try (IndexStore compact = createCompactStore()) {
+            compact.recover();
+            compact.setRight(compact.right() + IndexItem.STORAGE_SIZE * 10);
+            right = compact.right();
+        }
+        try (IndexStore compact = createCompactStore()) {
+            compact.recover();
+            Assert.assertEquals(right, compact.left());
+            Assert.assertEquals(right, compact.right());
+        }
+    }
+
+    @Test
+    public void concurrentReadTest() throws Exception {
+        int count = 200000;
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        try (IndexStore compact = createCompactStore()) {
+            Thread[] readers = new Thread[4];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Thread(() -> {
+                    try {
+                        while (!stopped.get()) {
+                            long right = compact.right();
+                            if (right == 0L) {
+                                continue;
+                            }
+                            long index = ThreadLocalRandom.current().nextLong(right / IndexItem.STORAGE_SIZE);
+                            Assert.assertEquals(index * 1000L, compact.read(index * IndexItem.STORAGE_SIZE).getOffset());
+                            List<IndexItem> items = compact.batchRead(index * IndexItem.STORAGE_SIZE, 100);
+                            for (int j = 0; j < items.size(); j++) {
+                                Assert.assertEquals((index + j) * 1000L, items.get(j).getOffset());
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    }
+                });
+                readers[i].start();
+            }
+
+            for (int i = 0; i < count && null == error.get(); i++) {
+                compact.append(new IndexItem((short) 0, 0L, 100 + i % 7, i * 1000L));
+            }
+            stopped.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        if (null != error.get()) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    private IndexStore createCompactStore() throws IOException {
+        return new CompactIndexStore(base,
+                new PositioningStore.Config(FILE_DATA_SIZE, PositioningStore.Config.DEFAULT_FILE_HEADER_SIZE,
+                        PositioningStore.Config.DEFAULT_DISK_FULL_RATIO, CompactIndexStore.MAX_BLOCK_SIZE),
+                new PositioningStore.Config(FILE_DATA_SIZE), PreloadBufferPool.getInstance());
+    }
+
+    /**
+     * 写入count条消息的索引，每隔几条消息写入一条批消息
+     */
+    private void append(IndexStore compact, IndexStore fixed, int from, int count) throws IOException {
+        for (int i = from; i < from + count; i++) {
+            IndexItem indexItem = new IndexItem((short) 0, 0L, 100 + i % 7, i * 1000L);
+            if (i % 5 == 0) {
+                indexItem.setBatchMessage(true);
+                indexItem.setBatchMessageSize((short) (10 + i % 20));
+            }
+            compact.append(indexItem);
+            fixed.append(indexItem);
+        }
+    }
+
+    private void assertSame(IndexStore compact, IndexStore fixed) throws IOException {
+        Assert.assertEquals(fixed.right(), compact.right());
+        for (long position = compact.left(); position < compact.right(); position += IndexItem.STORAGE_SIZE) {
+            IndexItem expected = fixed.read(position);
+            IndexItem actual = compact.read(position);
+            Assert.assertEquals(expected.getOffset(), actual.getOffset());
+            Assert.assertEquals(expected.getLength(), actual.getLength());
+        }
+
+        List<IndexItem> expected = fixed.batchRead(compact.left(), 100);
+        List<IndexItem> actual = compact.batchRead(compact.left(), 100);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getOffset(), actual.get(i).getOffset());
+            Assert.assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir();
+        fixedBase = new File(base, "fixed");
+        fixedBase.mkdirs();
+    }
+
+    @After
+    public void after() {
+        BaseDirUtils.destroyBaseDir(base);
+        base = null;
+        fixedBase = null;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.store.message.FlagMask;
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FlagIndexTest {
+    private static final short COMMON_FLAG = 1;
+    private static final short RARE_FLAG = 2;
+    private File base = null;
+
+    @Test
+    public void appendAndNextTest() throws IOException {
+        Assert.assertNotEquals(FlagMask.of(COMMON_FLAG), FlagMask.of(RARE_FLAG));
+        try (FlagIndex flagIndex = new FlagIndex(base, 10)) {
+            // 只有序号55的消息是少见的标签
+            for (long i = 0; i < 100; i++) {
+                flagIndex.append(i, 1, i == 55 ? RARE_FLAG : COMMON_FLAG);
+            }
+            Assert.assertEquals(10, flagIndex.size());
+
+            Assert.assertEquals(50L, flagIndex.next(0L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(52L, flagIndex.next(52L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(100L, flagIndex.next(60L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(0L, flagIndex.next(0L, FlagMask.of(COMMON_FLAG)));
+            Assert.assertEquals(60L, flagIndex.next(60L, FlagMask.ALL));
+
+            // 回滚后从块的中间继续写入，这个块不能跳过
+            flagIndex.rollbackTo(75L);
+            Assert.assertEquals(7, flagIndex.size());
+            Assert.assertEquals(70L, flagIndex.next(60L, FlagMask.of(RARE_FLAG)));
+            for (long i = 75; i < 90; i++) {
+                flagIndex.append(i, 1, COMMON_FLAG);
+            }
+            Assert.assertEquals(9, flagIndex.size());
+            Assert.assertEquals(70L, flagIndex.next(60L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(90L, flagIndex.next(80L, FlagMask.of(RARE_FLAG)));
+
+            flagIndex.deleteBefore(25L);
+            Assert.assertEquals(7, flagIndex.size());
+            Assert.assertEquals(50L, flagIndex.next(20L, FlagMask.of(RARE_FLAG)));
+        }
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+        try (FlagIndex flagIndex = new FlagIndex(base, 10)) {
+            for (long i = 0; i < 40; i++) {
+                flagIndex.append(i, 1, COMMON_FLAG);
+            }
+            // 批消息占用 [40, 50) 的序号
+            flagIndex.append(40L, 10, RARE_FLAG);
+            for (long i = 50; i < 100; i++) {
+                flagIndex.append(i, 1, COMMON_FLAG);
+            }
+        }
+
+        try (FlagIndex flagIndex = new FlagIndex(base, 10)) {
+            // 只保留 [15, 95) 范围内写满的索引块
+            flagIndex.recover(15L, 95L);
+            Assert.assertEquals(8, flagIndex.size());
+            Assert.assertEquals(5L, flagIndex.next(5L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(40L, flagIndex.next(15L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(90L, flagIndex.next(50L, FlagMask.of(RARE_FLAG)));
+
+            // 继续写入的索引块和恢复的索引块连续
+            for (long i = 95; i < 110; i++) {
+                flagIndex.append(i, 1, COMMON_FLAG);
+            }
+            Assert.assertEquals(10, flagIndex.size());
+        }
+
+        try (FlagIndex flagIndex = new FlagIndex(base, 10)) {
+            flagIndex.recover(0L, 110L);
+            Assert.assertEquals(10, flagIndex.size());
+            // 恢复后从块的中间写入的索引块包含所有标签
+            Assert.assertEquals(90L, flagIndex.next(50L, FlagMask.of(RARE_FLAG)));
+            Assert.assertEquals(110L, flagIndex.next(100L, FlagMask.of(RARE_FLAG)));
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir();
+    }
+
+    @After
+    public void after() {
+        BaseDirUtils.destroyBaseDir(base);
+        base = null;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.index;
+
+import org.joyqueue.toolkit.util.BaseDirUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TimeIndexTest {
+    private File base = null;
+
+    @Test
+    public void appendAndRangeTest() throws IOException {
+        try (TimeIndex timeIndex = new TimeIndex(base, 10)) {
+            // 索引序号i的消息存储时间为1000 + i
+            for (long i = 0; i < 100; i++) {
+                timeIndex.append(i, 1000L + i);
+            }
+            Assert.assertEquals(10, timeIndex.size());
+
+            Assert.assertArrayEquals(new long[]{-1L, 0L}, timeIndex.range(1000L));
+            Assert.assertArrayEquals(new long[]{20L, 30L}, timeIndex.range(1025L));
+            Assert.assertArrayEquals(new long[]{20L, 30L}, timeIndex.range(1030L));
+            Assert.assertArrayEquals(new long[]{90L, -1L}, timeIndex.range(1095L));
+
+            timeIndex.rollbackTo(35L);
+            Assert.assertEquals(4, timeIndex.size());
+            Assert.assertArrayEquals(new long[]{30L, -1L}, timeIndex.range(1035L));
+
+            timeIndex.deleteBefore(15L);
+            Assert.assertEquals(2, timeIndex.size());
+            Assert.assertArrayEquals(new long[]{-1L, 20L}, timeIndex.range(1015L));
+        }
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+        try (TimeIndex timeIndex = new TimeIndex(base, 10)) {
+            for (long i = 0; i < 100; i++) {
+                timeIndex.append(i, 1000L + i);
+            }
+        }
+
+        try (TimeIndex timeIndex = new TimeIndex(base, 10)) {
+            // 只保留 [10, 55) 范围内的时间索引
+            timeIndex.recover(10L, 55L);
+            Assert.assertEquals(5, timeIndex.size());
+            Assert.assertArrayEquals(new long[]{50L, -1L}, timeIndex.range(1060L));
+
+            // 继续写入的时间索引和恢复的时间索引连续
+            for (long i = 55; i < 70; i++) {
+                timeIndex.append(i, 1000L + i);
+            }
+            Assert.assertEquals(6, timeIndex.size());
+        }
+
+        try (TimeIndex timeIndex = new TimeIndex(base, 10)) {
+            timeIndex.recover(0L, 100L);
+            Assert.assertEquals(6, timeIndex.size());
+            Assert.assertArrayEquals(new long[]{50L, 60L}, timeIndex.range(1055L));
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        base = BaseDirUtils.prepareBaseDir();
+    }
+
+    @After
+    public void after() {
+        BaseDirUtils.destroyBaseDir(base);
+        base = null;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2019 The JoyQueue Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joyqueue.store.utils;
+
+import org.joyqueue.monitor.BufferPoolMonitorInfo;
+import org.joyqueue.toolkit.format.Format;
+import org.joyqueue.toolkit.time.SystemClock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存页驱逐的测试，不启动后台线程，由测试直接调用采样和驱逐
+ */
+public class PreloadBufferPoolTest {
+    private static final int MAX_MEMORY = 100 * 1024;
+    private static final int INDEX_PAGE_SIZE = 1024;
+    private static final int MESSAGE_PAGE_SIZE = 2048;
+    private PreloadBufferPool pool;
+    private long base;
+
+    @Before
+    public void before() {
+        pool = new PreloadBufferPool(MAX_MEMORY, 0L);
+        // 访问时间都在最大页龄以内，不会因为过期被驱逐
+        base = SystemClock.now() - 60_000L;
+    }
+
+    @Test
+    public void overBudgetSizeClassTest() {
+        // 索引页预算20%，消息页预算80%，清理阈值是最大内存的90%
+        pool.addPreLoad(INDEX_PAGE_SIZE, 0, 0, 20);
+        pool.addPreLoad(MESSAGE_PAGE_SIZE, 0, 0, 80);
+
+        // 索引页比消息页访问得晚，但是超出了预算
+        List<Page> indexPages = allocate(40, INDEX_PAGE_SIZE, base + 10_000L);
+        List<Page> messagePages = allocate(20, MESSAGE_PAGE_SIZE, base);
+
+        // 没有超过清理阈值时，超出预算也不驱逐
+        pool.evict();
+        Assert.assertEquals(0, evicted(indexPages) + evicted(messagePages));
+
+        messagePages.addAll(allocate(6, MESSAGE_PAGE_SIZE, base + 100L));
+        pool.evict();
+
+        // 超出预算的索引页先被驱逐，按访问时间从早到晚，直到内存占用低于清理阈值
+        Assert.assertEquals(0, evicted(messagePages));
+        Assert.assertEquals(2, evicted(indexPages));
+        Assert.assertTrue(indexPages.get(0).evicted);
+        Assert.assertTrue(indexPages.get(1).evicted);
+    }
+
+    @Test
+    public void hotPageSurviveScanTest() {
+        pool.addPreLoad(INDEX_PAGE_SIZE, 0, 0);
+
+        Page hot = allocate(1, INDEX_PAGE_SIZE, base).get(0);
+        Page warm = allocate(1, INDEX_PAGE_SIZE, base + 5_000L).get(0);
+        // 热点页在5个采样周期内持续被访问，最后一次访问和warm页相同
+        long now = SystemClock.now();
+        for (int i = 1; i <= 5; i++) {
+            hot.lastAccessTime = base + i * 1_000L;
+            pool.samplePageAccess(now + i * 1_000L);
+        }
+
+        // 慢消费者扫描历史消息，每页只访问一次，访问时间都晚于热点页
+        List<Page> scanned = allocate(90, INDEX_PAGE_SIZE, base + 6_000L);
+        pool.samplePageAccess(now + 6_000L);
+        pool.evict();
+
+        // 超出清理阈值2页：只访问过一次的页先被驱逐，热点页保留
+        Assert.assertFalse(hot.evicted);
+        Assert.assertTrue(warm.evicted);
+        Assert.assertTrue(scanned.get(0).evicted);
+        Assert.assertEquals(1, evicted(scanned));
+    }
+
+    @Test
+    public void counterTest() {
+        pool.addPreLoad(INDEX_PAGE_SIZE, 0, 0);
+        pool.addPreLoad(MESSAGE_PAGE_SIZE, 0, 0);
+
+        // 正好达到清理阈值
+        List<Page> indexPages = allocate(90, INDEX_PAGE_SIZE, base);
+        pool.recordRead(indexPages.get(0), true);
+        pool.recordRead(indexPages.get(0), true);
+        pool.recordRead(indexPages.get(1), false);
+
+        // 超出清理阈值1页
+        allocate(1, INDEX_PAGE_SIZE, base + 1_000L);
+        pool.evict();
+
+        // 申请到第6个消息页时超出最大内存，之后每次申请都需要等待清理
+        allocate(10, MESSAGE_PAGE_SIZE, base + 2_000L);
+
+        BufferPoolMonitorInfo.PLMonitorInfo index = monitorInfo(INDEX_PAGE_SIZE);
+        Assert.assertEquals(2, index.getHit());
+        Assert.assertEquals(1, index.getMiss());
+        Assert.assertEquals(1, index.getEviction());
+        Assert.assertEquals(0, index.getStall());
+        Assert.assertTrue(indexPages.get(0).evicted);
+
+        BufferPoolMonitorInfo.PLMonitorInfo message = monitorInfo(MESSAGE_PAGE_SIZE);
+        Assert.assertEquals(0, message.getHit());
+        Assert.assertEquals(0, message.getMiss());
+        Assert.assertEquals(0, message.getEviction());
+        Assert.assertEquals(5, message.getStall());
+    }
+
+    private BufferPoolMonitorInfo.PLMonitorInfo monitorInfo(int bufferSize) {
+        String size = Format.formatSize(bufferSize);
+        for (BufferPoolMonitorInfo.PLMonitorInfo info : pool.monitorInfo().getPlMonitorInfos()) {
+            if (size.equals(info.getBufferSize())) {
+                return info;
+            }
+        }
+        throw new IllegalArgumentException(size);
+    }
+
+    private List<Page> allocate(int count, int size, long lastAccessTime) {
+        List<Page> pages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Page page = new Page(size, lastAccessTime + i);
+            pool.allocateMMap(page);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private int evicted(List<Page> pages) {
+        return (int) pages.stream().filter(page -> page.evicted).count();
+    }
+
+    private class Page implements BufferHolder {
+        private final int capacity;
+        private long lastAccessTime;
+        private boolean evicted = false;
+
+        Page(int capacity, long lastAccessTime) {
+            this.capacity = capacity;
+            this.lastAccessTime = lastAccessTime;
+        }
+
+        @Override
+        public int capacity() {
+            return capacity;
+        }
+
+        @Override
+        public boolean isFree() {
+            return true;
+        }
+
+        @Override
+        public boolean evict() {
+            evicted = true;
+            pool.releaseMMap(this);
+            return true;
+        }
+
+        @Override
+        public boolean writable() {
+            return false;
+        }
+
+        @Override
+        public long lastAccessTime() {
+            return lastAccessTime;
+        }
+    }
+}